@@ -0,0 +1,369 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Computes a fingerprint of the API of a compiled class: everything in its class files which
+ * can affect the compilation of other classes which use it.  If a class is recompiled and
+ * its fingerprint has not changed, classes compiled against the previous version do not need
+ * to be recompiled.
+ * 
+ * <p>The fingerprint covers, for the class and its member classes: the class name, modifiers,
+ * superclass, interfaces and generic signature; and the name, modifiers, type, generic signature,
+ * constant value (which is inlined into other classes), thrown exceptions and annotation default
+ * of each field and method which is not private or synthetic.  Method bodies, static
+ * initializers, private members, local and anonymous classes, and annotations are not
+ * included.  The order of members does not matter.
+ */
+@OnThread(Tag.Any)
+public class ApiFingerprint
+{
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_SYNCHRONIZED = 0x0020;
+    private static final int ACC_NATIVE = 0x0100;
+    private static final int ACC_STRICT = 0x0800;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    /**
+     * Compute the fingerprint of a class, from its class files.
+     * 
+     * @param classFile  The class file of the top-level class
+     * @param innerClassFiles  The class files of its nested classes (may be null).  Those of local
+     *                         and anonymous classes are ignored.
+     * @return  The fingerprint, or null if the class files could not be read
+     */
+    public static String compute(File classFile, File[] innerClassFiles)
+    {
+        String baseName = classFile.getName();
+        baseName = baseName.substring(0, baseName.length() - ".class".length());
+        
+        List<File> files = new ArrayList<>();
+        files.add(classFile);
+        if (innerClassFiles != null) {
+            for (File file : innerClassFiles) {
+                if (isMemberClassFile(baseName, file.getName())) {
+                    files.add(file);
+                }
+            }
+        }
+        
+        List<String> classes = new ArrayList<>();
+        for (File file : files) {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+                classes.add(describeClass(new DataInputStream(is)));
+            }
+            catch (IOException | RuntimeException e) {
+                // Missing, or not a valid class file:
+                return null;
+            }
+        }
+        Collections.sort(classes);
+        
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String description : classes) {
+                digest.update(description.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest()) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            Debug.reportError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Check whether a class file is that of a member class of the given class (rather than a
+     * local or anonymous class, which are named with a number after the '$').
+     */
+    private static boolean isMemberClassFile(String baseName, String fileName)
+    {
+        if (! fileName.startsWith(baseName + "$") || ! fileName.endsWith(".class")) {
+            return false;
+        }
+        String nested = fileName.substring(baseName.length() + 1, fileName.length() - ".class".length());
+        for (String part : nested.split("\\$", -1)) {
+            if (part.isEmpty() || Character.isDigit(part.charAt(0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a class file, and describe the parts of it which form its API.
+     */
+    private static String describeClass(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        
+        Object[] pool = readConstantPool(in);
+        
+        StringBuilder desc = new StringBuilder();
+        int access = in.readUnsignedShort();
+        String thisClass = className(pool, in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        desc.append("class ").append(thisClass).append(' ').append(access);
+        desc.append(" extends ").append(superIndex == 0 ? "" : className(pool, superIndex));
+        int interfaces = in.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            desc.append(" implements ").append(className(pool, in.readUnsignedShort()));
+        }
+        desc.append('\n');
+        
+        List<String> members = new ArrayList<>();
+        for (int kind = 0; kind < 2; kind++) {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                int memberAccess = in.readUnsignedShort();
+                String name = (String) pool[in.readUnsignedShort()];
+                String type = (String) pool[in.readUnsignedShort()];
+                String attributes = describeAttributes(in, pool, thisClass);
+                if ((memberAccess & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0 && ! name.equals("<clinit>")) {
+                    // Modifiers which make no difference to callers are ignored:
+                    memberAccess &= ~(ACC_SYNCHRONIZED | ACC_NATIVE | ACC_STRICT);
+                    members.add((kind == 0 ? "field " : "method ") + name + " " + type + " "
+                            + memberAccess + attributes + "\n");
+                }
+            }
+        }
+        Collections.sort(members);
+        
+        desc.append(describeAttributes(in, pool, thisClass)).append('\n');
+        for (String member : members) {
+            desc.append(member);
+        }
+        return desc.toString();
+    }
+
+    /**
+     * Read the constant pool.  Each entry is a String (for UTF8 entries), an int[] of the
+     * referenced indexes (for class, string and similar entries), or the constant value.
+     */
+    private static Object[] readConstantPool(DataInputStream in) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        Object[] pool = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // UTF8
+                    pool[i] = in.readUTF();
+                    break;
+                case 3: // Integer
+                    pool[i] = in.readInt();
+                    break;
+                case 4: // Float
+                    pool[i] = in.readFloat();
+                    break;
+                case 5: // Long
+                    pool[i] = in.readLong();
+                    i++; // takes two entries
+                    break;
+                case 6: // Double
+                    pool[i] = in.readDouble();
+                    i++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    pool[i] = new int[] {in.readUnsignedShort()};
+                    break;
+                case 15: // MethodHandle
+                    pool[i] = new int[] {in.readUnsignedByte(), in.readUnsignedShort()};
+                    break;
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    pool[i] = new int[] {in.readUnsignedShort(), in.readUnsignedShort()};
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Read a set of attributes, and describe those which form part of the API.
+     * 
+     * @param thisClass  The name of the class being read
+     */
+    private static String describeAttributes(DataInputStream in, Object[] pool, String thisClass)
+        throws IOException
+    {
+        StringBuilder desc = new StringBuilder();
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String name = (String) pool[in.readUnsignedShort()];
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            DataInputStream attr = new DataInputStream(new ByteArrayInputStream(data));
+            
+            switch (name) {
+                case "Signature":
+                    desc.append(" signature ").append(pool[attr.readUnsignedShort()]);
+                    break;
+                case "ConstantValue":
+                    desc.append(" value ").append(constant(pool, attr.readUnsignedShort()));
+                    break;
+                case "Exceptions":
+                case "PermittedSubclasses": {
+                    desc.append(' ').append(name);
+                    int classes = attr.readUnsignedShort();
+                    for (int j = 0; j < classes; j++) {
+                        desc.append(' ').append(className(pool, attr.readUnsignedShort()));
+                    }
+                    break;
+                }
+                case "AnnotationDefault":
+                    desc.append(" default ");
+                    describeElementValue(attr, pool, desc);
+                    break;
+                case "InnerClasses": {
+                    // Only the entries for this class and its own members; the attribute also
+                    // lists any other nested classes which the code refers to.
+                    int classes = attr.readUnsignedShort();
+                    for (int j = 0; j < classes; j++) {
+                        int inner = attr.readUnsignedShort();
+                        int outer = attr.readUnsignedShort();
+                        int innerName = attr.readUnsignedShort();
+                        int innerAccess = attr.readUnsignedShort();
+                        String innerClass = className(pool, inner);
+                        String outerClass = outer == 0 ? null : className(pool, outer);
+                        if (outerClass != null && (innerClass.equals(thisClass) || outerClass.equals(thisClass))) {
+                            desc.append(" inner ").append(innerClass).append(' ').append(outerClass)
+                                .append(' ').append(innerName == 0 ? "" : pool[innerName]).append(' ').append(innerAccess);
+                        }
+                    }
+                    break;
+                }
+                case "Record": {
+                    int components = attr.readUnsignedShort();
+                    for (int j = 0; j < components; j++) {
+                        desc.append(" component ").append(pool[attr.readUnsignedShort()])
+                            .append(' ').append(pool[attr.readUnsignedShort()]);
+                        desc.append(describeAttributes(attr, pool, thisClass));
+                    }
+                    break;
+                }
+                default:
+                    // Code, annotations, debugging information etc. are not part of the API
+                    break;
+            }
+        }
+        return desc.toString();
+    }
+
+    /**
+     * Describe an annotation element value (as found in an annotation default).
+     */
+    private static void describeElementValue(DataInputStream in, Object[] pool, StringBuilder desc)
+        throws IOException
+    {
+        char tag = (char) in.readUnsignedByte();
+        desc.append(tag);
+        switch (tag) {
+            case 'e':
+                desc.append(pool[in.readUnsignedShort()]).append('.').append(pool[in.readUnsignedShort()]);
+                break;
+            case 'c':
+                desc.append(pool[in.readUnsignedShort()]);
+                break;
+            case '@':
+                desc.append(pool[in.readUnsignedShort()]).append('(');
+                int pairs = in.readUnsignedShort();
+                for (int i = 0; i < pairs; i++) {
+                    desc.append(pool[in.readUnsignedShort()]).append('=');
+                    describeElementValue(in, pool, desc);
+                    desc.append(',');
+                }
+                desc.append(')');
+                break;
+            case '[':
+                desc.append('{');
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++) {
+                    describeElementValue(in, pool, desc);
+                    desc.append(',');
+                }
+                desc.append('}');
+                break;
+            default:
+                // A primitive or string constant
+                desc.append(constant(pool, in.readUnsignedShort()));
+                break;
+        }
+    }
+
+    /**
+     * Get the name of the class referred to by a class constant.
+     */
+    private static String className(Object[] pool, int index)
+    {
+        return (String) pool[((int[]) pool[index])[0]];
+    }
+
+    /**
+     * Get a constant value, as a string including its type.
+     */
+    private static String constant(Object[] pool, int index)
+    {
+        Object value = pool[index];
+        if (value instanceof int[]) {
+            // A String constant, referring to its UTF8 entry:
+            return "String:" + pool[((int[]) value)[0]];
+        }
+        return value.getClass().getSimpleName() + ":" + value;
+    }
+}
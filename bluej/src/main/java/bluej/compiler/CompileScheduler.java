@@ -0,0 +1,193 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import bluej.Config;
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Schedules the compilation of a group of classes as several jobs, so that classes which
+ * do not depend on each other can be compiled concurrently, and so that an error in one
+ * class does not prevent unrelated classes from being compiled.
+ * 
+ * <p>The classes are split into the strongly-connected components of their dependency
+ * graph (see {@link #findComponents}); the classes in a component depend on each other,
+ * directly or indirectly, and so must be compiled together.  A component is compiled once
+ * all the components it depends on have been compiled successfully, by a small pool of
+ * threads.  If a component fails to compile, the components which depend on it are skipped
+ * (and reported as unsuccessful), since compiling them would only repeat its errors.
+ */
+@OnThread(Tag.Any)
+public class CompileScheduler
+{
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create a scheduler which compiles at most the given number of jobs at once.
+     * 
+     * @param threads  The number of compilation threads
+     * @param priority  The priority of the compilation threads
+     */
+    CompileScheduler(int threads, int priority)
+    {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, Config.getString("compiler.thread.title")
+                            + " " + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    t.setPriority(priority);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Compile a group of jobs, and wait until all have completed (or been skipped).
+     * The observer of each job is notified as that job starts and ends.
+     * 
+     * @param jobs  The jobs, each after all of the jobs it depends on
+     * @param dependencies  For each job, the indexes of the jobs which it depends on
+     */
+    void compile(List<Job> jobs, List<int[]> dependencies)
+    {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            List<CompletableFuture<Boolean>> before = new ArrayList<>();
+            for (int dependency : dependencies.get(i)) {
+                before.add(results.get(dependency));
+            }
+            
+            results.add(CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(v -> {
+                        if (before.stream().allMatch(CompletableFuture::join)) {
+                            return job.compile();
+                        }
+                        job.skip();
+                        return false;
+                    }, executor));
+        }
+        
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+        }
+        catch (CompletionException e) {
+            Debug.reportError("Error while compiling", e.getCause());
+        }
+    }
+
+    /**
+     * Split a dependency graph into its strongly-connected components.  Each component is
+     * a set of nodes which all (directly or indirectly) depend on each other; a node which is
+     * not part of any cycle is a component on its own.  The components are returned in
+     * dependency order: each component comes after all components that it depends on.
+     * 
+     * @param nodes  The nodes of the graph
+     * @param dependencies  Gives the nodes which a node depends on; any which are not
+     *                      in the given collection of nodes are ignored
+     * @return  The components, in dependency order
+     */
+    public static <T> List<List<T>> findComponents(Collection<T> nodes,
+            Function<T, ? extends Collection<T>> dependencies)
+    {
+        ComponentFinder<T> finder = new ComponentFinder<>(nodes, dependencies);
+        for (T node : nodes) {
+            if (! finder.index.containsKey(node)) {
+                finder.visit(node);
+            }
+        }
+        return finder.components;
+    }
+
+    /**
+     * The state of a search for strongly-connected components, using Tarjan's algorithm.
+     */
+    private static class ComponentFinder<T>
+    {
+        private final Set<T> nodes;
+        private final Function<T, ? extends Collection<T>> dependencies;
+        /** The order in which each node was visited */
+        private final Map<T, Integer> index = new HashMap<>();
+        /** The lowest index reachable from each node (through nodes still on the stack) */
+        private final Map<T, Integer> lowLink = new HashMap<>();
+        /** Visited nodes which have not yet been assigned to a component */
+        private final List<T> stack = new ArrayList<>();
+        private final Set<T> onStack = new HashSet<>();
+        private final List<List<T>> components = new ArrayList<>();
+
+        private ComponentFinder(Collection<T> nodes, Function<T, ? extends Collection<T>> dependencies)
+        {
+            this.nodes = new HashSet<>(nodes);
+            this.dependencies = dependencies;
+        }
+
+        private void visit(T node)
+        {
+            int nodeIndex = index.size();
+            index.put(node, nodeIndex);
+            lowLink.put(node, nodeIndex);
+            stack.add(node);
+            onStack.add(node);
+            
+            for (T dependency : dependencies.apply(node)) {
+                if (! nodes.contains(dependency)) {
+                    continue;
+                }
+                if (! index.containsKey(dependency)) {
+                    visit(dependency);
+                    lowLink.put(node, Math.min(lowLink.get(node), lowLink.get(dependency)));
+                }
+                else if (onStack.contains(dependency)) {
+                    // Part of the current component
+                    lowLink.put(node, Math.min(lowLink.get(node), index.get(dependency)));
+                }
+            }
+            
+            if (lowLink.get(node).intValue() == nodeIndex) {
+                // The node is the root of a component, which is everything above it on the stack:
+                List<T> top = stack.subList(stack.indexOf(node), stack.size());
+                List<T> component = new ArrayList<>(top);
+                top.clear();
+                onStack.removeAll(component);
+                components.add(component);
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2010,2011,2012,2016,2018  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2010,2011,2012,2016,2018,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -44,6 +44,8 @@ abstract class Compiler
     private File[] bootClassPath;
     private boolean debug;
     private boolean deprecation;
+    /** The in-memory source to compile instead of the given files - may be null */
+    private InMemorySource inMemorySource;
     
     /**
      * Set the destination directory - the base directory for where the compiled class files
@@ -72,6 +74,17 @@ abstract class Compiler
         this.bootClassPath = bootClassPath;
     }
     
+    /**
+     * Specify a source held in memory, which is compiled in place of the source
+     * files, and whose class files are kept in memory.
+     * 
+     * @param inMemorySource  The in-memory source, or null to compile the source files.
+     */
+    public void setInMemorySource(InMemorySource inMemorySource)
+    {
+        this.inMemorySource = inMemorySource;
+    }
+
     public void setDebug(boolean debug)
     {
         this.debug = debug;
@@ -106,6 +119,11 @@ abstract class Compiler
     {
         return bootClassPath;
     }
+    
+    public InMemorySource getInMemorySource()
+    {
+        return inMemorySource;
+    }
 
     /**
      * Compile some source files.
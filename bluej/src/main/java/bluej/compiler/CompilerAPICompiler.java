@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2018  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2018,2026  Michael Kolling and John Rosenberg
 
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,8 +21,10 @@
  */
 package bluej.compiler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -34,17 +36,22 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
-import javax.tools.ToolProvider;
 
 import bluej.Config;
 import bluej.compiler.Diagnostic.DiagnosticOrigin;
 
 /**
  * A compiler implementation using the Compiler API introduced in Java 6.
+ * The compiler and its file manager are provided by a {@link JavacService},
+ * which keeps them between compilations.
  * 
  * @author Marion Zalk
  */
@@ -52,8 +59,12 @@ public class CompilerAPICompiler extends Compiler
 {
     private static final AtomicInteger nextDiagnosticIdentifier = new AtomicInteger(1);
 
-    public CompilerAPICompiler()
+    /** The service which provides the compiler and a reusable file manager */
+    private final JavacService javacService;
+
+    public CompilerAPICompiler(JavacService javacService)
     {
+        this.javacService = javacService;
         setDebug(true);
         setDeprecation(true);
     }
@@ -77,7 +88,7 @@ public class CompilerAPICompiler extends Compiler
             final boolean internal, List<String> userOptions, Charset fileCharset, CompileType type)
     {
         boolean result = true;
-        JavaCompiler jc = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler jc = javacService.getCompiler();
         List<String> optionsList = new ArrayList<String>();
         
         if (jc == null) {
@@ -181,19 +192,21 @@ public class CompilerAPICompiler extends Compiler
             }
         };
         
+        boolean discard = true;
+        boolean userFileManagerOptions = false;
+        StandardJavaFileManager sjfm = null;
         try
         {  
-            //setup the filemanager
-            StandardJavaFileManager sjfm = jc.getStandardFileManager(diagListener, null, fileCharset);
-            List<File> pathList = new ArrayList<File>();
+            //setup the filemanager (the classpath is set by the service, and is kept
+            //between compilations for as long as it is unchanged)
+            sjfm = javacService.acquire(diagListener, fileCharset,
+                    getClassPath(), getBootClassPath());
             List<File> outputList = new ArrayList<File>();
             outputList.add(getDestDir());
-            pathList.addAll(getClassPath());
             
             // In BlueJ, the destination directory and the source path are
             // always the same
             sjfm.setLocation(StandardLocation.SOURCE_PATH, outputList);
-            sjfm.setLocation(StandardLocation.CLASS_PATH, pathList);
             File tempDir = null;
             if (type.keepClasses())
             {
@@ -209,8 +222,18 @@ public class CompilerAPICompiler extends Compiler
             }
             
             //get the source files for compilation  
-            Iterable<? extends JavaFileObject> compilationUnits1 =
-                sjfm.getJavaFileObjectsFromFiles(Arrays.asList(sources));
+            Iterable<? extends JavaFileObject> compilationUnits1;
+            JavaFileManager fileManager = sjfm;
+            InMemorySource inMemory = getInMemorySource();
+            if (inMemory != null)
+            {
+                compilationUnits1 = Collections.singletonList(new MemorySourceObject(inMemory));
+                fileManager = new MemoryOutputFileManager(sjfm, inMemory);
+            }
+            else
+            {
+                compilationUnits1 = sjfm.getJavaFileObjectsFromFiles(Arrays.asList(sources));
+            }
             //add any options
             if(isDebug()) {
                 optionsList.add("-g");
@@ -219,24 +242,31 @@ public class CompilerAPICompiler extends Compiler
                 optionsList.add("-deprecation");
             }
             
-            File[] bootClassPath = getBootClassPath();
-            if (bootClassPath != null && bootClassPath.length != 0) {
-                sjfm.setLocation(StandardLocation.PLATFORM_CLASS_PATH, Arrays.asList(bootClassPath));
-            }
-            
             optionsList.addAll(userOptions);
+            // The compiler applies options such as -classpath to the file manager, so
+            // a file manager used with them must not be kept for later compilations:
+            for (String option : userOptions) {
+                if (sjfm.isSupportedOption(option) != -1) {
+                    userFileManagerOptions = true;
+                }
+            }
             
             //compile
-            result = jc.getTask(null, sjfm, diagListener, optionsList, null, compilationUnits1).call();
-            sjfm.close();
+            result = jc.getTask(null, fileManager, diagListener, optionsList, null, compilationUnits1).call();
+            sjfm.flush();
             if (tempDir != null)
                 tempDir.delete();
+            discard = userFileManagerOptions;
         }
         catch(IOException e)
         {
             e.printStackTrace(System.out);
             return false;
         }
+        finally
+        {
+            javacService.release(sjfm, discard);
+        }
 
         return result;
     }
@@ -310,4 +340,70 @@ public class CompilerAPICompiler extends Compiler
     {
         return nextDiagnosticIdentifier.getAndIncrement();
     }
+
+    /**
+     * A compilation unit whose source is held in memory.
+     */
+    private static class MemorySourceObject extends SimpleJavaFileObject
+    {
+        private final InMemorySource source;
+
+        public MemorySourceObject(InMemorySource source)
+        {
+            super(source.getSourceFile().toURI(), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public String getName()
+        {
+            return source.getSourceFile().getPath();
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors)
+        {
+            return source.getSource();
+        }
+    }
+
+    /**
+     * A file manager which keeps the class files for an in-memory source in memory,
+     * and otherwise behaves as the given file manager.
+     */
+    private static class MemoryOutputFileManager extends ForwardingJavaFileManager<JavaFileManager>
+    {
+        private final InMemorySource source;
+
+        public MemoryOutputFileManager(JavaFileManager fileManager, InMemorySource source)
+        {
+            super(fileManager);
+            this.source = source;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                JavaFileObject.Kind kind, FileObject sibling) throws IOException
+        {
+            if (kind != JavaFileObject.Kind.CLASS || !source.isOwnClass(className))
+            {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            
+            URI uri = URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream()
+                {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close()
+                        {
+                            source.putClassFile(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
\ No newline at end of file
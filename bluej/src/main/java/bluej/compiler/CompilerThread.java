@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2014  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2014,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -27,9 +27,10 @@ import bluej.Config;
 import bluej.utility.Queue;
 
 /**
- * The compiler thread. BlueJ uses exactly one thread for compilation. Jobs are
- * queued, and this thread processes tham one by one. If there is no job, this
- * thread just sleeps.
+ * The compiler thread. BlueJ uses exactly one thread to process compilation jobs.
+ * Jobs are queued, and this thread processes tham one by one. If there is no job, this
+ * thread just sleeps. (A job may itself compile several groups of classes
+ * concurrently; see {@link CompileScheduler}.)
  * 
  * @author Michael Cahill
  * @author Michael Kolling
@@ -56,10 +57,10 @@ class CompilerThread extends Thread
      */
     public void run()
     {
-        Job job;
+        Runnable job;
         while (true) {
             synchronized (this) {
-                while ((job = (Job) jobs.dequeue()) == null) {
+                while ((job = (Runnable) jobs.dequeue()) == null) {
                     busy = false;
                     notifyAll();
                     try {
@@ -69,7 +70,7 @@ class CompilerThread extends Thread
                 }
             }
 
-            job.compile();
+            job.run();
         }
     }
 
@@ -77,9 +78,11 @@ class CompilerThread extends Thread
      * Add a new job to this thread's job queue. The job will be processed by
      * this thread some tim ein the near future. This method returns
      * immediately.
+     * 
+     * @param job  The job, typically a {@link Job}'s compile method
      */
     @OnThread(Tag.Any)
-    public synchronized void addJob(Job job)
+    public synchronized void addJob(Runnable job)
     {
         jobs.enqueue(job);
         busy = true;
@@ -0,0 +1,101 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A source file which is held in memory rather than on disk, for internal compilations
+ * (such as the shell classes used for interactive invocations).  The class files produced
+ * for the top-level class (and any classes nested within it) are also kept in memory,
+ * rather than being written to the output directory.
+ */
+@OnThread(Tag.Any)
+public class InMemorySource
+{
+    private final String className;
+    private final File sourceFile;
+    private final String source;
+    /** The class files produced, by binary class name, in the order written */
+    private final Map<String, byte[]> classFiles = new LinkedHashMap<>();
+
+    /**
+     * Create an in-memory source.
+     * 
+     * @param className  The fully-qualified name of the top-level class in the source
+     * @param sourceFile  The file which the source nominally comes from (used in diagnostics;
+     *                    it need not exist)
+     * @param source  The source code
+     */
+    public InMemorySource(String className, File sourceFile, String source)
+    {
+        this.className = className;
+        this.sourceFile = sourceFile;
+        this.source = source;
+    }
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+    public File getSourceFile()
+    {
+        return sourceFile;
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Check whether a class produced by the compilation should be kept in memory, i.e. whether
+     * it is the top-level class or nested within it.
+     */
+    public boolean isOwnClass(String binaryName)
+    {
+        return binaryName.equals(className) || binaryName.startsWith(className + "$");
+    }
+
+    /**
+     * Record a class file produced by the compilation.
+     */
+    public synchronized void putClassFile(String binaryName, byte[] contents)
+    {
+        classFiles.put(binaryName, contents);
+    }
+
+    /**
+     * Get the class files produced by the compilation, by binary class name.
+     */
+    public synchronized Map<String, byte[]> getClassFiles()
+    {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(classFiles));
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A long-lived javac service, owned by the JobQueue.  It keeps the system compiler and
+ * "warm" file managers between compilations, so that the jars on the classpath (which
+ * javac opens and indexes) do not have to be re-read for every compilation.
+ * 
+ * <p>A file manager is used by one compilation at a time; if compilations run concurrently,
+ * each is given its own file manager, and a few are kept for re-use afterwards.
+ * 
+ * <p>The file managers are replaced if the character set, the classpath, or the size or
+ * modification time of any jar on the classpath changes.  Since an open file manager keeps
+ * the jars open (which prevents them being replaced or deleted on some platforms), they are
+ * closed once they have not been used for a while, or when asked to by {@link #closeWhenIdle()}.
+ */
+@OnThread(Tag.Any)
+class JavacService
+{
+    /** How long the file managers are kept open after they were last used */
+    private static final long IDLE_CLOSE_MILLIS = 60 * 1000;
+    /** The most file managers which are kept for re-use */
+    private static final int MAX_IDLE_MANAGERS = 4;
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final Timer idleTimer = new Timer("Compiler file manager release", true);
+
+    /** All open file managers, whether in use or not */
+    private final Map<StandardJavaFileManager, ManagerInfo> managers = new IdentityHashMap<>();
+    /** File managers with the current settings, which are not in use */
+    private final List<StandardJavaFileManager> idleManagers = new ArrayList<>();
+    private int inUseCount;
+    
+    /** The settings the file managers are created with */
+    private Charset charset;
+    private List<File> classPath;
+    private List<File> bootClassPath;
+    private List<Long> stamps;
+    /** Incremented whenever the settings change */
+    private int settingsGeneration;
+
+    private boolean closeRequested;
+    private TimerTask idleClose;
+
+    /**
+     * Get the system Java compiler, or null if it is not available.
+     */
+    public JavaCompiler getCompiler()
+    {
+        return compiler;
+    }
+
+    /**
+     * Get a file manager to use for a compilation, with the class path locations set.
+     * The caller may set other locations (such as the source path and output directory), and
+     * must call {@link #release(StandardJavaFileManager, boolean)} once the compilation is complete.
+     * 
+     * @param diagListener  The listener for diagnostics from the file manager
+     * @param fileCharset  The character set for source files
+     * @param classPath  The class path
+     * @param bootClassPath  The boot class path, or null to use the default
+     */
+    public synchronized StandardJavaFileManager acquire(DiagnosticListener<JavaFileObject> diagListener,
+            Charset fileCharset, List<File> classPath, File[] bootClassPath)
+        throws IOException
+    {
+        if (idleClose != null) {
+            idleClose.cancel();
+            idleClose = null;
+        }
+        
+        List<File> boot = (bootClassPath == null || bootClassPath.length == 0)
+                ? null : Arrays.asList(bootClassPath);
+        List<Long> newStamps = getStamps(classPath, boot);
+        if (!Objects.equals(charset, fileCharset) || !classPath.equals(this.classPath)
+                || !Objects.equals(boot, this.bootClassPath) || !newStamps.equals(stamps)) {
+            // Any file managers in use will be closed when they are released:
+            closeIdle();
+            this.charset = fileCharset;
+            this.classPath = new ArrayList<>(classPath);
+            this.bootClassPath = boot;
+            this.stamps = newStamps;
+            settingsGeneration++;
+        }
+        
+        StandardJavaFileManager fileManager;
+        if (idleManagers.isEmpty()) {
+            ManagerInfo info = new ManagerInfo(settingsGeneration);
+            fileManager = compiler.getStandardFileManager(info.listener, null, fileCharset);
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+            if (boot != null) {
+                fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, boot);
+            }
+            managers.put(fileManager, info);
+        }
+        else {
+            fileManager = idleManagers.remove(idleManagers.size() - 1);
+        }
+        
+        managers.get(fileManager).listener.target = diagListener;
+        if (inUseCount == 0) {
+            // Otherwise, file managers which were in use when the close was requested
+            // must still be closed when they are released:
+            closeRequested = false;
+        }
+        inUseCount++;
+        return fileManager;
+    }
+
+    /**
+     * Release a file manager after a compilation.
+     * 
+     * @param fileManager  The file manager, as returned by {@link #acquire}
+     * @param discard  True if the file manager should be closed rather than kept (for instance,
+     *                 because the compilation failed unexpectedly).
+     */
+    public synchronized void release(StandardJavaFileManager fileManager, boolean discard)
+    {
+        ManagerInfo info = managers.get(fileManager);
+        if (info == null) {
+            return;
+        }
+        info.listener.target = null;
+        inUseCount--;
+        
+        if (discard || closeRequested || info.generation != settingsGeneration
+                || idleManagers.size() >= MAX_IDLE_MANAGERS) {
+            close(fileManager);
+        }
+        else {
+            idleManagers.add(fileManager);
+        }
+        
+        if (inUseCount == 0 && !idleManagers.isEmpty()) {
+            idleClose = new TimerTask() {
+                @Override
+                public void run()
+                {
+                    closeWhenIdle();
+                }
+            };
+            idleTimer.schedule(idleClose, IDLE_CLOSE_MILLIS);
+        }
+    }
+
+    /**
+     * Close the file managers (releasing the classpath jars): those which are idle now,
+     * and those in use once their compilations complete.  New file managers will be
+     * created when needed.
+     */
+    public synchronized void closeWhenIdle()
+    {
+        if (inUseCount > 0) {
+            closeRequested = true;
+        }
+        closeIdle();
+    }
+
+    private void closeIdle()
+    {
+        for (StandardJavaFileManager fileManager : idleManagers) {
+            close(fileManager);
+        }
+        idleManagers.clear();
+    }
+
+    private void close(StandardJavaFileManager fileManager)
+    {
+        managers.remove(fileManager);
+        try {
+            fileManager.close();
+        }
+        catch (IOException e) {
+            Debug.reportError("Error closing compiler file manager", e);
+        }
+    }
+
+    /**
+     * Get the size and modification time of each jar on the class paths, so that we can tell
+     * if any have changed.  Directories are not included, since javac does not cache their contents.
+     */
+    private static List<Long> getStamps(List<File> classPath, List<File> bootClassPath)
+    {
+        List<Long> stamps = new ArrayList<>();
+        for (List<File> path : Arrays.asList(classPath, bootClassPath)) {
+            if (path != null) {
+                for (File file : path) {
+                    if (file.isFile()) {
+                        stamps.add(file.lastModified());
+                        stamps.add(file.length());
+                    }
+                    else {
+                        stamps.add(-1L);
+                    }
+                }
+            }
+        }
+        return stamps;
+    }
+
+    /**
+     * The state kept for an open file manager.
+     */
+    private static class ManagerInfo
+    {
+        /** The file manager's diagnostic listener */
+        private final ForwardingListener listener = new ForwardingListener();
+        /** The settings generation the file manager was created with */
+        private final int generation;
+
+        private ManagerInfo(int generation)
+        {
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A diagnostic listener which forwards to the listener of the current compilation.
+     */
+    private static class ForwardingListener implements DiagnosticListener<JavaFileObject>
+    {
+        private volatile DiagnosticListener<JavaFileObject> target;
+
+        @Override
+        public void report(Diagnostic<? extends JavaFileObject> diagnostic)
+        {
+            DiagnosticListener<JavaFileObject> current = target;
+            if (current != null) {
+                current.report(diagnostic);
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2016,2020,2022  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2016,2020,2022,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -33,7 +33,8 @@ import bluej.classmgr.BPClassLoader;
 /**
  * A compiler "job". A list of filenames to compile + parameters.
  * Jobs are held in a queue by the CompilerThread, which compiles them
- * by running the job's "compile" method.
+ * by running the job's "compile" method (or by a CompileScheduler, for
+ * jobs which may be compiled concurrently).
  *
  * @author  Michael Cahill
  */
@@ -51,6 +52,7 @@ class Job
     private Charset fileCharset;
     private CompileType type;
     private CompileReason reason;
+    private InMemorySource inMemorySource;
 
     /**
      * Generator for unique ascending compilation identifiers.  It doesn't matter if it's shared between
@@ -78,10 +80,24 @@ class Job
         this.reason = reason;
     }
     
+    /**
+     * Create a job which compiles a source held in memory (see {@link InMemorySource}).
+     */
+    public Job(InMemorySource inMemorySource, Compiler compiler, CompileObserver observer,
+                        BPClassLoader bpClassLoader, File destDir,
+                        List<String> userCompileOptions, Charset fileCharset, CompileType type, CompileReason reason)
+    {
+        this(new CompileInputFile[] {new CompileInputFile(inMemorySource.getSourceFile(), inMemorySource.getSourceFile())},
+                compiler, observer, bpClassLoader, destDir, true, userCompileOptions, fileCharset, type, reason);
+        this.inMemorySource = inMemorySource;
+    }
+    
     /**
      * Compile this job
+     * 
+     * @return  true if the compilation was successful
      */
-    public void compile()
+    public boolean compile()
     {
         int compilationSequence = nextCompilationSequence.getAndIncrement();
 
@@ -97,6 +113,8 @@ class Job
             compiler.setClasspath(bpClassLoader.getClassPathAsFiles());
 
             compiler.setBootClassPath(null);
+            
+            compiler.setInMemorySource(inMemorySource);
 
             File[] actualSourceFiles = new File[sources.length];
             for (int i = 0; i < sources.length; i++)
@@ -109,12 +127,28 @@ class Job
             if(observer != null) {
                 observer.endCompile(sources, successful, type, compilationSequence);
             }
+            return successful;
         } catch(Exception e) {
             System.err.println(Config.getString("compileException") + ": " + e);
             e.printStackTrace();
             if (observer != null) {
                 observer.endCompile(sources, false, type, compilationSequence);
             }
+            return false;
+        }
+    }
+
+    /**
+     * Skip this job, because it cannot succeed (for instance, because a class which its
+     * sources depend on failed to compile).  The observer is told that the compilation
+     * started and was unsuccessful, but the compiler is not run.
+     */
+    public void skip()
+    {
+        int compilationSequence = nextCompilationSequence.getAndIncrement();
+        if (observer != null) {
+            observer.startCompile(sources, reason, type, compilationSequence);
+            observer.endCompile(sources, false, type, compilationSequence);
         }
     }
 }
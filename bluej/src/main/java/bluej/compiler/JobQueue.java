@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2011,2012,2013,2016  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2011,2012,2013,2016,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -50,15 +50,23 @@ public class JobQueue
 
     // ---- instance ----
 
+    /** The property giving the largest number of compilations to run concurrently */
+    public static final String COMPILER_THREADS = "bluej.compiler.threads";
+
     private CompilerThread thread = null;
     private Compiler compiler = null;
+    private final JavacService javacService = new JavacService();
+    /** The scheduler for groups of jobs */
+    private CompileScheduler scheduler = null;
+    /** The largest number of jobs compiled at the same time */
+    private int maxConcurrentJobs;
 
     /**
      * Construct the JobQueue. This is private; use getJobQueue() to get the job queue instance.
      */
     private JobQueue()
     {
-        compiler = new CompilerAPICompiler();
+        compiler = new CompilerAPICompiler(javacService);
         thread = new CompilerThread();
 
         // Lower priority to improve GUI response time during compilation
@@ -66,6 +74,10 @@ public class JobQueue
         priority = Math.max(priority, Thread.MIN_PRIORITY);
         thread.setPriority(priority);
 
+        maxConcurrentJobs = Math.max(1, Config.getPropInteger(COMPILER_THREADS,
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+        scheduler = new CompileScheduler(maxConcurrentJobs, priority);
+
         thread.start();
     }
 
@@ -81,13 +93,96 @@ public class JobQueue
      */
     public void addJob(CompileInputFile[] sources, CompileObserver observer, BPClassLoader bpClassLoader, File destDir,
             boolean suppressUnchecked, Charset fileCharset, CompileReason reason, CompileType type)
+    {
+        Job job = new Job(sources, compiler, observer, bpClassLoader,
+                destDir, suppressUnchecked, getUserCompileOptions(), fileCharset, type, reason);
+        thread.addJob(job::compile);
+    }
+
+    /**
+     * Check whether jobs added via {@link #addJobs} will be compiled concurrently.  If not,
+     * it is generally better to compile a set of sources as a single job.
+     */
+    public boolean isConcurrentCompileEnabled()
+    {
+        return maxConcurrentJobs > 1;
+    }
+
+    /**
+     * Adds a group of jobs to the compile queue, each compiling a set of sources which
+     * depends on the sources of some of the other jobs (see {@link CompileScheduler}).
+     * The jobs are compiled concurrently where their dependencies allow; a job is skipped
+     * if a job it depends on fails.  Other jobs in the queue are not started until the
+     * whole group is complete.
+     * 
+     * <p>Class files are only generated for the sources given to each job (sources which
+     * are compiled implicitly are not written), so all other sources must be up to date.
+     * 
+     * @param sources   The files to compile, for each job.  Each job must come after all
+     *                  the jobs which it depends on.
+     * @param dependencies  The indexes of the jobs which each job depends on
+     * @param observers  The observer for each job, to be notified when compilation begins,
+     *                   errors/warnings, completes
+     * @param classPath The classpath to use to locate objects/source code
+     * @param destDir   Destination for class files?
+     * @param suppressUnchecked    Suppress "unchecked" warning in java 1.5
+     */
+    public void addJobs(List<CompileInputFile[]> sources, List<int[]> dependencies, List<CompileObserver> observers,
+            BPClassLoader bpClassLoader, File destDir, boolean suppressUnchecked, Charset fileCharset,
+            CompileReason reason, CompileType type)
+    {
+        List<String> options = getUserCompileOptions();
+        // Only write the classes of each job's own sources; otherwise two jobs could both
+        // compile (and write) a source they each reference:
+        options.add("-implicit:none");
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            // Each job needs its own compiler, as they may run at the same time:
+            jobs.add(new Job(sources.get(i), new CompilerAPICompiler(javacService), observers.get(i),
+                    bpClassLoader, destDir, suppressUnchecked, options, fileCharset, type, reason));
+        }
+        thread.addJob(() -> scheduler.compile(jobs, dependencies));
+    }
+
+    /**
+     * Adds a job to compile a source held in memory to the compile queue.  The class
+     * files for the source's class are kept in memory (see {@link InMemorySource}); any
+     * other classes which need to be compiled are written to the destination directory.
+     * "Unchecked" warnings are suppressed.
+     * 
+     * @param source    The source to compile
+     * @param observer  Observer to be notified when compilation begins,
+     *                  errors/warnings, completes
+     * @param classPath The classpath to use to locate objects/source code
+     * @param destDir   Destination for class files
+     */
+    public void addJob(InMemorySource source, CompileObserver observer, BPClassLoader bpClassLoader, File destDir,
+            Charset fileCharset, CompileReason reason, CompileType type)
+    {
+        Job job = new Job(source, compiler, observer, bpClassLoader,
+                destDir, getUserCompileOptions(), fileCharset, type, reason);
+        thread.addJob(job::compile);
+    }
+
+    /**
+     * Get the compiler options specified by the user.
+     */
+    private static List<String> getUserCompileOptions()
     {
         List<String> options = new ArrayList<String>();
         String optionString = Config.getPropString(Compiler.COMPILER_OPTIONS, "");
         options.addAll(Utility.dequoteCommandLine(optionString));
-        
-        thread.addJob(new Job(sources, compiler, observer, bpClassLoader,
-                destDir, suppressUnchecked, options, fileCharset, type, reason));
+        return options;
+    }
+
+    /**
+     * Release the resources (such as open classpath jars) which are kept between
+     * compilations.  They will be re-acquired by the next compilation.  This should be
+     * called when a project is closed.
+     */
+    public void releaseCompilerResources()
+    {
+        javacService.closeWhenIdle();
     }
 
     /**
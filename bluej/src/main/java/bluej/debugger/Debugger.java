@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -233,6 +233,18 @@ public abstract class Debugger
     public abstract DebuggerResult runClassMain(String className)
         throws ClassNotFoundException;
 
+    /**
+     * Run a shell class (i.e. invoke its static run() method) whose class files are
+     * supplied directly, rather than being loaded from the classpath.  The classes are
+     * defined by the current class loader.
+     * 
+     * @param className  The name of the shell class
+     * @param classFiles  The class files for the shell class and any classes nested
+     *                    within it, by binary name
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    public abstract DebuggerResult runShellClass(String className, Map<String, byte[]> classFiles);
+
     /**
      * Instantiate a class using the default constructor for that class.
      * @param className  The name of the class to instantiate
@@ -252,6 +264,23 @@ public abstract class Debugger
     @OnThread(Tag.NOTVMEventHandler)
     public abstract DebuggerResult instantiateClass(String className, String [] paramTypes,
             DebuggerObject [] args);
+
+    /**
+     * Invoke a method directly, without compiling a shell class. Arguments for primitive
+     * parameters should be supplied as (mirrors of) strings holding the value.  Elements of
+     * the argument array may be null.
+     * 
+     * @param target      The object to invoke the method on, or null for a static method
+     * @param className   The name of the class which declares the method
+     * @param methodName  The name of the method
+     * @param paramTypes  The formal parameter types (class or primitive type names)
+     * @param args        The arguments
+     * @return   The result of the method call, wrapped as a shell class would wrap it (or
+     *           a null object for a void method)
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    public abstract DebuggerResult invokeMethod(DebuggerObject target, String className,
+            String methodName, String [] paramTypes, DebuggerObject [] args);
     
     /**
      * Get a class from the virtual machine, using the current classloader.
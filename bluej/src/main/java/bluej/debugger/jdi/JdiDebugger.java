@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2014,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2014,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -707,7 +707,22 @@ public class JdiDebugger extends Debugger
         VMReference vmr = getVM();
         synchronized (serverThreadLock) {
             if (vmr != null) {
-                return vmr.runShellClass(className);
+                return vmr.runShellClass(className, null);
+            }
+            else {
+                return new DebuggerResult(Debugger.TERMINATED_BY_BLUEJ);
+            }
+        }
+    }
+
+    @Override
+    @OnThread(Tag.NOTVMEventHandler)
+    public DebuggerResult runShellClass(String className, Map<String, byte[]> classFiles)
+    {
+        VMReference vmr = getVM();
+        synchronized (serverThreadLock) {
+            if (vmr != null) {
+                return vmr.runShellClass(className, classFiles);
             }
             else {
                 return new DebuggerResult(Debugger.TERMINATED_BY_BLUEJ);
@@ -780,13 +795,7 @@ public class JdiDebugger extends Debugger
         
         VMReference vmr = getVM();
         if (vmr != null) {
-            // Convert the args array from DebuggerObject[] to ObjectReference[]
-            ObjectReference [] orArgs = new ObjectReference[args.length];
-            for (int i = 0; i < args.length; i++) {
-                JdiObject jdiObject = (JdiObject) args[i];
-                orArgs[i] = jdiObject.getObjectReference(); 
-            }
-            
+            ObjectReference [] orArgs = getObjectReferences(args);
             synchronized (serverThreadLock) {
                 return vmr.instantiateClass(className, paramTypes, orArgs);
             }
@@ -796,6 +805,41 @@ public class JdiDebugger extends Debugger
         }
     }
     
+    /*
+     * @see bluej.debugger.Debugger#invokeMethod(bluej.debugger.DebuggerObject, java.lang.String, java.lang.String, java.lang.String[], bluej.debugger.DebuggerObject[])
+     */
+    @Override
+    @OnThread(Tag.NOTVMEventHandler)
+    public DebuggerResult invokeMethod(DebuggerObject target, String className, String methodName,
+            String[] paramTypes, DebuggerObject[] args)
+    {
+        VMReference vmr = getVM();
+        if (vmr != null) {
+            ObjectReference orTarget = target == null ? null : ((JdiObject) target).getObjectReference();
+            ObjectReference [] orArgs = getObjectReferences(args);
+            synchronized (serverThreadLock) {
+                return vmr.invokeMethod(orTarget, className, methodName, paramTypes, orArgs);
+            }
+        }
+        else {
+            return new DebuggerResult(Debugger.TERMINATED_BY_BLUEJ);
+        }
+    }
+    
+    /**
+     * Convert an array of DebuggerObject (which may contain null elements) to an
+     * array of ObjectReference.
+     */
+    private static ObjectReference[] getObjectReferences(DebuggerObject[] args)
+    {
+        ObjectReference [] orArgs = new ObjectReference[args.length];
+        for (int i = 0; i < args.length; i++) {
+            JdiObject jdiObject = (JdiObject) args[i];
+            orArgs[i] = jdiObject == null ? null : jdiObject.getObjectReference(); 
+        }
+        return orArgs;
+    }
+    
     /*
      * @see bluej.debugger.Debugger#getClass(java.lang.String, boolean)
      */
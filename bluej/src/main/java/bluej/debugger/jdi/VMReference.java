@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -875,9 +875,13 @@ public class VMReference
      * 
      * @param className
      *            the class to start
+     * @param classFiles
+     *            the class files for the shell class (and its nested classes), by binary
+     *            name, to be defined in the remote VM; or null if the class should be
+     *            loaded from the classpath
      */
     @OnThread(Tag.NOTVMEventHandler)
-    public DebuggerResult runShellClass(String className)
+    public DebuggerResult runShellClass(String className, Map<String, byte[]> classFiles)
     {
         // Calls to this method are protected by serverThreadLock in JdiDebugger
         
@@ -888,6 +892,10 @@ public class VMReference
 
             serverThreadStartWait();
             
+            if (classFiles != null) {
+                sendShellClassFiles(classFiles);
+            }
+            
             // Store the class and method to call
             setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
             setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.EXEC_SHELL));
@@ -925,6 +933,72 @@ public class VMReference
         return new DebuggerResult(lastException);
     }
 
+    /**
+     * Send class files to the remote VM, to be defined before the next shell class is
+     * executed (see ExecServer.shellClassNames).
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    private void sendShellClassFiles(Map<String, byte[]> classFiles)
+        throws ClassNotFoundException
+    {
+        ArrayType objectArray = (ArrayType) loadClass("[Ljava.lang.Object;");
+        ArrayType stringArray = (ArrayType) loadClass("[Ljava.lang.String;");
+        ArrayType byteArray = (ArrayType) loadClass("[B");
+        
+        // As in invokeConstructor, suspend the machine and disable collection of the
+        // arrays until they are referenced from the static fields:
+        List<ArrayReference> created = new ArrayList<>();
+        machine.suspend();
+        try {
+            ArrayReference namesArray = newUncollectedArray(stringArray, classFiles.size(), created);
+            ArrayReference filesArray = newUncollectedArray(objectArray, classFiles.size(), created);
+            int i = 0;
+            for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+                byte[] bytes = classFile.getValue();
+                ArrayReference remoteBytes = newUncollectedArray(byteArray, bytes.length, created);
+                List<Value> values = new ArrayList<>(bytes.length);
+                for (byte b : bytes) {
+                    values.add(machine.mirrorOf(b));
+                }
+                remoteBytes.setValues(values);
+                filesArray.setValue(i, remoteBytes);
+                namesArray.setValue(i, machine.mirrorOf(classFile.getKey()));
+                i++;
+            }
+            setStaticFieldValue(serverClass, ExecServer.SHELL_CLASS_NAMES_NAME, namesArray);
+            setStaticFieldValue(serverClass, ExecServer.SHELL_CLASS_FILES_NAME, filesArray);
+        }
+        catch (InvalidTypeException | ClassNotLoadedException e) {
+            // Shouldn't happen; the shell class will then fail to load.
+            Debug.reportError("Could not send shell class files", e);
+        }
+        finally {
+            for (ArrayReference array : created) {
+                array.enableCollection();
+            }
+            machine.resume();
+        }
+    }
+
+    /**
+     * Create an array in the remote VM, with garbage collection of the array disabled.
+     * The array is added to the given list.
+     */
+    private static ArrayReference newUncollectedArray(ArrayType type, int length, List<ArrayReference> created)
+    {
+        while (true) {
+            ArrayReference array = type.newInstance(length);
+            try {
+                array.disableCollection();
+                created.add(array);
+                return array;
+            }
+            catch (ObjectCollectedException oce) {
+                // Try again
+            }
+        }
+    }
+
     private int getDebuggerExitStatus()
     {
         return queuedForClose ? Debugger.TERMINATED_BY_BLUEJ : Debugger.TERMINATED_BY_USER_SYSTEM_EXIT;
@@ -1002,6 +1076,48 @@ public class VMReference
         }
     }
     
+    /**
+     * Invoke a method directly (without a shell class), with arguments. The parameter types
+     * of the method must be supplied (String[]) as well as the argument values
+     * (ObjectReference []). Arguments for primitive parameters are supplied as strings.
+     * 
+     * @param target     The object to invoke the method on (null for a static method)
+     * @param className  The name of the class which declares the method
+     * @param methodName The name of the method
+     * @param paramTypes The parameter types of the method (class or primitive type names)
+     * @param args      The argument values to use in the method call
+     * 
+     * @return  The result of the call; the result object (if any) is wrapped as it would be
+     *          by a shell class.
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    public DebuggerResult invokeMethod(ObjectReference target, String className, String methodName,
+            String [] paramTypes, ObjectReference [] args)
+    {
+        ObjectReference obj = null;
+        exitStatus = Debugger.NORMAL_EXIT;
+        try {
+            obj = invokeWithArguments(ExecServer.INVOKE_METHOD, className, methodName, target, paramTypes, args);
+        }
+        catch (VMDisconnectedException e) {
+            exitStatus = getDebuggerExitStatus();
+            return new DebuggerResult(exitStatus); // debugger state change handled elsewhere
+        }
+        catch (Exception e) {
+            // remote invocation failed
+            Debug.reportError("direct method invocation failed: " + e);
+            e.printStackTrace();
+            exitStatus = Debugger.EXCEPTION;
+            lastException = new ExceptionDescription("Internal BlueJ error: unexpected exception in remote VM\n" + e);
+        }
+        if (exitStatus == Debugger.EXCEPTION) {
+            return new DebuggerResult(lastException);
+        }
+        else {
+            return new DebuggerResult(JdiObject.getDebuggerObject(obj));
+        }
+    }
+    
     /**
      * Emit a thread halted/resumed event for the given thread.
      */
@@ -1735,6 +1851,28 @@ public class VMReference
      */
     @OnThread(Tag.NOTVMEventHandler)
     private ObjectReference invokeConstructor(String className, String [] paramTypes, ObjectReference [] args)
+    {
+        return invokeWithArguments(ExecServer.INSTANTIATE_CLASS_ARGS, className, null, null, paramTypes, args);
+    }
+
+    /**
+     * Have the server thread perform an action which takes parameter types and arguments
+     * (INSTANTIATE_CLASS_ARGS or INVOKE_METHOD). If an exception occurs, exceptionEvent()
+     * is called and null is returned.
+     * 
+     * @param action     The action to perform
+     * @param className  The name of the class to construct, or which declares the method
+     * @param methodName The name of the method to invoke (null if constructing)
+     * @param target     The object on which to invoke the method (null if constructing,
+     *                   or if the method is static)
+     * @param paramTypes The parameter types (class names)
+     * @param args      The argument values
+     * 
+     * @return  The value returned by the action
+     */
+    @OnThread(Tag.NOTVMEventHandler)
+    private ObjectReference invokeWithArguments(int action, String className, String methodName,
+            ObjectReference target, String [] paramTypes, ObjectReference [] args)
     {
         // Calls to this method are serialized via serverThreadLock in JdiDebugger
         
@@ -1795,7 +1933,11 @@ public class VMReference
             argsArray.enableCollection();
 
             setStaticFieldObject(serverClass, ExecServer.CLASS_TO_RUN_NAME, className);
-            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(ExecServer.INSTANTIATE_CLASS_ARGS));
+            if (methodName != null) {
+                setStaticFieldObject(serverClass, ExecServer.METHOD_TO_RUN_NAME, methodName);
+                setStaticFieldValue(serverClass, ExecServer.TARGET_OBJECT_NAME, target);
+            }
+            setStaticFieldValue(serverClass, ExecServer.EXEC_ACTION_NAME, machine.mirrorOf(action));
             machine.resume();
             needsMachineResume = false;
             
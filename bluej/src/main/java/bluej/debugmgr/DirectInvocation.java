@@ -0,0 +1,282 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.debugmgr;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bluej.debugger.Debugger;
+import bluej.debugger.DebuggerObject;
+import bluej.debugger.DebuggerResult;
+import bluej.debugger.gentype.JavaType;
+import bluej.parser.TextAnalyzer;
+import bluej.parser.entity.EntityResolver;
+import bluej.parser.entity.ValueEntity;
+import bluej.views.CallableView;
+import bluej.views.ConstructorView;
+import bluej.views.MethodView;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * An interactive invocation which is simple enough to be performed directly in the
+ * debug VM, without generating and compiling a shell class. This is the case for a
+ * non-generic constructor or method call where each argument is a constant (such as a
+ * literal), the null literal, or an object from the object bench.
+ * 
+ * <p>Use {@link #prepare} to check whether an invocation can be performed directly, and
+ * {@link #invoke} to perform it. Anything more complex must use a shell class, which
+ * remains the reference behaviour: a direct invocation is only prepared when it is
+ * certain that the shell class would compile and have the same effect.
+ */
+public class DirectInvocation
+{
+    // Statistics, for all invocations (direct or not) since startup:
+    private static final AtomicInteger totalInvocations = new AtomicInteger();
+    private static final AtomicInteger directInvocations = new AtomicInteger();
+
+    private final String className;
+    private final String methodName; // null for a constructor
+    private final DebuggerObject target;
+    private final String[] paramTypes;
+    private final DebuggerObject[] args;
+
+    private DirectInvocation(String className, String methodName, DebuggerObject target,
+            String[] paramTypes, DebuggerObject[] args)
+    {
+        this.className = className;
+        this.methodName = methodName;
+        this.target = target;
+        this.paramTypes = paramTypes;
+        this.args = args;
+    }
+
+    /**
+     * Check whether an invocation can be performed directly, and if so, prepare it (this
+     * includes creating mirrors of any argument values in the debug VM).
+     * 
+     * @param debugger   The debugger of the VM in which the invocation is to be performed
+     * @param resolver   The resolver for names in argument expressions
+     * @param pkgName    The name of the package in which the invocation takes place
+     * @param member     The constructor or method to invoke
+     * @param target     The object on which to invoke the method (null for a static method
+     *                   or constructor)
+     * @param benchVars  The object bench values, which may be used as arguments (may be null)
+     * @param args       The argument expressions (may be null if there are no arguments)
+     * @return  The prepared invocation, or null if the invocation must use a shell class
+     */
+    @OnThread(Tag.FXPlatform)
+    static DirectInvocation prepare(Debugger debugger, EntityResolver resolver, String pkgName,
+            CallableView member, DebuggerObject target, ValueCollection benchVars, String[] args)
+    {
+        if (member.isGeneric() || member.isVarArgs()) {
+            return null;
+        }
+
+        String className;
+        String methodName;
+        Type[] genericParamTypes;
+        if (member instanceof MethodView) {
+            Method method = ((MethodView) member).getMethod();
+            if (! isAccessible(method.getDeclaringClass(), method.getModifiers())
+                    || ! (method.getGenericReturnType() instanceof Class)) {
+                return null;
+            }
+            if (target == null && ! Modifier.isStatic(method.getModifiers())) {
+                return null;
+            }
+            className = method.getDeclaringClass().getName();
+            methodName = method.getName();
+            genericParamTypes = method.getGenericParameterTypes();
+        }
+        else if (member instanceof ConstructorView) {
+            Constructor<?> cons = ((ConstructorView) member).getConstructor();
+            if (! isAccessible(cons.getDeclaringClass(), cons.getModifiers())) {
+                return null;
+            }
+            className = cons.getDeclaringClass().getName();
+            methodName = null;
+            target = null;
+            genericParamTypes = cons.getGenericParameterTypes();
+        }
+        else {
+            return null;
+        }
+
+        int numArgs = args == null ? 0 : args.length;
+        Class<?>[] paramClasses = member.getParameters();
+        JavaType[] paramJavaTypes = member.getParamTypes(true);
+        if (paramClasses.length != numArgs || genericParamTypes.length != numArgs
+                || paramJavaTypes.length != numArgs) {
+            // (e.g. an inner class constructor, with an implicit outer instance parameter)
+            return null;
+        }
+
+        String[] paramTypes = new String[numArgs];
+        DebuggerObject[] argObjects = new DebuggerObject[numArgs];
+        for (int i = 0; i < numArgs; i++) {
+            paramTypes[i] = paramClasses[i].getName();
+            String arg = args[i].trim();
+            boolean primitive = paramClasses[i].isPrimitive();
+
+            NamedValue benchValue = benchVars == null ? null : benchVars.getNamedValue(arg);
+            if (benchValue != null) {
+                // An object from the object bench (the shell class would declare a local
+                // variable with this name, so the name can't refer to anything else):
+                DebuggerObject obj = benchValue.getDebuggerObject();
+                if (obj == null || primitive || ! benchValue.isInitialized()
+                        || ! (genericParamTypes[i] instanceof Class)
+                        || ! paramJavaTypes[i].isAssignableFromRaw(benchValue.getGenType())) {
+                    return null;
+                }
+                argObjects[i] = obj;
+                continue;
+            }
+
+            ValueEntity value = TextAnalyzer.evaluateConstant(resolver, pkgName, arg);
+            if (value == null) {
+                return null;
+            }
+            else if (value.isNullEntity()) {
+                if (primitive) {
+                    return null;
+                }
+                argObjects[i] = null;
+            }
+            else if (value.isConstantString()) {
+                // The parser doesn't handle all escape sequences in string literals, so we
+                // leave those to the compiler:
+                if (primitive || arg.indexOf('\\') != -1
+                        || ! paramClasses[i].isAssignableFrom(String.class)) {
+                    return null;
+                }
+                argObjects[i] = debugger.getMirror(value.getConstantString());
+                if (argObjects[i] == null) {
+                    return null;
+                }
+            }
+            else {
+                // A primitive constant. Only widening conversions are allowed (boxing would
+                // need a remote boxed value, so we leave it to the shell class):
+                if (! primitive || ! paramJavaTypes[i].isAssignableFrom(value.getType())) {
+                    return null;
+                }
+                argObjects[i] = debugger.getMirror(getPrimitiveText(paramJavaTypes[i], value));
+                if (argObjects[i] == null) {
+                    return null;
+                }
+            }
+        }
+
+        return new DirectInvocation(className, methodName, target, paramTypes, argObjects);
+    }
+
+    /**
+     * Check whether a member can be accessed reflectively by the debug VM. Members of
+     * classes from the runtime library must be public (and in a public class).
+     */
+    private static boolean isAccessible(Class<?> declaringClass, int modifiers)
+    {
+        return declaringClass.getClassLoader() != null
+                || (Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers()));
+    }
+
+    /**
+     * Get the text of a primitive constant value, converted to the given (primitive)
+     * parameter type, in the form expected by the debug VM.
+     */
+    private static String getPrimitiveText(JavaType paramType, ValueEntity value)
+    {
+        if (paramType.typeIs(JavaType.JT_BOOLEAN)) {
+            return Boolean.toString(value.getConstantBooleanValue());
+        }
+        else if (paramType.typeIs(JavaType.JT_CHAR)) {
+            return String.valueOf((char) value.getConstantIntValue());
+        }
+        else if (paramType.typeIs(JavaType.JT_FLOAT)) {
+            return Float.toString(value.hasConstantFloatValue() ? (float) value.getConstantFloatValue()
+                    : (float) value.getConstantIntValue());
+        }
+        else if (paramType.typeIs(JavaType.JT_DOUBLE)) {
+            return Double.toString(value.hasConstantFloatValue() ? value.getConstantFloatValue()
+                    : (double) value.getConstantIntValue());
+        }
+        else {
+            // byte, short, int or long; the value must be of an integral type which is
+            // no wider than the parameter type.
+            return Long.toString(value.getConstantIntValue());
+        }
+    }
+
+    /**
+     * Perform the invocation. This runs user code, and so may take an arbitrary amount
+     * of time; it must not be called on the FX thread.
+     * 
+     * @return  The result of the invocation, in the same form as for a shell class
+     *          (for a constructor, the newly created object).
+     */
+    @OnThread(Tag.Worker)
+    DebuggerResult invoke(Debugger debugger)
+    {
+        if (methodName == null) {
+            return debugger.instantiateClass(className, paramTypes, args);
+        }
+        else {
+            return debugger.invokeMethod(target, className, methodName, paramTypes, args);
+        }
+    }
+
+    /**
+     * Record that an interactive invocation was performed, for statistics.
+     * 
+     * @param direct  true if the invocation was performed directly, false if it
+     *                required a shell class
+     */
+    @OnThread(Tag.Any)
+    static void recordInvocation(boolean direct)
+    {
+        totalInvocations.incrementAndGet();
+        if (direct) {
+            directInvocations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get a summary of the number of interactive invocations since startup, and the
+     * percentage of them which were performed directly (without a shell class).
+     * Returns null if there have been no invocations.
+     */
+    @OnThread(Tag.Any)
+    public static String getStatistics()
+    {
+        int total = totalInvocations.get();
+        if (total == 0) {
+            return null;
+        }
+        int direct = directInvocations.get();
+        return "Interactive invocations: " + total + ", of which " + direct + " ("
+                + (direct * 100 / total) + "%) were performed without a shell class";
+    }
+}
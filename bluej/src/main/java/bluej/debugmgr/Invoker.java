@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2014,2015,2016,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2014,2015,2016,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -30,6 +30,7 @@ import bluej.compiler.CompileType;
 import bluej.compiler.Diagnostic;
 import bluej.compiler.EventqueueCompileObserverAdapter;
 import bluej.compiler.FXCompileObserver;
+import bluej.compiler.InMemorySource;
 import bluej.compiler.JobQueue;
 import bluej.debugger.Debugger;
 import bluej.debugger.DebuggerObject;
@@ -51,7 +52,6 @@ import bluej.testmgr.record.MethodInvokerRecord;
 import bluej.testmgr.record.StatementInvokerRecord;
 import bluej.testmgr.record.VoidMethodInvokerRecord;
 import bluej.utility.Debug;
-import bluej.utility.DialogManager;
 import bluej.utility.JavaNames;
 import bluej.utility.Utility;
 import bluej.views.CallableView;
@@ -62,17 +62,9 @@ import javafx.stage.Stage;
 import threadchecker.OnThread;
 import threadchecker.Tag;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FilenameFilter;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -106,6 +98,7 @@ public class Invoker
     private ResultWatcher watcher;
     private final CallableView member;
     private String shellName;
+    private InMemorySource shellSource; // the source (and class files) for the shell class
     /** Name of the result object */
     @OnThread(Tag.Any)
     private String objName;
@@ -121,10 +114,11 @@ public class Invoker
     private String imports; // import statements to include in shell file
     private NameTransform nameTransform;
     private InvokerCompiler compiler;
-    private Charset sourceCharset;
     
     /** Name of the target object to which the call is applied */
     private final String instanceName;
+    /** The target object to which the call is applied, if known */
+    private DebuggerObject targetObject;
 
     @OnThread(Tag.FXPlatform)
     private CallDialog dialog;
@@ -172,16 +166,14 @@ public class Invoker
             }
         };
         compiler = new InvokerCompiler() {
-            public void compile(File[] files, CompileObserver observer)
+            public void compile(InMemorySource source, CompileObserver observer)
             {
                 Project project = pkg.getProject();
-                List<CompileInputFile> wrapped = Utility.mapList(Arrays.asList(files), f -> new CompileInputFile(f, f));
-                JobQueue.getJobQueue().addJob(wrapped.toArray(new CompileInputFile[0]), observer, project.getClassLoader(),
-                        project.getProjectDir(), true, project.getProjectCharset(), CompileReason.INVOKE, CompileType.INTERNAL_COMPILE);
+                JobQueue.getJobQueue().addJob(source, observer, project.getClassLoader(),
+                        project.getProjectDir(), project.getProjectCharset(), CompileReason.INVOKE, CompileType.INTERNAL_COMPILE);
             }
         };
         this.shellName = getShellName();
-        this.sourceCharset = pkg.getProject().getProjectCharset();
         this.typeMap = null;
     }
 
@@ -262,6 +254,7 @@ public class Invoker
         
         this.watcher = watcher;
         this.shellName = getShellName();
+        this.targetObject = debuggerObject;
         codepad = false;
 
         constructing = false;
@@ -287,15 +280,13 @@ public class Invoker
         this.debugger = pkg.getProject().getDebugger();
         this.nameTransform = new CleverQualifyTypeNameTransform(pkg);
         compiler = new InvokerCompiler() {
-            public void compile(File[] files, CompileObserver observer)
+            public void compile(InMemorySource source, CompileObserver observer)
             {
                 Project project = pkg.getProject();
-                List<CompileInputFile> wrapped = Utility.mapList(Arrays.asList(files), f -> new CompileInputFile(f, f));
-                JobQueue.getJobQueue().addJob(wrapped.toArray(new CompileInputFile[0]), observer, project.getClassLoader(),
-                        project.getProjectDir(), true, project.getProjectCharset(), CompileReason.INVOKE, CompileType.INTERNAL_COMPILE);
+                JobQueue.getJobQueue().addJob(source, observer, project.getClassLoader(),
+                        project.getProjectDir(), project.getProjectCharset(), CompileReason.INVOKE, CompileType.INTERNAL_COMPILE);
             }
         };
-        this.sourceCharset = pmf.getProject().getProjectCharset();
     }
     
     /**
@@ -511,10 +502,19 @@ public class Invoker
             }
         }
 
-        if (constructing && member.getParameterCount() == 0 && (typeParams == null || typeParams.length == 0)) {
-            // Special case for construction of a class using the default constructor.
+        DirectInvocation direct = null;
+        if (typeParams == null || typeParams.length == 0) {
+            direct = DirectInvocation.prepare(debugger, pkg.getProject().getEntityResolver(), pkgName,
+                    member, getTargetObject(), objectBenchVars, args);
+        }
+        DirectInvocation.recordInvocation(direct != null);
+        
+        if (direct != null) {
+            // Special case for a simple construction or method call (such as construction
+            // of a class using the default constructor, or a call with literal arguments).
             // We can do this without writing and compiling a shell file.
             
+            DirectInvocation directFinal = direct;
             commandString = command + actualArgString;
             watcher.beginCompile(); // there is no compile step, really
             watcher.beginExecution(ir);
@@ -526,7 +526,7 @@ public class Invoker
                 public void run() {
                     Platform.runLater(Invoker.this::closeCallDialog);
                     
-                    DebuggerResult result = debugger.instantiateClass(className);
+                    DebuggerResult result = directFinal.invoke(debugger);
 
                     Platform.runLater(() -> {
                         // the execution is completed, get the result if there was one
@@ -542,17 +542,28 @@ public class Invoker
                 argString += ';';
             
             watcher.beginCompile();
-            File shell = writeInvocationFile(paramInit, command + argString, isVoid, constype);
-            if (shell != null) {
-                commandString = command + actualArgString;
-                compileInvocationFile(shell);
-            }
-            else {
-                endCompile(new CompileInputFile[0], false, CompileType.INTERNAL_COMPILE, -1);
-            }
+            InMemorySource shell = writeInvocationFile(paramInit, command + argString, isVoid, constype);
+            commandString = command + actualArgString;
+            compileInvocationFile(shell);
         }
     }
 
+    /**
+     * Get the object to which the call is applied, if known. Returns null for a
+     * constructor call, or if the object is not available.
+     */
+    private DebuggerObject getTargetObject()
+    {
+        if (constructing) {
+            return null;
+        }
+        if (targetObject == null && instanceName != null && objectBenchVars != null) {
+            NamedValue benchValue = objectBenchVars.getNamedValue(instanceName);
+            return benchValue == null ? null : benchValue.getDebuggerObject();
+        }
+        return targetObject;
+    }
+
     /**
      * Set the assertion statement to the associated invocation record.
      */
@@ -642,20 +653,17 @@ public class Invoker
             ir = new StatementInvokerRecord(commandString);
         }
 
-        File shell = writeInvocationFile("", commandString, !hasResult, resultType);
-        if (shell != null) {
-            compileInvocationFile(shell);
-            return true;
-        }
-        else {
-            return false;
-        }
+        DirectInvocation.recordInvocation(false);
+        InMemorySource shell = writeInvocationFile("", commandString, !hasResult, resultType);
+        compileInvocationFile(shell);
+        return true;
     }
 
     /**
-     * Write a source file for a class (the 'shell file') to do the interactive
-     * invocation. Returns the written file, or null if the file cannot be written
-     * (an error dialog will be shown in this case).
+     * Generate the source for a class (the 'shell file') to do the interactive
+     * invocation. The source is kept in memory, and compiled without being written
+     * to disk; the resulting class files are also kept in memory (see
+     * {@link InMemorySource}).
      * 
      * <p>A shell file has, very roughly, the following form:
      * 
@@ -691,7 +699,7 @@ public class Invoker
      *                  cases to yield a more accurate result type (when generic types
      *                  are involved).
      */
-    private File writeInvocationFile(String paramInit, String callString,
+    private InMemorySource writeInvocationFile(String paramInit, String callString,
             boolean isVoid, String constype)
     {
         // Create package specification line ("package xyz")
@@ -818,58 +826,38 @@ public class Invoker
         }
         String scopeSave = buffer.toString();
 
-        File shellFile = new File(pkgPath, shellName + ".java");
-        BufferedWriter shell = null;
-        try {
-            FileOutputStream fos = new FileOutputStream(shellFile);
-            shell = new BufferedWriter(new OutputStreamWriter(fos, sourceCharset));
-
-            shell.write(packageLine);
-            shell.newLine();
-            if (imports != null) {
-                shell.write(imports);
-                shell.newLine();
-            }
-            shell.write("public class ");
-            shell.write(shellName);
-            shell.write(" extends bluej.runtime.Shell {");
-            shell.newLine();
-            shell.write("public static ");
-            if (isVoid) {
-                shell.write("void");
-            }
-            else {
-                shell.write("java.lang.Object");
-            }
-            shell.write(" run() throws Throwable {");
-            shell.newLine();
-            shell.write(vardecl);
-            shell.newLine();
-            shell.write(invocation);
-            shell.write(scopeSave);
-            if (! isVoid) {
-                shell.write("}"); // end finally block
-                if (constype != null) {
-                    shell.write("} };"); // end block, anonymous inner object
-                }
-            }
-            shell.newLine();
-            shell.write("}}"); // end method, class
-            shell.newLine();
-            shell.close();
+        StringBuilder shell = new StringBuilder();
+        shell.append(packageLine).append(Config.nl);
+        if (imports != null) {
+            shell.append(imports).append(Config.nl);
         }
-        catch (IOException e) {
-            DialogManager.showErrorFX(parent, "could-not-write-shell-file");
-            if (shell != null) {
-                try {
-                    shell.close();
-                }
-                catch (IOException ioe) {}
+        shell.append("public class ").append(shellName).append(" extends bluej.runtime.Shell {");
+        shell.append(Config.nl);
+        shell.append("public static ");
+        if (isVoid) {
+            shell.append("void");
+        }
+        else {
+            shell.append("java.lang.Object");
+        }
+        shell.append(" run() throws Throwable {").append(Config.nl);
+        shell.append(vardecl).append(Config.nl);
+        shell.append(invocation);
+        shell.append(scopeSave);
+        if (! isVoid) {
+            shell.append("}"); // end finally block
+            if (constype != null) {
+                shell.append("} };"); // end block, anonymous inner object
             }
-            shellFile.delete();
-            return null;
         }
-        return shellFile;
+        shell.append(Config.nl);
+        shell.append("}}"); // end method, class
+        shell.append(Config.nl);
+
+        // The nominal source file is used only for error reporting; it is never written.
+        shellSource = new InMemorySource(JavaNames.combineNames(pkgName, shellName),
+                new File(pkgPath, shellName + ".java"), shell.toString());
+        return shellSource;
     }
     
     /**
@@ -1042,10 +1030,9 @@ public class Invoker
      * Start the compilation of a shell fine and register us as a watcher. After
      * this, we just wait for the callback from the compiler.
      */
-    private void compileInvocationFile(File shellFile)
+    private void compileInvocationFile(InMemorySource shellSource)
     {
-        File[] files = {shellFile};
-        compiler.compile(files, new EventqueueCompileObserverAdapter(this));
+        compiler.compile(shellSource, new EventqueueCompileObserverAdapter(this));
     }
 
     // -- CompileObserver interface --
@@ -1117,8 +1104,6 @@ public class Invoker
      */
     private void finishCall(boolean successful)
     {
-        deleteShellFiles();
-
         if (!successful && dialog != null)
         {
             // Re-enable call dialog: use can try again with
@@ -1142,31 +1127,6 @@ public class Invoker
         }
     }
 
-    /**
-     * Remove the shell files that we created for this invocation.
-     */
-    private void deleteShellFiles()
-    {
-        File srcFile = new File(pkgPath, shellName + ".java");
-        srcFile.delete();
-
-        File classFile = new File(pkgPath, shellName + ".class");
-        classFile.delete();
-        
-        // Remove any inner class files
-        String [] innerClassFiles = pkgPath.list(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name)
-            {
-                return (name.startsWith(shellName + "$"));
-            }
-        });
-        
-        for (String innerClassFile : innerClassFiles) {
-            new File(pkgPath, innerClassFile).delete();
-        }
-    }
-
     // -- end of CompileObserver interface --
 
     /**
@@ -1175,12 +1135,13 @@ public class Invoker
      */
     private void startClass()
     {
-        final String shellClassName = JavaNames.combineNames(pkgName, shellName);
+        final String shellClassName = shellSource.getClassName();
+        final Map<String, byte[]> shellClassFiles = shellSource.getClassFiles();
         
         new Thread("Shell class runner") {
             public void run() {
                 try {
-                    DebuggerResult result = debugger.runClassMain(shellClassName);
+                    DebuggerResult result = debugger.runShellClass(shellClassName, shellClassFiles);
                     
                     Platform.runLater(new Runnable() {
                         public void run() {
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2010,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,9 +21,8 @@
  */
 package bluej.debugmgr;
 
-import java.io.File;
-
 import bluej.compiler.CompileObserver;
+import bluej.compiler.InMemorySource;
 
 /**
  * An interface for compiling jobs from the Invoker.
@@ -32,5 +31,5 @@ import bluej.compiler.CompileObserver;
  */
 public interface InvokerCompiler
 {
-    void compile(File [] files, CompileObserver observer);
+    void compile(InMemorySource source, CompileObserver observer);
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2009,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,6 +21,7 @@
  */
 package bluej.debugmgr;
 
+import bluej.debugger.DebuggerObject;
 import bluej.debugger.gentype.JavaType;
 
 /**
@@ -54,4 +55,13 @@ public interface NamedValue
      * Get the nominated type of this value.
      */
     public JavaType getGenType();
+
+    /**
+     * Get the object which is the current value of this named value, if it is
+     * available; otherwise returns null.
+     */
+    default public DebuggerObject getDebuggerObject()
+    {
+        return null;
+    }
 }
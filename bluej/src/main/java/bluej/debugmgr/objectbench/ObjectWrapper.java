@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2015,2016,2017,2018,2019,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2015,2016,2017,2018,2019,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -668,6 +668,13 @@ public class ObjectWrapper extends StackPane implements InvokeListener, NamedVal
         return obj;
     }
 
+    @Override
+    @OnThread(Tag.Any)
+    public DebuggerObject getDebuggerObject()
+    {
+        return obj;
+    }
+
     /**
      * Process a mouse click into this object. If it was a popup event, show the object's
      * menu. If it was a double click, inspect the object. If it was a normal mouse click,
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2013,2014,2015,2016,2017,2020  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2013,2014,2015,2016,2017,2020,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -290,6 +290,38 @@ public class TextAnalyzer
         return resolver;
     }
     
+    /**
+     * Evaluate an expression which is expected to be a compile-time constant (as per
+     * the JLS) or the null literal. Returns the resulting value entity, or null if the
+     * expression is not a constant expression.
+     *
+     * @param resolver      The resolver used to resolve names in the expression
+     * @param packageScope  The package in which the expression is evaluated
+     * @param expression    The expression text
+     */
+    @OnThread(Tag.FXPlatform)
+    public static ValueEntity evaluateConstant(EntityResolver resolver, String packageScope, String expression)
+    {
+        Reflective accessRef = new DummyReflective(JavaNames.combineNames(packageScope, "$SHELL"));
+        TextParser parser = new TextParser(resolver, expression, new TypeEntity(accessRef), true);
+        try {
+            parser.parseExpression();
+            if (! parser.atEnd()) {
+                return null;
+            }
+        }
+        catch (ParseFailure e) {
+            return null;
+        }
+
+        JavaEntity exprType = parser.getExpressionType();
+        ValueEntity value = exprType == null ? null : exprType.resolveAsValue();
+        if (value != null && (value.isNullEntity() || ValueEntity.isConstant(value))) {
+            return value;
+        }
+        return null;
+    }
+
     /**
      * Called to confirm that the recently parsed command has successfully
      * executed. This allows TextParser to update internal state to reflect
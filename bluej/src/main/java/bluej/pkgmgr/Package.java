@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021 Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2026 Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -1599,7 +1599,7 @@ public final class Package
                 {
                     chainedObservers.add(compObserver);
                 }
-                FXCompileObserver observer;
+                QuietPackageCompileObserver observer;
                 if (forceQuiet) {
                     observer = new QuietPackageCompileObserver(chainedObservers);
                 } else {
@@ -1703,7 +1703,7 @@ public final class Package
     /**
      * Compile a class together with its dependencies, as necessary.
      */
-    private void searchCompile(ClassTarget t, FXCompileObserver observer, CompileReason reason, CompileType type)
+    private void searchCompile(ClassTarget t, QuietPackageCompileObserver observer, CompileReason reason, CompileType type)
     {
         if (t.isQueued()) {
             return;
@@ -1749,10 +1749,14 @@ public final class Package
     /**
      * Compile every Target in 'targetList'. Every compilation goes through this method.
      * All targets in the list should have been saved beforehand.
+     * 
+     * <p>If the compiler can run several compilations concurrently, the targets are split into
+     * groups according to their dependencies (see {@link CompileScheduler}), and each group is
+     * compiled separately.  Groups which do not depend on each other are compiled concurrently,
+     * and the results for each group are shown as soon as it is compiled.
      */
-    private void doCompile(Collection<ClassTarget> targetList, FXCompileObserver edtObserver, CompileReason reason, CompileType type)
+    private void doCompile(Collection<ClassTarget> targetList, QuietPackageCompileObserver edtObserver, CompileReason reason, CompileType type)
     {
-        CompileObserver observer = new EventqueueCompileObserverAdapter(new DataCollectionCompileObserverWrapper(project, edtObserver));
         if (targetList.isEmpty()) {
             return;
         }
@@ -1760,11 +1764,96 @@ public final class Package
         List<CompileInputFile> srcFiles = Utility.mapList(targetList, ClassTarget::getCompileInputFile);
         if (srcFiles.size() > 0 && srcFiles.stream().allMatch(CompileInputFile::isValid))
         {
-            JobQueue.getJobQueue().addJob(srcFiles.toArray(new CompileInputFile[0]), observer, project.getClassLoader(), project.getProjectDir(),
+            JobQueue jobQueue = JobQueue.getJobQueue();
+            List<List<ClassTarget>> components = Collections.emptyList();
+            if (jobQueue.isConcurrentCompileEnabled() && ! hasUncompiledClassesOutside(targetList)) {
+                components = CompileScheduler.findComponents(targetList, Package::getClassDependencies);
+            }
+            
+            if (components.size() <= 1) {
+                edtObserver.expectCompiles(srcFiles, 1);
+                CompileObserver observer = new EventqueueCompileObserverAdapter(new DataCollectionCompileObserverWrapper(project, edtObserver));
+                jobQueue.addJob(srcFiles.toArray(new CompileInputFile[0]), observer, project.getClassLoader(), project.getProjectDir(),
+                    ! PrefMgr.getFlag(PrefMgr.SHOW_UNCHECKED), project.getProjectCharset(), reason, type);
+                return;
+            }
+            
+            Map<ClassTarget, Integer> componentIndex = new HashMap<>();
+            for (int i = 0; i < components.size(); i++) {
+                for (ClassTarget ct : components.get(i)) {
+                    componentIndex.put(ct, i);
+                }
+            }
+            
+            List<CompileInputFile[]> componentSources = new ArrayList<>();
+            List<int[]> componentDependencies = new ArrayList<>();
+            List<CompileObserver> observers = new ArrayList<>();
+            for (int i = 0; i < components.size(); i++) {
+                Set<Integer> dependsOn = new TreeSet<>();
+                for (ClassTarget ct : components.get(i)) {
+                    for (ClassTarget dependency : getClassDependencies(ct)) {
+                        Integer index = componentIndex.get(dependency);
+                        if (index != null && index != i) {
+                            dependsOn.add(index);
+                        }
+                    }
+                }
+                componentSources.add(Utility.mapList(components.get(i), ClassTarget::getCompileInputFile).toArray(new CompileInputFile[0]));
+                componentDependencies.add(dependsOn.stream().mapToInt(Integer::intValue).toArray());
+                // Each compilation needs its own observer wrappers, as they record the
+                // details of the compilation in progress:
+                observers.add(new EventqueueCompileObserverAdapter(new DataCollectionCompileObserverWrapper(project, edtObserver)));
+            }
+            
+            edtObserver.expectCompiles(srcFiles, components.size());
+            jobQueue.addJobs(componentSources, componentDependencies, observers, project.getClassLoader(), project.getProjectDir(),
                 ! PrefMgr.getFlag(PrefMgr.SHOW_UNCHECKED), project.getProjectCharset(), reason, type);
         }
     }
 
+    /**
+     * Check whether any class in the project, other than those in the given collection, may
+     * need compiling (or is being compiled).  The compiler compiles such classes implicitly
+     * when they are referenced, so they could be compiled by several concurrent compilations
+     * at once.  Classes in packages which have not been opened are assumed to need compiling.
+     */
+    private boolean hasUncompiledClassesOutside(Collection<ClassTarget> targetList)
+    {
+        Set<ClassTarget> compiling = new HashSet<>(targetList);
+        for (Package pkg : getProject().getProjectPackages()) {
+            synchronized (pkg) {
+                for (Target target : pkg.targets) {
+                    if (target instanceof ClassTarget) {
+                        ClassTarget ct = (ClassTarget) target;
+                        if (! compiling.contains(ct) && (! ct.isCompiled() || ct.isQueued())) {
+                            return true;
+                        }
+                    }
+                    else if (target instanceof PackageTarget && !(target instanceof ParentPackageTarget)) {
+                        if (getProject().getCachedPackage(((PackageTarget) target).getQualifiedName()) == null) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the classes (within this package) which a class depends on.
+     */
+    private static List<ClassTarget> getClassDependencies(ClassTarget t)
+    {
+        List<ClassTarget> dependencies = new ArrayList<>();
+        for (Dependency d : t.dependencies()) {
+            if (d.getTo() instanceof ClassTarget) {
+                dependencies.add((ClassTarget) d.getTo());
+            }
+        }
+        return dependencies;
+    }
+
     /**
      * Returns true if the debugger is not busy. This is true if it is either
      * IDLE, or has not been completely constructed (NOTREADY).
@@ -2590,11 +2679,24 @@ public final class Package
      * compilation goes through different stages, but don't display the popups
      * for error/warning messages.
      * Also relay compilation events to any listening extensions.
+     * 
+     * <p>A single compilation may be split into several jobs (see doCompile()). Each job
+     * is handled as it starts and ends, but the chained observers are only told when
+     * the first job starts and the last one ends.
      */
     private class QuietPackageCompileObserver
         implements FXCompileObserver
     {
         protected List<FXCompileObserver> chainedObservers;
+        
+        /** The number of jobs in the current compilation which have not yet ended */
+        private int pendingCompiles = 0;
+        /** Whether the chained observers have been told that the current compilation started */
+        protected boolean compilationStarted = false;
+        /** The sources of all jobs in the current compilation */
+        private final List<CompileInputFile> compilationSources = new ArrayList<>();
+        private boolean compilationSuccessful = true;
+        private CompileReason compilationReason;
 
         /**
          * Construct a new QuietPackageCompileObserver. The chained observers (if
@@ -2605,6 +2707,24 @@ public final class Package
             this.chainedObservers = new ArrayList<>(chainedObservers);
         }
 
+        /**
+         * Note that some jobs are about to be added to the compile queue, as part of a
+         * compilation which is not finished until they have all ended.
+         * 
+         * @param sources  The sources of all the jobs
+         * @param jobs     The number of jobs
+         */
+        public void expectCompiles(List<CompileInputFile> sources, int jobs)
+        {
+            if (pendingCompiles == 0) {
+                compilationStarted = false;
+                compilationSources.clear();
+                compilationSuccessful = true;
+            }
+            pendingCompiles += jobs;
+            compilationSources.addAll(sources);
+        }
+
         private void markAsCompiling(CompileInputFile[] sources, int compilationSequence)
         {
             for (int i = 0; i < sources.length; i++) {
@@ -2657,10 +2777,17 @@ public final class Package
 
             // Change view of source classes.
             markAsCompiling(sources, compilationSequence);
+            compilationReason = reason;
 
-            for (FXCompileObserver chainedObserver : chainedObservers)
+            if (! compilationStarted)
             {
-                chainedObserver.startCompile(sources, reason, type, compilationSequence);
+                compilationStarted = true;
+                CompileInputFile[] allSources = compilationSources.isEmpty() ? sources
+                        : compilationSources.toArray(new CompileInputFile[0]);
+                for (FXCompileObserver chainedObserver : chainedObservers)
+                {
+                    chainedObserver.startCompile(allSources, reason, type, compilationSequence);
+                }
             }
         }
 
@@ -2710,6 +2837,29 @@ public final class Package
         @Override
         public void endCompile(CompileInputFile[] sources, boolean successful, CompileType type, int compilationSequence)
         {
+            if (successful && type.keepClasses())
+            {
+                compileInvalidatedDependents(sources, type);
+            }
+            else if (!successful)
+            {
+                for (CompileInputFile source : sources) {
+                    String fullName = getProject().convertPathToPackageName(source.getJavaCompileInputFile().getPath());
+                    if (fullName != null && targets.get(JavaNames.getBase(fullName)) instanceof ClassTarget) {
+                        ((ClassTarget) targets.get(JavaNames.getBase(fullName))).invalidateDependentsAfterFailedCompile();
+                    }
+                }
+            }
+            
+            // Note whether this is the end of the whole compilation now, as the retry below
+            // may start another compilation:
+            compilationSuccessful &= successful;
+            pendingCompiles = Math.max(0, pendingCompiles - 1);
+            boolean compilationEnded = pendingCompiles == 0;
+            CompileInputFile[] allSources = compilationSources.isEmpty() ? sources
+                    : compilationSources.toArray(new CompileInputFile[0]);
+            boolean allSuccessful = compilationSuccessful;
+            
             List<ClassTarget> targetsToAnalyse = new ArrayList<>();
             List<ClassTarget> readyToCompileList = new ArrayList<>();
             for (int i = 0; i < sources.length; i++) {
@@ -2785,7 +2935,7 @@ public final class Package
                 classTarget.analyseAfterCompile();
             }
 
-            if (type.keepClasses())
+            if (type.keepClasses() && compilationEnded)
             {
                 setStatus(compileDone);
             }
@@ -2796,9 +2946,48 @@ public final class Package
             CompileEvent aCompileEvent = new CompileEvent(eventType, type.keepClasses(), Utility.mapList(Arrays.asList(sources), CompileInputFile::getJavaCompileInputFile).toArray(new File[0]));
             ExtensionsManager.getInstance().delegateEvent(aCompileEvent);
 
-            for (FXCompileObserver chainedObserver : chainedObservers)
+            if (compilationEnded)
             {
-                chainedObserver.endCompile(sources, successful, type, compilationSequence);
+                for (FXCompileObserver chainedObserver : chainedObservers)
+                {
+                    chainedObserver.endCompile(allSources, allSuccessful, type, compilationSequence);
+                }
+            }
+        }
+
+        /**
+         * Check whether the API of the classes just compiled has changed, which
+         * invalidates the classes which depend on them (see ClassTarget.checkApiAfterCompile()).
+         * If so, compile those classes too, as part of the current compilation.
+         */
+        private void compileInvalidatedDependents(CompileInputFile[] sources, CompileType type)
+        {
+            List<ClassTarget> invalidated = new ArrayList<>();
+            for (CompileInputFile source : sources) {
+                String fullName = getProject().convertPathToPackageName(source.getJavaCompileInputFile().getPath());
+                if (fullName != null && targets.get(JavaNames.getBase(fullName)) instanceof ClassTarget) {
+                    ClassTarget t = (ClassTarget) targets.get(JavaNames.getBase(fullName));
+                    invalidated.addAll(t.checkApiAfterCompile());
+                }
+            }
+            
+            List<ClassTarget> toCompile = new ArrayList<>();
+            for (ClassTarget t : invalidated) {
+                try {
+                    t.ensureSaved();
+                    t.setQueued(true);
+                    toCompile.add(t);
+                }
+                catch (IOException ioe) {
+                    Debug.log("Failed to save source before compile; " + ioe.getLocalizedMessage());
+                }
+            }
+            
+            if (!toCompile.isEmpty()) {
+                // Classes loaded since the compilation began may refer to the old versions:
+                project.removeClassLoader();
+                project.newRemoteClassLoaderLeavingBreakpoints();
+                doCompile(toCompile, this, compilationReason, type);
             }
         }
     }
@@ -2822,7 +3011,11 @@ public final class Package
         @Override
         public void startCompile(CompileInputFile[] sources, CompileReason reason, CompileType type, int compilationSequence)
         {
-            numErrors = 0;
+            // Errors are numbered across all jobs of a compilation:
+            if (! compilationStarted)
+            {
+                numErrors = 0;
+            }
             super.startCompile(sources, reason, type, compilationSequence);
         }
 
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -29,7 +29,9 @@ import bluej.classmgr.ClassMgrPrefPanel;
 import bluej.collect.DataCollector;
 import bluej.compiler.CompileReason;
 import bluej.compiler.CompileType;
+import bluej.compiler.JobQueue;
 import bluej.debugger.*;
+import bluej.debugmgr.DirectInvocation;
 import bluej.debugmgr.ExecControls;
 import bluej.debugmgr.ExpressionInformation;
 import bluej.debugmgr.inspector.*;
@@ -627,6 +629,11 @@ public class Project implements DebuggerListener, DebuggerThreadListener, Inspec
         project.getDebugger().close(false);
 
         projects.remove(project.getProjectDir());
+        JobQueue.getJobQueue().releaseCompilerResources();
+        String invocationStatistics = DirectInvocation.getStatistics();
+        if (invocationStatistics != null) {
+            Debug.log(invocationStatistics);
+        }
     }
 
     /**
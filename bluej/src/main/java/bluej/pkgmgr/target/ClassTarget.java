@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2022  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2015,2016,2017,2018,2019,2020,2021,2022,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -26,6 +26,7 @@ import bluej.Config;
 import bluej.collect.DataCollector;
 import bluej.collect.DiagnosticWithShown;
 import bluej.collect.StrideEditReason;
+import bluej.compiler.ApiFingerprint;
 import bluej.compiler.CompileInputFile;
 import bluej.compiler.CompileReason;
 import bluej.compiler.CompileType;
@@ -169,6 +170,12 @@ public class ClassTarget extends DependentTarget
     // Whether the current compilation is invalid due to edits since compilation began
     private boolean compilationInvalid = false;
 
+    // A fingerprint of the API of the compiled class (see ApiFingerprint), or null if not known
+    private String apiFingerprint;
+    // Whether the class has been edited without invalidating the classes which depend on it;
+    // they are invalidated after it is compiled, if its API has changed.
+    private boolean dependentsUnchecked = false;
+
     private SourceType sourceAvailable;
     // Part of keeping track of number of editors opened, for Greenfoot phone home:
     private boolean hasBeenOpened = false;
@@ -985,6 +992,28 @@ public class ClassTarget extends DependentTarget
      * @param alreadyInvalidated The list of already invalidated targets in this call tree (will be modified)
      */
     private void invalidateInclDependents(ArrayList<ClassTarget> alreadyInvalidated)
+    {
+        invalidateSelf();
+        
+        alreadyInvalidated.add(this);
+        
+        for (Dependency d : dependents())
+        {
+            ClassTarget dependent = (ClassTarget) d.getFrom();
+            
+            if (dependent.hasSourceCode() && !alreadyInvalidated.contains(dependent))
+            {
+                // Invalidate the dependent only if it is not already invalidated. 
+                // Will avoid going into an infinite circular loop.
+                dependent.invalidateInclDependents(alreadyInvalidated);
+            }
+        }
+    }
+
+    /**
+     * Mark this class (only) as modified.
+     */
+    private void invalidateSelf()
     {
         // Mark any current compilation as stale:
         compilationInvalid = true;
@@ -998,20 +1027,77 @@ public class ClassTarget extends DependentTarget
                 JavaFXUtil.runAfterCurrent(() -> editor.removeErrorHighlights());
             }
         }
+    }
+
+    /**
+     * Check the API of this class after it has been compiled successfully.  If the class
+     * was edited without invalidating the classes which depend on it (see modificationEvent()),
+     * and its API has changed, they are invalidated now.  Classes which are queued to be
+     * compiled are not invalidated, as they will be compiled against the new API anyway;
+     * the classes which depend on them are, however.
+     * 
+     * @return  The classes which have been invalidated
+     */
+    public List<ClassTarget> checkApiAfterCompile()
+    {
+        String newFingerprint = ApiFingerprint.compute(getClassFile(), getInnerClassFiles());
+        List<ClassTarget> invalidated = new ArrayList<>();
+        if (dependentsUnchecked && (newFingerprint == null || !newFingerprint.equals(apiFingerprint)))
+        {
+            Set<ClassTarget> visited = new HashSet<>();
+            LinkedList<ClassTarget> toVisit = new LinkedList<>();
+            visited.add(this);
+            toVisit.add(this);
+            while (!toVisit.isEmpty())
+            {
+                for (Dependency d : toVisit.removeFirst().dependents())
+                {
+                    ClassTarget dependent = (ClassTarget) d.getFrom();
+                    if (dependent.hasSourceCode() && visited.add(dependent))
+                    {
+                        if (!dependent.isQueued())
+                        {
+                            dependent.invalidateSelf();
+                            invalidated.add(dependent);
+                        }
+                        toVisit.add(dependent);
+                    }
+                }
+            }
+        }
         
-        alreadyInvalidated.add(this);
+        apiFingerprint = newFingerprint;
+        // If the class was edited during the compilation, it must be checked again next time:
+        dependentsUnchecked = compilationInvalid;
+        return invalidated;
+    }
+
+    /**
+     * This class failed to compile.  If it was edited without invalidating the classes which
+     * depend on it (see modificationEvent()), they are invalidated now, as we can't tell whether
+     * its API has changed.  This class itself is left as it is, with its errors.
+     */
+    public void invalidateDependentsAfterFailedCompile()
+    {
+        if (!dependentsUnchecked || compilationInvalid)
+        {
+            // Either nothing to do, or the class was edited during the compilation and
+            // will be checked after the next one
+            return;
+        }
         
+        ArrayList<ClassTarget> alreadyInvalidated = new ArrayList<>();
+        alreadyInvalidated.add(this);
         for (Dependency d : dependents())
         {
             ClassTarget dependent = (ClassTarget) d.getFrom();
-            
             if (dependent.hasSourceCode() && !alreadyInvalidated.contains(dependent))
             {
-                // Invalidate the dependent only if it is not already invalidated. 
-                // Will avoid going into an infinite circular loop.
                 dependent.invalidateInclDependents(alreadyInvalidated);
             }
         }
+        dependentsUnchecked = false;
+        apiFingerprint = null;
     }
 
     /**
@@ -1413,7 +1499,23 @@ public class ClassTarget extends DependentTarget
     @Override
     public void modificationEvent(Editor editor)
     {
-        invalidate();
+        // If the class is compiled, the classes which depend on it only need to be
+        // invalidated if its API changes, which we check once it has been compiled again
+        // (see checkApiAfterCompile()).  For that we need the API of the current class file:
+        if (isCompiled() && apiFingerprint == null)
+        {
+            apiFingerprint = ApiFingerprint.compute(getClassFile(), getInnerClassFiles());
+        }
+        
+        if (dependentsUnchecked || (isCompiled() && apiFingerprint != null))
+        {
+            dependentsUnchecked = true;
+            invalidateSelf();
+        }
+        else
+        {
+            invalidate();
+        }
                 
         removeBreakpoints();
         if (getPackage().getProject().getDebugger() != null)
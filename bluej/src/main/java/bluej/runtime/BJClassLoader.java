@@ -0,0 +1,72 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.runtime;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class loader for user classes in the remote VM.  As well as loading classes from
+ * the project classpath, it can define classes whose class files are supplied directly
+ * (this is used for the shell classes which perform interactive invocations, so that they
+ * need not be written to disk).  Such classes are defined by this loader, and so belong
+ * to the same runtime package as the user classes in the same package.
+ */
+public class BJClassLoader extends URLClassLoader
+{
+    /** Class files supplied but not yet defined, by binary class name */
+    private final Map<String, byte[]> pendingClasses = new HashMap<String, byte[]>();
+
+    public BJClassLoader(URL[] urls)
+    {
+        super(urls);
+    }
+
+    /**
+     * Supply class files, which will be used to define the classes when they are
+     * loaded.
+     * 
+     * @param names  The binary names of the classes
+     * @param classFiles  The class files, each a byte[]; must be the same length as names
+     */
+    public synchronized void addClassFiles(String[] names, Object[] classFiles)
+    {
+        for (int i = 0; i < names.length; i++) {
+            pendingClasses.put(names[i], (byte[]) classFiles[i]);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        byte[] classFile;
+        synchronized (this) {
+            classFile = pendingClasses.remove(name);
+        }
+        if (classFile != null) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+        return super.findClass(name);
+    }
+}
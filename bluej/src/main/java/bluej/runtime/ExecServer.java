@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2016,2017,2018,2019,2021  Michael Kolling and John Rosenberg
+ Copyright (C) 1999-2009,2010,2011,2012,2013,2014,2016,2017,2018,2019,2021,2026  Michael Kolling and John Rosenberg
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -37,7 +37,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -112,7 +111,11 @@ public class ExecServer
     public static String methodToRun;
     public static String [] parameterTypes;
     public static Object [] arguments;
+    public static Object targetObject;  // the object to invoke a method on (INVOKE_METHOD); may be null
     public static int execAction = -1;   // EXEC_SHELL, TEST_SETUP or TEST_RUN
+    // Class files to define (in the current loader) before executing a shell class; may be null
+    public static String [] shellClassNames;
+    public static Object [] shellClassFiles;  // each a byte[]
     
     public static Object methodReturn;
     public static Class<?> executedClass;
@@ -124,10 +127,13 @@ public class ExecServer
     public static final String METHOD_TO_RUN_NAME = "methodToRun";
     public static final String PARAMETER_TYPES_NAME = "parameterTypes";
     public static final String ARGUMENTS_NAME = "arguments";
+    public static final String TARGET_OBJECT_NAME = "targetObject";
     public static final String EXEC_ACTION_NAME = "execAction";
     public static final String METHOD_RETURN_NAME = "methodReturn";
     public static final String EXCEPTION_NAME = "exception";
     public static final String EXECUTED_CLASS_NAME = "executedClass";
+    public static final String SHELL_CLASS_NAMES_NAME = "shellClassNames";
+    public static final String SHELL_CLASS_FILES_NAME = "shellClassFiles";
 
     // Possible actions for the main thread
     public static final int EXEC_SHELL = 0;  // Execute a shell class
@@ -140,6 +146,8 @@ public class ExecServer
     public static final int INSTANTIATE_CLASS_ARGS = 7; // use constructor
         // with specified parameter types and arguments
     public static final int LAUNCH_FX_APP = 8;
+    public static final int INVOKE_METHOD = 9; // invoke a method directly
+        // with specified target, parameter types and arguments
 
     // Parameter for worker thread actions
     public static int workerAction = EXIT_VM;
@@ -386,7 +394,7 @@ public class ExecServer
             System.err.println("ExecServer.newLoader() Malformed URL=" + splits[index]);
         }
 
-        currentLoader = new URLClassLoader(urls);
+        currentLoader = new BJClassLoader(urls);
         
         synchronized (objectMaps) {
             objectMaps.clear();
@@ -783,6 +791,111 @@ public class ExecServer
         }
     }
     
+    /**
+     * Get the classes corresponding to the names in parameterTypes (which may
+     * include primitive type names).
+     */
+    private static Class<?>[] getParameterClasses() throws ClassNotFoundException
+    {
+        Class<?> [] paramClasses = new Class[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            switch (parameterTypes[i]) {
+                case "boolean": paramClasses[i] = boolean.class; break;
+                case "byte": paramClasses[i] = byte.class; break;
+                case "char": paramClasses[i] = char.class; break;
+                case "short": paramClasses[i] = short.class; break;
+                case "int": paramClasses[i] = int.class; break;
+                case "long": paramClasses[i] = long.class; break;
+                case "float": paramClasses[i] = float.class; break;
+                case "double": paramClasses[i] = double.class; break;
+                default:
+                    paramClasses[i] = Class.forName(parameterTypes[i], false, currentLoader);
+            }
+        }
+        return paramClasses;
+    }
+
+    /**
+     * Convert the arguments for a constructor or method invocation. Arguments for primitive
+     * parameters are sent as strings (since the debugger cannot easily create boxed values),
+     * and are converted here to the corresponding boxed type.
+     */
+    private static Object[] convertArguments(Class<?>[] paramClasses, Object[] args)
+    {
+        Object [] converted = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            converted[i] = args[i];
+            if (paramClasses[i].isPrimitive() && args[i] instanceof String) {
+                String s = (String) args[i];
+                if (paramClasses[i] == boolean.class) {
+                    converted[i] = Boolean.valueOf(s);
+                }
+                else if (paramClasses[i] == byte.class) {
+                    converted[i] = Byte.valueOf(s);
+                }
+                else if (paramClasses[i] == char.class) {
+                    converted[i] = Character.valueOf(s.charAt(0));
+                }
+                else if (paramClasses[i] == short.class) {
+                    converted[i] = Short.valueOf(s);
+                }
+                else if (paramClasses[i] == int.class) {
+                    converted[i] = Integer.valueOf(s);
+                }
+                else if (paramClasses[i] == long.class) {
+                    converted[i] = Long.valueOf(s);
+                }
+                else if (paramClasses[i] == float.class) {
+                    converted[i] = Float.valueOf(s);
+                }
+                else if (paramClasses[i] == double.class) {
+                    converted[i] = Double.valueOf(s);
+                }
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Wrap the result of a method invocation in the same way that a shell class would
+     * (see Shell.makeObj), so that the debugger can determine whether it is primitive.
+     * Returns null for a void method.
+     */
+    private static Object wrapResult(Class<?> returnType, Object result)
+    {
+        if (returnType == void.class) {
+            return null;
+        }
+        else if (returnType == boolean.class) {
+            return Shell.makeObj(((Boolean) result).booleanValue());
+        }
+        else if (returnType == byte.class) {
+            return Shell.makeObj(((Byte) result).byteValue());
+        }
+        else if (returnType == char.class) {
+            return Shell.makeObj(((Character) result).charValue());
+        }
+        else if (returnType == short.class) {
+            return Shell.makeObj(((Short) result).shortValue());
+        }
+        else if (returnType == int.class) {
+            return Shell.makeObj(((Integer) result).intValue());
+        }
+        else if (returnType == long.class) {
+            return Shell.makeObj(((Long) result).longValue());
+        }
+        else if (returnType == float.class) {
+            return Shell.makeObj(((Float) result).floatValue());
+        }
+        else if (returnType == double.class) {
+            return Shell.makeObj(((Double) result).doubleValue());
+        }
+        else if (returnType == String.class) {
+            return Shell.makeObj((String) result);
+        }
+        return Shell.makeObj(result);
+    }
+
     /**
      * Clear the system input buffer. This is used between method calls to
      * make sure that System.in.read() doesn't read input which was buffered
@@ -840,6 +953,12 @@ public class ExecServer
                             executedClass = null;
                             
                             clearInputBuffer();
+                            if (shellClassNames != null) {
+                                // The shell class was compiled in memory, and sent to us:
+                                ((BJClassLoader) currentLoader).addClassFiles(shellClassNames, shellClassFiles);
+                                shellClassNames = null;
+                                shellClassFiles = null;
+                            }
                             Class<?> c = currentLoader.loadClass(classToRun);
                             executedClass = c;
                             // Class c = cloader.loadClass(classToRun);
@@ -880,18 +999,38 @@ public class ExecServer
                             // types and arguments
                             clearInputBuffer();
                             Class<?> c = currentLoader.loadClass(classToRun);
-                            Class<?> [] paramClasses = new Class[parameterTypes.length];
-                            for (int i = 0; i < parameterTypes.length; i++) {
-                                if (classLoader == null)
-                                    classLoader = currentLoader;
-                                
-                                paramClasses[i] = Class.forName(parameterTypes[i], false, currentLoader);
-                            }
+                            if (classLoader == null)
+                                classLoader = currentLoader;
+                            Class<?> [] paramClasses = getParameterClasses();
+                            Object [] args = convertArguments(paramClasses, arguments);
                             Constructor<?> cons = c.getDeclaredConstructor(paramClasses);
                             cons.setAccessible(true);
                             runOnTargetThread(() -> {
                                 try {
-                                    methodReturn = cons.newInstance(arguments);
+                                    methodReturn = cons.newInstance(args);
+                                }
+                                catch (InvocationTargetException ite) {
+                                    throw ite.getCause();
+                                }
+                            });
+                            break;
+                        }
+                        case INVOKE_METHOD:
+                        {
+                            // Invoke a method using specified target object, parameter
+                            // types and arguments, without a shell class. The result is
+                            // wrapped as a shell class would wrap it.
+                            clearInputBuffer();
+                            Class<?> c = currentLoader.loadClass(classToRun);
+                            Class<?> [] paramClasses = getParameterClasses();
+                            Object [] args = convertArguments(paramClasses, arguments);
+                            Method m = c.getDeclaredMethod(methodToRun, paramClasses);
+                            m.setAccessible(true);
+                            Object target = targetObject;
+                            targetObject = null;
+                            runOnTargetThread(() -> {
+                                try {
+                                    methodReturn = wrapResult(m.getReturnType(), m.invoke(target, args));
                                 }
                                 catch (InvocationTargetException ite) {
                                     throw ite.getCause();
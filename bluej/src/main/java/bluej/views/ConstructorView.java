@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 1999-2015,2020  Michael Kolling and John Rosenberg 
+ Copyright (C) 1999-2015,2020,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -50,6 +50,15 @@ public final class ConstructorView extends CallableView
         this.cons = cons;
     }
 
+    /**
+     * Returns the constructor which this view represents.
+     */
+    @OnThread(Tag.Any)
+    public Constructor<?> getConstructor()
+    {
+        return cons;
+    }
+
     /**
      * Returns a string describing this Constructor.
      */
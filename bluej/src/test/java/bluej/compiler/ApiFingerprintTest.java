@@ -0,0 +1,106 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests for the API fingerprint of compiled classes.
+ */
+public class ApiFingerprintTest
+{
+    private static final String BASE = "public class A { public static final int K = 3; private int x; "
+            + "public int m(int y) { return y + 1; } public static class In { public void q() { } } }";
+    
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("fingerprint").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Compile the given source for class A, and get its fingerprint.
+     */
+    private String fingerprint(String source) throws Exception
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        File src = new File(dir, "A.java");
+        Files.write(src.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", dir.getPath(), src.getPath()));
+        String result = ApiFingerprint.compute(new File(dir, "A.class"),
+                dir.listFiles(f -> f.getName().startsWith("A$")));
+        assertNotNull(result);
+        return result;
+    }
+
+    @Test
+    public void testUnchanged() throws Exception
+    {
+        String base = fingerprint(BASE);
+        // Changes to method bodies, private members and anonymous classes:
+        assertEquals(base, fingerprint("public class A { public static final int K = 3; private int x; private long z; "
+                + "public int m(int y) { Runnable r = new Runnable() { public void run() { } }; assert y > 0; return (int) z; } "
+                + "public static class In { public void q() { System.out.println(); } } }"));
+        // Members in a different order:
+        assertEquals(base, fingerprint("public class A { public static class In { public void q() { } } "
+                + "public int m(int y) { return y + 1; } private int x; public static final int K = 3; }"));
+    }
+
+    @Test
+    public void testChanged() throws Exception
+    {
+        String base = fingerprint(BASE);
+        // Constant value:
+        assertNotEquals(base, fingerprint(BASE.replace("K = 3", "K = 4")));
+        // Parameter type:
+        assertNotEquals(base, fingerprint(BASE.replace("m(int y)", "m(long y)").replace("y + 1", "1")));
+        // Thrown exceptions:
+        assertNotEquals(base, fingerprint(BASE.replace("m(int y)", "m(int y) throws Exception")));
+        // Member class:
+        assertNotEquals(base, fingerprint(BASE.replace("public void q() { }", "public void q() { } void r() { }")));
+    }
+}
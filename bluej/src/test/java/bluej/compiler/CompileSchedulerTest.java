@@ -0,0 +1,96 @@
+/*
+ This file is part of the BlueJ program. 
+ Copyright (C) 2026  Michael Kolling and John Rosenberg 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package bluej.compiler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for splitting a dependency graph into components, for concurrent compilation.
+ */
+public class CompileSchedulerTest
+{
+    private final Map<String, List<String>> graph = new HashMap<>();
+
+    private void depends(String from, String... to)
+    {
+        graph.put(from, Arrays.asList(to));
+    }
+
+    private List<List<String>> components(String... nodes)
+    {
+        return CompileScheduler.findComponents(Arrays.asList(nodes),
+                n -> graph.getOrDefault(n, Collections.emptyList()));
+    }
+
+    private static int indexOf(List<List<String>> components, String node)
+    {
+        for (int i = 0; i < components.size(); i++) {
+            if (components.get(i).contains(node)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testIndependent()
+    {
+        List<List<String>> components = components("A", "B", "C");
+        assertEquals(3, components.size());
+        for (List<String> component : components) {
+            assertEquals(1, component.size());
+        }
+    }
+
+    @Test
+    public void testCycles()
+    {
+        // A and B depend on each other; C, D and E form a cycle which depends on B;
+        // F depends on E, and on G which is not being compiled:
+        depends("A", "B");
+        depends("B", "A");
+        depends("C", "D", "B");
+        depends("D", "E");
+        depends("E", "C");
+        depends("F", "E", "G");
+        
+        List<List<String>> components = components("F", "E", "D", "C", "B", "A");
+        assertEquals(3, components.size());
+        assertEquals(new HashSet<>(Arrays.asList("A", "B")), new HashSet<>(components.get(indexOf(components, "A"))));
+        assertEquals(new HashSet<>(Arrays.asList("C", "D", "E")), new HashSet<>(components.get(indexOf(components, "C"))));
+        assertEquals(Collections.singletonList("F"), components.get(indexOf(components, "F")));
+        
+        // Dependencies come first:
+        assertTrue(indexOf(components, "A") < indexOf(components, "C"));
+        assertTrue(indexOf(components, "C") < indexOf(components, "F"));
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the BlueJ program. 
- Copyright (C) 2014,2019,2022  Michael Kolling and John Rosenberg 
+ Copyright (C) 2014,2019,2022,2026  Michael Kolling and John Rosenberg 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -40,6 +40,7 @@ import bluej.parser.entity.EntityResolver;
 import bluej.parser.entity.PackageOrClass;
 import bluej.parser.entity.PackageResolver;
 import bluej.parser.entity.TypeEntity;
+import bluej.parser.entity.ValueEntity;
 import bluej.parser.nodes.ParsedCUNode;
 import bluej.utility.JavaReflective;
 import org.junit.Before;
@@ -48,6 +49,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class TextAnalyserTest
@@ -252,4 +254,38 @@ public class TextAnalyserTest
         assertTrue(foundComparable);
     }
 
+    /**
+     * Test evaluation of constant expressions (as used for direct interactive invocations).
+     */
+    @Test
+    public void testEvaluateConstant()
+    {
+        ValueEntity value = TextAnalyzer.evaluateConstant(resolver, "", "-5");
+        assertEquals("int", value.getType().toString());
+        assertEquals(-5, value.getConstantIntValue());
+
+        value = TextAnalyzer.evaluateConstant(resolver, "", "3 + 4L");
+        assertEquals("long", value.getType().toString());
+        assertEquals(7, value.getConstantIntValue());
+
+        value = TextAnalyzer.evaluateConstant(resolver, "", "'a'");
+        assertEquals("char", value.getType().toString());
+        assertEquals('a', value.getConstantIntValue());
+
+        value = TextAnalyzer.evaluateConstant(resolver, "", "1.5f");
+        assertEquals("float", value.getType().toString());
+        assertEquals(1.5, value.getConstantFloatValue(), 0.0);
+
+        value = TextAnalyzer.evaluateConstant(resolver, "", "\"hello\"");
+        assertTrue(value.isConstantString());
+        assertEquals("hello", value.getConstantString());
+
+        value = TextAnalyzer.evaluateConstant(resolver, "", "null");
+        assertTrue(value.isNullEntity());
+
+        // Not constant expressions:
+        assertNull(TextAnalyzer.evaluateConstant(resolver, "", "Math.random()"));
+        assertNull(TextAnalyzer.evaluateConstant(resolver, "", "new Object()"));
+        assertNull(TextAnalyzer.evaluateConstant(resolver, "", "1 +"));
+    }
 }
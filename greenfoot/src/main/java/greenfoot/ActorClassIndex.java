@@ -0,0 +1,216 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An index of the actors in a world by class, so that the actors of a particular class
+ * (including its subclasses) can be found without examining every actor in the world.
+ * 
+ * <p>Actors are held in a set per concrete class. For each class which is queried, the
+ * sets of all the concrete classes which are assignable to it are remembered, so that
+ * later queries for the same class only need to visit those sets. The remembered sets
+ * are discarded whenever an actor of a new concrete class is added.
+ * 
+ * <p>Within one concrete class, actors are kept in the order they were added. Where
+ * several concrete classes match a query, the actors are grouped by class, with the
+ * classes in the order in which their first actor was added (so that the order is the
+ * same from run to run); this is not the world's order, so callers which need that
+ * should check {@link #isSingleClass(Class)} first.
+ */
+@OnThread(Tag.Simulation)
+public class ActorClassIndex
+{
+    private static final ActorSet[] NO_SETS = new ActorSet[0];
+    
+    /** The actors of each concrete class, in the order the classes were first added */
+    private final Map<Class<?>, ActorSet> classSets = new LinkedHashMap<Class<?>, ActorSet>();
+    /** The sets of actors matching each queried class */
+    private final Map<Class<?>, ActorSet[]> matchingSets = new HashMap<Class<?>, ActorSet[]>();
+    
+    /**
+     * Add an actor to the index.
+     */
+    public void add(Actor actor)
+    {
+        Class<?> cls = actor.getClass();
+        ActorSet set = classSets.get(cls);
+        if (set == null) {
+            set = new ActorSet();
+            classSets.put(cls, set);
+            matchingSets.clear();
+        }
+        set.add(actor);
+    }
+    
+    /**
+     * Remove an actor from the index.
+     */
+    public void remove(Actor actor)
+    {
+        ActorSet set = classSets.get(actor.getClass());
+        if (set != null) {
+            set.remove(actor);
+        }
+    }
+    
+    /**
+     * Get the number of actors of the given class (including subclasses).
+     * The class must not be null (and likewise for the other query methods).
+     */
+    public int count(Class<?> cls)
+    {
+        int count = 0;
+        for (ActorSet set : getMatchingSets(cls)) {
+            count += set.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Check whether all the actors of the given class (including subclasses) are of a
+     * single concrete class, or there are none. If so, the actors are returned by
+     * {@link #getObjects(Class)} and {@link #getView(Class)} in the order in which they
+     * were added.
+     */
+    public boolean isSingleClass(Class<?> cls)
+    {
+        return getMatchingSets(cls).length <= 1;
+    }
+    
+    /**
+     * Get a live view of the actors of the given class (including subclasses). The view
+     * cannot be modified, and must not be iterated while actors are added or removed.
+     */
+    public Collection<Actor> getView(Class<?> cls)
+    {
+        return new ClassView(getMatchingSets(cls));
+    }
+    
+    /**
+     * Get a new list containing the actors of the given class (including subclasses).
+     */
+    @SuppressWarnings("unchecked")
+    public <A> List<A> getObjects(Class<A> cls)
+    {
+        ActorSet[] sets = getMatchingSets(cls);
+        int count = 0;
+        for (ActorSet set : sets) {
+            count += set.size();
+        }
+        
+        List<A> result = new ArrayList<A>(count);
+        for (ActorSet set : sets) {
+            result.addAll((Collection<? extends A>) set);
+        }
+        return result;
+    }
+    
+    /**
+     * Get the sets of actors whose concrete class is assignable to the given class.
+     */
+    private ActorSet[] getMatchingSets(Class<?> cls)
+    {
+        ActorSet[] sets = matchingSets.get(cls);
+        if (sets == null) {
+            List<ActorSet> matching = new ArrayList<ActorSet>();
+            for (Map.Entry<Class<?>, ActorSet> entry : classSets.entrySet()) {
+                if (cls.isAssignableFrom(entry.getKey())) {
+                    matching.add(entry.getValue());
+                }
+            }
+            sets = matching.isEmpty() ? NO_SETS : matching.toArray(new ActorSet[matching.size()]);
+            matchingSets.put(cls, sets);
+        }
+        return sets;
+    }
+    
+    /**
+     * A read-only view of the actors in several sets.
+     */
+    @OnThread(Tag.Simulation)
+    private static class ClassView extends AbstractCollection<Actor>
+    {
+        private final ActorSet[] sets;
+        
+        public ClassView(ActorSet[] sets)
+        {
+            this.sets = sets;
+        }
+
+        @Override
+        @OnThread(value = Tag.Simulation, ignoreParent = true)
+        public int size()
+        {
+            int size = 0;
+            for (ActorSet set : sets) {
+                size += set.size();
+            }
+            return size;
+        }
+
+        @Override
+        @OnThread(value = Tag.Simulation, ignoreParent = true)
+        public Iterator<Actor> iterator()
+        {
+            return new Iterator<Actor>() {
+                private int setIndex = 0;
+                private Iterator<Actor> current = null;
+                
+                @Override
+                @OnThread(value = Tag.Simulation, ignoreParent = true)
+                public boolean hasNext()
+                {
+                    while (current == null || ! current.hasNext()) {
+                        if (setIndex == sets.length) {
+                            return false;
+                        }
+                        current = sets[setIndex++].iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                @OnThread(value = Tag.Simulation, ignoreParent = true)
+                public Actor next()
+                {
+                    if (! hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2011  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2011,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -182,6 +182,21 @@ public class ActorSet extends AbstractSet<Actor>
         return numActors;
     }
 
+    /**
+     * Copy the actors in this set, in iteration order, into the given array starting
+     * at the given index. The array must have room for them.
+     * 
+     * @return  The index following the last actor copied
+     */
+    @OnThread(Tag.Simulation)
+    int copyInto(Actor[] dest, int index)
+    {
+        for (ListNode node = listHeadTail.next; node != listHeadTail; node = node.next) {
+            dest[index++] = node.actor;
+        }
+        return index;
+    }
+
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
     public Iterator<Actor> iterator()
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -102,6 +102,16 @@ public class ActorVisitor
         return actor.getBoundingRect();
     }
     
+    /**
+     * Check whether pixel-perfect collision checking is enabled for the given actor
+     * (see {@link World#setPixelPerfectCollision(boolean)}).
+     */
+    public static boolean usesPixelCollision(Actor actor)
+    {
+        World world = actor.world;
+        return world != null && world.isPixelPerfectCollision();
+    }
+    
     public static void setData(Actor actor, Object n)
     {
         actor.setData(n);
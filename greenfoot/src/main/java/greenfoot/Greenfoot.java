@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2011,2012,2014,2015,2019,2022  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2011,2012,2014,2015,2019,2022,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -146,6 +146,14 @@ public class Greenfoot
         return randomGenerator.nextInt(limit);
     }
 
+    /**
+     * Seed the generator used by getRandomNumber(), so that a run can be repeated exactly.
+     */
+    static void setRandomSeed(long seed)
+    {
+        randomGenerator.setSeed(seed);
+    }
+
     /**
      * Play sound from a file. The following formats are supported: AIFF, AU and
      * WAV.
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2017,2019  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2017,2019,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -78,10 +78,28 @@ public class GreenfootImage
      */
     private boolean copyOnWrite = false;
     
+    /**
+     * Set if the image data is shared with a snapshot taken for pipelined rendering (see
+     * {@link #getSnapshot()}), so that it must be copied before it is written to, as for
+     * copyOnWrite.  Unlike copy-on-write data, the data is not long-lived, so transformations
+     * of it are not cached in the ImageTransformCache.
+     */
+    private boolean sharedWithSnapshot = false;
+    
     /**
      * Value from 0 to 255, with 0 being completely transparent and 255 being opaque.
      */
     private int transparency = 255;
+    
+    /**
+     * Incremented whenever the image may have been modified (including changes to the
+     * transparency), so that renderers can tell whether a cached copy is still valid.
+     * Access to the underlying image via getAwtImage() counts as a modification.
+     */
+    private int modCount = 0;
+    
+    /** Collision-checker-private data (cached collision masks) for this image */
+    private Object collisionData;
 
     /**
      * Create an image from an image file. Supported file formats are JPEG, GIF
@@ -242,6 +260,20 @@ public class GreenfootImage
         return clone;
     }
     
+    /**
+     * Get a copy of this image as it is now, which will not be affected by any later
+     * modification of this image.  The image data is shared until this image is next
+     * modified, at which point this image makes its own copy.  Only used for pipelined
+     * rendering, where the world is rendered from snapshots on another thread.
+     */
+    GreenfootImage getSnapshot()
+    {
+        if (! copyOnWrite) {
+            sharedWithSnapshot = true;
+        }
+        return getCopyOnWriteClone();
+    }
+    
     /**
      * Creates a copy of the cached image
      * @param cachedImage image to copy
@@ -315,6 +347,8 @@ public class GreenfootImage
         }
         this.image = getBufferedImage(image);
         copyOnWrite = false;
+        sharedWithSnapshot = false;
+        modCount++;
     }
 
 
@@ -336,9 +370,7 @@ public class GreenfootImage
      */
     private Graphics2D getGraphics()
     {
-        if (copyOnWrite) {
         ensureWritableImage();
-        }
         Graphics2D graphics = image.createGraphics();
         initGraphics(graphics);
         return graphics;
@@ -387,10 +419,13 @@ public class GreenfootImage
      */
     public void rotate(int degrees)
     {
+        if (useCachedTransform(ImageTransformCache.ROTATE, degrees, 0)) {
+            return;
+        }
         AffineTransform tx = AffineTransform.getRotateInstance(Math.toRadians(degrees), getWidth()/2., getHeight()/2.);
         AffineTransformOp op = new AffineTransformOp(tx, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
         BufferedImage newImage = GraphicsUtilities.createCompatibleTranslucentImage(getWidth(), getHeight());
-        setImage(op.filter(image, newImage));
+        setTransformedImage(op.filter(image, newImage), ImageTransformCache.ROTATE, degrees, 0);
     }
 
     /**
@@ -403,6 +438,9 @@ public class GreenfootImage
     {
         if (width == image.getWidth() && height == image.getHeight())
             return;
+        if (useCachedTransform(ImageTransformCache.SCALE, width, height)) {
+            return;
+        }
         
         // getScaledInstance is too slow, see: http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6196792
         // This is adapted from: http://java.sun.com/products/java-media/2D/reference/faqs/index.html#Q_How_do_I_create_a_resized_copy
@@ -412,7 +450,45 @@ public class GreenfootImage
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
         g.drawImage(image, 0, 0, width, height, null);
         g.dispose();
-        setImage(scaled);
+        setTransformedImage(scaled, ImageTransformCache.SCALE, width, height);
+    }
+    
+    /**
+     * If this image is copy-on-write (so that its data won't change), and the result of
+     * the given transformation of its data is cached, replace the data with the (shared)
+     * result.
+     * 
+     * @return  true if the cached result was used.
+     */
+    private boolean useCachedTransform(int operation, int a, int b)
+    {
+        if (! copyOnWrite) {
+            return false;
+        }
+        BufferedImage result = ImageTransformCache.getInstance().get(image, operation, a, b);
+        if (result == null) {
+            return false;
+        }
+        image = result;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * Replace the data of this image with the result of a transformation. If this image is
+     * copy-on-write, the result is cached and this image remains copy-on-write (sharing
+     * the result with the cache).
+     */
+    private void setTransformedImage(BufferedImage result, int operation, int a, int b)
+    {
+        if (copyOnWrite) {
+            ImageTransformCache.getInstance().put(image, operation, a, b, result);
+            image = result;
+            modCount++;
+        }
+        else {
+            setImage(result);
+        }
     }
 
     /**
@@ -486,6 +562,70 @@ public class GreenfootImage
             g.setComposite(oldComposite);
         }
     }
+
+    /**
+     * Get the modification count of this image. If the count is unchanged, the
+     * image contents (and transparency) are unchanged.
+     */
+    int getModCount()
+    {
+        return modCount;
+    }
+    
+    /**
+     * Set collision-checker-private data for this image.
+     */
+    void setCollisionData(Object o)
+    {
+        collisionData = o;
+    }
+    
+    /**
+     * Get the collision-checker-private data for this image.
+     */
+    Object getCollisionData()
+    {
+        return collisionData;
+    }
+    
+    /**
+     * Copy the pixels of this image, as non-premultiplied ARGB values, into the given array
+     * (one row at a time, with no gaps). The image is not made writable, so a shared
+     * copy-on-write image remains shared.
+     */
+    void getPixels(int[] dest)
+    {
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), dest, 0, image.getWidth());
+    }
+    
+    /**
+     * Draw this image several times at the given locations, setting up the
+     * transparency only once for all of them.
+     * 
+     * @param xs  The x coordinates at which to draw the image
+     * @param ys  The y coordinates at which to draw the image
+     * @param count  The number of locations (from the start of xs and ys) to use
+     */
+    void drawImages(Graphics2D g, int[] xs, int[] ys, int count, boolean useTransparency)
+    {
+        Composite oldComposite = null;
+        if(useTransparency) {
+            float opacity = getTransparency() / 255f;
+            if(opacity < 1) {
+                if(opacity < 0) opacity = 0;
+                oldComposite = g.getComposite();
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+            }
+        }
+        
+        for (int i = 0; i < count; i++) {
+            g.drawImage(image, xs[i], ys[i], null);
+        }
+
+        if(oldComposite != null) {
+            g.setComposite(oldComposite);
+        }
+    }
     
     /**
      * Set the current font. This font will be used for subsequent text operations.
@@ -505,7 +645,11 @@ public class GreenfootImage
     public greenfoot.Font getFont()
     {
         if (currentFont == null) {
-            currentFont = new greenfoot.Font(getGraphics().getFont());
+            // Not via getGraphics(), since that counts as a modification:
+            Graphics2D graphics = image.createGraphics();
+            initGraphics(graphics);
+            currentFont = new greenfoot.Font(graphics.getFont());
+            graphics.dispose();
         }
         return currentFont;
     }
@@ -572,6 +716,7 @@ public class GreenfootImage
         }
 
         this.transparency = t;
+        modCount++;
     }
 
     /**
@@ -852,13 +997,15 @@ public class GreenfootImage
      */
     private void ensureWritableImage()
     {
-        if (copyOnWrite) {
+        modCount++;
+        if (copyOnWrite || sharedWithSnapshot) {
             BufferedImage bImage = GraphicsUtilities.createCompatibleTranslucentImage(image.getWidth(null), image.getHeight(null));
             Graphics2D graphics = bImage.createGraphics();
             initGraphics(graphics);
             graphics.drawImage(image, 0, 0, null);
             image = bImage;
             copyOnWrite = false;
+            sharedWithSnapshot = false;
             graphics.dispose();
         }
     }
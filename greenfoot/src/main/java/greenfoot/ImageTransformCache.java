@@ -0,0 +1,251 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the results of image transformations (rotation and scaling), so that
+ * repeatedly applying the same transformation to the same image doesn't need to
+ * create a new image each time.
+ * 
+ * <p>Entries are keyed on the identity of the source image data plus the transformation
+ * parameters. This is only valid while the source data doesn't change, so only the
+ * (shared, and therefore never written) data of copy-on-write images is used as a key,
+ * and the results are likewise shared with copy-on-write images.
+ * 
+ * <p>The total size of the cached results, and of the source images which they keep
+ * alive, is limited; the least recently used results are discarded to stay within the
+ * limit.
+ */
+@OnThread(Tag.Any)
+final class ImageTransformCache
+{
+    /** The default limit on the size of the cached results (and their sources), in bytes */
+    public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+    
+    public static final int ROTATE = 0;
+    public static final int SCALE = 1;
+    
+    private static final ImageTransformCache instance = new ImageTransformCache(DEFAULT_BUDGET);
+    
+    private final long budget;
+    /** The cached results, in least-recently-used first order */
+    private final LinkedHashMap<Key, BufferedImage> results = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+    /** The number of cached results for each source image (which the keys keep alive) */
+    private final IdentityHashMap<BufferedImage, int[]> sourceCounts = new IdentityHashMap<>();
+    /** Key used for lookups, to avoid allocating one for each lookup */
+    private final Key probe = new Key(null, 0, 0, 0);
+    
+    private long bytes;
+    private long hits;
+    private long misses;
+    
+    /**
+     * Get the shared instance.
+     */
+    public static ImageTransformCache getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Construct a cache which holds at most the given number of bytes of results and
+     * source images.
+     */
+    public ImageTransformCache(long budget)
+    {
+        this.budget = budget;
+    }
+    
+    /**
+     * Get the cached result of a transformation, or null if not cached.
+     * 
+     * @param source  The data of the image being transformed (which must not be modified)
+     * @param operation  The transformation (ROTATE or SCALE)
+     * @param a  The first parameter of the transformation (the angle, or the width)
+     * @param b  The second parameter of the transformation (0, or the height)
+     * @return  The result, which must not be modified, or null
+     */
+    public synchronized BufferedImage get(BufferedImage source, int operation, int a, int b)
+    {
+        probe.set(source, operation, a, b);
+        BufferedImage result = results.get(probe);
+        probe.set(null, 0, 0, 0);
+        if (result != null) {
+            hits++;
+        }
+        else {
+            misses++;
+        }
+        return result;
+    }
+    
+    /**
+     * Add the result of a transformation to the cache. Neither the source nor the
+     * result may be modified afterwards.
+     */
+    public synchronized void put(BufferedImage source, int operation, int a, int b, BufferedImage result)
+    {
+        long size = sizeOf(result);
+        if (! sourceCounts.containsKey(source)) {
+            size += sizeOf(source);
+        }
+        if (size > budget / 2) {
+            // Not worth evicting most of the other results for
+            return;
+        }
+        
+        Key key = new Key(source, operation, a, b);
+        BufferedImage old = results.put(key, result);
+        if (old != null) {
+            bytes -= sizeOf(old);
+            bytes += sizeOf(result);
+        }
+        else {
+            addSource(source);
+            bytes += sizeOf(result);
+        }
+        
+        Iterator<Map.Entry<Key, BufferedImage>> i = results.entrySet().iterator();
+        while (bytes > budget && i.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = i.next();
+            bytes -= sizeOf(entry.getValue());
+            removeSource(entry.getKey().source);
+            i.remove();
+        }
+    }
+    
+    /**
+     * Record that a result for the given source has been added, counting the size of the
+     * source if it is not already kept by another result.
+     */
+    private void addSource(BufferedImage source)
+    {
+        int[] count = sourceCounts.get(source);
+        if (count == null) {
+            sourceCounts.put(source, new int[] {1});
+            bytes += sizeOf(source);
+        }
+        else {
+            count[0]++;
+        }
+    }
+    
+    /**
+     * Record that a result for the given source has been removed.
+     */
+    private void removeSource(BufferedImage source)
+    {
+        int[] count = sourceCounts.get(source);
+        if (--count[0] == 0) {
+            sourceCounts.remove(source);
+            bytes -= sizeOf(source);
+        }
+    }
+    
+    /**
+     * Remove all results from the cache.
+     */
+    public synchronized void clear()
+    {
+        results.clear();
+        sourceCounts.clear();
+        bytes = 0;
+    }
+    
+    /**
+     * Get the total size of the cached results and their sources, in bytes (approximately).
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+    
+    /**
+     * Get the number of lookups which found a result.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+    
+    /**
+     * Get the number of lookups which didn't find a result.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+    
+    private static long sizeOf(BufferedImage image)
+    {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+    
+    /**
+     * The key of a cached result. The source image is compared by identity.
+     */
+    private static final class Key
+    {
+        private BufferedImage source;
+        private int operation;
+        private int a;
+        private int b;
+        
+        Key(BufferedImage source, int operation, int a, int b)
+        {
+            set(source, operation, a, b);
+        }
+        
+        void set(BufferedImage source, int operation, int a, int b)
+        {
+            this.source = source;
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+        }
+        
+        @Override
+        public boolean equals(Object o)
+        {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return source == other.source && operation == other.operation && a == other.a && b == other.b;
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return ((System.identityHashCode(source) * 31 + operation) * 31 + a) * 31 + b;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -41,6 +41,36 @@ public class ImageVisitor
         image.drawImage(g, x, y, observer, useTranparency);
     }
     
+    public static void drawImages(GreenfootImage image, Graphics2D g, int[] xs, int[] ys, int count, boolean useTransparency)
+    {
+        image.drawImages(g, xs, ys, count, useTransparency);
+    }
+    
+    public static int getModCount(GreenfootImage image)
+    {
+        return image.getModCount();
+    }
+    
+    public static void getPixels(GreenfootImage image, int[] dest)
+    {
+        image.getPixels(dest);
+    }
+    
+    public static void setCollisionData(GreenfootImage image, Object o)
+    {
+        image.setCollisionData(o);
+    }
+    
+    public static Object getCollisionData(GreenfootImage image)
+    {
+        return image.getCollisionData();
+    }
+    
+    public static GreenfootImage getSnapshot(GreenfootImage image)
+    {
+        return image.getSnapshot();
+    }
+    
     public static boolean equal(GreenfootImage image1, GreenfootImage image2)
     {
         return GreenfootImage.equal(image1, image2);
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -50,7 +50,7 @@ public class TreeActorSet extends AbstractSet<Actor>
      */
     public TreeActorSet()
     {
-        subSets = new LinkedList<ActorSet>();
+        subSets = new ArrayList<ActorSet>();
         generalSet = new ActorSet();
         subSets.add(generalSet);
         
@@ -163,11 +163,44 @@ public class TreeActorSet extends AbstractSet<Actor>
     public int size()
     {
         int size = 0;
-        for (Iterator<ActorSet> i = subSets.iterator(); i.hasNext(); ) {
-            size += i.next().size();
+        for (int i = 0; i < subSets.size(); i++) {
+            size += subSets.get(i).size();
         }
         return size;
     }
+    
+    /**
+     * Take a snapshot of the actors in this set, in iteration order, which is not affected
+     * by later changes to the set. Unlike copying the set into a new collection, this
+     * allocates nothing if the given array is large enough, so the same array can be
+     * re-used for each snapshot.
+     * 
+     * @param buffer  The array to copy the actors into, if it is large enough
+     * @return  The array holding the snapshot: either buffer, or a new array if buffer was
+     *          too small. If the array is longer than the number of actors, the element
+     *          following the last actor (and any following elements which were previously
+     *          used) are set to null.
+     */
+    @OnThread(Tag.Simulation)
+    public Actor[] snapshot(Actor[] buffer)
+    {
+        int size = size();
+        if (buffer.length < size) {
+            // Leave some room for growth, to avoid re-allocating every time:
+            buffer = new Actor[size + size / 2];
+        }
+        
+        int count = 0;
+        for (int i = 0; i < subSets.size(); i++) {
+            count = subSets.get(i).copyInto(buffer, count);
+        }
+        
+        // Clear out any stale entries from a previous (larger) snapshot:
+        for (int i = count; i < buffer.length && buffer[i] != null; i++) {
+            buffer[i] = null;
+        }
+        return buffer;
+    }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2021  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2016,2021,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -23,7 +23,6 @@ package greenfoot;
 
 
 import greenfoot.collision.ColManager;
-import greenfoot.collision.CollisionChecker;
 import greenfoot.collision.ibsp.Rect;
 import greenfoot.core.TextLabel;
 import greenfoot.core.WorldHandler;
@@ -60,9 +59,11 @@ public abstract class World
 {    
     private static final greenfoot.Color DEFAULT_BACKGROUND_COLOR = greenfoot.Color.WHITE;
 
-    // private CollisionChecker collisionChecker = new GridCollisionChecker();
-    // private CollisionChecker collisionChecker = new BVHInsChecker();
-    private CollisionChecker collisionChecker = new ColManager();
+    // Index of the actors in the world by class, used by getObjects and by the collision checker:
+    private final ActorClassIndex classIndex = new ActorClassIndex();
+
+    // The collision checking backend can be chosen via setCollisionBackend:
+    private ColManager collisionChecker = new ColManager(classIndex);
     
     //{
     //    collisionChecker = new CollisionProfiler(collisionChecker);
@@ -95,6 +96,9 @@ public abstract class World
     
     /** Whether actors are bound to stay inside the world */
     private boolean isBounded;
+    
+    /** Whether collisions between actors are checked using their images' pixels */
+    private boolean pixelPerfectCollision;
 
     /**
      * Construct a new world. The size of the world (in number of cells) and the
@@ -356,6 +360,34 @@ public abstract class World
         objectsInPaintOrder.setClassOrder(true, classes);
     }
     
+    /**
+     * Set whether collisions between actors in this world take the transparency of their
+     * images into account. Normally, actors are considered to touch if their (rotated)
+     * image rectangles overlap, even if the overlapping parts are transparent. If
+     * pixel-perfect collision is turned on, actors only touch if some part of their images
+     * which is at least half opaque overlaps.
+     * 
+     * <p>This affects the collision methods of the Actor class which take the actor's
+     * image into account (such as isTouching and getIntersectingObjects) and those which
+     * look at the centre of a cell (such as getObjectsAtOffset). It does not affect the
+     * Actor.intersects method. Pixel-perfect collision checking is slower, and images
+     * which are rotated are checked at the nearest multiple of 3 degrees.
+     * 
+     * @param pixelPerfect  Whether to use pixel-perfect collision checking
+     */
+    public void setPixelPerfectCollision(boolean pixelPerfect)
+    {
+        pixelPerfectCollision = pixelPerfect;
+    }
+    
+    /**
+     * Check whether pixel-perfect collision checking is in use in this world.
+     */
+    boolean isPixelPerfectCollision()
+    {
+        return pixelPerfectCollision;
+    }
+    
     /**
      * Set the act order of objects in the world. Act order is specified
      * by class: objects of one class will always act before objects
@@ -428,6 +460,7 @@ public abstract class World
         }
         
         objectsDisordered.add(object);
+        classIndex.add(object);
         addInPaintOrder(object);
         addInActOrder(object);
 
@@ -456,6 +489,7 @@ public abstract class World
         }
         
         objectsDisordered.remove(object);
+        classIndex.remove(object);
         collisionChecker.removeObject(object);
         if (objectsDisordered != objectsInActOrder && objectsInActOrder != null) {
             objectsInActOrder.remove(object);
@@ -494,7 +528,13 @@ public abstract class World
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public <A> List<A> getObjects(Class<A> cls)
     {
-        List result = new ArrayList();
+        if (cls != null && classIndex.isSingleClass(cls)) {
+            return classIndex.getObjects(cls);
+        }
+        
+        // Otherwise pick the actors out from the world's own set, so that actors of
+        // several classes are in the same order as in the world:
+        List result = new ArrayList(cls == null ? objectsDisordered.size() : classIndex.count(cls));
         
         Iterator<Actor> i = objectsDisordered.iterator();
         while (i.hasNext()) {
@@ -809,6 +849,23 @@ public abstract class World
         return collisionChecker.getOneIntersectingObject(object, (Class) cls);
     }
     
+    /**
+     * Set the backend used for collision checking in this world.
+     */
+    void setCollisionBackend(ColManager.Backend backend)
+    {
+        collisionChecker.setBackend(backend);
+    }
+    
+    /**
+     * Get the backend currently used for collision checking in this world (if the
+     * backend is chosen automatically, this is the backend it has chosen).
+     */
+    ColManager.Backend getActiveCollisionBackend()
+    {
+        return collisionChecker.getActiveBackend();
+    }
+    
     /**
      * Get the list of all objects in the world. This returns a live list which
      * should not be modified by the caller. If iterating over this list, it
@@ -849,6 +906,15 @@ public abstract class World
         //collisionChecker.paintDebug(g); 
     }
     
+    /**
+     * Check whether paintDebug paints anything, so that renderers which paint it separately
+     * from the world can skip it. This must return true if paintDebug is changed to paint.
+     */
+    boolean hasDebugPainting()
+    {
+        return false;
+    }
+    
     // =================================================
     //
     // PRIVATE MEHTHODS
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2010,2011,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2010,2011,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,6 +21,7 @@
  */
 package greenfoot;
 
+import greenfoot.collision.ColManager;
 import greenfoot.core.TextLabel;
 import threadchecker.OnThread;
 import threadchecker.Tag;
@@ -81,11 +82,33 @@ public class WorldVisitor
         w.startSequence();
     }
 
+    /**
+     * Set the backend used for collision checking in the given world, for instance to
+     * compare the performance of the backends on a particular scenario.
+     */
+    public static void setCollisionBackend(World w, ColManager.Backend backend)
+    {
+        w.setCollisionBackend(backend);
+    }
+    
+    /**
+     * Get the backend currently used for collision checking in the given world.
+     */
+    public static ColManager.Backend getActiveCollisionBackend(World w)
+    {
+        return w.getActiveCollisionBackend();
+    }
+
     public static void paintDebug(World world, Graphics g)
     {
         world.paintDebug(g);
     }
     
+    public static boolean hasDebugPainting(World world)
+    {
+        return world.hasDebugPainting();
+    }
+    
     /**
      * Convert a location in pixels into a cell location
      */
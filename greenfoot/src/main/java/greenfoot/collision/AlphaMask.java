@@ -0,0 +1,304 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.WorldVisitor;
+
+import java.util.Arrays;
+
+/**
+ * A bit mask of the solid (at least half opaque) pixels of an image, as drawn
+ * in the world at a particular rotation, used for pixel-perfect collision checking.
+ * 
+ * <p>Each row of the mask is packed into 64-bit words, so that two masks can be
+ * compared 64 pixels at a time. Masks are cached with the image (one per rotation
+ * bucket of {@value #ROTATION_BUCKET_DEGREES} degrees) and are rebuilt if the image
+ * is modified.
+ * 
+ * <p>Positions are relative to the top-left pixel of the cell containing the actor,
+ * and follow the way in which actors are painted: the image is centred on the middle
+ * of the cell (rounding towards the top-left) and rotated around the middle of the cell.
+ */
+public final class AlphaMask
+{
+    /** The size of a rotation bucket; rotations are rounded to a multiple of this */
+    public static final int ROTATION_BUCKET_DEGREES = 3;
+    private static final int ROTATION_BUCKETS = 360 / ROTATION_BUCKET_DEGREES;
+    /** The most masks cached for one image, to bound the memory used by large images */
+    private static final int MAX_MASKS_PER_IMAGE = 24;
+    /** The smallest alpha value for a pixel to be considered solid */
+    private static final int ALPHA_THRESHOLD = 128;
+    
+    /** Position of the mask's top-left pixel, relative to the cell */
+    private final int offsetX;
+    private final int offsetY;
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    /** The mask, one row at a time; bit n of a word is the pixel at n in that word's range */
+    private final long[] bits;
+    
+    private AlphaMask(int offsetX, int offsetY, int width, int height)
+    {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.bits = new long[wordsPerRow * height];
+    }
+    
+    /**
+     * Check whether the solid pixels of two actors' images overlap. If an actor has
+     * no image, it is treated as a single point at the centre of its cell.
+     */
+    public static boolean intersects(Actor actor, Actor other)
+    {
+        GreenfootImage image = ActorVisitor.getDisplayImage(actor);
+        GreenfootImage otherImage = ActorVisitor.getDisplayImage(other);
+        int cellSize = WorldVisitor.getCellSize(ActorVisitor.getWorld(actor));
+        if (image == null || otherImage == null) {
+            if (image == null && otherImage == null) {
+                return ActorVisitor.getX(actor) == ActorVisitor.getX(other)
+                        && ActorVisitor.getY(actor) == ActorVisitor.getY(other);
+            }
+            Actor point = image == null ? actor : other;
+            Actor shape = image == null ? other : actor;
+            return containsPoint(shape, ActorVisitor.getX(point) * cellSize + cellSize / 2,
+                    ActorVisitor.getY(point) * cellSize + cellSize / 2);
+        }
+        
+        AlphaMask mask = getMask(image, ActorVisitor.getRotation(actor), cellSize);
+        AlphaMask otherMask = getMask(otherImage, ActorVisitor.getRotation(other), cellSize);
+        int dx = (ActorVisitor.getX(other) - ActorVisitor.getX(actor)) * cellSize + otherMask.offsetX - mask.offsetX;
+        int dy = (ActorVisitor.getY(other) - ActorVisitor.getY(actor)) * cellSize + otherMask.offsetY - mask.offsetY;
+        return mask.overlaps(otherMask, dx, dy);
+    }
+    
+    /**
+     * Check whether the given point (in pixels) is on a solid pixel of the actor's image.
+     */
+    public static boolean containsPoint(Actor actor, int px, int py)
+    {
+        GreenfootImage image = ActorVisitor.getDisplayImage(actor);
+        if (image == null) {
+            return false;
+        }
+        int cellSize = WorldVisitor.getCellSize(ActorVisitor.getWorld(actor));
+        AlphaMask mask = getMask(image, ActorVisitor.getRotation(actor), cellSize);
+        return mask.isSet(px - ActorVisitor.getX(actor) * cellSize - mask.offsetX,
+                py - ActorVisitor.getY(actor) * cellSize - mask.offsetY);
+    }
+    
+    /**
+     * Get the mask for the given image at the given rotation, in a world with the given
+     * cell size, from the image's cache if possible.
+     */
+    public static AlphaMask getMask(GreenfootImage image, int rotation, int cellSize)
+    {
+        int modCount = ImageVisitor.getModCount(image);
+        Object data = ImageVisitor.getCollisionData(image);
+        MaskSet masks;
+        if (data instanceof MaskSet && ((MaskSet) data).modCount == modCount
+                && ((MaskSet) data).cellSize == cellSize) {
+            masks = (MaskSet) data;
+        }
+        else {
+            masks = new MaskSet(modCount, cellSize);
+            ImageVisitor.setCollisionData(image, masks);
+        }
+        
+        int bucket = Math.floorMod(Math.round(rotation / (float) ROTATION_BUCKET_DEGREES), ROTATION_BUCKETS);
+        AlphaMask mask = masks.masks[bucket];
+        if (mask == null) {
+            if (masks.count == MAX_MASKS_PER_IMAGE) {
+                // Many rotations in use; start again rather than keep them all
+                masks.clear();
+            }
+            if (masks.pixels == null) {
+                masks.pixels = new int[image.getWidth() * image.getHeight()];
+                ImageVisitor.getPixels(image, masks.pixels);
+            }
+            mask = create(masks.pixels, image.getWidth(), image.getHeight(),
+                    bucket * ROTATION_BUCKET_DEGREES, cellSize);
+            masks.masks[bucket] = mask;
+            masks.count++;
+        }
+        return mask;
+    }
+    
+    /**
+     * Create the mask for an image (given as ARGB pixels) rotated by the given number of degrees.
+     */
+    private static AlphaMask create(int[] pixels, int imageWidth, int imageHeight, int degrees, int cellSize)
+    {
+        // The image is painted with its top-left here, and rotated around the cell centre:
+        double centre = cellSize / 2.0;
+        double left = Math.floor(centre - imageWidth / 2.0);
+        double top = Math.floor(centre - imageHeight / 2.0);
+        
+        if (degrees == 0) {
+            AlphaMask mask = new AlphaMask((int) left, (int) top, imageWidth, imageHeight);
+            for (int y = 0; y < imageHeight; y++) {
+                for (int x = 0; x < imageWidth; x++) {
+                    if ((pixels[y * imageWidth + x] >>> 24) >= ALPHA_THRESHOLD) {
+                        mask.set(x, y);
+                    }
+                }
+            }
+            return mask;
+        }
+        
+        double radians = Math.toRadians(degrees);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        
+        // Find the extent of the rotated image:
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            double x = left + ((corner & 1) == 0 ? 0 : imageWidth) - centre;
+            double y = top + ((corner & 2) == 0 ? 0 : imageHeight) - centre;
+            double rx = centre + cos * x - sin * y;
+            double ry = centre + sin * x + cos * y;
+            minX = Math.min(minX, rx);
+            maxX = Math.max(maxX, rx);
+            minY = Math.min(minY, ry);
+            maxY = Math.max(maxY, ry);
+        }
+        int offsetX = (int) Math.floor(minX);
+        int offsetY = (int) Math.floor(minY);
+        AlphaMask mask = new AlphaMask(offsetX, offsetY,
+                (int) Math.ceil(maxX) - offsetX, (int) Math.ceil(maxY) - offsetY);
+        
+        // Sample the image at the centre of each mask pixel, rotated back:
+        for (int my = 0; my < mask.height; my++) {
+            double py = offsetY + my + 0.5 - centre;
+            for (int mx = 0; mx < mask.width; mx++) {
+                double px = offsetX + mx + 0.5 - centre;
+                int u = (int) Math.floor(cos * px + sin * py + centre - left);
+                int v = (int) Math.floor(-sin * px + cos * py + centre - top);
+                if (u >= 0 && u < imageWidth && v >= 0 && v < imageHeight
+                        && (pixels[v * imageWidth + u] >>> 24) >= ALPHA_THRESHOLD) {
+                    mask.set(mx, my);
+                }
+            }
+        }
+        return mask;
+    }
+    
+    private void set(int x, int y)
+    {
+        bits[y * wordsPerRow + (x >>> 6)] |= 1L << (x & 63);
+    }
+    
+    /**
+     * Check whether the given pixel of the mask is set. Pixels outside the mask are not set.
+     */
+    private boolean isSet(int x, int y)
+    {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << (x & 63))) != 0;
+    }
+    
+    /**
+     * Check whether this mask overlaps another mask, positioned at the given offset from
+     * this one.
+     */
+    private boolean overlaps(AlphaMask other, int dx, int dy)
+    {
+        // Only the area covered by both masks need be checked:
+        int x0 = Math.max(0, dx);
+        int x1 = Math.min(width, dx + other.width);
+        int y0 = Math.max(0, dy);
+        int y1 = Math.min(height, dy + other.height);
+        if (x0 >= x1 || y0 >= y1) {
+            return false;
+        }
+        
+        for (int y = y0; y < y1; y++) {
+            int row = y * wordsPerRow;
+            int otherRow = (y - dy) * other.wordsPerRow;
+            for (int x = x0; x < x1; x += 64) {
+                long word = getBits(row, x, wordsPerRow);
+                long otherWord = other.getBits(otherRow, x - dx, other.wordsPerRow);
+                int count = x1 - x;
+                if (count < 64) {
+                    word &= (1L << count) - 1;
+                }
+                if ((word & otherWord) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get 64 bits of a row, starting at the given bit (which need not be word-aligned).
+     * Bits beyond the end of the row are zero.
+     */
+    private long getBits(int rowStart, int bit, int rowWords)
+    {
+        int word = bit >>> 6;
+        int shift = bit & 63;
+        long result = bits[rowStart + word] >>> shift;
+        if (shift != 0 && word + 1 < rowWords) {
+            result |= bits[rowStart + word + 1] << (64 - shift);
+        }
+        return result;
+    }
+    
+    /**
+     * The masks cached for one image.
+     */
+    private static final class MaskSet
+    {
+        /** The image modification count and cell size for which the masks are valid */
+        final int modCount;
+        final int cellSize;
+        /** The image pixels, kept while rotated masks may still be needed */
+        int[] pixels;
+        final AlphaMask[] masks = new AlphaMask[ROTATION_BUCKETS];
+        int count;
+        
+        MaskSet(int modCount, int cellSize)
+        {
+            this.modCount = modCount;
+            this.cellSize = cellSize;
+        }
+        
+        void clear()
+        {
+            Arrays.fill(masks, null);
+            count = 0;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -22,9 +22,13 @@
 package greenfoot.collision;
 
 import greenfoot.Actor;
+import greenfoot.ActorClassIndex;
+import greenfoot.ActorVisitor;
 import greenfoot.collision.ibsp.IBSPColChecker;
+import greenfoot.collision.ibsp.Rect;
 
 import java.awt.Graphics;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,10 +44,84 @@ import java.util.Map.Entry;
  * itself but optimises the collision checking by deciding how to delegate
  * collision checking to other collision checkers.
  * 
+ * <p>The collision checker used can be chosen (see {@link Backend}). By default it
+ * is chosen automatically, and may be changed while the world runs: the queries and
+ * updates made are counted, and every so often the counts, along with
+ * the number of actors and their sizes, are used to decide whether the tree-based
+ * checker or the grid-based checker is likely to be the better fit. The decision
+ * depends only on what the scenario does (not on timings) so that a scenario
+ * behaves the same way each time it is run.
+ * 
  * @author Poul Henriksen
  */
 public class ColManager implements CollisionChecker
 {
+    /**
+     * The available collision checking backends.
+     */
+    public static enum Backend
+    {
+        /** Choose between the other backends automatically, and switch as needed */
+        AUTO,
+        /** Use a binary space partitioning tree ({@link IBSPColChecker}) */
+        BSP,
+        /** Use a uniform grid ({@link SpatialHashChecker}) */
+        GRID
+    }
+    
+    /**
+     * The kinds of collision query, for profiling (see {@link QueryTimingListener}).
+     */
+    public static enum QueryType
+    {
+        OBJECTS_AT("getObjectsAt"),
+        INTERSECTING_OBJECTS("getIntersectingObjects"),
+        ONE_INTERSECTING_OBJECT("getOneIntersectingObject"),
+        ONE_OBJECT_AT("getOneObjectAt"),
+        OBJECTS_IN_RANGE("getObjectsInRange"),
+        NEIGHBOURS("getNeighbours"),
+        OBJECTS_IN_DIRECTION("getObjectsInDirection"),
+        OBJECTS("getObjects");
+        
+        private final String methodName;
+        
+        private QueryType(String methodName)
+        {
+            this.methodName = methodName;
+        }
+        
+        /**
+         * Get the name of the World/Actor method which performs this kind of query.
+         */
+        public String getMethodName()
+        {
+            return methodName;
+        }
+    }
+    
+    /**
+     * A listener for the time taken by collision queries (in any world).  Called on the
+     * thread which made the query, after the query completes.
+     */
+    public static interface QueryTimingListener
+    {
+        public void queryTimed(QueryType type, long nanos);
+    }
+    
+    /** Listener told the time taken by each query, or null if queries are not being timed. */
+    private static volatile QueryTimingListener queryTimingListener;
+    
+    /** Number of sequences between re-evaluations of the automatically chosen backend. */
+    private static final int EVALUATE_INTERVAL = 50;
+    
+    /** Fewer actors than this are not worth the grid. */
+    private static final int GRID_MIN_ACTORS = 32;
+    /** Once using the grid, fewer actors than this move us back to the tree. */
+    private static final int GRID_LEAVE_ACTORS = 16;
+    /** The proportion of actors which must fit in a grid bucket for us to move to the grid. */
+    private static final double GRID_MIN_SMALL = 0.8;
+    /** Once using the grid, fewer actors than this proportion fitting a bucket moves us back. */
+    private static final double GRID_LEAVE_SMALL = 0.6;
 
     /** Map from classes to objects that are not part of the collision checking (yet). */
     private Map<Class<? extends Actor>, LinkedList<Actor>> freeObjects = new HashMap<Class<? extends Actor>, LinkedList<Actor>>();
@@ -53,6 +131,211 @@ public class ColManager implements CollisionChecker
     
     /** The actual collision checker. */
     private CollisionChecker collisionChecker = new IBSPColChecker();
+    
+    /** The backend chosen for this manager. */
+    private Backend backend = Backend.AUTO;
+    /** The backend actually in use (never AUTO). */
+    private Backend activeBackend = Backend.BSP;
+    /**
+     * The numbers of sequences, and of queries and updates passed to the collision checker,
+     * since the automatically chosen backend was last evaluated.  These are plain counts
+     * (rather than timings) so that keeping them costs next to nothing.
+     */
+    private int sequenceCount;
+    private long queryCount;
+    private long updateCount;
+    
+    private boolean initialized;
+    private int width;
+    private int height;
+    private int cellSize;
+    private boolean wrap;
+    
+    /**
+     * If there are at most this many actors of the class being checked against, they
+     * are checked directly rather than by using the collision checker.
+     */
+    private static final int DIRECT_CHECK_LIMIT = 16;
+    
+    /** Index of the actors in the world by class (null if not available). */
+    private final ActorClassIndex classIndex;
+    
+    /** Query used when checking actors directly. */
+    private final GOCollisionQuery directQuery = new GOCollisionQuery();
+
+    /**
+     * Set a listener to be told the time taken by each collision query, in all worlds.
+     * Queries are only timed while a listener is set.
+     * 
+     * @param listener  The listener, or null to stop timing
+     */
+    public static void setQueryTimingListener(QueryTimingListener listener)
+    {
+        queryTimingListener = listener;
+    }
+    
+    /**
+     * Get the start time for a query, if queries are being timed (otherwise 0).
+     */
+    private static long queryStart()
+    {
+        return queryTimingListener == null ? 0L : System.nanoTime();
+    }
+    
+    /**
+     * A query which began at the given start time (from {@link #queryStart()}) has finished.
+     */
+    private static void queryEnd(QueryType type, long start)
+    {
+        QueryTimingListener listener = queryTimingListener;
+        if (listener != null && start != 0L) {
+            listener.queryTimed(type, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Construct a ColManager without a class index.
+     */
+    public ColManager()
+    {
+        this(null);
+    }
+
+    /**
+     * Construct a ColManager which uses the given index of the world's actors by class
+     * to avoid geometric checks where possible. The index must be kept up to date with
+     * the actors in the world.
+     */
+    public ColManager(ActorClassIndex classIndex)
+    {
+        this.classIndex = classIndex;
+    }
+    
+    /**
+     * Set the backend to be used for collision checking. Any actors already in the
+     * collision checker are moved to the new one.
+     */
+    public void setBackend(Backend backend)
+    {
+        if (backend == this.backend) {
+            return;
+        }
+        this.backend = backend;
+        if (backend != Backend.AUTO && backend != activeBackend) {
+            switchBackend(backend);
+        }
+        resetCounts();
+    }
+    
+    /**
+     * Get the backend chosen for this manager (which may be AUTO).
+     */
+    public Backend getBackend()
+    {
+        return backend;
+    }
+    
+    /**
+     * Get the backend currently in use (never AUTO).
+     */
+    public Backend getActiveBackend()
+    {
+        return activeBackend;
+    }
+    
+    /**
+     * Replace the active checker by a new one for the given backend, moving all
+     * actors across.
+     */
+    private void switchBackend(Backend newBackend)
+    {
+        CollisionChecker newChecker = newBackend == Backend.GRID ? new SpatialHashChecker() : new IBSPColChecker();
+        if (initialized) {
+            newChecker.initialize(width, height, cellSize, wrap);
+        }
+        
+        List<Actor> actors = collisionChecker.getObjectsList();
+        for (Actor actor : actors) {
+            // Removing is necessary (not just tidy), as the tree checker keeps
+            // its data in the actors:
+            collisionChecker.removeObject(actor);
+        }
+        for (Actor actor : actors) {
+            newChecker.addObject(actor);
+        }
+        
+        collisionChecker = newChecker;
+        activeBackend = newBackend;
+    }
+    
+    /**
+     * Reset the counts used to choose the backend.
+     */
+    private void resetCounts()
+    {
+        sequenceCount = 0;
+        queryCount = 0;
+        updateCount = 0;
+    }
+    
+    /**
+     * Decide which backend should be used, based on the profile since the last
+     * evaluation, and switch to it if necessary.
+     */
+    private void evaluateBackend()
+    {
+        List<Actor> actors = collisionChecker.getObjectsList();
+        int actorCount = actors.size();
+        long queries = queryCount;
+        long updates = updateCount;
+        resetCounts();
+        if (actorCount == 0 || queries == 0) {
+            // No evidence either way
+            return;
+        }
+        
+        int bucketSize = SpatialHashChecker.getDefaultBucketSize(cellSize);
+        int small = 0;
+        for (Actor actor : actors) {
+            Rect r = ActorVisitor.getBoundingRect(actor);
+            if (r.getWidth() <= bucketSize && r.getHeight() <= bucketSize) {
+                small++;
+            }
+        }
+        double smallProportion = (double) small / actorCount;
+        
+        // The grid is cheap to update but its queries suffer if actors span many buckets,
+        // whereas the tree is costly to update. So, the grid is preferred for many small
+        // actors which move around. Different thresholds for moving to the grid and back
+        // avoid switching back and forth.
+        Backend preferred;
+        if (activeBackend == Backend.BSP) {
+            boolean useGrid = actorCount >= GRID_MIN_ACTORS && smallProportion >= GRID_MIN_SMALL
+                    && updates * 4 >= queries;
+            preferred = useGrid ? Backend.GRID : Backend.BSP;
+        }
+        else {
+            boolean useTree = actorCount < GRID_LEAVE_ACTORS || smallProportion < GRID_LEAVE_SMALL
+                    || updates * 8 < queries;
+            preferred = useTree ? Backend.BSP : Backend.GRID;
+        }
+        
+        if (preferred != activeBackend) {
+            switchBackend(preferred);
+        }
+    }
+    
+    /**
+     * Get the number of actors of the given class (or any class, if null) in the world,
+     * or -1 if not known.
+     */
+    private int countActors(Class<?> cls)
+    {
+        if (classIndex == null || cls == null) {
+            return -1;
+        }
+        return classIndex.count(cls);
+    }
 
     /**
      * Ensures that objects of this class are in the collision checker
@@ -68,6 +351,7 @@ public class ColManager implements CollisionChecker
                 for (Actor actor : entry.getValue()) {
                     collisionChecker.addObject(actor);
                 }
+                updateCount += entry.getValue().size();
                 collisionClasses.add(entry.getKey());
             }
             //long end = System.nanoTime();
@@ -88,6 +372,7 @@ public class ColManager implements CollisionChecker
                 for (Actor actor : classSet) {
                     collisionChecker.addObject(actor);
                 }
+                updateCount += classSet.size();
             }
         }
 
@@ -121,6 +406,7 @@ public class ColManager implements CollisionChecker
 
         if (collisionClasses.contains(cls)) {
             collisionChecker.addObject(actor);
+            updateCount++;
         }
         else {
             LinkedList<Actor> classSet = freeObjects.get(cls);
@@ -134,46 +420,118 @@ public class ColManager implements CollisionChecker
 
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
     {
-        prepareForCollision(actor, cls);
-        return collisionChecker.getIntersectingObjects(actor, cls);
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(actor, cls, result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        long start = queryStart();
+        try {
+            int count = countActors(cls);
+            if (count >= 0 && count <= DIRECT_CHECK_LIMIT) {
+                directQuery.init(cls, actor);
+                for (Actor other : classIndex.getView(cls)) {
+                    if (directQuery.checkCollision(other)) {
+                        result.add((T) other);
+                    }
+                }
+                return;
+            }
+        
+            prepareForCollision(actor, cls);
+            queryCount++;
+            collisionChecker.getIntersectingObjects(actor, cls, result);
+        }
+        finally {
+            queryEnd(QueryType.INTERSECTING_OBJECTS, start);
+        }
     }
 
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
     {
-        prepareForCollision(actor, cls);
-        return collisionChecker.getNeighbours(actor, distance, diag, cls);
+        long start = queryStart();
+        try {
+            if (countActors(cls) == 0) {
+                return new ArrayList<T>(0);
+            }
+            prepareForCollision(actor, cls);
+            queryCount++;
+            return collisionChecker.getNeighbours(actor, distance, diag, cls);
+        }
+        finally {
+            queryEnd(QueryType.NEIGHBOURS, start);
+        }
     }
 
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjects(Class<T> cls)
     {
-        List<T> result = collisionChecker.getObjects(cls);
+        long start = queryStart();
+        try {
+            List<T> result = collisionChecker.getObjects(cls);
 
-        Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
-        for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-            if (cls == null || cls.isAssignableFrom(entry.getKey())) {
-                result.addAll((Collection<? extends T>) entry.getValue());
+            Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
+            for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
+                if (cls == null || cls.isAssignableFrom(entry.getKey())) {
+                    result.addAll((Collection<? extends T>) entry.getValue());
+                }
             }
+            return result;
+        }
+        finally {
+            queryEnd(QueryType.OBJECTS, start);
         }
-        return result;
     }
 
     public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsAt(x, y, cls);
+        long start = queryStart();
+        try {
+            if (countActors(cls) == 0) {
+                return new ArrayList<T>(0);
+            }
+            makeCollisionObjects(cls, true);
+            queryCount++;
+            return collisionChecker.getObjectsAt(x, y, cls);
+        }
+        finally {
+            queryEnd(QueryType.OBJECTS_AT, start);
+        }
     }
 
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsInDirection(x, y, angle, length, cls);
+        long start = queryStart();
+        try {
+            if (countActors(cls) == 0) {
+                return new ArrayList<T>(0);
+            }
+            makeCollisionObjects(cls, true);
+            queryCount++;
+            return collisionChecker.getObjectsInDirection(x, y, angle, length, cls);
+        }
+        finally {
+            queryEnd(QueryType.OBJECTS_IN_DIRECTION, start);
+        }
     }
 
     public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsInRange(x, y, r, cls);
+        long start = queryStart();
+        try {
+            if (countActors(cls) == 0) {
+                return new ArrayList<T>(0);
+            }
+            makeCollisionObjects(cls, true);
+            queryCount++;
+            return collisionChecker.getObjectsInRange(x, y, r, cls);
+        }
+        finally {
+            queryEnd(QueryType.OBJECTS_IN_RANGE, start);
+        }
     }
 
     public List<Actor> getObjectsList()
@@ -181,20 +539,54 @@ public class ColManager implements CollisionChecker
         return getObjects(null);
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends Actor> T getOneIntersectingObject(Actor object, Class<T> cls)
     {
-        prepareForCollision(object, cls);
-        return collisionChecker.getOneIntersectingObject(object, cls);
+        long start = queryStart();
+        try {
+            int count = countActors(cls);
+            if (count >= 0 && count <= DIRECT_CHECK_LIMIT) {
+                directQuery.init(cls, object);
+                for (Actor other : classIndex.getView(cls)) {
+                    if (other != object && directQuery.checkCollision(other)) {
+                        return (T) other;
+                    }
+                }
+                return null;
+            }
+        
+            prepareForCollision(object, cls);
+            queryCount++;
+            return collisionChecker.getOneIntersectingObject(object, cls);
+        }
+        finally {
+            queryEnd(QueryType.ONE_INTERSECTING_OBJECT, start);
+        }
     }
 
     public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
     {
-        prepareForCollision(object, cls);
-        return collisionChecker.getOneObjectAt(object, dx, dy, cls);
+        long start = queryStart();
+        try {
+            if (countActors(cls) == 0) {
+                return null;
+            }
+            prepareForCollision(object, cls);
+            queryCount++;
+            return collisionChecker.getOneObjectAt(object, dx, dy, cls);
+        }
+        finally {
+            queryEnd(QueryType.ONE_OBJECT_AT, start);
+        }
     }
 
     public void initialize(int width, int height, int cellSize, boolean wrap)
     {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.wrap = wrap;
+        initialized = true;
         collisionChecker.initialize(width, height, cellSize, wrap);
     }
 
@@ -211,18 +603,23 @@ public class ColManager implements CollisionChecker
         }
         else {
             collisionChecker.removeObject(object);
+            updateCount++;
         }
     }
 
     public void startSequence()
     {
         collisionChecker.startSequence();
+        if (backend == Backend.AUTO && ++sequenceCount >= EVALUATE_INTERVAL) {
+            evaluateBackend();
+        }
     }
 
     public void updateObjectLocation(Actor object, int oldX, int oldY)
     {
         if (!freeObjects.containsKey(object.getClass())) {
             collisionChecker.updateObjectLocation(object, oldX, oldY);
+            updateCount++;
         }
     }
 
@@ -230,6 +627,7 @@ public class ColManager implements CollisionChecker
     {
         if (!freeObjects.containsKey(object.getClass())) {
             collisionChecker.updateObjectSize(object);
+            updateCount++;
         }
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -91,6 +91,24 @@ public interface CollisionChecker
      */
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls);
 
+    /**
+     * Adds all the objects that intersect the given object to the given list. This is
+     * the same as {@link #getIntersectingObjects(Actor, Class)}, except that the caller
+     * supplies the list, which allows the checker to avoid creating lists of its own.
+     * 
+     * @param actor
+     *            An Actor in the world
+     * @param cls
+     *            Class of objects to look for (null or Object.class will find
+     *            all classes)
+     * @param result
+     *            The list to which the objects found are added
+     */
+    public default <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        result.addAll(getIntersectingObjects(actor, cls));
+    }
+
     /**
      * Returns all objects with the logical location within the specified
      * circle. In other words an object A is within the range of an object B if
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -34,6 +34,8 @@ public class GOCollisionQuery implements CollisionQuery
 {
     private Class<?> cls;
     private Actor compareObject;
+    /** Whether to check collisions using the actors' image masks */
+    private boolean pixelPerfect;
 
     /**
      * Initialise.
@@ -46,6 +48,7 @@ public class GOCollisionQuery implements CollisionQuery
     {
         this.cls = cls;
         this.compareObject = actor;
+        this.pixelPerfect = actor != null && ActorVisitor.usesPixelCollision(actor);
     }        
     
     /**
@@ -61,7 +64,8 @@ public class GOCollisionQuery implements CollisionQuery
             return true;
         }
         else if(ActorVisitor.intersects(compareObject, other)) {
-            return true;
+            // The bounds intersect; check the pixels too if required:
+            return ! pixelPerfect || AlphaMask.intersects(compareObject, other);
         } 
         return false;
     }     
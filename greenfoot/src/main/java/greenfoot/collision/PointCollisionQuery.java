@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -56,6 +56,9 @@ public class PointCollisionQuery implements CollisionQuery
         if (cls != null && !cls.isInstance(actor)) {
             return false;
         }
-        return ActorVisitor.containsPoint(actor, x, y);
+        if (! ActorVisitor.containsPoint(actor, x, y)) {
+            return false;
+        }
+        return ! ActorVisitor.usesPixelCollision(actor) || AlphaMask.containsPoint(actor, x, y);
     }
 }
@@ -0,0 +1,439 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.collision.ibsp.Rect;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A collision checker which divides the world into a uniform grid of square buckets,
+ * each holding the actors whose bounds overlap it.  Adding, moving and removing an
+ * actor only touches the buckets it overlaps, which makes this checker well suited
+ * to worlds with many small, frequently moving actors (typical of cell-based worlds).
+ * It is less suited to worlds where actors are much larger than a bucket.
+ * 
+ * <p>Actors (and queries) which extend beyond the edge of the world are placed in
+ * the buckets at the edge, so unbounded worlds are handled correctly, if less
+ * efficiently.
+ * 
+ * <p>An actor which overlaps several buckets appears in each of them; a query visiting
+ * several buckets only considers such an actor in the first of its buckets which the
+ * query visits, so that no actor is considered twice.
+ */
+public class SpatialHashChecker implements CollisionChecker
+{
+    /** The smallest bucket size, in pixels, used by default */
+    private static final int MIN_BUCKET_SIZE = 32;
+    
+    private GOCollisionQuery actorQuery = new GOCollisionQuery();
+    private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
+    private PointCollisionQuery pointQuery = new PointCollisionQuery();
+    private InRangeQuery inRangeQuery = new InRangeQuery();
+    
+    private int cellSize;
+    /** The bucket size (in pixels), or 0 to choose one based on the cell size */
+    private int bucketSize;
+    private int bucketsAcross;
+    private int bucketsDown;
+    private Bucket[] buckets;
+    
+    /** The bucket range of each actor in the checker */
+    private final Map<Actor, Entry> entries = new IdentityHashMap<Actor, Entry>();
+
+    /**
+     * Construct a checker with a bucket size chosen to suit the world's cell size: one cell,
+     * or the smallest multiple of the cell size which is at least 32 pixels.
+     */
+    public SpatialHashChecker()
+    {
+        this(0);
+    }
+
+    /**
+     * Construct a checker with the given bucket size, in pixels.
+     */
+    public SpatialHashChecker(int bucketSize)
+    {
+        this.bucketSize = bucketSize;
+    }
+
+    public void initialize(int width, int height, int cellSize, boolean wrap)
+    {
+        this.cellSize = cellSize;
+        if (bucketSize <= 0) {
+            bucketSize = getDefaultBucketSize(cellSize);
+        }
+        bucketsAcross = Math.max(1, (width * cellSize + bucketSize - 1) / bucketSize);
+        bucketsDown = Math.max(1, (height * cellSize + bucketSize - 1) / bucketSize);
+        buckets = new Bucket[bucketsAcross * bucketsDown];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        
+        List<Actor> actors = new ArrayList<Actor>(entries.keySet());
+        entries.clear();
+        for (Actor actor : actors) {
+            addObject(actor);
+        }
+    }
+    
+    /**
+     * Get the bucket size, in pixels, used by default for a world with the given cell size.
+     */
+    public static int getDefaultBucketSize(int cellSize)
+    {
+        return cellSize * ((MIN_BUCKET_SIZE + cellSize - 1) / cellSize);
+    }
+    
+    /**
+     * Get the bucket size in use, in pixels.
+     */
+    public int getBucketSize()
+    {
+        return bucketSize;
+    }
+
+    public void addObject(Actor actor)
+    {
+        Entry entry = new Entry();
+        setRange(entry, ActorVisitor.getBoundingRect(actor));
+        entries.put(actor, entry);
+        addToBuckets(actor, entry);
+    }
+
+    public void removeObject(Actor object)
+    {
+        Entry entry = entries.remove(object);
+        if (entry != null) {
+            removeFromBuckets(object, entry);
+        }
+    }
+
+    public void updateObjectLocation(Actor object, int oldX, int oldY)
+    {
+        updateObject(object);
+    }
+
+    public void updateObjectSize(Actor object)
+    {
+        updateObject(object);
+    }
+    
+    /**
+     * Move an actor to the right buckets for its current bounds, if they have changed.
+     */
+    private void updateObject(Actor object)
+    {
+        Entry entry = entries.get(object);
+        if (entry == null) {
+            return;
+        }
+        
+        Rect bounds = ActorVisitor.getBoundingRect(object);
+        if (bucketX(bounds.getX()) == entry.minX && bucketY(bounds.getY()) == entry.minY
+                && bucketX(bounds.getRight()) == entry.maxX && bucketY(bounds.getTop()) == entry.maxY) {
+            return;
+        }
+        
+        removeFromBuckets(object, entry);
+        setRange(entry, bounds);
+        addToBuckets(object, entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
+    {
+        int px = x * cellSize + cellSize / 2;
+        int py = y * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (List<T>) getIntersectingObjects(px, py, px, py, pointQuery, null);
+    }
+
+    public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(actor, cls, result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        actorQuery.init(cls, actor);
+        getIntersectingObjects(r.getX(), r.getY(), r.getRight(), r.getTop(), actorQuery, null, (List<Actor>) result);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
+    {
+        int halfCell = cellSize / 2;
+        int size = 2 * r * cellSize;
+        int left = (x - r) * cellSize + halfCell;
+        int top = (y - r) * cellSize + halfCell;
+        
+        actorQuery.init(cls, null);
+        inRangeQuery.init(x * cellSize + halfCell, y * cellSize + halfCell, r * cellSize);
+        return (List<T>) getIntersectingObjects(left, top, left + size, top + size, actorQuery, inRangeQuery);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
+    {
+        int x = ActorVisitor.getX(actor);
+        int y = ActorVisitor.getY(actor);
+        int xPixel = x * cellSize;
+        int yPixel = y * cellSize;
+        int dPixel = distance * cellSize;
+        
+        neighbourQuery.init(x, y, distance, diag, cls);
+        return (List<T>) getIntersectingObjects(xPixel - dPixel, yPixel - dPixel,
+                xPixel + dPixel + 1, yPixel + dPixel + 1, neighbourQuery, null);
+    }
+
+    public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
+    {
+        // Not supported by the other checkers either
+        return new ArrayList<T>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjects(Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        for (Actor actor : entries.keySet()) {
+            if (cls == null || cls.isInstance(actor)) {
+                result.add((T) actor);
+            }
+        }
+        return result;
+    }
+
+    public List<Actor> getObjectsList()
+    {
+        return getObjects(null);
+    }
+
+    public void startSequence()
+    {
+        // Nothing necessary.
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
+    {
+        int px = dx * cellSize + cellSize / 2;
+        int py = dy * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (T) getOneIntersectingObject(px, py, px, py, pointQuery, object);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneIntersectingObject(Actor object, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(object);
+        actorQuery.init(cls, object);
+        return (T) getOneIntersectingObject(r.getX(), r.getY(), r.getRight(), r.getTop(), actorQuery, object);
+    }
+
+    public void paintDebug(Graphics g)
+    {
+        Color oldColor = g.getColor();
+        g.setColor(Color.RED);
+        for (int by = 0; by < bucketsDown; by++) {
+            for (int bx = 0; bx < bucketsAcross; bx++) {
+                if (buckets[by * bucketsAcross + bx].size != 0) {
+                    g.drawRect(bx * bucketSize, by * bucketSize, bucketSize, bucketSize);
+                }
+            }
+        }
+        g.setColor(oldColor);
+    }
+    
+    /**
+     * Find all actors in the buckets overlapping the given area (in pixels, with inclusive
+     * bounds) which match the given query, and the second query if it is not null.
+     */
+    private List<Actor> getIntersectingObjects(int left, int top, int right, int bottom,
+            CollisionQuery query, CollisionQuery secondQuery)
+    {
+        List<Actor> result = new ArrayList<Actor>();
+        getIntersectingObjects(left, top, right, bottom, query, secondQuery, result);
+        return result;
+    }
+    
+    /**
+     * Add all actors in the buckets overlapping the given area (in pixels, with inclusive
+     * bounds) which match the given query, and the second query if it is not null, to the
+     * given list.
+     */
+    private void getIntersectingObjects(int left, int top, int right, int bottom,
+            CollisionQuery query, CollisionQuery secondQuery, List<Actor> result)
+    {
+        int minX = bucketX(left);
+        int maxX = bucketX(right);
+        int minY = bucketY(top);
+        int maxY = bucketY(bottom);
+        for (int by = minY; by <= maxY; by++) {
+            for (int bx = minX; bx <= maxX; bx++) {
+                Bucket bucket = buckets[by * bucketsAcross + bx];
+                for (int i = 0; i < bucket.size; i++) {
+                    Entry entry = bucket.entries[i];
+                    if (isFirstVisit(entry, bx, by, minX, minY)) {
+                        Actor actor = bucket.actors[i];
+                        if (query.checkCollision(actor)
+                                && (secondQuery == null || secondQuery.checkCollision(actor))) {
+                            result.add(actor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Find one actor (other than the one given) in the buckets overlapping the given area
+     * (in pixels, with inclusive bounds) which matches the given query.
+     */
+    private Actor getOneIntersectingObject(int left, int top, int right, int bottom,
+            CollisionQuery query, Actor ignore)
+    {
+        int minX = bucketX(left);
+        int maxX = bucketX(right);
+        int minY = bucketY(top);
+        int maxY = bucketY(bottom);
+        for (int by = minY; by <= maxY; by++) {
+            for (int bx = minX; bx <= maxX; bx++) {
+                Bucket bucket = buckets[by * bucketsAcross + bx];
+                for (int i = 0; i < bucket.size; i++) {
+                    Actor actor = bucket.actors[i];
+                    if (actor != ignore && isFirstVisit(bucket.entries[i], bx, by, minX, minY)
+                            && query.checkCollision(actor)) {
+                        return actor;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Check whether the given bucket is the first of an actor's buckets to be visited by a
+     * query which starts at the given bucket coordinates (and visits buckets row by row).
+     */
+    private static boolean isFirstVisit(Entry entry, int bx, int by, int queryMinX, int queryMinY)
+    {
+        return bx == Math.max(entry.minX, queryMinX) && by == Math.max(entry.minY, queryMinY);
+    }
+    
+    private int bucketX(int px)
+    {
+        return Math.max(0, Math.min(bucketsAcross - 1, Math.floorDiv(px, bucketSize)));
+    }
+    
+    private int bucketY(int py)
+    {
+        return Math.max(0, Math.min(bucketsDown - 1, Math.floorDiv(py, bucketSize)));
+    }
+    
+    private void setRange(Entry entry, Rect bounds)
+    {
+        entry.minX = bucketX(bounds.getX());
+        entry.minY = bucketY(bounds.getY());
+        entry.maxX = bucketX(bounds.getRight());
+        entry.maxY = bucketY(bounds.getTop());
+    }
+    
+    private void addToBuckets(Actor actor, Entry entry)
+    {
+        for (int by = entry.minY; by <= entry.maxY; by++) {
+            for (int bx = entry.minX; bx <= entry.maxX; bx++) {
+                buckets[by * bucketsAcross + bx].add(actor, entry);
+            }
+        }
+    }
+    
+    private void removeFromBuckets(Actor actor, Entry entry)
+    {
+        for (int by = entry.minY; by <= entry.maxY; by++) {
+            for (int bx = entry.minX; bx <= entry.maxX; bx++) {
+                buckets[by * bucketsAcross + bx].remove(actor);
+            }
+        }
+    }
+    
+    /**
+     * The range of buckets (inclusive) overlapped by an actor.
+     */
+    private static class Entry
+    {
+        int minX;
+        int minY;
+        int maxX;
+        int maxY;
+    }
+    
+    /**
+     * The actors overlapping one bucket, along with their entries. Order is not preserved
+     * when actors are removed.
+     */
+    private static class Bucket
+    {
+        Actor[] actors = new Actor[4];
+        Entry[] entries = new Entry[4];
+        int size;
+        
+        void add(Actor actor, Entry entry)
+        {
+            if (size == actors.length) {
+                actors = Arrays.copyOf(actors, size * 2);
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            actors[size] = actor;
+            entries[size] = entry;
+            size++;
+        }
+        
+        void remove(Actor actor)
+        {
+            for (int i = 0; i < size; i++) {
+                if (actors[i] == actor) {
+                    size--;
+                    actors[i] = actors[size];
+                    entries[i] = entries[size];
+                    actors[size] = null;
+                    entries[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -37,6 +37,10 @@ public final class ActorNode
     private ActorNode next;
     private ActorNode prev;
     private boolean mark;
+    /** The stamp of the last query which visited this node (see {@link #markVisited(int)}) */
+    private int visitedStamp;
+    /** The position of this node in its BSPNode's array of actor nodes */
+    int indexInNode;
     
     public ActorNode(Actor actor, BSPNode node)
     {
@@ -84,6 +88,20 @@ public final class ActorNode
         return markVal;
     }
     
+    /**
+     * Mark this ActorNode as visited by the query with the given stamp, and return
+     * whether it had already been visited by that query. This is used by the collision
+     * checker, on the first ActorNode for an actor, so that an actor split over several
+     * tree nodes is only considered once per query. Unlike the update mark, it does not
+     * need clearing, as each query uses a new stamp.
+     */
+    public boolean markVisited(int stamp)
+    {
+        boolean visited = visitedStamp == stamp;
+        visitedStamp = stamp;
+        return visited;
+    }
+    
     public Actor getActor()
     {
         return actor;
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2012,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2012,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -36,6 +36,9 @@ import java.util.*;
 public final class BSPNode
 {
     private Map<Actor, ActorNode> actors;
+    /** The actor nodes in this node, in no particular order, for iteration without allocation */
+    private ActorNode[] actorNodes = new ActorNode[4];
+    private int actorNodeCount;
     
     private BSPNode parent;
     private Rect area;
@@ -193,7 +196,13 @@ public final class BSPNode
     
     public void addActor(Actor actor)
     {
-        actors.put(actor, new ActorNode(actor, this));
+        ActorNode anode = new ActorNode(actor, this);
+        actors.put(actor, anode);
+        if (actorNodeCount == actorNodes.length) {
+            actorNodes = Arrays.copyOf(actorNodes, actorNodeCount * 2);
+        }
+        anode.indexInNode = actorNodeCount;
+        actorNodes[actorNodeCount++] = anode;
     }
     
     /**
@@ -212,7 +221,16 @@ public final class BSPNode
     
     public void actorRemoved(Actor actor)
     {
-        actors.remove(actor);
+        ActorNode anode = actors.remove(actor);
+        if (anode != null) {
+            // Move the last node into the removed node's place:
+            int index = anode.indexInNode;
+            actorNodeCount--;
+            ActorNode last = actorNodes[actorNodeCount];
+            actorNodes[index] = last;
+            last.indexInNode = index;
+            actorNodes[actorNodeCount] = null;
+        }
     }
     
     public int numberActors()
@@ -243,10 +261,21 @@ public final class BSPNode
         return new ArrayList<Actor>(actors.keySet());
     }
     
+    /**
+     * Get the actor node at the given index, which must be less than
+     * {@link #numberActors()}. Indexes change when actors are removed.
+     */
+    public ActorNode getActorNode(int index)
+    {
+        return actorNodes[index];
+    }
+    
     // Blanks the node.  Used by BSPNodeCache 
     void blankNode()
     {
         actors.clear();
+        Arrays.fill(actorNodes, 0, actorNodeCount, null);
+        actorNodeCount = 0;
     }
     
     public void areaChanged()
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2012,2013,2015  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2012,2013,2015,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -53,6 +53,19 @@ public class IBSPColChecker implements CollisionChecker
     private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
     private PointCollisionQuery pointQuery = new PointCollisionQuery();
     private InRangeQuery inRangeQuery = new InRangeQuery();
+    private AndQuery rangeQuery = new AndQuery();
+    
+    /*
+     * The following are re-used by each query, so that queries don't need to allocate
+     * (other than for their result). Queries are only made from the simulation thread.
+     */
+    /** The query area, for queries which aren't based on an actor's bounds */
+    private Rect queryRect = new Rect(0, 0, 0, 0);
+    /** The stack of tree nodes still to be visited by a query */
+    private BSPNode[] nodeStack = new BSPNode[32];
+    private int nodeStackSize;
+    /** Stamp identifying the current query (see ActorNode.markVisited) */
+    private int queryStamp;
     
     private int cellSize;
     
@@ -537,57 +550,98 @@ public class IBSPColChecker implements CollisionChecker
         updateObject(object);
     }
 
-    private List<Actor> getIntersectingObjects(Rect r, CollisionQuery query)
-    {
-        Set<Actor> set = new HashSet<Actor>();
-        getIntersectingObjects(r, query, set, bspTree);
-        List<Actor> l = new ArrayList<Actor>(set);
-        return l;
-    }
-    
-    private void getIntersectingObjects(Rect r, CollisionQuery query, Set<Actor> resultSet, BSPNode startNode)
+    /**
+     * Find all actors (each listed once) in tree nodes intersecting the given area which
+     * match the given query, and add them to the given list.
+     */
+    private void getIntersectingObjects(Rect r, CollisionQuery query, List<Actor> result)
     {
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        
-        if (startNode != null) {
-            nodeStack.add(startNode);
+        if (bspTree == null) {
+            return;
         }
         
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
+        int stamp = nextQueryStamp();
+        startTraversal(bspTree);
+        while (nodeStackSize != 0) {
+            BSPNode node = popNode();
             if (node.getArea().intersects(r)) {
-                Iterator<Actor> i = node.getActorsIterator();
-                while (i.hasNext()) {
-                    Actor actor = i.next();
-                    if (query.checkCollision(actor)) {
-                        if (! resultSet.contains(actor)) {
-                            resultSet.add(actor);
-                        }
+                int count = node.numberActors();
+                for (int i = 0; i < count; i++) {
+                    Actor actor = node.getActorNode(i).getActor();
+                    // An actor might be in several nodes; only check it the first time:
+                    if (! getNodeForActor(actor).markVisited(stamp) && query.checkCollision(actor)) {
+                        result.add(actor);
                     }
                 }
                 
                 BSPNode left = node.getLeft();
                 BSPNode right = node.getRight();
                 if (left != null) {
-                    nodeStack.add(left);
+                    pushNode(left);
                 }
                 if (right != null) {
-                    nodeStack.add(right);
+                    pushNode(right);
                 }
             }
         }
     }
     
+    /**
+     * Get a new query stamp, for use with {@link ActorNode#markVisited(int)}.
+     */
+    private int nextQueryStamp()
+    {
+        queryStamp++;
+        if (queryStamp == 0) {
+            // Actor nodes start with a stamp of 0, so don't use it:
+            queryStamp = 1;
+        }
+        return queryStamp;
+    }
+    
+    /**
+     * Begin a traversal of the tree from the given node. Any traversal which was abandoned
+     * (for instance because a query threw an exception) is discarded.
+     */
+    private void startTraversal(BSPNode node)
+    {
+        clearNodeStack();
+        pushNode(node);
+    }
+    
+    private void pushNode(BSPNode node)
+    {
+        if (nodeStackSize == nodeStack.length) {
+            nodeStack = Arrays.copyOf(nodeStack, nodeStackSize * 2);
+        }
+        nodeStack[nodeStackSize++] = node;
+    }
+    
+    private BSPNode popNode()
+    {
+        BSPNode node = nodeStack[--nodeStackSize];
+        nodeStack[nodeStackSize] = null;
+        return node;
+    }
+    
+    /**
+     * Discard any nodes remaining on the stack.
+     */
+    private void clearNodeStack()
+    {
+        Arrays.fill(nodeStack, 0, nodeStackSize, null);
+        nodeStackSize = 0;
+    }
+    
     /**
      * Check if there is at least one actor in the given BSPNode which matches
      * the given collision query, and return it if so.
      */
     private Actor checkForOneCollision(Actor ignore, BSPNode node, CollisionQuery query)
     {
-        Iterator<Actor> i = node.getActorsIterator();
-        
-        while (i.hasNext()) {
-            Actor candidate = i.next();
+        int count = node.numberActors();
+        for (int i = 0; i < count; i++) {
+            Actor candidate = node.getActorNode(i).getActor();
             if (ignore != candidate && query.checkCollision(candidate)) {
                 return candidate;
             }
@@ -613,11 +667,9 @@ public class IBSPColChecker implements CollisionChecker
             return null;
         }
         
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        nodeStack.add(startNode);
-        
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
+        startTraversal(startNode);
+        while (nodeStackSize != 0) {
+            BSPNode node = popNode();
             if (node.getArea().intersects(r)) {
                 Actor res = checkForOneCollision(ignore, node, query);
                 if (res != null) {
@@ -627,10 +679,10 @@ public class IBSPColChecker implements CollisionChecker
                 BSPNode left = node.getLeft();
                 BSPNode right = node.getRight();
                 if (left != null) {
-                    nodeStack.add(left);
+                    pushNode(left);
                 }
                 if (right != null) {
-                    nodeStack.add(right);
+                    pushNode(right);
                 }
             }
         }
@@ -651,11 +703,9 @@ public class IBSPColChecker implements CollisionChecker
             return null;
         }
         
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        nodeStack.add(bspTree);
-        
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
+        startTraversal(bspTree);
+        while (nodeStackSize != 0) {
+            BSPNode node = popNode();
             if (node.getArea().contains(r)) {
                 Actor res = checkForOneCollision(actor, node, query);
                 if (res != null) {
@@ -665,10 +715,10 @@ public class IBSPColChecker implements CollisionChecker
                 BSPNode left = node.getLeft();
                 BSPNode right = node.getRight();
                 if (left != null) {
-                    nodeStack.add(left);
+                    pushNode(left);
                 }
                 if (right != null) {
-                    nodeStack.add(right);
+                    pushNode(right);
                 }
             }
         }
@@ -695,26 +745,47 @@ public class IBSPColChecker implements CollisionChecker
         return null;
     }
     
+    /**
+     * Set the query area to the given rectangle.
+     */
+    private Rect setQueryRect(int x, int y, int width, int height)
+    {
+        queryRect.setX(x);
+        queryRect.setY(y);
+        queryRect.setWidth(width);
+        queryRect.setHeight(height);
+        return queryRect;
+    }
+    
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
     {
+        List<T> result = new ArrayList<T>();
         synchronized (pointQuery) {
             int px = x * cellSize + cellSize / 2;
             int py = y * cellSize + cellSize / 2;
             pointQuery.init(px, py, cls);
-            return (List<T>) getIntersectingObjects(new Rect(px, py, 1, 1), pointQuery);
+            getIntersectingObjects(setQueryRect(px, py, 1, 1), pointQuery, (List<Actor>) result);
         }
+        return result;
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor,
             Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>();
+        getIntersectingObjects(actor, cls, result);
+        return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> void getIntersectingObjects(Actor actor, Class<T> cls, List<? super T> result)
     {
         Rect r = getActorBounds(actor);
         
         synchronized (actorQuery) {
             actorQuery.init(cls, actor);
-            return (List<T>) getIntersectingObjects(r, actorQuery);
+            getIntersectingObjects(r, actorQuery, (List<Actor>) result);
         }
     }
 
@@ -725,24 +796,18 @@ public class IBSPColChecker implements CollisionChecker
         int halfCell = cellSize / 2;
         int size = 2 * r * cellSize;
         
-        Rect rect = new Rect((x - r) * cellSize + halfCell,
+        Rect rect = setQueryRect((x - r) * cellSize + halfCell,
                 (y - r) * cellSize + halfCell,
                 size,
                 size);
         
-        List<T> result;
+        List<T> result = new ArrayList<T>();
         synchronized (actorQuery) {
-            actorQuery.init(cls, null);
-            result = (List<T>) getIntersectingObjects(rect, actorQuery);
-        }
-        
-        Iterator<T> i = result.iterator();
-        synchronized (inRangeQuery) {
-            inRangeQuery.init(x * cellSize + halfCell , y * cellSize + halfCell, r * cellSize);
-            while (i.hasNext()) {
-                if (! inRangeQuery.checkCollision(i.next())) {
-                    i.remove();
-                }
+            synchronized (inRangeQuery) {
+                actorQuery.init(cls, null);
+                inRangeQuery.init(x * cellSize + halfCell , y * cellSize + halfCell, r * cellSize);
+                rangeQuery.init(actorQuery, inRangeQuery);
+                getIntersectingObjects(rect, rangeQuery, (List<Actor>) result);
             }
         }
         
@@ -759,13 +824,14 @@ public class IBSPColChecker implements CollisionChecker
         int yPixel = y * cellSize;
         int dPixel = distance * cellSize;
         
-        Rect r = new Rect(xPixel - dPixel, yPixel - dPixel, dPixel * 2 + 1, dPixel * 2 + 1);
+        Rect r = setQueryRect(xPixel - dPixel, yPixel - dPixel, dPixel * 2 + 1, dPixel * 2 + 1);
         
+        List<T> result = new ArrayList<T>();
         synchronized (neighbourQuery) {
             neighbourQuery.init(x, y, distance, diag, cls);
-            List<T> res = (List<T>) getIntersectingObjects(r, neighbourQuery);
-            return res;
+            getIntersectingObjects(r, neighbourQuery, (List<Actor>) result);
         }
+        return result;
     }
 
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y,
@@ -778,34 +844,33 @@ public class IBSPColChecker implements CollisionChecker
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjects(Class<T> cls)
     {
-        Set<T> set = new HashSet<T>();
-        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
-        
-        if (bspTree != null) {
-            nodeStack.add(bspTree);
-        }
-        
-        while (! nodeStack.isEmpty()) {
-            BSPNode node = nodeStack.removeLast();
-            Iterator<Actor> i = node.getActorsIterator();
-            while (i.hasNext()) {
-                Actor actor = i.next();
-                if (cls == null || cls.isInstance(actor)) {
-                    set.add((T) actor);
+        List<T> result = new ArrayList<T>();
+        if (bspTree == null) {
+            return result;
+        }
+        
+        int stamp = nextQueryStamp();
+        startTraversal(bspTree);
+        while (nodeStackSize != 0) {
+            BSPNode node = popNode();
+            int count = node.numberActors();
+            for (int i = 0; i < count; i++) {
+                Actor actor = node.getActorNode(i).getActor();
+                if (! getNodeForActor(actor).markVisited(stamp) && (cls == null || cls.isInstance(actor))) {
+                    result.add((T) actor);
                 }
             }
             BSPNode left = node.getLeft();
             BSPNode right = node.getRight();
             if (left != null) {
-                nodeStack.add(left);
+                pushNode(left);
             }
             if (right != null) {
-                nodeStack.add(right);
+                pushNode(right);
             }
         }
         
-        List<T> list = new ArrayList<T>(set);
-        return list;
+        return result;
     }
 
     public List<Actor> getObjectsList()
@@ -825,14 +890,11 @@ public class IBSPColChecker implements CollisionChecker
         synchronized (pointQuery) {
             int px = dx * cellSize + cellSize / 2;
             int py = dy * cellSize + cellSize / 2;
+            // The point query also checks the class:
             pointQuery.init(px, py, cls);
-            CollisionQuery query = pointQuery;
-            if (cls != null) {
-                query = new ClassQuery(cls, pointQuery);
-            }
             // Use of getOneIntersectingDown is ok, because the area is only 1x1 pixel
             // in size - it will be contained by all nodes.
-            return (T) getOneIntersectingDown(new Rect(px, py, 1, 1), query, object);
+            return (T) getOneIntersectingDown(setQueryRect(px, py, 1, 1), pointQuery, object);
         }
     }
 
@@ -884,4 +946,23 @@ public class IBSPColChecker implements CollisionChecker
         g.setColor(oldColor);
     }
 
+    /**
+     * A query which matches actors matching both of two other queries.
+     */
+    private static class AndQuery implements CollisionQuery
+    {
+        private CollisionQuery first;
+        private CollisionQuery second;
+        
+        public void init(CollisionQuery first, CollisionQuery second)
+        {
+            this.first = first;
+            this.second = second;
+        }
+        
+        public boolean checkCollision(Actor actor)
+        {
+            return first.checkCollision(actor) && second.checkCollision(actor);
+        }
+    }
 }
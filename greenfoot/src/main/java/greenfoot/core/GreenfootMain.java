@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2013,2014,2015,2016,2017,2018,2019,2021  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2013,2014,2015,2016,2017,2018,2019,2021,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -84,13 +84,14 @@ public class GreenfootMain
      * 
      * @param projDir     The project directory
      * @param shmFilePath The path to the shared-memory file to be mmap-ed for communication
+     * @param shmTransport The shared memory transport (see VMCommsMain.getTransport())
      */
     @OnThread(Tag.Any)
-    public static void initialize(String projDir, String shmFilePath, int shmFileSize, int seqStart)
+    public static void initialize(String projDir, String shmFilePath, int shmFileSize, int seqStart, String shmTransport)
     {
         System.setProperty("apple.laf.useScreenMenuBar", "true");
         if (instance == null) {
-            instance = new GreenfootMain(projDir, shmFilePath, shmFileSize, seqStart);
+            instance = new GreenfootMain(projDir, shmFilePath, shmFileSize, seqStart, shmTransport);
         }
     }
 
@@ -108,7 +109,7 @@ public class GreenfootMain
      * Constructor is private. This class is initialised via the 'initialize'
      * method (above).
      */
-    private GreenfootMain(String projDir, String shmFilePath, int shmFileSize, int seqStart)
+    private GreenfootMain(String projDir, String shmFilePath, int shmFileSize, int seqStart, String shmTransport)
     {
         instance = this;
         try {
@@ -125,7 +126,7 @@ public class GreenfootMain
                     Platform.setImplicitExit(false);
 
                     // Some first-time initializations
-                    VMCommsSimulation vmComms = new VMCommsSimulation(projectProperties, shmFilePath, shmFileSize, seqStart);
+                    VMCommsSimulation vmComms = new VMCommsSimulation(projectProperties, shmFilePath, shmFileSize, seqStart, shmTransport);
 
                     WorldHandlerDelegateIDE worldHandlerDelegate = new WorldHandlerDelegateIDE(vmComms);
                     WorldHandler.initialise(worldHandlerDelegate);
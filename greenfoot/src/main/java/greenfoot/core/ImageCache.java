@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2012  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2012,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -23,35 +23,64 @@ package greenfoot.core;
 
 import greenfoot.GreenfootImage;
 
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * An image cache, which uses soft references to avoid holding images when heap space becomes exhausted.
+ * An image cache, limited in the total size of the images it holds. When the limit is
+ * exceeded, the least recently used images are discarded, except for those which have
+ * been pinned (such as class images).
+ * 
+ * <p>The size of an image is taken to be width * height * 4 bytes. The cache is divided
+ * into a number of independently locked stripes, each of which is kept in
+ * least-recently-used order; eviction works through the stripes in turn, so the order
+ * in which images are discarded is only approximately least-recently-used overall.
  * 
  * @author Davin McCall
  */
 public class ImageCache
 {
-    private static ImageCache instance = new ImageCache();
+    /** The default limit on the total size of the cached images, in bytes */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    
+    /** The number of stripes (must be a power of two) */
+    private static final int STRIPES = 16;
+    
+    private static ImageCache instance = new ImageCache(DEFAULT_BUDGET);
     
-    /** A soft reference to a cached image */
-    private class CachedImageRef extends SoftReference<GreenfootImage>
+    /** A cached image (which may be null, if the image could not be loaded) */
+    private static class CachedImage
     {
-        String imgName;
+        final GreenfootImage image;
+        final long size;
+        boolean pinned;
         
-        public CachedImageRef(String imgName, GreenfootImage image, ReferenceQueue<GreenfootImage> queue)
+        CachedImage(GreenfootImage image, long size, boolean pinned)
         {
-            super(image, queue);
-            this.imgName = imgName;
+            this.image = image;
+            this.size = size;
+            this.pinned = pinned;
         }
     }
     
-    private Map<String,CachedImageRef> imageCache = new HashMap<String,CachedImageRef>();
-    private ReferenceQueue<GreenfootImage> imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
+    /**
+     * The cached images, divided into stripes by name. Each stripe is an access-ordered map
+     * (least recently used first), and is used as the lock for its own contents.
+     */
+    private final LinkedHashMap<String,CachedImage>[] stripes;
+    private final long budget;
+    
+    private final AtomicLong bytes = new AtomicLong();
+    /** The total size of the pinned images, which do not count towards the budget */
+    private final AtomicLong pinnedBytes = new AtomicLong();
+    /** The stripe at which the next eviction begins */
+    private final AtomicInteger evictionStripe = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
     
     /**
      * Retrieve the image cache instance.
@@ -60,24 +89,52 @@ public class ImageCache
     {
         return instance;
     }
+    
+    /**
+     * Construct an image cache which holds at most (approximately) the given number of
+     * bytes of unpinned images.
+     */
+    @SuppressWarnings("unchecked")
+    public ImageCache(long budget)
+    {
+        this.budget = budget;
+        stripes = new LinkedHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LinkedHashMap<String,CachedImage>(16, 0.75f, true);
+        }
+    }
 
     /**
      * Requests that an image with associated name be added into the cache. The image may be null,
-     * in which case the null response will be cached. Thread-safe.
+     * in which case the null response will be cached. An image which is too large to be
+     * worth caching (more than half of the budget) is not cached. Thread-safe.
      * 
      * @return  whether the image was cached.
      */
     public boolean addCachedImage(String fileName, GreenfootImage image) 
     {
-        synchronized (imageCache) {
-            if (image != null) {
-                CachedImageRef cr = new CachedImageRef(fileName, image, imgCacheRefQueue);
-                imageCache.put(fileName, cr);
-            }
-            else {
-                imageCache.put(fileName, null);
+        long size = image == null ? 0 : sizeOf(image);
+        if (size > budget / 2) {
+            // Make sure any previous image of that name isn't used instead:
+            removeCachedImage(fileName);
+            return false;
+        }
+        
+        LinkedHashMap<String,CachedImage> stripe = getStripe(fileName);
+        synchronized (stripe) {
+            CachedImage old = stripe.get(fileName);
+            boolean pinned = old != null && old.pinned;
+            stripe.put(fileName, new CachedImage(image, size, pinned));
+            long delta = old == null ? size : size - old.size;
+            bytes.addAndGet(delta);
+            if (pinned) {
+                pinnedBytes.addAndGet(delta);
             }
         }
+        
+        if (isOverBudget()) {
+            evict();
+        }
         return true;
     }
 
@@ -90,14 +147,17 @@ public class ImageCache
      */
     public GreenfootImage getCachedImage(String fileName)
     { 
-        synchronized (imageCache) {
-            flushImgCacheRefQueue();
-            CachedImageRef sr = imageCache.get(fileName);
-            if (sr != null) {
-                return sr.get();
-            }
-            return null;
+        LinkedHashMap<String,CachedImage> stripe = getStripe(fileName);
+        CachedImage cached;
+        synchronized (stripe) {
+            cached = stripe.get(fileName);
         }
+        if (cached != null && cached.image != null) {
+            hits.increment();
+            return cached.image;
+        }
+        misses.increment();
+        return null;
     }
 
     /**
@@ -106,11 +166,38 @@ public class ImageCache
      */
     public void removeCachedImage(String fileName)
     {
-        synchronized (imageCache) {
-            CachedImageRef cr = imageCache.remove(fileName);
-            if (cr != null) {
-                cr.clear();
+        LinkedHashMap<String,CachedImage> stripe = getStripe(fileName);
+        synchronized (stripe) {
+            CachedImage cached = stripe.remove(fileName);
+            if (cached != null) {
+                bytes.addAndGet(-cached.size);
+                if (cached.pinned) {
+                    pinnedBytes.addAndGet(-cached.size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pin a cached image, so that it is not discarded when the cache is over budget. Used for
+     * class images, which are needed each time an actor or world of the class is created.
+     * The image stays pinned until it is removed (or the cache is cleared). Thread-safe.
+     * 
+     * @return  whether the image was in the cache.
+     */
+    public boolean pinImage(String fileName)
+    {
+        LinkedHashMap<String,CachedImage> stripe = getStripe(fileName);
+        synchronized (stripe) {
+            CachedImage cached = stripe.get(fileName);
+            if (cached != null) {
+                if (! cached.pinned) {
+                    cached.pinned = true;
+                    pinnedBytes.addAndGet(cached.size);
+                }
+                return true;
             }
+            return false;
         }
     }
 
@@ -120,8 +207,10 @@ public class ImageCache
      */
     public boolean isNullCachedImage(String fileName)
     {
-        synchronized (imageCache) {
-            return imageCache.containsKey(fileName) && imageCache.get(fileName) == null;
+        LinkedHashMap<String,CachedImage> stripe = getStripe(fileName);
+        synchronized (stripe) {
+            CachedImage cached = stripe.get(fileName);
+            return cached != null && cached.image == null;
         }
     }
 
@@ -130,28 +219,104 @@ public class ImageCache
      */
     public void clearImageCache()
     {
-        synchronized (imageCache) {
-            imageCache.clear();
-            imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
+        for (LinkedHashMap<String,CachedImage> stripe : stripes) {
+            synchronized (stripe) {
+                for (CachedImage cached : stripe.values()) {
+                    bytes.addAndGet(-cached.size);
+                    if (cached.pinned) {
+                        pinnedBytes.addAndGet(-cached.size);
+                    }
+                }
+                stripe.clear();
+            }
         }
     }
-
+    
+    /**
+     * Get the limit on the total size of the cached images, in bytes.
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+    
     /**
-     * Flush the image cache reference queue.
-     * <p>
-     * Because the images are cached via soft references, the references may be cleared, but the
-     * key will still map to the (cleared) reference. Calling this method occasionally removes such
-     * dead keys.
+     * Get the total size of the cached images (including pinned images), in bytes.
      */
-    private void flushImgCacheRefQueue()
+    public long getBytes()
     {
-        Reference<? extends GreenfootImage> ref = imgCacheRefQueue.poll();
-        while (ref != null) {
-            if (ref instanceof CachedImageRef) {
-                CachedImageRef cr = (CachedImageRef) ref;
-                imageCache.remove(cr.imgName);
+        return bytes.get();
+    }
+    
+    /**
+     * Get the number of lookups which found an image in the cache.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+    
+    /**
+     * Get the number of lookups which did not find an image in the cache.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+    
+    /**
+     * Get the number of images which have been discarded to keep within the budget.
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+    
+    /**
+     * Check whether the unpinned images exceed the budget.
+     */
+    private boolean isOverBudget()
+    {
+        return bytes.get() - pinnedBytes.get() > budget;
+    }
+    
+    /**
+     * Discard unpinned images, least recently used first, until the cache is within budget
+     * (or only pinned images remain). Each stripe is locked in turn, never more than one at once.
+     */
+    private void evict()
+    {
+        int start = evictionStripe.getAndIncrement();
+        for (int n = 0; n < STRIPES && isOverBudget(); n++) {
+            LinkedHashMap<String,CachedImage> stripe = stripes[(start + n) & (STRIPES - 1)];
+            synchronized (stripe) {
+                Iterator<CachedImage> i = stripe.values().iterator();
+                while (isOverBudget() && i.hasNext()) {
+                    CachedImage cached = i.next();
+                    if (! cached.pinned && cached.size != 0) {
+                        i.remove();
+                        bytes.addAndGet(-cached.size);
+                        evictions.increment();
+                    }
+                }
             }
-            ref = imgCacheRefQueue.poll();
         }
     }
+    
+    /**
+     * Get the stripe which holds the image of the given name.
+     */
+    private LinkedHashMap<String,CachedImage> getStripe(String fileName)
+    {
+        int h = fileName.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+    
+    /**
+     * Get the size of an image, for the purposes of the budget.
+     */
+    private static long sizeOf(GreenfootImage image)
+    {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2015,2017,2018,2019,2021  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2015,2017,2018,2019,2021,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -487,7 +487,8 @@ public class ProjectManager
                 Integer.toString(greenfootDebugHandler.getShmFileSize()),
                 // New VM starts at old last seq so that it's  after any final events we get from the dying VM:
                 // (especially since the seq will have had 1000 added when the last VM was terminated)
-                Integer.toString(greenfootDebugHandler.getLastSeq()) };
+                Integer.toString(greenfootDebugHandler.getLastSeq()),
+                greenfootDebugHandler.getShmTransport() };
 
         Package pkg = project.getPackage("");
         final Debugger debugger = pkg.getProject().getDebugger();
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2010,2011,2012,2013,2014,2016,2019,2021  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2010,2011,2012,2013,2014,2016,2019,2021,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -37,6 +37,7 @@ import threadchecker.Tag;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -95,6 +96,10 @@ public class Simulation extends Thread
     @OnThread(value = Tag.Any, requireSynchronized = true)
     private int speed; // the simulation speed in range (1..100)
 
+    private static final Actor[] NO_ACTORS = new Actor[0];
+    /** Array re-used for the copy of the actors taken in each act round (see runOneLoop) */
+    private Actor[] actSnapshot = NO_ACTORS;
+
     private long lastDelayTime;
     private long delay; // the speed translated into delay (nanoseconds)
 
@@ -119,6 +124,13 @@ public class Simulation extends Thread
     /** flag to indicate that we want to abort the simulation and never start it again. */
     private volatile boolean abort;
 
+    /** Whether to run as fast as possible, ignoring the speed setting and Greenfoot.delay() */
+    @OnThread(Tag.Any)
+    private volatile boolean unthrottled;
+    /** Listener notified of the time taken by each act() call, or null if not timing */
+    @OnThread(Tag.Any)
+    private volatile ActTimingListener actTimingListener;
+
     /**
      * Create new simulation. Leaves the simulation in paused state
      */
@@ -499,11 +511,21 @@ public class Simulation extends Thread
         // when all the actors have acted.
         ActInterruptedException interruptedException = null;
         
-        List<? extends Actor> objects = null;
+        Actor[] objects = null;
+        ActTimingListener timingListener = actTimingListener;
 
         try
         {
-            actWorld(world);
+            if (timingListener != null)
+            {
+                long start = System.nanoTime();
+                actWorld(world);
+                timingListener.actTimed(world, System.nanoTime() - start);
+            }
+            else
+            {
+                actWorld(world);
+            }
             if (world != worldHandler.getWorld())
             {
                 paintRemote(false);
@@ -515,33 +537,55 @@ public class Simulation extends Thread
             interruptedException = e;
         }
         // We need to make a copy so that the original collection can be
-        // modified by the actors' act() methods.
-        objects = new ArrayList<Actor>(WorldVisitor.getObjectsListInActOrder(world));
-        for (Actor actor : objects)
+        // modified by the actors' act() methods.  The array is re-used between
+        // act rounds, to avoid allocating a new copy every round:
+        objects = WorldVisitor.getObjectsListInActOrder(world).snapshot(actSnapshot);
+        // (If we are somehow re-entered, the inner round must not overwrite our copy:)
+        actSnapshot = NO_ACTORS;
+        try
         {
-            if (!enabled)
-            {
-                return;
-            }
-            if (ActorVisitor.getWorld(actor) != null)
+            for (int i = 0; i < objects.length && objects[i] != null; i++)
             {
-                try
+                Actor actor = objects[i];
+                if (!enabled)
                 {
-                    actActor(actor);
-                    if (world != worldHandler.getWorld())
-                    {
-                        return; // New world was set
-                    }
+                    return;
                 }
-                catch (ActInterruptedException e)
+                if (ActorVisitor.getWorld(actor) != null)
                 {
-                    if (interruptedException == null)
+                    try
                     {
-                        interruptedException = e;
+                        if (timingListener != null)
+                        {
+                            long start = System.nanoTime();
+                            actActor(actor);
+                            timingListener.actTimed(actor, System.nanoTime() - start);
+                        }
+                        else
+                        {
+                            actActor(actor);
+                        }
+                        if (world != worldHandler.getWorld())
+                        {
+                            return; // New world was set
+                        }
+                    }
+                    catch (ActInterruptedException e)
+                    {
+                        if (interruptedException == null)
+                        {
+                            interruptedException = e;
+                        }
                     }
                 }
             }
         }
+        finally
+        {
+            // Don't keep actors alive (e.g. after a world change) until the next round:
+            Arrays.fill(objects, null);
+            actSnapshot = objects;
+        }
         
         worldHandler.getKeyboardManager().clearLatchedKeys();
 
@@ -550,8 +594,6 @@ public class Simulation extends Thread
             throw interruptedException;
         }
         
-        // printUpdateRate(System.nanoTime());
-
         repaintIfNeeded();
 
         fireSimulationEventSync(SyncEvent.END_ACT_ROUND);
@@ -593,23 +635,6 @@ public class Simulation extends Thread
         WorldHandler.getInstance().paint(forcePaint);
     }
 
-    /**
-     * Debug output to print the rate at which updates are performed
-     * (acts/second).
-     */
-    /*
-    private void printUpdateRate(long currentTime)
-    {
-        //updates++;
-
-        long timeSinceUpdate = currentTime - lastUpdate;
-        if (timeSinceUpdate > 3000000000L) {
-            lastUpdate = currentTime;
-            //updates = 0;
-        }
-    }
-    */
-
     // Public methods etc.
 
     /**
@@ -844,6 +869,48 @@ public class Simulation extends Thread
         return calcDelay;
     }
 
+    /**
+     * Set whether the simulation should run as fast as possible. When unthrottled, there is
+     * no delay between act rounds and Greenfoot.delay() returns immediately, regardless of
+     * the speed setting (which user code may still change). Used for headless runs.
+     */
+    @OnThread(Tag.Any)
+    public void setUnthrottled(boolean unthrottled)
+    {
+        this.unthrottled = unthrottled;
+        if (unthrottled)
+        {
+            interruptDelay();
+        }
+    }
+
+    /**
+     * Set a listener to be told the time taken by each call to act() on the world and
+     * the actors. Timing is only performed while a listener is set.
+     * 
+     * @param listener  The listener, or null to stop timing
+     */
+    @OnThread(Tag.Any)
+    public void setActTimingListener(ActTimingListener listener)
+    {
+        actTimingListener = listener;
+    }
+
+    /**
+     * A listener for the time taken by act() calls.  Called on the simulation thread
+     * after each act() which completes normally.
+     */
+    public static interface ActTimingListener
+    {
+        /**
+         * An act() call has completed.
+         * 
+         * @param target  The actor or world which acted
+         * @param nanos   The time taken, in nanoseconds
+         */
+        public void actTimed(Object target, long nanos);
+    }
+
     /**
      * Get the current simulation speed.
      * 
@@ -907,10 +974,13 @@ public class Simulation extends Thread
         try
         {
             // If we will be asleep for more than 1/100th of a second, force repaint, otherwise rely on usual if-due mechanism.
-            worldHandler.paint(numCycles * delay > 100_000_000L);
-            for (int i = 0; i < numCycles; i++)
+            if (! unthrottled)
             {
-                HDTimer.sleep(delay);
+                worldHandler.paint(numCycles * delay > 100_000_000L);
+                for (int i = 0; i < numCycles; i++)
+                {
+                    HDTimer.sleep(delay);
+                }
             }
         }
         catch (InterruptedException e)
@@ -945,7 +1015,7 @@ public class Simulation extends Thread
     {
         long currentTime = System.nanoTime();
         long timeElapsed = currentTime - lastDelayTime;
-        long actualDelay = Math.max(delay - timeElapsed, 0L);
+        long actualDelay = unthrottled ? 0L : Math.max(delay - timeElapsed, 0L);
         
         synchronized (this)
         {
@@ -989,7 +1059,7 @@ public class Simulation extends Thread
 
             currentTime = System.nanoTime();
             timeElapsed = currentTime - lastDelayTime;
-            actualDelay = delay - timeElapsed;
+            actualDelay = unthrottled ? 0L : delay - timeElapsed;
         }
 
         lastDelayTime = currentTime;
@@ -0,0 +1,276 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.collision.ColManager;
+import greenfoot.collision.ColManager.QueryType;
+import greenfoot.event.SimulationListener;
+import greenfoot.sound.SoundMixer;
+import greenfoot.util.TimingHistogram;
+import greenfoot.util.TimingStats;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects profiling information about the running simulation, for display in the
+ * profiler window on the server VM: the time taken by act() for each class, the number
+ * and duration of collision queries of each type, the time taken to paint and transfer
+ * each frame, and the activity of the image cache and sound mixer.
+ * 
+ * <p>Nothing is recorded until profiling is enabled, and the cost when disabled is a
+ * volatile read per act() call and collision query.  While enabled, the measurements
+ * are summarised once per second (see {@link #getSummary()}); each summary covers
+ * only the preceding second.
+ */
+@OnThread(Tag.Any)
+public class SimulationProfiler implements Simulation.ActTimingListener, ColManager.QueryTimingListener,
+        SimulationListener
+{
+    /** The period covered by each summary, in nanoseconds */
+    private static final long SUMMARY_INTERVAL = 1_000_000_000L;
+    /** The maximum number of classes listed in a summary (the most expensive are listed) */
+    private static final int MAX_CLASSES = 20;
+
+    private static SimulationProfiler instance;
+
+    private volatile boolean enabled;
+    private boolean listening;
+
+    private final Map<Class<?>, TimingHistogram> actTimes = new ConcurrentHashMap<>();
+    private final TimingHistogram[] queryTimes = new TimingHistogram[QueryType.values().length];
+    private final TimingHistogram roundTimes = new TimingHistogram();
+    private final TimingStats paintTimes = new TimingStats();
+    private final TimingStats transferTimes = new TimingStats();
+    /** The start of the current act round (only accessed on the simulation thread) */
+    @OnThread(Tag.Simulation)
+    private long roundStart;
+
+    /** The start of the period covered by the next summary */
+    private long periodStart;
+    private long imageHits;
+    private long imageMisses;
+    private long imageEvictions;
+    private String summary;
+    private int summaryId;
+
+    /**
+     * Get the profiler instance.
+     */
+    public static synchronized SimulationProfiler getInstance()
+    {
+        if (instance == null) {
+            instance = new SimulationProfiler();
+        }
+        return instance;
+    }
+
+    private SimulationProfiler()
+    {
+        for (int i = 0; i < queryTimes.length; i++) {
+            queryTimes[i] = new TimingHistogram();
+        }
+    }
+
+    /**
+     * Enable or disable profiling.  The simulation must have been initialised.
+     */
+    public synchronized void setEnabled(boolean enabled)
+    {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        Simulation sim = Simulation.getInstance();
+        if (enabled) {
+            reset();
+            if (! listening) {
+                sim.addSimulationListener(this);
+                listening = true;
+            }
+            sim.setActTimingListener(this);
+            ColManager.setQueryTimingListener(this);
+        }
+        else {
+            sim.setActTimingListener(null);
+            ColManager.setQueryTimingListener(null);
+            summary = null;
+        }
+    }
+
+    /**
+     * Check whether profiling is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public void actTimed(Object target, long nanos)
+    {
+        actTimes.computeIfAbsent(target.getClass(), c -> new TimingHistogram()).record(nanos);
+    }
+
+    @Override
+    public void queryTimed(QueryType type, long nanos)
+    {
+        queryTimes[type.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record the time taken to paint a frame (on the simulation thread).
+     */
+    public void recordPaint(long nanos)
+    {
+        if (enabled) {
+            paintTimes.record(nanos);
+        }
+    }
+
+    /**
+     * Record the time taken to transfer a frame to the server VM.
+     */
+    public void recordFrameTransfer(long nanos)
+    {
+        if (enabled) {
+            transferTimes.record(nanos);
+        }
+    }
+
+    @Override
+    @OnThread(Tag.Simulation)
+    public void simulationChangedSync(SyncEvent e)
+    {
+        if (! enabled) {
+            return;
+        }
+        if (e == SyncEvent.NEW_ACT_ROUND) {
+            roundStart = System.nanoTime();
+        }
+        else if (e == SyncEvent.END_ACT_ROUND && roundStart != 0) {
+            roundTimes.record(System.nanoTime() - roundStart);
+            roundStart = 0;
+        }
+    }
+
+    @Override
+    public void simulationChangedAsync(AsyncEvent e)
+    {
+    }
+
+    /**
+     * Get the latest summary, first producing a new one if a summary period has elapsed
+     * since the last.  Returns null if profiling is disabled or no summary has been
+     * produced yet.
+     */
+    public synchronized String getSummary()
+    {
+        if (! enabled) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - periodStart >= SUMMARY_INTERVAL) {
+            summary = makeSummary(now - periodStart);
+            summaryId++;
+            reset();
+        }
+        return summary;
+    }
+
+    /**
+     * Get the identifier of the latest summary.  This increases each time a new summary
+     * is produced.
+     */
+    public synchronized int getSummaryId()
+    {
+        return summaryId;
+    }
+
+    /**
+     * Discard the measurements so far, and begin a new summary period.
+     */
+    private void reset()
+    {
+        actTimes.clear();
+        for (TimingHistogram histogram : queryTimes) {
+            histogram.reset();
+        }
+        roundTimes.reset();
+        paintTimes.reset();
+        transferTimes.reset();
+        ImageCache imageCache = ImageCache.getInstance();
+        imageHits = imageCache.getHits();
+        imageMisses = imageCache.getMisses();
+        imageEvictions = imageCache.getEvictions();
+        periodStart = System.nanoTime();
+    }
+
+    /**
+     * Produce a summary of the measurements made over the given period.
+     */
+    private String makeSummary(long periodNanos)
+    {
+        double seconds = periodNanos / 1_000_000_000.0;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Act rounds: %.1f/s, %s%n", roundTimes.getCount() / seconds, roundTimes));
+        sb.append(String.format("Paint: %s%n", paintTimes));
+        sb.append(String.format("Frame transfer: %s%n", transferTimes));
+
+        sb.append(String.format("%nact() by class (%% of time):%n"));
+        List<Map.Entry<Class<?>, TimingHistogram>> entries = new ArrayList<>(actTimes.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().getTotalNanos(), a.getValue().getTotalNanos()));
+        for (int i = 0; i < entries.size() && i < MAX_CLASSES; i++) {
+            TimingHistogram histogram = entries.get(i).getValue();
+            sb.append(String.format("  %-30s %5.1f%%  %s%n", entries.get(i).getKey().getName(),
+                    histogram.getTotalNanos() * 100.0 / periodNanos, histogram));
+        }
+        if (entries.size() > MAX_CLASSES) {
+            sb.append(String.format("  (%d more classes)%n", entries.size() - MAX_CLASSES));
+        }
+
+        sb.append(String.format("%nCollision queries:%n"));
+        for (QueryType type : QueryType.values()) {
+            TimingHistogram histogram = queryTimes[type.ordinal()];
+            if (histogram.getCount() != 0) {
+                sb.append(String.format("  %-30s %5.1f%%  %s%n", type.getMethodName(),
+                        histogram.getTotalNanos() * 100.0 / periodNanos, histogram));
+            }
+        }
+
+        ImageCache imageCache = ImageCache.getInstance();
+        sb.append(String.format("%nImage cache: %d hits, %d misses, %d evictions, %.1f of %.1fMB%n",
+                imageCache.getHits() - imageHits, imageCache.getMisses() - imageMisses,
+                imageCache.getEvictions() - imageEvictions,
+                imageCache.getBytes() / 1048576.0, imageCache.getBudget() / 1048576.0));
+        SoundMixer mixer = SoundMixer.getStartedInstance();
+        if (mixer != null) {
+            sb.append(String.format("Sound mixer: %d voices in use, mix %s%n",
+                    mixer.getVoicesInUse(), mixer.getMixTime()));
+        }
+        return sb.toString();
+    }
+}
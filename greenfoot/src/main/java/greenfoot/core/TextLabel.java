@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2013,2014  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2013,2014,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -26,6 +26,8 @@ import greenfoot.util.GraphicsUtilities;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 
 /**
  * Representation for text labels appearing on the world.
@@ -39,6 +41,10 @@ public class TextLabel
     private final String text;
     private final String[] lines;
     private GraphicsUtilities.MultiLineStringDimensions dimensions;
+    /** The rendered text, which is drawn again each frame rather than re-rendering the text */
+    private BufferedImage rendered;
+    /** The position of the rendered image relative to the text origin */
+    private Rectangle renderedBounds;
     
     /**
      * Construct a TextLabel with the given text and position.
@@ -67,11 +73,25 @@ public class TextLabel
         
         int xdraw = xpos * cellsize - dimensions.getWidth() / 2 + cellsize / 2;
         
-        g.translate(xdraw, ydraw);
-        
-        GraphicsUtilities.drawOutlinedText(g, dimensions, Color.WHITE, Color.BLACK);
-        
-        g.translate(-xdraw, -ydraw);
+        if (rendered == null) {
+            render();
+        }
+        g.drawImage(rendered, xdraw + renderedBounds.x, ydraw + renderedBounds.y, null);
+    }
+    
+    /**
+     * Render the text into an image of its own, which can then be drawn
+     * wherever it is needed.  Since labels are immutable, this only needs
+     * to be done once.
+     */
+    private void render()
+    {
+        renderedBounds = dimensions.getPaintBounds();
+        rendered = GraphicsUtilities.createCompatibleTranslucentImage(renderedBounds.width, renderedBounds.height);
+        Graphics2D rg = rendered.createGraphics();
+        rg.translate(-renderedBounds.x, -renderedBounds.y);
+        GraphicsUtilities.drawOutlinedText(rg, dimensions, Color.WHITE, Color.BLACK);
+        rg.dispose();
     }
     
     /**
@@ -0,0 +1,425 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip (or jar) archive, compressing the entries in parallel on a pool of worker
+ * threads.  Entries are written to the archive in the order they were added.
+ * 
+ * <p>Compressing is avoided where possible:
+ * <ul>
+ * <li>Files which are already compressed (images, sounds and archives) are stored
+ *     rather than deflated, which costs little space and saves a lot of time.</li>
+ * <li>The compressed form of each entry is cached (for the lifetime of the VM) by a hash
+ *     of its contents, so when a scenario is exported again, only changed files need to
+ *     be compressed.  The cache has a limited size, and the least recently used entries
+ *     are discarded first.</li>
+ * </ul>
+ * 
+ * <p>Archives are limited to 65535 entries and 4GB (the Zip64 extensions are not
+ * supported).
+ */
+class ArchiveWriter
+{
+    /** Extensions (lower case) of files which are stored without compression */
+    private static final Set<String> STORED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "mp3", "ogg", "jar", "zip", "gz", "gfar");
+
+    /** The most compressed data held in the cache, in bytes */
+    private static final long CACHE_BUDGET = 64L * 1024 * 1024;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    /** General purpose flag indicating that names are UTF-8 encoded */
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION = 20;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    /** Compressed data by content hash, in least-recently-used order */
+    private static final LinkedHashMap<ByteBuffer, CompressedData> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheBytes;
+
+    private final OutputStream out;
+    private final ExecutorService workers;
+    /** The most entries being compressed (or waiting to be written) at once */
+    private final int maxPending;
+    /** Entries which have been added but not yet written, in order */
+    private final ArrayDeque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+    /** Central directory records for the entries written so far */
+    private final List<CompressedEntry> written = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private long offset;
+    private int reused;
+
+    /**
+     * Create an archive writer which writes to the given stream.  The stream will be closed
+     * by {@link #close()}.
+     */
+    public ArchiveWriter(OutputStream out)
+    {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.out = out;
+        this.maxPending = threads * 4;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Archive compression");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Add an entry with the contents of a file.
+     * 
+     * @param entryName  The name of the entry, with "/" as the separator
+     * @throws ZipException  if an entry with the same name has already been added
+     */
+    public void addFile(String entryName, File file) throws IOException
+    {
+        checkName(entryName);
+        long time = file.lastModified();
+        submit(() -> compress(entryName, Files.readAllBytes(file.toPath()), time));
+    }
+
+    /**
+     * Add an entry with the given contents.  The array must not be modified afterwards.
+     * 
+     * @param entryName  The name of the entry, with "/" as the separator
+     * @param time  The modification time of the entry, in milliseconds since the epoch
+     * @throws ZipException  if an entry with the same name has already been added
+     */
+    public void addBytes(String entryName, byte[] data, long time) throws IOException
+    {
+        checkName(entryName);
+        submit(() -> compress(entryName, data, time));
+    }
+
+    /**
+     * Get the number of entries whose compressed data was found in the cache.
+     */
+    public int getReusedCount()
+    {
+        return reused;
+    }
+
+    /**
+     * Finish writing the archive, and close the stream.  If an entry could not be
+     * compressed, the archive is still completed (without the failed entries) and
+     * closed before the exception is thrown.
+     */
+    public void close() throws IOException
+    {
+        IOException failure = null;
+        try {
+            while (!pending.isEmpty()) {
+                try {
+                    writeNext();
+                }
+                catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            writeCentralDirectory();
+        }
+        finally {
+            workers.shutdownNow();
+            out.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void checkName(String entryName) throws ZipException
+    {
+        if (!names.add(entryName)) {
+            throw new ZipException("duplicate entry: " + entryName);
+        }
+    }
+
+    private void submit(Callable<CompressedEntry> task) throws IOException
+    {
+        // Limit the number of entries held in memory, by writing the oldest one if needed:
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+        pending.add(workers.submit(task));
+    }
+
+    /**
+     * Wait for the oldest pending entry to be compressed, and write it.
+     */
+    private void writeNext() throws IOException
+    {
+        CompressedEntry entry;
+        try {
+            entry = pending.remove().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing archive");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        
+        if (entry.reused) {
+            reused++;
+        }
+        if (written.size() >= MAX_ENTRIES || offset > MAX_SIZE) {
+            throw new ZipException("Archive too large: " + entry.name);
+        }
+        entry.offset = offset;
+        offset += writeHeader(0x04034b50, entry, false);
+        out.write(entry.data.bytes);
+        offset += entry.data.bytes.length;
+        written.add(entry);
+    }
+
+    private void writeCentralDirectory() throws IOException
+    {
+        long start = offset;
+        for (CompressedEntry entry : written) {
+            offset += writeHeader(0x02014b50, entry, true);
+        }
+        if (offset > MAX_SIZE) {
+            throw new ZipException("Archive too large");
+        }
+        ByteBuffer end = littleEndian(22);
+        end.putInt(0x06054b50);
+        end.putShort((short) 0); // This disk
+        end.putShort((short) 0); // Disk with central directory
+        end.putShort((short) written.size());
+        end.putShort((short) written.size());
+        end.putInt((int) (offset - start));
+        end.putInt((int) start);
+        end.putShort((short) 0); // Comment length
+        out.write(end.array());
+    }
+
+    /**
+     * Write a local file header or a central directory record.
+     * 
+     * @return  The number of bytes written.
+     */
+    private int writeHeader(int signature, CompressedEntry entry, boolean central) throws IOException
+    {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = littleEndian((central ? 46 : 30) + name.length);
+        header.putInt(signature);
+        if (central) {
+            header.putShort((short) VERSION); // Made by
+        }
+        header.putShort((short) VERSION); // Needed to extract
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) entry.data.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.data.crc);
+        header.putInt(entry.data.bytes.length);
+        header.putInt(entry.data.size);
+        header.putShort((short) name.length);
+        header.putShort((short) 0); // Extra field length
+        if (central) {
+            header.putShort((short) 0); // Comment length
+            header.putShort((short) 0); // Disk number
+            header.putShort((short) 0); // Internal attributes
+            header.putInt(0); // External attributes
+            header.putInt((int) entry.offset);
+        }
+        header.put(name);
+        out.write(header.array());
+        return header.capacity();
+    }
+
+    private static ByteBuffer littleEndian(int size)
+    {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Compress the contents of an entry (runs on a worker thread).
+     */
+    private static CompressedEntry compress(String entryName, byte[] data, long time)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        
+        if (isStored(entryName)) {
+            return new CompressedEntry(entryName, time,
+                    new CompressedData(METHOD_STORED, crc.getValue(), data.length, data), false);
+        }
+        
+        ByteBuffer key = ByteBuffer.wrap(sha256(data));
+        synchronized (cache) {
+            CompressedData cached = cache.get(key);
+            if (cached != null && cached.size == data.length && cached.crc == crc.getValue()) {
+                return new CompressedEntry(entryName, time, cached, true);
+            }
+        }
+        
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        deflater.end();
+        
+        if (compressed.size() >= data.length) {
+            // Not worth compressing:
+            return new CompressedEntry(entryName, time,
+                    new CompressedData(METHOD_STORED, crc.getValue(), data.length, data), false);
+        }
+        CompressedData result = new CompressedData(METHOD_DEFLATED, crc.getValue(), data.length,
+                compressed.toByteArray());
+        addToCache(key, result);
+        return new CompressedEntry(entryName, time, result, false);
+    }
+
+    private static void addToCache(ByteBuffer key, CompressedData data)
+    {
+        synchronized (cache) {
+            CompressedData old = cache.put(key, data);
+            if (old != null) {
+                cacheBytes -= old.bytes.length;
+            }
+            cacheBytes += data.bytes.length;
+            Iterator<CompressedData> it = cache.values().iterator();
+            while (cacheBytes > CACHE_BUDGET && it.hasNext()) {
+                cacheBytes -= it.next().bytes.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Check whether an entry with the given name should be stored without compression.
+     */
+    static boolean isStored(String entryName)
+    {
+        int dot = entryName.lastIndexOf('.');
+        return dot != -1 && STORED_EXTENSIONS.contains(entryName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static byte[] sha256(byte[] data)
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Convert a time to the MS-DOS date and time format used in zip files.
+     */
+    private static int toDosTime(long time)
+    {
+        LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (t.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (t.getYear() - 1980) << 25 | t.getMonthValue() << 21 | t.getDayOfMonth() << 16
+                | t.getHour() << 11 | t.getMinute() << 5 | t.getSecond() >> 1;
+    }
+
+    /**
+     * The compressed contents of an entry, which may be shared between entries
+     * (and archives) with the same contents.
+     */
+    private static class CompressedData
+    {
+        private final int method;
+        private final long crc;
+        private final int size;
+        private final byte[] bytes;
+
+        private CompressedData(int method, long crc, int size, byte[] bytes)
+        {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * An entry ready to be written to the archive.
+     */
+    private static class CompressedEntry
+    {
+        private final String name;
+        private final int dosTime;
+        private final CompressedData data;
+        private final boolean reused;
+        /** The offset of the local header in the archive (set when written) */
+        private long offset;
+
+        private CompressedEntry(String name, long time, CompressedData data, boolean reused)
+        {
+            this.name = name;
+            this.dosTime = toDosTime(time);
+            this.data = data;
+            this.reused = reused;
+        }
+    }
+}
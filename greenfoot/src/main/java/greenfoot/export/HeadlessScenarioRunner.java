@@ -0,0 +1,264 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import bluej.Config;
+import greenfoot.GreenfootVisitor;
+import greenfoot.World;
+import greenfoot.core.ExportedProjectProperties;
+import greenfoot.core.Simulation;
+import greenfoot.core.Simulation.ActTimingListener;
+import greenfoot.core.WorldHandler;
+import greenfoot.event.SimulationListener;
+import greenfoot.platforms.standalone.ActorDelegateStandAlone;
+import greenfoot.platforms.standalone.GreenfootUtilDelegateStandAlone;
+import greenfoot.platforms.standalone.WorldHandlerDelegateHeadless;
+import greenfoot.util.GreenfootUtil;
+import greenfoot.util.TimingHistogram;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a scenario without any display, as fast as possible, for a fixed number of act
+ * rounds, and then reports the rate at which the rounds ran and a histogram of the
+ * time taken by act() for each class of actor (and the world).  This is useful for
+ * benchmarking a scenario, and for checking its behaviour in automated tests.
+ * 
+ * <p>The scenario classes and the project.greenfoot file must be on the classpath,
+ * as in an exported scenario.  Usage:
+ * 
+ * <pre>
+ *   java -cp scenario.jar greenfoot.export.HeadlessScenarioRunner [-acts N] [-seed S] [worldClass]
+ * </pre>
+ * 
+ * <p>If a seed is given, Greenfoot.getRandomNumber() is seeded with it before the world
+ * is constructed, so that runs are repeatable.  If the world class is not given, the
+ * main class of the exported scenario is used.  Greenfoot.ask() receives an empty
+ * answer, and Greenfoot.delay() and the speed setting are ignored.  The exit status is
+ * 0 if all the rounds were run, or 1 if the scenario stopped (or failed) early.
+ */
+public class HeadlessScenarioRunner
+{
+    private static final int DEFAULT_ACTS = 1000;
+
+    private final Simulation sim;
+    private final int acts;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // The remaining fields are written on the simulation thread; they are only read
+    // by the main thread after the finished latch has been released.
+    private final Map<Class<?>, TimingHistogram> actTimes = new HashMap<>();
+    private int rounds;
+    private long startTime;
+    private long endTime;
+    private volatile boolean started;
+
+    private HeadlessScenarioRunner(Simulation sim, int acts)
+    {
+        this.sim = sim;
+        this.acts = acts;
+    }
+
+    public static void main(String[] args)
+    {
+        int acts = DEFAULT_ACTS;
+        Long seed = null;
+        String worldClassName = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-acts") && i + 1 < args.length) {
+                    acts = Integer.parseInt(args[++i]);
+                }
+                else if (args[i].equals("-seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                }
+                else if (args[i].startsWith("-") || worldClassName != null) {
+                    usage();
+                }
+                else {
+                    worldClassName = args[i];
+                }
+            }
+        }
+        catch (NumberFormatException nfe) {
+            usage();
+        }
+
+        GreenfootScenarioViewer.initProperties();
+        if (worldClassName == null) {
+            worldClassName = Config.getPropString("main.class", null);
+            if (worldClassName == null) {
+                usage();
+            }
+        }
+
+        GreenfootUtil.initialise(new GreenfootUtilDelegateStandAlone());
+        ExportedProjectProperties properties = new ExportedProjectProperties();
+        ActorDelegateStandAlone.setupAsActorDelegate();
+        ActorDelegateStandAlone.initProperties(properties);
+
+        // We must construct the simulation before the world, as a call to
+        // Greenfoot.setSpeed() requires a call to the simulation instance.
+        Simulation.initialize();
+        Simulation sim = Simulation.getInstance();
+        sim.setUnthrottled(true);
+
+        WorldHandlerDelegateHeadless delegate;
+        try {
+            delegate = new WorldHandlerDelegateHeadless(Class.forName(worldClassName).getConstructor());
+        }
+        catch (ClassNotFoundException | NoSuchMethodException e) {
+            System.err.println("Cannot find world class with a public no-argument constructor: " + worldClassName);
+            System.exit(2);
+            return;
+        }
+        WorldHandler.initialise(delegate);
+        WorldHandler worldHandler = WorldHandler.getInstance();
+        sim.attachWorldHandler(worldHandler);
+
+        HeadlessScenarioRunner runner = new HeadlessScenarioRunner(sim, acts);
+        System.exit(runner.run(delegate, worldHandler, seed) ? 0 : 1);
+    }
+
+    private static void usage()
+    {
+        System.err.println("Usage: java " + HeadlessScenarioRunner.class.getName()
+                + " [-acts N] [-seed S] [worldClass]");
+        System.exit(2);
+    }
+
+    /**
+     * Construct the world, run the simulation for the required number of rounds, and
+     * print the results.
+     * 
+     * @return  true if all rounds were run
+     */
+    private boolean run(WorldHandlerDelegateHeadless delegate, WorldHandler worldHandler, Long seed)
+    {
+        if (seed != null) {
+            GreenfootVisitor.setRandomSeed(seed);
+        }
+        World world = delegate.createWorld();
+        if (world == null) {
+            return false;
+        }
+        if (! worldHandler.checkWorldSet()) {
+            worldHandler.setWorld(world, false);
+        }
+
+        sim.addSimulationListener(new RoundCounter());
+        sim.setActTimingListener(new ActTimer());
+        if (acts > 0) {
+            sim.setPaused(false);
+            try {
+                finished.await();
+            }
+            catch (InterruptedException ie) {
+                return false;
+            }
+        }
+        sim.setActTimingListener(null);
+        sim.abort();
+
+        printResults();
+        return rounds >= acts;
+    }
+
+    private void printResults()
+    {
+        double seconds = (endTime - startTime) / 1_000_000_000.0;
+        long actCalls = 0;
+        List<Map.Entry<Class<?>, TimingHistogram>> entries = new ArrayList<>(actTimes.entrySet());
+        for (Map.Entry<Class<?>, TimingHistogram> entry : entries) {
+            actCalls += entry.getValue().getCount();
+        }
+        // Most expensive classes first:
+        entries.sort((a, b) -> Long.compare(b.getValue().getTotalNanos(), a.getValue().getTotalNanos()));
+
+        if (rounds < acts) {
+            System.out.println("Simulation stopped after " + rounds + " of " + acts + " act rounds");
+        }
+        System.out.println(String.format("%d act rounds in %.3fs: %.1f rounds/s, %.0f act() calls/s",
+                rounds, seconds, seconds > 0 ? rounds / seconds : 0.0,
+                seconds > 0 ? actCalls / seconds : 0.0));
+        for (Map.Entry<Class<?>, TimingHistogram> entry : entries) {
+            TimingHistogram histogram = entry.getValue();
+            System.out.println(String.format("%s: total=%.3fms %s", entry.getKey().getName(),
+                    histogram.getTotalNanos() / 1_000_000.0, histogram));
+            System.out.println("    " + histogram.bucketsToString());
+        }
+    }
+
+    /**
+     * Counts completed act rounds, and pauses the simulation after the required number.
+     */
+    private class RoundCounter implements SimulationListener
+    {
+        @Override
+        @OnThread(Tag.Simulation)
+        public void simulationChangedSync(SyncEvent e)
+        {
+            if (e == SyncEvent.STARTED && ! started) {
+                started = true;
+                startTime = System.nanoTime();
+                endTime = startTime;
+            }
+            else if (e == SyncEvent.END_ACT_ROUND && rounds < acts) {
+                rounds++;
+                endTime = System.nanoTime();
+                if (rounds == acts) {
+                    sim.setPaused(true);
+                }
+            }
+        }
+
+        @Override
+        @OnThread(Tag.Any)
+        public void simulationChangedAsync(AsyncEvent e)
+        {
+            // The simulation also reports that it is stopped before it has started, so
+            // ignore that; after starting, it stops once we pause it (or if the scenario
+            // stops itself, or fails):
+            if (e == AsyncEvent.STOPPED && started) {
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * Records act() times in the histogram for the class of the actor or world.
+     */
+    @OnThread(Tag.Simulation)
+    private class ActTimer implements ActTimingListener
+    {
+        @Override
+        public void actTimed(Object target, long nanos)
+        {
+            actTimes.computeIfAbsent(target.getClass(), c -> new TimingHistogram()).record(nanos);
+        }
+    }
+}
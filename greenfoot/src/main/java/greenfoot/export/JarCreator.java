@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2018,2019  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2018,2019,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -24,12 +24,12 @@ package greenfoot.export;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
@@ -40,12 +40,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.jar.Attributes;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
 import bluej.Boot;
 import bluej.Config;
@@ -54,9 +53,12 @@ import bluej.pkgmgr.Project;
 import bluej.utility.BlueJFileReader;
 import bluej.utility.Debug;
 import bluej.utility.FileUtility;
+import greenfoot.platforms.ide.LocalUserStorage;
 
 /**
  * Utility class to create jar or zip files from a Greenfoot project.
+ * The entries are compressed in parallel, and the compressed form of unchanged
+ * files is reused from previous exports (see {@link ArchiveWriter}).
  * 
  * @author Poul Henriksen <polle@polle.org>
  */
@@ -182,6 +184,9 @@ public class JarCreator
         // skip Mac files
         addSkipFile(".DS_Store");
         
+        // skip the local user storage log, once it is compacted into storage.csv
+        skipStorageLog();
+        
         // skip doc dir
         addSkipDir(projectDir.getPath() + System.getProperty("file.separator") + "doc");
         
@@ -261,6 +266,9 @@ public class JarCreator
         // skip Mac files
         addSkipFile(".DS_Store");
         
+        // skip the local user storage log, once it is compacted into storage.csv
+        skipStorageLog();
+        
         // skip doc dir
         addSkipDir(projectDir.getPath() + System.getProperty("file.separator") + "doc");
         
@@ -285,11 +293,10 @@ public class JarCreator
         File jarFile = new File(exportDir, jarName);
         File propertiesFile = null;
         File soundFile = null;
-        OutputStream oStream = null;
-        ZipOutputStream jStream = null;
+        ArchiveWriter jStream = null;
 
         try {
-            oStream = new BufferedOutputStream(new FileOutputStream(jarFile));
+            jStream = new ArchiveWriter(new BufferedOutputStream(new FileOutputStream(jarFile)));
             String pathPrefix = ""; // Put everything in top level of jar
             if (! isZip) {
                 // It is a jar file so we write the manifest and the properties.
@@ -298,12 +305,13 @@ public class JarCreator
                 writePropertiesFile(propertiesFile);
                 soundFile = new File(projectDir, "soundindex.list");
                 writeSoundFilesList(soundFile);
-                jStream = new JarOutputStream(oStream, manifest);
+                ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+                manifest.write(manifestBytes);
+                jStream.addBytes(JarFile.MANIFEST_NAME, manifestBytes.toByteArray(), System.currentTimeMillis());
             }
             else {
                 // It is a zip, so we want a dir with the project name inside the zip
                 pathPrefix = projectDir.getName() + "/";
-                jStream = new ZipOutputStream(oStream);
             }
             // Write contents of directories added
             for(File dir : dirs) {
@@ -325,13 +333,30 @@ public class JarCreator
                 if (jStream != null)
                     jStream.close();
             }
-            catch (IOException e) {}
+            catch (IOException e) {
+                Debug.reportError("problem writing jar file: " + e);
+            }
             if(propertiesFile != null) {
                 propertiesFile.delete();
             }
         }
     }
 
+    /**
+     * Compact the local user storage, so that storage.csv holds all the stored information,
+     * and skip its log.  If the storage can't be compacted, the log is exported as well.
+     */
+    private void skipStorageLog()
+    {
+        try {
+            LocalUserStorage.compactStorage(projectDir);
+            addSkipFile(LocalUserStorage.LOG_FILE_NAME);
+        }
+        catch (IOException e) {
+            Debug.reportError("Error compacting user storage before export: ", e);
+        }
+    }
+
     private void writeSoundFilesList(File file)
     {
         BufferedWriter os;
@@ -540,7 +565,7 @@ public class JarCreator
      * the Jar file we are creating (to prevent including itself in the Jar
      * file)
      */
-    private void writeDirToJar(File sourceDir, String pathPrefix, ZipOutputStream stream, File outputFile)
+    private void writeDirToJar(File sourceDir, String pathPrefix, ArchiveWriter stream, File outputFile)
         throws IOException
     {
         if (!skipDir(sourceDir))
@@ -563,7 +588,7 @@ public class JarCreator
      * @param onlyDirContents If sourceFile is a dir, this parameter indicates that
      *           the contents of the dir should be added, not the dir itself.
      */
-    private void writeFileToJar(File sourceFile, String pathPrefix, ZipOutputStream stream, File outputFile, boolean onlyDirContents)
+    private void writeFileToJar(File sourceFile, String pathPrefix, ArchiveWriter stream, File outputFile, boolean onlyDirContents)
         throws IOException
     {
         if(!sourceFile.exists()) {
@@ -592,7 +617,7 @@ public class JarCreator
      * Write the contents of a jar into another jar stream. If the source file does not exist,
      * this method will just return without doing anything.
      */
-    private void writeJarToJar(File inputJar, ZipOutputStream outputStream)
+    private void writeJarToJar(File inputJar, ArchiveWriter outputStream)
         throws IOException
     {
         if(!inputJar.exists()) {
@@ -606,8 +631,8 @@ public class JarCreator
         ZipEntry inputEntry = inputStream.getNextJarEntry();
         while(inputEntry != null) {
             //TODO: What if we have duplicate files????
-            outputStream.putNextEntry(inputEntry);
-            FileUtility.copyStream(inputStream, outputStream);
+            long time = inputEntry.getTime() == -1 ? System.currentTimeMillis() : inputEntry.getTime();
+            outputStream.addBytes(inputEntry.getName(), inputStream.readAllBytes(), time);
             inputStream.closeEntry();
             inputEntry = inputStream.getNextJarEntry();
         }        
@@ -677,22 +702,15 @@ public class JarCreator
      * always be a path with / seperators (NOT the platform dependant
      * File.seperator)
      */
-    private void writeJarEntry(File file, ZipOutputStream stream, String entryName)
+    private void writeJarEntry(File file, ArchiveWriter stream, String entryName)
         throws IOException
     {
-        InputStream in = null;
         try {
-            in = new BufferedInputStream(new FileInputStream(file));
-            stream.putNextEntry(new ZipEntry(entryName));
-            FileUtility.copyStream(in, stream);
+            stream.addFile(entryName, file);
         }
         catch (ZipException exc) {
             Debug.message("warning: " + exc);
         }
-        finally {
-            if (in != null)
-                in.close();
-        }
     }
     
     public void generateHTMLSkeleton(File outputFile, String title, int width, int height)
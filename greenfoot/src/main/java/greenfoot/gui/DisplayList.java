@@ -0,0 +1,101 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.GreenfootImage;
+import greenfoot.core.TextLabel;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A snapshot of everything needed to draw a world: its background, the images and
+ * positions of its (visible) actors in paint order, the object being dragged, any
+ * debug painting, and its text labels.  Created by
+ * {@link WorldRenderer#snapshot(greenfoot.World, boolean)}; a display list created with
+ * copied images is unaffected by later changes to the world, and so can be rendered on
+ * another thread while the simulation continues.
+ */
+@OnThread(Tag.Any)
+public final class DisplayList
+{
+    final int width;
+    final int height;
+    final int cellSize;
+    /** The background image (may be null) */
+    final GreenfootImage background;
+    /** The number of actors to draw */
+    final int count;
+    final GreenfootImage[] images;
+    final int[] paintXs;
+    final int[] paintYs;
+    final int[] rotations;
+    final double[] xCenters;
+    final double[] yCenters;
+    /** The image of the object being dragged (null if none), and where to draw it */
+    final BufferedImage dragImage;
+    final int dragX;
+    final int dragY;
+    /** The debug painting, drawn over the actors (null if none) */
+    final BufferedImage debugOverlay;
+    final List<TextLabel> textLabels;
+
+    DisplayList(int width, int height, int cellSize, GreenfootImage background, int count, GreenfootImage[] images,
+            int[] paintXs, int[] paintYs, int[] rotations, double[] xCenters, double[] yCenters,
+            BufferedImage dragImage, int dragX, int dragY, BufferedImage debugOverlay, List<TextLabel> textLabels)
+    {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.background = background;
+        this.count = count;
+        this.images = images;
+        this.paintXs = paintXs;
+        this.paintYs = paintYs;
+        this.rotations = rotations;
+        this.xCenters = xCenters;
+        this.yCenters = yCenters;
+        this.dragImage = dragImage;
+        this.dragX = dragX;
+        this.dragY = dragY;
+        this.debugOverlay = debugOverlay;
+        this.textLabels = textLabels;
+    }
+
+    /**
+     * Get the width of the world, in pixels.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Get the height of the world, in pixels.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -35,9 +35,15 @@ import threadchecker.Tag;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A class which handles the rendering of a World into a BufferedImage, including
@@ -54,6 +60,32 @@ public class WorldRenderer
     private Point dragLocation;
     /** Image used when dragging new actors on the world. Includes the drop shadow.*/
     private BufferedImage dragImage;
+    /** Paint locations of the current run of actors sharing an image (see paintObjects) */
+    private int[] runXs = new int[16];
+    private int[] runYs = new int[16];
+    
+    /** The background image whose pixels are cached (null if none) */
+    private GreenfootImage cachedBackground;
+    /** The modification count of cachedBackground when it was cached */
+    private int cachedBackgroundMod;
+    /** The cached background pixels, or null if the background is not opaque */
+    private int[] cachedBackgroundPixels;
+    /** The background seen at the last cache miss, and its modification count */
+    private GreenfootImage missedBackground;
+    private int missedBackgroundMod;
+    /** The number of frames whose background was copied from the cache */
+    private volatile long backgroundCacheHits;
+    /** The number of frames whose background had to be drawn from the image */
+    private volatile long backgroundCacheMisses;
+
+    /** Snapshots of actor and background images taken for the previous display list */
+    private Map<GreenfootImage, ImageSnapshot> snapshots = new IdentityHashMap<>();
+    /** Snapshots taken for the current display list (swapped with snapshots after each) */
+    private Map<GreenfootImage, ImageSnapshot> newSnapshots = new IdentityHashMap<>();
+    /** The last display list created without copying images, whose arrays may be re-used (may be null) */
+    private DisplayList reusableDisplayList;
+    /** A cleared image for painting the debug overlay of the next display list onto (may be null) */
+    private final AtomicReference<BufferedImage> spareDebugOverlay = new AtomicReference<>();
 
     @OnThread(Tag.Any)
     public WorldRenderer()
@@ -70,49 +102,139 @@ public class WorldRenderer
      *                   if drawWorld is null)
      */
     public void renderWorld(World drawWorld, BufferedImage worldImage)
+    {
+        if (drawWorld == null)
+        {
+            renderDisplayList(null, worldImage);
+        }
+        else
+        {
+            synchronized (this)
+            {
+                DisplayList displayList = snapshot(drawWorld, false);
+                Graphics2D g2 = (Graphics2D)worldImage.getGraphics();
+                paintBackground(g2, displayList.background, worldImage);
+                paintObjects(g2, displayList);
+                paintDraggedObject(g2, displayList);
+                WorldVisitor.paintDebug(drawWorld, g2);
+                paintWorldText(g2, displayList);
+                // Don't keep the actors' images alive until the next frame:
+                Arrays.fill(displayList.images, 0, displayList.count, null);
+            }
+        }
+    }
+
+    /**
+     * Render a display list (as returned by {@link #snapshot(World, boolean)}) into the
+     * given image, which is assumed to be of the right size.  This may be called on any
+     * thread; the display list must have been created with copied images if the world may
+     * be changing at the same time.
+     * 
+     * @param displayList The display list to draw (may be null, in which case a blank image is drawn)
+     * @param worldImage The image to draw onto
+     */
+    @OnThread(Tag.Any)
+    public synchronized void renderDisplayList(DisplayList displayList, BufferedImage worldImage)
     {
         Graphics2D g2 = (Graphics2D)worldImage.getGraphics();
         
-        if (drawWorld == null)
+        if (displayList == null)
         {
             g2.setColor(BACKGROUND);
             g2.fillRect(0, 0, worldImage.getWidth(), worldImage.getHeight());
         }
         else
         {
-            paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
-            paintObjects(g2, drawWorld);
-            paintDraggedObject(g2, drawWorld);
-            WorldVisitor.paintDebug(drawWorld, g2);
-            paintWorldText(g2, drawWorld);
+            paintBackground(g2, displayList.background, worldImage);
+            paintObjects(g2, displayList);
+            paintDraggedObject(g2, displayList);
+            if (displayList.debugOverlay != null) {
+                g2.drawImage(displayList.debugOverlay, 0, 0, null);
+                releaseDebugOverlay(displayList.debugOverlay);
+            }
+            paintWorldText(g2, displayList);
         }
     }
 
     /**
-     * Paints all the objects.
+     * Discard a display list (as returned by {@link #snapshot(World, boolean)}) which will
+     * not be rendered, so that its debug overlay (if any) can be used again.
+     */
+    @OnThread(Tag.Any)
+    public void discardDisplayList(DisplayList displayList)
+    {
+        if (displayList.debugOverlay != null) {
+            releaseDebugOverlay(displayList.debugOverlay);
+        }
+    }
+
+    /**
+     * Take a snapshot of the world's visible contents in paint order, for rendering.
+     * This also assigns the paint sequence numbers of the actors.
+     * 
+     * Actors whose image lies entirely outside the world are left out.  Unrotated actors
+     * are tested with their exact paint rectangle, and rotated actors with the image's
+     * half-diagonal around its centre (the image can't extend further than that from the
+     * centre, whatever the rotation).
      *
      * Must be synchronized on the World.lock.
+     * 
+     * @param copyImages  If true, images are copied (cheaply, using copy-on-write) so that
+     *                    the display list is unaffected by later changes to the world, and
+     *                    the world's debug painting is captured.  If false, the display list
+     *                    must be rendered before the world changes, and before the next
+     *                    snapshot (which may re-use its arrays).
      */
-    private void paintObjects(Graphics2D g, World drawWorld)
+    public DisplayList snapshot(World drawWorld, boolean copyImages)
     {
-        // This can happen if we try to grab a screenshot while the world is being replaced:
-        if (drawWorld == null)
-            return;
-
         Set<Actor> objects = WorldVisitor.getObjectsListInPaintOrder(drawWorld);
+        int cellSize = WorldVisitor.getCellSize(drawWorld);
+        int worldWidth = WorldVisitor.getWidthInPixels(drawWorld);
+        int worldHeight = WorldVisitor.getHeightInPixels(drawWorld);
+        
+        int size = objects.size();
+        GreenfootImage[] images;
+        int[] paintXs;
+        int[] paintYs;
+        int[] rotations;
+        double[] xCenters;
+        double[] yCenters;
+        DisplayList reusable = copyImages ? null : reusableDisplayList;
+        if (reusable != null && reusable.images.length >= size) {
+            images = reusable.images;
+            paintXs = reusable.paintXs;
+            paintYs = reusable.paintYs;
+            rotations = reusable.rotations;
+            xCenters = reusable.xCenters;
+            yCenters = reusable.yCenters;
+        }
+        else {
+            images = new GreenfootImage[size];
+            paintXs = new int[size];
+            paintYs = new int[size];
+            rotations = new int[size];
+            xCenters = new double[size];
+            yCenters = new double[size];
+        }
+        int count = 0;
+        
         int paintSeq = 0;
         for (Iterator<Actor> iter = objects.iterator(); iter.hasNext();) {
             Actor thing = iter.next();
-            int cellSize = WorldVisitor.getCellSize(drawWorld);
 
             GreenfootImage image = ActorVisitor.getDisplayImage(thing);
             if (image != null) {
                 ActorVisitor.setLastPaintSeqNum(thing, paintSeq++);
+                if (image.getTransparency() <= 0) {
+                    // Completely transparent; nothing to draw.
+                    continue;
+                }
 
-                double halfWidth = image.getWidth() / 2.;
-                double halfHeight = image.getHeight() / 2.;
+                int width = image.getWidth();
+                int height = image.getHeight();
+                double halfWidth = width / 2.;
+                double halfHeight = height / 2.;
 
-                AffineTransform oldTx = null;
                 try {
                     int ax = ActorVisitor.getX(thing);
                     int ay = ActorVisitor.getY(thing);
@@ -122,14 +244,27 @@ public class WorldRenderer
                     int paintY = (int) Math.floor(yCenter - halfHeight);
 
                     int rotation = ActorVisitor.getRotation(thing);
-                    if (rotation != 0) {
-                        // don't bother transforming if it is not rotated at
-                        // all.
-                        oldTx = g.getTransform();
-                        g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                    if (rotation == 0) {
+                        if (paintX >= worldWidth || paintY >= worldHeight
+                                || paintX + width <= 0 || paintY + height <= 0) {
+                            continue;
+                        }
                     }
-
-                    ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
+                    else {
+                        double radius = Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight);
+                        if (xCenter - radius >= worldWidth || yCenter - radius >= worldHeight
+                                || xCenter + radius <= 0 || yCenter + radius <= 0) {
+                            continue;
+                        }
+                    }
+                    
+                    images[count] = copyImages ? getSnapshot(image) : image;
+                    paintXs[count] = paintX;
+                    paintYs[count] = paintY;
+                    rotations[count] = rotation;
+                    xCenters[count] = xCenter;
+                    yCenters[count] = yCenter;
+                    count++;
                 }
                 catch (IllegalStateException e) {
                     // We get this if the object has been removed from the
@@ -137,43 +272,272 @@ public class WorldRenderer
                     // method that removes an object from the world, while the
                     // scenario is executing.
                 }
+            }
+        }
+        
+        BufferedImage draggedImage = dragImage;
+        int dragX = 0;
+        int dragY = 0;
+        if (draggedImage != null) {
+            int xCell = WorldVisitor.toCellFloor(drawWorld, (int) dragLocation.getX());
+            int yCell = WorldVisitor.toCellFloor(drawWorld, (int) dragLocation.getY());
+            dragX = (int) ((xCell + 0.5) * cellSize - draggedImage.getWidth() / 2);
+            dragY = (int) ((yCell + 0.5) * cellSize - draggedImage.getHeight() / 2);
+        }
+        
+        GreenfootImage background = WorldVisitor.getBackgroundImage(drawWorld);
+        List<TextLabel> textLabels = WorldVisitor.getTextLabels(drawWorld);
+        BufferedImage debugOverlay = null;
+        if (copyImages) {
+            if (WorldVisitor.hasDebugPainting(drawWorld)) {
+                debugOverlay = paintDebugOverlay(drawWorld, worldWidth, worldHeight);
+            }
+            if (background != null) {
+                background = getSnapshot(background);
+            }
+            // Text labels are immutable, so we only need to copy the list:
+            textLabels = new ArrayList<>(textLabels);
+            
+            Map<GreenfootImage, ImageSnapshot> oldSnapshots = snapshots;
+            snapshots = newSnapshots;
+            newSnapshots = oldSnapshots;
+            newSnapshots.clear();
+        }
+        
+        DisplayList displayList = new DisplayList(worldWidth, worldHeight, cellSize, background, count, images,
+                paintXs, paintYs, rotations, xCenters, yCenters, draggedImage, dragX, dragY,
+                debugOverlay, textLabels);
+        if (! copyImages) {
+            reusableDisplayList = displayList;
+        }
+        return displayList;
+    }
 
-                // Restore the old state of the graphics
-                if (oldTx != null) {
-                    g.setTransform(oldTx);
+    /**
+     * Paint the world's debug information (see {@link WorldVisitor#paintDebug}) onto a
+     * transparent overlay, for a display list which will be rendered later.  The overlay
+     * must be released (see {@link #releaseDebugOverlay}) once it has been drawn or discarded.
+     */
+    private BufferedImage paintDebugOverlay(World drawWorld, int width, int height)
+    {
+        BufferedImage overlay = spareDebugOverlay.getAndSet(null);
+        if (overlay == null || overlay.getWidth() != width || overlay.getHeight() != height) {
+            overlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = overlay.createGraphics();
+        WorldVisitor.paintDebug(drawWorld, g);
+        g.dispose();
+        return overlay;
+    }
+
+    /**
+     * Clear a debug overlay which has been drawn or discarded, so that it can be used for a
+     * later display list.
+     */
+    @OnThread(Tag.Any)
+    private void releaseDebugOverlay(BufferedImage overlay)
+    {
+        Arrays.fill(((DataBufferInt) overlay.getRaster().getDataBuffer()).getData(), 0);
+        spareDebugOverlay.set(overlay);
+    }
+
+    /**
+     * Get a snapshot of the given image for the display list being created.  If the image
+     * is unchanged since it was last snapshotted, the same snapshot is returned (which
+     * allows the renderer to cache things, such as the background, by identity).
+     */
+    private GreenfootImage getSnapshot(GreenfootImage image)
+    {
+        ImageSnapshot snapshot = newSnapshots.get(image);
+        if (snapshot == null) {
+            snapshot = snapshots.get(image);
+            int modCount = ImageVisitor.getModCount(image);
+            if (snapshot == null || snapshot.modCount != modCount) {
+                snapshot = new ImageSnapshot(ImageVisitor.getSnapshot(image), modCount);
+            }
+            newSnapshots.put(image, snapshot);
+        }
+        return snapshot.image;
+    }
+
+    /**
+     * Paints all the objects in a display list.
+     *
+     * Runs of consecutive (in paint order) unrotated actors which share the same image are
+     * drawn together, so that the transparency is only set up once per run.  Only
+     * consecutive actors can be grouped, since otherwise overlapping actors could
+     * be painted in the wrong order.
+     */
+    @OnThread(Tag.Any)
+    private void paintObjects(Graphics2D g, DisplayList displayList)
+    {
+        GreenfootImage runImage = null;
+        int runLength = 0;
+        for (int i = 0; i < displayList.count; i++) {
+            GreenfootImage image = displayList.images[i];
+            int rotation = displayList.rotations[i];
+            if (rotation == 0) {
+                if (image != runImage) {
+                    flushRun(g, runImage, runLength);
+                    runImage = image;
+                    runLength = 0;
                 }
+                addToRun(runLength++, displayList.paintXs[i], displayList.paintYs[i]);
             }
+            else {
+                flushRun(g, runImage, runLength);
+                runImage = null;
+                runLength = 0;
+                
+                AffineTransform oldTx = g.getTransform();
+                g.rotate(Math.toRadians(rotation), displayList.xCenters[i], displayList.yCenters[i]);
+                ImageVisitor.drawImage(image, g, displayList.paintXs[i], displayList.paintYs[i], null, true);
+                // Restore the old state of the graphics
+                g.setTransform(oldTx);
+            }
+        }
+        flushRun(g, runImage, runLength);
+    }
+
+    /**
+     * Record the paint location of an actor as the given entry in the current run.
+     */
+    @OnThread(Tag.Any)
+    private void addToRun(int index, int paintX, int paintY)
+    {
+        if (index == runXs.length) {
+            runXs = Arrays.copyOf(runXs, index * 2);
+            runYs = Arrays.copyOf(runYs, index * 2);
+        }
+        runXs[index] = paintX;
+        runYs[index] = paintY;
+    }
+
+    /**
+     * Draw the current run of actors which share the same (unrotated) image, if any.
+     */
+    @OnThread(Tag.Any)
+    private void flushRun(Graphics2D g, GreenfootImage runImage, int runLength)
+    {
+        if (runLength > 0) {
+            ImageVisitor.drawImages(runImage, g, runXs, runYs, runLength, true);
         }
     }
 
     /**
      * Paint the world background. This takes tiling into account: the
      * world image is painted either once or tiled onto this component.
+     * 
+     * <p>An opaque background which is unchanged since the previous frame is
+     * copied directly from a cached copy of its pixels, which is much quicker
+     * than drawing it.  A background is only cached once it has been unchanged
+     * for two frames, so that a background which is modified every frame does
+     * not incur the cost of caching it every frame.
      */
-    private void paintBackground(Graphics2D g, World drawWorld, int width, int height)
+    @OnThread(Tag.Any)
+    private void paintBackground(Graphics2D g, GreenfootImage backgroundImage, BufferedImage worldImage)
     {
-        if (drawWorld != null) {
-            GreenfootImage backgroundImage = WorldVisitor.getBackgroundImage(drawWorld);
-            if (backgroundImage != null) {
-                ImageVisitor.drawImage(backgroundImage, g, 0, 0, null, true);
+        if (backgroundImage != null) {
+            int modCount = ImageVisitor.getModCount(backgroundImage);
+            if (backgroundImage != cachedBackground || modCount != cachedBackgroundMod) {
+                if (backgroundImage == missedBackground && modCount == missedBackgroundMod) {
+                    cacheBackground(backgroundImage, modCount);
+                }
+                else {
+                    missedBackground = backgroundImage;
+                    missedBackgroundMod = modCount;
+                }
+            }
+            
+            if (backgroundImage == cachedBackground && modCount == cachedBackgroundMod
+                    && cachedBackgroundPixels != null
+                    && worldImage.getType() == BufferedImage.TYPE_INT_ARGB) {
+                backgroundCacheHits++;
+                copyBackground(worldImage, backgroundImage.getWidth(), backgroundImage.getHeight());
             }
             else {
-                Color oldColor = g.getColor();
-                g.setColor(BACKGROUND);
-                g.fillRect(0, 0, width, height);
-                g.setColor(oldColor);
+                backgroundCacheMisses++;
+                ImageVisitor.drawImage(backgroundImage, g, 0, 0, null, true);
             }
         }
+        else {
+            Color oldColor = g.getColor();
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, worldImage.getWidth(), worldImage.getHeight());
+            g.setColor(oldColor);
+        }
+    }
+
+    /**
+     * Cache the pixels of the given background image, if it is opaque.
+     */
+    @OnThread(Tag.Any)
+    private void cacheBackground(GreenfootImage backgroundImage, int modCount)
+    {
+        cachedBackground = backgroundImage;
+        cachedBackgroundMod = modCount;
+        missedBackground = null;
+        
+        int length = backgroundImage.getWidth() * backgroundImage.getHeight();
+        if (cachedBackgroundPixels == null || cachedBackgroundPixels.length != length) {
+            cachedBackgroundPixels = new int[length];
+        }
+        ImageVisitor.getPixels(backgroundImage, cachedBackgroundPixels);
+        
+        // Drawing a translucent image blends it with what is already there,
+        // so we can only copy the pixels if there is nothing to blend:
+        boolean opaque = backgroundImage.getTransparency() == 255;
+        for (int i = 0; opaque && i < length; i++) {
+            opaque = (cachedBackgroundPixels[i] >>> 24) == 0xFF;
+        }
+        if (! opaque) {
+            cachedBackgroundPixels = null;
+        }
+    }
+
+    /**
+     * Copy the cached background pixels into the (TYPE_INT_ARGB) world image.
+     */
+    @OnThread(Tag.Any)
+    private void copyBackground(BufferedImage worldImage, int bgWidth, int bgHeight)
+    {
+        int[] dest = ((DataBufferInt) worldImage.getRaster().getDataBuffer()).getData();
+        int worldWidth = worldImage.getWidth();
+        int width = Math.min(bgWidth, worldWidth);
+        int height = Math.min(bgHeight, worldImage.getHeight());
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(cachedBackgroundPixels, y * bgWidth, dest, y * worldWidth, width);
+        }
+    }
+
+    /**
+     * Get the number of frames whose background was copied from the cache.
+     */
+    @OnThread(Tag.Any)
+    public long getBackgroundCacheHits()
+    {
+        return backgroundCacheHits;
+    }
+
+    /**
+     * Get the number of frames whose background could not be copied from the
+     * cache (because it had changed, or could not be cached) and was drawn instead.
+     */
+    @OnThread(Tag.Any)
+    public long getBackgroundCacheMisses()
+    {
+        return backgroundCacheMisses;
     }
 
     /**
      * Paint text labels that have been placed on the world using World.showText(...).
      * @param g   The graphics context to draw on
-     * @param drawWorld   The world
+     * @param displayList   The display list holding the labels
      */
-    private void paintWorldText(Graphics2D g, World drawWorld)
+    @OnThread(Tag.Any)
+    private void paintWorldText(Graphics2D g, DisplayList displayList)
     {
-        List<TextLabel> labels = WorldVisitor.getTextLabels(drawWorld);
+        List<TextLabel> labels = displayList.textLabels;
 
         if (labels.isEmpty()) {
             return;
@@ -184,7 +548,7 @@ public class WorldRenderer
         Color orig = g.getColor();
         Object origAntiAliasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
 
-        int cellsize = WorldVisitor.getCellSize(drawWorld);
+        int cellsize = displayList.cellSize;
         for (TextLabel label : labels) {
             label.draw(g, cellsize);
         }
@@ -198,18 +562,26 @@ public class WorldRenderer
     /**
      * If an object is being dragged, paint it.
      */
-    private void paintDraggedObject(Graphics g, World drawWorld)
+    @OnThread(Tag.Any)
+    private void paintDraggedObject(Graphics g, DisplayList displayList)
+    {
+        if (displayList.dragImage != null) {
+            g.drawImage(displayList.dragImage, displayList.dragX, displayList.dragY, null);
+        }
+    }
+
+    /**
+     * A snapshot of an image, and the modification count of the image when taken.
+     */
+    private static class ImageSnapshot
     {
-        if(dragImage != null) {
-            int x = (int) dragLocation.getX();
-            int y = (int) dragLocation.getY();
-            int xCell =  WorldVisitor.toCellFloor(drawWorld, x);
-            int yCell =  WorldVisitor.toCellFloor(drawWorld, y);
-            int cellSize = WorldVisitor.getCellSize(drawWorld);
-            x = (int) ((xCell + 0.5) * cellSize - dragImage.getWidth()/2);
-            y = (int) ((yCell + 0.5) * cellSize - dragImage.getHeight()/2);
+        private final GreenfootImage image;
+        private final int modCount;
 
-            g.drawImage(dragImage, x, y, null);
+        public ImageSnapshot(GreenfootImage image, int modCount)
+        {
+            this.image = image;
+            this.modCount = modCount;
         }
     }
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2017,2018,2019,2019,2020,2021,2022  Poul Henriksen and Michael Kolling
+ Copyright (C) 2017,2018,2019,2019,2020,2021,2022,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -109,6 +109,8 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
@@ -227,6 +229,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
 
     private GreenfootRecorder saveTheWorldRecorder;
     private final SoundRecorderControls soundRecorder;
+    private final ProfilerWindow profilerWindow = new ProfilerWindow();
     private GreenfootDebugHandler debugHandler;
     private final Menu recentProjectsMenu = new Menu(Config.getString("menu.openRecent"));
     private final SimpleBooleanProperty showingDebugger = new SimpleBooleanProperty(false);
@@ -239,6 +242,11 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
     // World image
     private final WritableImage[] worldImg = new WritableImage[2];
     private int nextWorldImgToWrite = 0;
+    // Whether the next world image to write differs from the displayed image everywhere, or only
+    // in the tiles (x, y, width, height) of the most recent partial update:
+    private boolean worldImgNeedsFullSync = true;
+    private int[] worldImgStaleTiles = new int[0];
+    private int worldImgStaleTileCount = 0;
 
     // The scenario information that usually shipped with it when uploading
     // to the gallery. We should maintain a reference to it and make sure
@@ -343,6 +351,12 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         stages.add(this);
 
         soundRecorder = new SoundRecorderControls(project);
+        JavaFXUtil.addChangeListenerPlatform(profilerWindow.getShowingProperty(), showing -> {
+            if (debugHandler != null)
+            {
+                debugHandler.getVmComms().setProfiling(showing);
+            }
+        });
 
         executionTwirler = new ExecutionTwirler(project, greenfootDebugHandler);
         controlPanel = new ControlPanel(this, executionTwirler);
@@ -498,6 +512,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
             }
         };
         vmCommsHandler.start();
+        debugHandler.getVmComms().setProfiling(profilerWindow.isShowing());
         
         loadAndMirrorProperties();
         Properties lastSavedProperties = project.getUnnamedPackage().getLastSavedProperties();
@@ -1181,6 +1196,9 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
                         soundRecorder.getShowingProperty(),
                         new KeyCodeCombination(KeyCode.U, KeyCombination.SHORTCUT_DOWN),
                         this::toggleSoundRecorder),
+                JavaFXUtil.makeCheckMenuItem(Config.getString("menu.profiler"),
+                        profilerWindow.getShowingProperty(), null,
+                        this::toggleProfiler),
                 JavaFXUtil.makeCheckMenuItem(Config.getString("menu.debugger"),
                         showingDebugger,
                         new KeyCodeCombination(KeyCode.B, KeyCombination.SHORTCUT_DOWN)),
@@ -1254,6 +1272,23 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
 
+    /**
+     * Show/hide the profiler window.
+     *
+     * @param showing if true show the profiler, hide for false.
+     */
+    private void toggleProfiler(Boolean showing)
+    {
+        if (showing)
+        {
+            profilerWindow.show();
+        }
+        else
+        {
+            profilerWindow.close();
+        }
+    }
+
     /**
      * Generates the Documentation for the current scenario
      */
@@ -1687,6 +1722,8 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
                     buffer, width);
             worldDisplay.setImage(worldImg[nextWorldImgToWrite]);
             nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
+            // The other image is now entirely out of date:
+            worldImgNeedsFullSync = true;
             worldInstantiationError = false;
             worldVisible.set(true);
         }
@@ -1702,6 +1739,96 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
             stateProperty.set(simulationRunning ? State.RUNNING : State.PAUSED);
         }
     }
+
+    /**
+     * A partial world image update has been received from the remote VM, consisting of
+     * the tiles which have changed since the previous image.
+     * 
+     * @param width      The image width
+     * @param height     The image height
+     * @param tileCount  The number of tiles
+     * @param buffer     The buffer containing the tiles; each is the x, y, width and height
+     *                   of the tile followed by its pixel data
+     * @return  true if the update was applied, or false if there is no up-to-date image
+     *          to apply it to (in which case a full image is needed).
+     */
+    public boolean receivedWorldImageTiles(int width, int height, int tileCount, IntBuffer buffer)
+    {
+        // If we are closing a project but receive an image late on, ignore it:
+        if (project == null)
+        {
+            return true;
+        }
+        
+        int displayedIndex = (nextWorldImgToWrite + worldImg.length - 1) % worldImg.length;
+        WritableImage displayed = worldImg[displayedIndex];
+        if (displayed == null || displayed.getWidth() != width || displayed.getHeight() != height)
+        {
+            return false;
+        }
+        
+        WritableImage target = worldImg[nextWorldImgToWrite];
+        if (target == null || target.getWidth() != width || target.getHeight() != height)
+        {
+            target = new WritableImage(width, height);
+            worldImg[nextWorldImgToWrite] = target;
+            worldImgNeedsFullSync = true;
+        }
+        
+        try
+        {
+            // First bring the image up to date with the one currently displayed:
+            PixelWriter writer = target.getPixelWriter();
+            PixelReader displayedReader = displayed.getPixelReader();
+            if (worldImgNeedsFullSync)
+            {
+                writer.setPixels(0, 0, width, height, displayedReader, 0, 0);
+            }
+            else
+            {
+                for (int i = 0; i < worldImgStaleTileCount * 4; i += 4)
+                {
+                    writer.setPixels(worldImgStaleTiles[i], worldImgStaleTiles[i + 1],
+                            worldImgStaleTiles[i + 2], worldImgStaleTiles[i + 3], displayedReader,
+                            worldImgStaleTiles[i], worldImgStaleTiles[i + 1]);
+                }
+            }
+            
+            // Then apply the changes, remembering which tiles will be stale in the other image:
+            if (worldImgStaleTiles.length < tileCount * 4)
+            {
+                worldImgStaleTiles = new int[tileCount * 4];
+            }
+            for (int i = 0; i < tileCount; i++)
+            {
+                int x = buffer.get();
+                int y = buffer.get();
+                int tileWidth = buffer.get();
+                int tileHeight = buffer.get();
+                int dataStart = buffer.position();
+                writer.setPixels(x, y, tileWidth, tileHeight, PixelFormat.getIntArgbInstance(),
+                        buffer, tileWidth);
+                buffer.position(dataStart + tileWidth * tileHeight);
+                worldImgStaleTiles[i * 4] = x;
+                worldImgStaleTiles[i * 4 + 1] = y;
+                worldImgStaleTiles[i * 4 + 2] = tileWidth;
+                worldImgStaleTiles[i * 4 + 3] = tileHeight;
+            }
+            worldImgStaleTileCount = tileCount;
+            worldImgNeedsFullSync = false;
+            
+            worldDisplay.setImage(target);
+            nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException ex)
+        {
+            Debug.reportError("Error receiving partial world image");
+            // We don't know what state the image is in, so make sure it gets fully updated:
+            worldImgNeedsFullSync = true;
+            return false;
+        }
+        return true;
+    }
     
     /**
      * When processing messages from the remote VM, we discovered the world has changed.
@@ -2888,6 +3015,15 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
 
+    /**
+     * Called with the latest profiling summary from the debug VM (only sent while
+     * the profiler window is showing).
+     */
+    public void receivedProfileSummary(String summary)
+    {
+        profilerWindow.setSummary(summary);
+    }
+
     /**
      * Called with the latest simulation speed
      * @param simSpeed The simulation speed we received from the debug VM:
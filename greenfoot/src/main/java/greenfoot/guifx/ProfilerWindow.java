@@ -0,0 +1,80 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.guifx;
+
+import bluej.BlueJTheme;
+import bluej.Config;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.scene.Scene;
+import javafx.scene.control.TextArea;
+import javafx.scene.image.Image;
+import javafx.stage.Stage;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A window showing the profiling summary sent by the debug VM (see
+ * greenfoot.core.SimulationProfiler), which is updated once per second while the
+ * simulation runs.  Profiling is only enabled while this window is showing.
+ */
+@OnThread(Tag.FXPlatform)
+public class ProfilerWindow extends Stage
+{
+    private final TextArea summaryText = new TextArea();
+    private final SimpleBooleanProperty showingProperty = new SimpleBooleanProperty(false);
+
+    public ProfilerWindow()
+    {
+        setTitle(Config.getString("profiler.title"));
+        Image icon = BlueJTheme.getApplicationFxIcon("greenfoot", false);
+        if (icon != null)
+        {
+            getIcons().add(icon);
+        }
+
+        summaryText.setEditable(false);
+        summaryText.setWrapText(false);
+        summaryText.getStyleClass().add("profiler-summary");
+        summaryText.setText(Config.getString("profiler.waiting"));
+        Scene scene = new Scene(summaryText, 720, 480);
+        Config.addGreenfootStylesheets(scene);
+        setScene(scene);
+
+        setOnShown(e -> showingProperty.set(true));
+        setOnHidden(e -> showingProperty.set(false));
+    }
+
+    /**
+     * Show the latest summary received from the debug VM.
+     */
+    public void setSummary(String summary)
+    {
+        double scrollTop = summaryText.getScrollTop();
+        summaryText.setText(summary);
+        summaryText.setScrollTop(scrollTop);
+    }
+
+    public SimpleBooleanProperty getShowingProperty()
+    {
+        return showingProperty;
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2013,2014,2015,2018  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2013,2014,2015,2018,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -28,22 +28,12 @@ import greenfoot.core.GreenfootMain;
 import greenfoot.platforms.GreenfootUtilDelegate;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
-import au.com.bytecode.opencsv.CSVReader;
-import au.com.bytecode.opencsv.CSVWriter;
 import bluej.Config;
 import bluej.runtime.ExecServer;
 import bluej.utility.Debug;
@@ -73,6 +63,10 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         return instance;
     }
     
+    /** The local store of user information, in the scenario directory */
+    private final LocalUserStorage storage = new LocalUserStorage(
+            new File(LocalUserStorage.CSV_FILE_NAME), new File(LocalUserStorage.LOG_FILE_NAME));
+    
     private GreenfootUtilDelegateIDE()
     {
         // Nothing to do.
@@ -137,18 +131,19 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return null;
         
-        ArrayList<UserInfo> all = getAllDataSorted(true);
-        
-        if (all == null)
-            return null; // Error reading file
-        
-        for (int i = 0; i < all.size(); i++)
+        try
         {
-            if (getUserName().equals(all.get(i).getUserName()))
+            int index = storage.indexOf(getUserName());
+            if (index != -1)
             {
-                return all.get(i);
+                return makeStorage(storage.getLine(getUserName()), index + 1, true);
             }
         }
+        catch (IOException e)
+        {
+            Debug.message("Error reading user data: " + e.getMessage());
+            return null;
+        }
         
         // Couldn't find them anywhere, return blank:
         return UserInfoVisitor.allocate(getUserName(), -1, getUserName());
@@ -212,49 +207,9 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return false;
         
-        List<String[]> all;
-        try
-        {
-            CSVReader csv = new CSVReader(new InputStreamReader(new FileInputStream("storage.csv"), "UTF-8"));
-            all = csv.readAll();
-            csv.close();
-        }
-        catch (FileNotFoundException e)
-        {
-            // No previous storage, make a new blank one:
-            all = new ArrayList<>();
-        }
-        catch (IOException e)
-        {
-            Debug.message("Error reading user data: " + e.getMessage());
-            return false;
-        }
-        
-        // First, remove any existing line:
-        Iterator<String[]> lineIt = all.iterator();
-        while (lineIt.hasNext())
-        {
-            String[] line = lineIt.next();
-            if (line.length > 1 && getUserName().equals(line[0]))
-            {
-                lineIt.remove();
-                break;
-            }
-        }
-        
-        // Then add a line on to the end:
-        if (data != null)
-        {
-            // No line for that user, add a new one:
-            all.add(makeLine(getUserName(), data));
-        }
-        
         try
         {
-            CSVWriter csvOut = new CSVWriter(new OutputStreamWriter(new FileOutputStream("storage.csv"), "UTF-8"));
-            csvOut.writeAll(all);
-            csvOut.close();
-            
+            storage.store(getUserName(), data == null ? null : makeLine(getUserName(), data));
             return true;
         }
         catch (IOException e)
@@ -264,40 +219,26 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         }
     }
     
-    private ArrayList<UserInfo> getAllDataSorted(boolean useSingleton)
+    /**
+     * Get the stored user information for a range of ranks, in rank order.
+     * 
+     * @param fromIndex  The index of the first entry (rank - 1), inclusive
+     * @param toIndex  The index of the last entry, exclusive
+     * @return  The user information, or null if there was a problem reading it
+     */
+    private ArrayList<UserInfo> getDataSorted(int fromIndex, int toIndex, boolean useSingleton)
     {
         try
         {
             ArrayList<UserInfo> ret = new ArrayList<>();
-            
-            CSVReader csv = new CSVReader(new InputStreamReader(new FileInputStream("storage.csv"), "UTF-8"));
-            
-            List<String[]> all = csv.readAll();
-            
-            Collections.sort(all, new Comparator<String[]>() {
-                @Override
-                public int compare(String[] o1, String[] o2)
-                {
-                    // Sort in reverse order:
-                    return -(Integer.parseInt(o1[1]) - Integer.parseInt(o2[1]));
-                }
-            });
-            
-            int rank = 1;
-            for (String[] line : all)
+            int rank = fromIndex + 1;
+            for (String[] line : storage.getRange(fromIndex, toIndex))
             {
                 ret.add(makeStorage(line, rank, useSingleton));
                 rank++;
             }
-            
-            csv.close();
             return ret;
         }
-        catch (FileNotFoundException e)
-        {
-            // No previous storage, return the blank list:
-            return new ArrayList<>();
-        }
         catch (IOException e)
         {
             Debug.message("Error reading user data: " + e.getMessage());
@@ -308,13 +249,7 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
     @Override
     public List<UserInfo> getTopUserInfo(int limit)
     {
-        ArrayList<UserInfo> ret = getAllDataSorted(false);
-        if (ret == null)
-            return null;
-        else if (ret.size() <= limit || limit <= 0)
-            return ret;
-        else
-            return ret.subList(0, limit);
+        return getDataSorted(0, limit <= 0 ? Integer.MAX_VALUE : limit, false);
     }
 
     @Override
@@ -330,27 +265,24 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return null;
         
-        ArrayList<UserInfo> all = getAllDataSorted(false);
-        
-        if (all == null)
-            return null;
-        
-        int index = -1;
-        
-        for (int i = 0; i < all.size();i++)
+        int index;
+        int size;
+        try
         {
-            if (getUserName() != null && getUserName().equals(all.get(i).getUserName()))
-            {
-                index = i;
-                break;
-            }
+            index = storage.indexOf(getUserName());
+            size = storage.size();
+        }
+        catch (IOException e)
+        {
+            Debug.message("Error reading user data: " + e.getMessage());
+            return null;
         }
         
         if (index == -1 || maxAmount == 0)
             return new ArrayList<>();
         
         int availableBefore = index;
-        int availableAfter = all.size() - 1 - index;
+        int availableAfter = size - 1 - index;
         
         int desiredBefore = maxAmount / 2;
         int desiredAfter = Math.max(0, maxAmount - 1) / 2;
@@ -367,22 +299,22 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (availableAfter + availableBefore + 1 <= maxAmount)
         {
             //Less overall that we want, use everything:
-            return all;
+            return getDataSorted(0, size, false);
         }
         else if (availableBefore <= desiredBefore)
         {
             // Not enough available before-hand, but must be enough in total:
-            return all.subList(index - availableBefore, index - availableBefore + maxAmount + 1);
+            return getDataSorted(index - availableBefore, index - availableBefore + maxAmount + 1, false);
         }
         else if (availableAfter <= desiredAfter)
         {
             // Not enough available after, but must be enough in total:
-            return all.subList(index + availableAfter - maxAmount, index + availableAfter + 1);
+            return getDataSorted(index + availableAfter - maxAmount, index + availableAfter + 1, false);
         }
         else
         {
             // Must have enough available before and after:
-            return all.subList(index - desiredBefore, index + desiredAfter + 1);
+            return getDataSorted(index - desiredBefore, index + desiredAfter + 1, false);
         }
     }    
 }
@@ -0,0 +1,399 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.ide;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * The local (IDE) store for user information, as used by the UserInfo class.
+ * 
+ * <p>The authoritative format is a CSV file ("storage.csv"), with one line per user:
+ * user name, score, the integers and then the strings.  Rather than rewriting that file
+ * on every store, changes are appended to a log file in the same format, and the CSV file
+ * is only rewritten ("compacted") once the log has grown larger than the data.  A log line
+ * holding just a user name removes that user.  The CSV file is created (empty) when the log
+ * is first written, so a log without a CSV file is out of date, and is discarded.
+ * 
+ * <p>All lines are kept in memory, sorted by score (highest first, with ties in the order
+ * that they were stored), so that ranks and leaderboard ranges can be found without
+ * re-reading and re-sorting the file.  If the CSV file is changed by something else (e.g.
+ * it is deleted to clear the scores, or edited by an older version of Greenfoot), it takes
+ * priority over the log, and the stored data is reloaded.
+ */
+@OnThread(Tag.Any)
+public class LocalUserStorage
+{
+    /** The names of the files, in the scenario directory */
+    public static final String CSV_FILE_NAME = "storage.csv";
+    public static final String LOG_FILE_NAME = "storage.log";
+
+    /** The log is never compacted until it has at least this many lines */
+    private static final int MIN_COMPACT_LINES = 64;
+
+    private final File csvFile;
+    private final File logFile;
+
+    /** Whether the data has been loaded from the files */
+    private boolean loaded;
+    /** The last modification time and length of the CSV file, when we last read or wrote it */
+    private long csvModified;
+    private long csvLength;
+
+    /** All entries, sorted by rank */
+    private final ArrayList<Entry> sorted = new ArrayList<>();
+    /** All entries, by user name */
+    private final Map<String, Entry> byName = new HashMap<>();
+    /** The sequence number to give the next stored entry */
+    private long nextSequence;
+
+    /** The open log writer (null if not yet opened) */
+    private CSVWriter logWriter;
+    /** The number of lines in the log file */
+    private int logLines;
+
+    /**
+     * Construct a storage which uses the given files.
+     * 
+     * @param csvFile  The CSV file holding all user information
+     * @param logFile  The file to which changes are appended
+     */
+    public LocalUserStorage(File csvFile, File logFile)
+    {
+        this.csvFile = csvFile;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Compact the storage in the given scenario directory, if it has a log, so that the CSV
+     * file holds all the stored information (for instance, before the scenario is exported).
+     * A scenario which is running will re-read the CSV file when it next uses the storage.
+     */
+    public static void compactStorage(File scenarioDir) throws IOException
+    {
+        File csvFile = new File(scenarioDir, CSV_FILE_NAME);
+        File logFile = new File(scenarioDir, LOG_FILE_NAME);
+        if (csvFile.exists() && logFile.exists())
+        {
+            new LocalUserStorage(csvFile, logFile).compact();
+        }
+    }
+
+    /**
+     * Get the number of users that have stored information.
+     */
+    public synchronized int size() throws IOException
+    {
+        ensureLoaded();
+        return sorted.size();
+    }
+
+    /**
+     * Get the lines for a range of ranks, in rank order.  The first line has rank 1, and is
+     * at index 0.
+     * 
+     * @param fromIndex  The index of the first line (inclusive)
+     * @param toIndex  The index of the last line (exclusive); will be limited to the number of users
+     */
+    public synchronized List<String[]> getRange(int fromIndex, int toIndex) throws IOException
+    {
+        ensureLoaded();
+        toIndex = Math.min(toIndex, sorted.size());
+        ArrayList<String[]> lines = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+        for (int i = Math.max(0, fromIndex); i < toIndex; i++)
+        {
+            lines.add(sorted.get(i).line);
+        }
+        return lines;
+    }
+
+    /**
+     * Get the index (rank - 1) of the given user, or -1 if they have no stored information.
+     */
+    public synchronized int indexOf(String userName) throws IOException
+    {
+        ensureLoaded();
+        Entry entry = byName.get(userName);
+        return entry == null ? -1 : Collections.binarySearch(sorted, entry, RANK_ORDER);
+    }
+
+    /**
+     * Get the line for the given user, or null if they have no stored information.
+     */
+    public synchronized String[] getLine(String userName) throws IOException
+    {
+        ensureLoaded();
+        Entry entry = byName.get(userName);
+        return entry == null ? null : entry.line;
+    }
+
+    /**
+     * Store the information for a user, replacing any previous information for that user.
+     * 
+     * @param userName  The user name
+     * @param line  The line to store (starting with the user name and score), or null to
+     *              remove the user's information.
+     */
+    public synchronized void store(String userName, String[] line) throws IOException
+    {
+        ensureLoaded();
+        if (line != null && parseScore(line) == null)
+        {
+            throw new IllegalArgumentException("Invalid user information line");
+        }
+        
+        if (logWriter == null)
+        {
+            if (csvFile.createNewFile())
+            {
+                recordCsvStamp();
+            }
+            logWriter = new CSVWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8"));
+        }
+        logWriter.writeNext(line != null ? line : new String[] {userName});
+        logWriter.flush();
+        logLines++;
+        
+        apply(userName, line);
+        
+        if (logLines >= MIN_COMPACT_LINES && logLines > 2 * sorted.size())
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the CSV file with all current information, and empty the log.
+     */
+    public synchronized void compact() throws IOException
+    {
+        ensureLoaded();
+        File tempFile = new File(csvFile.getPath() + ".tmp");
+        CSVWriter csvOut = new CSVWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+        try
+        {
+            // Write in the order stored, so that ties keep their order when read back:
+            ArrayList<Entry> inStoreOrder = new ArrayList<>(sorted);
+            inStoreOrder.sort(Comparator.comparingLong(e -> e.sequence));
+            for (Entry entry : inStoreOrder)
+            {
+                csvOut.writeNext(entry.line);
+            }
+        }
+        finally
+        {
+            csvOut.close();
+        }
+        
+        try
+        {
+            Files.move(tempFile.toPath(), csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(tempFile.toPath(), csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        recordCsvStamp();
+        discardLog();
+    }
+
+    /**
+     * Load the data if it has not yet been loaded, or if the CSV file has been changed
+     * since we last read or wrote it.
+     */
+    private void ensureLoaded() throws IOException
+    {
+        if (loaded && csvFile.lastModified() == csvModified && csvFile.length() == csvLength)
+        {
+            return;
+        }
+        
+        // If the CSV file has been changed (or deleted) by something else since the log
+        // was last written (or since we loaded it), the log is out of date:
+        boolean useLog = !loaded && logFile.exists() && csvFile.exists()
+                && logFile.lastModified() >= csvFile.lastModified();
+        
+        loaded = false;
+        sorted.clear();
+        byName.clear();
+        nextSequence = 0;
+        if (!useLog)
+        {
+            discardLog();
+        }
+        
+        recordCsvStamp();
+        readLines(csvFile);
+        if (useLog)
+        {
+            logLines = readLines(logFile);
+        }
+        loaded = true;
+        
+        if (logLines >= MIN_COMPACT_LINES && logLines > 2 * sorted.size())
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Read and apply all lines from the given file, if it exists.
+     * 
+     * @return  The number of lines read.
+     */
+    private int readLines(File file) throws IOException
+    {
+        List<String[]> lines;
+        try
+        {
+            CSVReader csv = new CSVReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try
+            {
+                lines = csv.readAll();
+            }
+            finally
+            {
+                csv.close();
+            }
+        }
+        catch (FileNotFoundException e)
+        {
+            return 0;
+        }
+        
+        for (String[] line : lines)
+        {
+            if (line.length == 1)
+            {
+                apply(line[0], null);
+            }
+            else if (parseScore(line) != null)
+            {
+                apply(line[0], line);
+            }
+            // Otherwise, the line is not valid, and is ignored.
+        }
+        return lines.size();
+    }
+
+    /**
+     * Apply a change to the in-memory data.
+     */
+    private void apply(String userName, String[] line)
+    {
+        Entry old = byName.remove(userName);
+        if (old != null)
+        {
+            sorted.remove(Collections.binarySearch(sorted, old, RANK_ORDER));
+        }
+        
+        if (line != null)
+        {
+            Entry entry = new Entry(line, parseScore(line), nextSequence++);
+            byName.put(userName, entry);
+            int insertAt = -1 - Collections.binarySearch(sorted, entry, RANK_ORDER);
+            sorted.add(insertAt, entry);
+        }
+    }
+
+    /**
+     * Close and delete the log file.
+     */
+    private void discardLog() throws IOException
+    {
+        if (logWriter != null)
+        {
+            logWriter.close();
+            logWriter = null;
+        }
+        if (logFile.exists() && !logFile.delete())
+        {
+            throw new IOException("Could not delete " + logFile);
+        }
+        logLines = 0;
+    }
+
+    private void recordCsvStamp()
+    {
+        csvModified = csvFile.lastModified();
+        csvLength = csvFile.length();
+    }
+
+    /**
+     * Get the score from a line, or null if the line does not have a valid score.
+     */
+    private static Integer parseScore(String[] line)
+    {
+        try
+        {
+            return line.length > 1 ? Integer.valueOf(line[1]) : null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /** Highest score first; equal scores in the order stored */
+    private static final Comparator<Entry> RANK_ORDER = (a, b) -> {
+        int byScore = Integer.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Long.compare(a.sequence, b.sequence);
+    };
+
+    /**
+     * A stored line, with its parsed score and the sequence number of the store.
+     */
+    private static class Entry
+    {
+        private final String[] line;
+        private final int score;
+        private final long sequence;
+
+        private Entry(String[] line, int score, long sequence)
+        {
+            this.line = line;
+            this.score = score;
+            this.sequence = sequence;
+        }
+    }
+}
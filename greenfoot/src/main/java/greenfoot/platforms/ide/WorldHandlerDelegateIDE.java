@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -31,6 +31,7 @@ import greenfoot.vmcomm.VMCommsSimulation;
 import greenfoot.vmcomm.VMCommsSimulation.PaintWhen;
 import greenfoot.platforms.WorldHandlerDelegate;
 import greenfoot.record.GreenfootRecorder;
+import greenfoot.sound.SoundFactory;
 import greenfoot.util.GreenfootUtil;
 import threadchecker.OnThread;
 import threadchecker.Tag;
@@ -136,6 +137,8 @@ public class WorldHandlerDelegateIDE
         }
 
         final Class<? extends World> icls = cls;
+        // Get the scenario's sounds ready to play while the world is constructed:
+        SoundFactory.getInstance().preloadSoundFiles();
         Simulation.getInstance().runLater(() -> {
             try {
                 Constructor<?> cons = icls.getConstructor(new Class<?>[0]);
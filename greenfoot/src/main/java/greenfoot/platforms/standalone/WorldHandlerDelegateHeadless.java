@@ -0,0 +1,122 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.Actor;
+import greenfoot.World;
+import greenfoot.core.Simulation;
+import greenfoot.core.WorldHandler;
+import greenfoot.platforms.WorldHandlerDelegate;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Implementation for running scenarios without any display (see
+ * {@link greenfoot.export.HeadlessScenarioRunner}).  Nothing is painted, and
+ * questions asked via Greenfoot.ask() receive an empty answer.
+ */
+@OnThread(Tag.Simulation)
+public class WorldHandlerDelegateHeadless implements WorldHandlerDelegate
+{
+    @OnThread(Tag.Any)
+    private final Constructor<?> worldConstructor;
+
+    /**
+     * Construct a delegate which creates worlds using the given (no-argument) constructor.
+     */
+    @OnThread(Tag.Any)
+    public WorldHandlerDelegateHeadless(Constructor<?> worldConstructor)
+    {
+        this.worldConstructor = worldConstructor;
+    }
+
+    /**
+     * Creates a new instance of the world.
+     * 
+     * @return  The new world, or null if construction failed (the cause is printed).
+     */
+    @OnThread(Tag.Any)
+    public World createWorld()
+    {
+        try {
+            return (World) Simulation.newInstance(worldConstructor);
+        }
+        catch (IllegalArgumentException | InstantiationException | IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    @OnThread(Tag.Any)
+    public void setWorld(final World oldWorld, final World newWorld)
+    {
+    }
+
+    @Override
+    @OnThread(Tag.Any)
+    public void instantiateNewWorld(String className, Runnable runIfError)
+    {
+        WorldHandler.getInstance().clearWorldSet();
+        World newWorld = createWorld();
+        if (newWorld == null) {
+            runIfError.run();
+        }
+        else if (! WorldHandler.getInstance().checkWorldSet()) {
+            WorldHandler.getInstance().setWorld(newWorld, false);
+        }
+    }
+
+    @Override
+    @OnThread(Tag.Any)
+    public void discardWorld(World world)
+    {
+    }
+
+    @Override
+    public void objectAddedToWorld(Actor actor)
+    {
+    }
+
+    @Override
+    public String ask(String prompt)
+    {
+        // There is nobody to answer:
+        return "";
+    }
+
+    @Override
+    public void paint(World world, boolean forcePaint)
+    {
+    }
+
+    @Override
+    public void notifyStoppedWithError()
+    {
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2012  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2012,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,6 +21,7 @@
  */
 package greenfoot.sound;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
@@ -36,77 +37,224 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 /**
  * A cache for soundclip data.
  * 
+ * <p>Clips which are no longer in use are kept until the total size of such clips exceeds
+ * a limit, and then discarded least recently used first. Clips are loaded (and decoded, in
+ * the case of MP3 files) without holding the cache lock, so that loading a large clip does
+ * not hold up the use of other clips.
+ * 
  * @author Davin McCall
  */
 public class ClipCache
 {
-    /** Data for clips that aren't currently in use */
-    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>();
-    private int numberFreeClips = 0;
+    private static final ClipCache instance = new ClipCache();
     
-    private static int MAX_CACHED_CLIPS = 20;
+    /** The maximum total size of the data kept for clips that aren't in use, in bytes */
+    private static final long MAX_FREE_BYTES = 64L * 1024 * 1024;
+    
+    /** Data for clips that aren't currently in use, least recently used first */
+    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>();
+    private long freeBytes = 0;
     
     /** Data for clips that are in use */
     private Map<String,ClipData> cachedClips = new HashMap<String,ClipData>();
     
-    public synchronized ClipData getCachedClip(URL url)
+    /**
+     * Get the clip cache shared by all sounds.
+     */
+    public static ClipCache getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Get the data for a clip, loading it if it is not cached. The data must be released
+     * (via {@link #releaseClipData}) when no longer needed.
+     */
+    public ClipData getCachedClip(URL url)
         throws IOException, UnsupportedAudioFileException
     {
-        String urlStr = url.toString();
-        ClipData data = cachedClips.get(urlStr);
+        return getCachedClip(url, -1);
+    }
+    
+    /**
+     * Get the data for a clip, loading it if it is not cached, unless its data is larger
+     * than the given limit. The data must be released (via {@link #releaseClipData}) when
+     * no longer needed.
+     * 
+     * @param maxBytes  The largest size of clip data to load, or -1 for no limit
+     * @return  The data, or null if it is not cached and is larger than the limit.
+     */
+    public ClipData getCachedClip(URL url, long maxBytes)
+        throws IOException, UnsupportedAudioFileException
+    {
+        ClipData data = takeCachedClip(url.toString());
         if (data == null) {
-            // Maybe we have a free clip
-            data = freeClips.remove(urlStr);
+            data = loadClip(url, maxBytes);
             if (data != null) {
-                numberFreeClips --;
-                cachedClips.put(urlStr, data);
+                data = addClip(data);
             }
         }
+        return data;
+    }
+    
+    /**
+     * Load a clip into the cache, ready for later use, unless it is already cached or
+     * its data is larger than the given limit.
+     * 
+     * @param maxBytes  The largest size of clip data to load, or -1 for no limit
+     * @param decode    Whether to also decode the samples (see {@link ClipData#getSamples()})
+     * @return  whether the clip is now cached.
+     */
+    public boolean preloadClip(URL url, long maxBytes, boolean decode)
+        throws IOException, UnsupportedAudioFileException
+    {
+        if (isCached(url)) {
+            return true;
+        }
+        ClipData data = loadClip(url, maxBytes);
         if (data == null) {
-            // We need to create a new clip
-            AudioInputStream ais = AudioSystem.getAudioInputStream(url);
+            return false;
+        }
+        if (decode && ClipData.isDecodable(data.getFormat())) {
+            data.getSamples();
+        }
+        releaseClipData(addClip(data));
+        return true;
+    }
+    
+    /**
+     * Check whether the data for a clip is cached.
+     */
+    public synchronized boolean isCached(URL url)
+    {
+        String urlStr = url.toString();
+        return cachedClips.containsKey(urlStr) || freeClips.containsKey(urlStr);
+    }
+    
+    public synchronized void releaseClipData(ClipData data)
+    {
+        if (data.release()) {
+            cachedClips.remove(data.getUrl());
+            freeClips.put(data.getUrl(), data);
+            freeBytes += data.getSize();
+            // remove least recently used free clips
+            Iterator<ClipData> it = freeClips.values().iterator();
+            while (freeBytes > MAX_FREE_BYTES && it.hasNext()) {
+                freeBytes -= it.next().getSize();
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Get the cached data for a clip, if any, and add a user to it.
+     */
+    private synchronized ClipData takeCachedClip(String urlStr)
+    {
+        ClipData data = cachedClips.get(urlStr);
+        if (data != null) {
+            data.addUser();
+            return data;
+        }
+        // Maybe we have a free clip
+        data = freeClips.remove(urlStr);
+        if (data != null) {
+            freeBytes -= data.getSize();
+            cachedClips.put(urlStr, data);
+        }
+        return data;
+    }
+    
+    /**
+     * Add newly loaded data (with a single user) to the cache. If the same clip was loaded
+     * by another thread meanwhile, the existing data is used instead.
+     */
+    private synchronized ClipData addClip(ClipData data)
+    {
+        ClipData existing = takeCachedClip(data.getUrl());
+        if (existing != null) {
+            return existing;
+        }
+        cachedClips.put(data.getUrl(), data);
+        return data;
+    }
+    
+    /**
+     * Load the data for a clip.
+     * 
+     * @param maxBytes  The largest size of clip data to load, or -1 for no limit
+     * @return  The data, or null if it is larger than the limit.
+     */
+    private static ClipData loadClip(URL url, long maxBytes)
+        throws IOException, UnsupportedAudioFileException
+    {
+        if (SoundFactory.isMp3(url)) {
+            return loadMp3Clip(url, maxBytes);
+        }
+        
+        AudioInputStream ais = AudioSystem.getAudioInputStream(url);
+        try {
             AudioFormat af = ais.getFormat();
+            if (! ClipData.isDecodable(af)) {
+                // Convert other encodings (and larger sample sizes) to 16-bit PCM, which
+                // can be played by all lines and by the sound mixer:
+                AudioFormat pcm = new AudioFormat(af.getSampleRate(), 16, af.getChannels(), true, false);
+                if (AudioSystem.isConversionSupported(pcm, af)) {
+                    ais = AudioSystem.getAudioInputStream(pcm, ais);
+                    af = pcm;
+                }
+            }
             long frameLength = ais.getFrameLength();
             
-            int total = (int)(af.getFrameSize() * frameLength);
-            byte[] allBytes = new byte[(int)(af.getFrameSize() * frameLength)];
+            long total = af.getFrameSize() * frameLength;
+            if (maxBytes != -1 && (frameLength == AudioSystem.NOT_SPECIFIED || total > maxBytes)) {
+                return null;
+            }
+            byte[] allBytes = new byte[(int) total];
             int pos = 0;
-            
-            try {
-                while (pos < total) {
-                    int r = ais.read(allBytes, pos, total - pos);
-                    if (r == -1) {
-                        break;
-                    }
-                    pos += r;
+            while (pos < total) {
+                int r = ais.read(allBytes, pos, (int) total - pos);
+                if (r == -1) {
+                    break;
                 }
+                pos += r;
             }
-            finally {
-                ais.close();
-            }
-            
-            data = new ClipData(urlStr, allBytes, af, (int) frameLength);
+            return new ClipData(url.toString(), allBytes, af, (int) frameLength);
         }
-        else {
-            data.addUser();
+        finally {
+            ais.close();
         }
-        
-        return data;
     }
     
-    public synchronized void releaseClipData(ClipData data)
+    /**
+     * Decode an MP3 file into clip data.
+     * 
+     * @param maxBytes  The largest size of clip data to load, or -1 for no limit
+     * @return  The data, or null if it is larger than the limit.
+     */
+    private static ClipData loadMp3Clip(URL url, long maxBytes)
+        throws IOException, UnsupportedAudioFileException
     {
-        if (data.release()) {
-            cachedClips.remove(data.getUrl());
-            freeClips.put(data.getUrl(), data);
-            numberFreeClips++;
-            if (numberFreeClips > MAX_CACHED_CLIPS) {
-                // remove least recently used free clip
-                Iterator<ClipData> it = freeClips.values().iterator();
-                it.next();
-                it.remove();
-                numberFreeClips = MAX_CACHED_CLIPS;
+        Mp3AudioInputStream mp3 = new Mp3AudioInputStream(url);
+        try {
+            AudioFormat af = mp3.getFormat();
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            // Must be large enough for at least one decoded frame:
+            byte[] buffer = new byte[64 * 1024];
+            int r = mp3.read(buffer, 0, buffer.length);
+            // Reading returns 0 at the end of the stream:
+            while (r > 0) {
+                data.write(buffer, 0, r);
+                if (maxBytes != -1 && data.size() > maxBytes) {
+                    return null;
+                }
+                r = mp3.read(buffer, 0, buffer.length);
             }
+            byte[] allBytes = data.toByteArray();
+            return new ClipData(url.toString(), allBytes, af, allBytes.length / af.getFrameSize());
+        }
+        finally {
+            mp3.close();
         }
     }
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2012  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2012,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -22,6 +22,7 @@
 package greenfoot.sound;
 
 import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
 
 /**
  * Data for a sound clip.
@@ -35,6 +36,7 @@ public class ClipData
     private AudioFormat format;
     private int activeUsers;
     private int length; // length in sample frames
+    private short[] samples; // decoded samples for mixing, created when needed
     
     /**
      * Construct a ClipData with a single active user.
@@ -77,4 +79,82 @@ public class ClipData
     {
         return length;
     }
+    
+    /**
+     * Get the amount of memory used by the clip data (including the decoded samples,
+     * if any), in bytes.
+     */
+    public synchronized long getSize()
+    {
+        return buffer.length + (samples == null ? 0 : samples.length * 2L);
+    }
+    
+    /**
+     * Check whether clip data in the given format can be decoded by {@link #getSamples()}.
+     * This is the case for 8 and 16-bit PCM formats.
+     */
+    public static boolean isDecodable(AudioFormat format)
+    {
+        Encoding encoding = format.getEncoding();
+        return (encoding.equals(Encoding.PCM_SIGNED) || encoding.equals(Encoding.PCM_UNSIGNED))
+                && (format.getSampleSizeInBits() == 8 || format.getSampleSizeInBits() == 16)
+                && format.getChannels() > 0;
+    }
+    
+    /**
+     * Get the number of channels in the samples returned by {@link #getSamples()}. This is
+     * the number of channels in the clip, but at most two (any further channels are dropped).
+     */
+    public int getSampleChannels()
+    {
+        return Math.min(format.getChannels(), 2);
+    }
+    
+    /**
+     * Get the clip data as signed 16-bit samples, interleaved by channel (see
+     * {@link #getSampleChannels()}). The samples are decoded the first time this is
+     * called and then shared, so the returned array must not be modified.
+     * 
+     * @throws IllegalStateException if the format is not decodable (see {@link #isDecodable}).
+     */
+    public synchronized short[] getSamples()
+    {
+        if (samples == null) {
+            if (! isDecodable(format)) {
+                throw new IllegalStateException("Cannot decode clip format: " + format);
+            }
+            
+            int channels = getSampleChannels();
+            int frameSize = format.getFrameSize();
+            int sampleBytes = format.getSampleSizeInBits() / 8;
+            boolean signed = format.getEncoding().equals(Encoding.PCM_SIGNED);
+            boolean bigEndian = format.isBigEndian();
+            int frames = Math.min(length, buffer.length / frameSize);
+            
+            short[] decoded = new short[frames * channels];
+            int i = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                int offset = frame * frameSize;
+                for (int c = 0; c < channels; c++) {
+                    int value;
+                    if (sampleBytes == 1) {
+                        value = signed ? buffer[offset] : (buffer[offset] & 0xff) - 128;
+                        value <<= 8;
+                    }
+                    else {
+                        int hi = bigEndian ? buffer[offset] : buffer[offset + 1];
+                        int lo = bigEndian ? buffer[offset + 1] : buffer[offset];
+                        value = (hi << 8) | (lo & 0xff);
+                        if (! signed) {
+                            value = (value & 0xffff) - 32768;
+                        }
+                    }
+                    decoded[i++] = (short) value;
+                    offset += sampleBytes;
+                }
+            }
+            samples = decoded;
+        }
+        return samples;
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Mixer output to a single audio line. The line is opened with a small buffer (to keep
+ * latency low) and is left running for as long as the output is open, so that the
+ * problems with repeatedly opening and closing lines described in {@link AudioLine}
+ * do not arise.
+ */
+public class LineMixerOutput implements MixerOutput
+{
+    private final SourceDataLine line;
+
+    /**
+     * Open and start an audio line.
+     * 
+     * @param format  The format of the data which will be written
+     * @param bufferBytes  The size of the line's buffer, in bytes
+     * @throws LineUnavailableException if the line cannot be opened due to resource restrictions
+     * @throws IllegalArgumentException if there is no line which supports the format
+     */
+    public LineMixerOutput(AudioFormat format, int bufferBytes)
+        throws LineUnavailableException
+    {
+        line = AudioSystem.getSourceDataLine(format);
+        line.open(format, bufferBytes);
+        line.start();
+    }
+
+    @Override
+    public void write(byte[] buffer, int length)
+    {
+        line.write(buffer, 0, length);
+    }
+
+    @Override
+    public void close()
+    {
+        line.close();
+    }
+}
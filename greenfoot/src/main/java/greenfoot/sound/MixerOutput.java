@@ -0,0 +1,45 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+/**
+ * The destination of the audio produced by a {@link SoundMixer}. The data is always
+ * in the mixer's output format ({@link SoundMixer#OUTPUT_FORMAT}).
+ * 
+ * @see LineMixerOutput
+ */
+public interface MixerOutput
+{
+    /**
+     * Write mixed audio data. This may block until the output is able to accept the
+     * data, which is what paces the mixer.
+     * 
+     * @param buffer  The audio data
+     * @param length  The number of bytes to write from the start of the buffer
+     */
+    public void write(byte[] buffer, int length);
+
+    /**
+     * Close the output and release any resources it holds.
+     */
+    public void close();
+}
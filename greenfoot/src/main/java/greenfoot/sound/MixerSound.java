@@ -0,0 +1,367 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Plays sound from a URL through the shared {@link SoundMixer}. The sound is loaded into
+ * memory (via the clip cache) the first time it is played.
+ * 
+ * <p>Unlike {@link SoundClip}, no line is opened for the sound, and no extra threads are
+ * needed to start and stop it; it simply claims a voice of the mixer while it is playing
+ * (or paused). If all of the mixer's voices are in use, the sound is not played.
+ * 
+ * <p>A limit may be given on the size of the sound's data; if the data is not cached when
+ * the sound is played, and would be larger than the limit, the sound is streamed instead.
+ */
+public class MixerSound implements Sound, MixerVoice.Listener
+{
+    /** URL of the sound data. */
+    private final URL url;
+    
+    private final SoundMixer mixer;
+    
+    /** The largest size of sound data to load into memory, or -1 for no limit */
+    private final long maxBytes;
+    
+    /** The stream which plays the sound instead, if the data is too large to load (otherwise null) */
+    private Sound stream;
+    
+    /** Data for the clip, once loaded (used for caching) */
+    private ClipData clipData;
+    
+    /** The voice playing this sound. Null unless playing or paused. */
+    private MixerVoice voice;
+    
+    /** The states a sound can be in. */
+    private enum SoundState
+    {
+        STOPPED, PLAYING, LOOPING, PAUSED_PLAYING, PAUSED_LOOPING, CLOSED
+    };
+    
+    private SoundState state = SoundState.CLOSED;
+    
+    /** The volume, between 0 and 100 */
+    private int masterVolume = 100;
+    
+    /** The pan, between -100 (left) and 100 (right) */
+    private int pan = 0;
+    
+    /** Listener for state changes. */
+    private SoundPlaybackListener playbackListener;
+
+    /**
+     * Creates a new sound which will be played through the given mixer.
+     */
+    public MixerSound(URL url, SoundMixer mixer, SoundPlaybackListener listener)
+    {
+        this(url, mixer, listener, -1);
+    }
+    
+    /**
+     * Creates a new sound which will be played through the given mixer, unless its data
+     * is not cached and is larger than the given limit, in which case it is streamed.
+     * 
+     * @param maxBytes  The largest size of sound data to load, or -1 for no limit
+     */
+    public MixerSound(URL url, SoundMixer mixer, SoundPlaybackListener listener, long maxBytes)
+    {
+        this.url = url;
+        this.mixer = mixer;
+        this.maxBytes = maxBytes;
+        playbackListener = listener;
+    }
+    
+    /**
+     * Load the sound data, if not already loaded.  If the data is too large, a stream
+     * is created to play the sound instead.
+     * 
+     * @return  whether the sound data is available.
+     */
+    private boolean load()
+    {
+        if (clipData != null) {
+            return true;
+        }
+        try {
+            ClipData data = ClipCache.getInstance().getCachedClip(url, maxBytes);
+            if (data == null) {
+                GreenfootAudioInputStream input = SoundFactory.isMp3(url) ? new Mp3AudioInputStream(url)
+                        : new JavaAudioInputStream(url);
+                stream = new SoundStream(input, playbackListener);
+                stream.setVolume(masterVolume);
+                return false;
+            }
+            if (! ClipData.isDecodable(data.getFormat())) {
+                ClipCache.getInstance().releaseClipData(data);
+                throw new UnsupportedAudioFileException("Format not supported for playback: " + data.getFormat());
+            }
+            // Decode now, rather than on the mixer thread:
+            data.getSamples();
+            clipData = data;
+            return true;
+        }
+        catch (SecurityException e) {
+            SoundExceptionHandler.handleSecurityException(e, url.toString());
+        }
+        catch (IllegalArgumentException e) {
+            SoundExceptionHandler.handleIllegalArgumentException(e, url.toString());
+        }
+        catch (FileNotFoundException e) {
+            SoundExceptionHandler.handleFileNotFoundException(e, url.toString());
+        }
+        catch (IOException e) {
+            SoundExceptionHandler.handleIOException(e, url.toString());
+        }
+        catch (UnsupportedAudioFileException e) {
+            SoundExceptionHandler.handleUnsupportedAudioFileException(e, url.toString());
+        }
+        return false;
+    }
+    
+    /**
+     * Make sure a voice is playing the sound, claiming a new voice if necessary.
+     * 
+     * @return  whether the sound is playing.
+     */
+    private boolean startVoice(boolean looping)
+    {
+        if (voice != null) {
+            voice.setLooping(looping);
+            if (isPaused()) {
+                voice.resume();
+            }
+            else if (voice.isFinished()) {
+                voice.restart();
+            }
+            return true;
+        }
+        
+        if (! load()) {
+            return false;
+        }
+        voice = mixer.claimVoice(clipData, looping, SoundUtils.levelToGain(masterVolume),
+                pan / 100f, this);
+        return voice != null;
+    }
+    
+    /**
+     * Return the voice (if any) to the mixer.
+     */
+    private void releaseVoice()
+    {
+        if (voice != null) {
+            voice.release();
+            voice = null;
+        }
+    }
+
+    @Override
+    public synchronized void play()
+    {
+        if (stream == null && state == SoundState.PLAYING) {
+            return;
+        }
+        if (stream == null && startVoice(false)) {
+            setState(SoundState.PLAYING);
+        }
+        else if (stream != null) {
+            stream.play();
+        }
+    }
+
+    @Override
+    public synchronized void loop()
+    {
+        if (stream == null && state == SoundState.LOOPING) {
+            return;
+        }
+        if (stream == null && startVoice(true)) {
+            setState(SoundState.LOOPING);
+        }
+        else if (stream != null) {
+            stream.loop();
+        }
+    }
+
+    @Override
+    public synchronized void stop()
+    {
+        if (stream != null) {
+            stream.stop();
+            return;
+        }
+        if (isStopped()) {
+            return;
+        }
+        releaseVoice();
+        setState(SoundState.STOPPED);
+    }
+
+    @Override
+    public synchronized void pause()
+    {
+        if (stream != null) {
+            stream.pause();
+            return;
+        }
+        if (voice == null) {
+            return;
+        }
+        if (state == SoundState.PLAYING) {
+            voice.pause();
+            setState(SoundState.PAUSED_PLAYING);
+        }
+        else if (state == SoundState.LOOPING) {
+            voice.pause();
+            setState(SoundState.PAUSED_LOOPING);
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+        if (state != SoundState.CLOSED) {
+            releaseVoice();
+            if (clipData != null) {
+                ClipCache.getInstance().releaseClipData(clipData);
+                clipData = null;
+            }
+            setState(SoundState.CLOSED);
+        }
+    }
+
+    @Override
+    public synchronized void voiceFinished(MixerVoice finishedVoice)
+    {
+        if (finishedVoice == voice && voice.isFinished() && state == SoundState.PLAYING) {
+            releaseVoice();
+            setState(SoundState.STOPPED);
+        }
+    }
+
+    @Override
+    public synchronized void setVolume(int level)
+    {
+        masterVolume = level;
+        if (stream != null) {
+            stream.setVolume(level);
+        }
+        updateGain();
+    }
+
+    @Override
+    public synchronized int getVolume()
+    {
+        return masterVolume;
+    }
+    
+    /**
+     * Set the pan of the sound.
+     * 
+     * @param pan  The pan, between -100 (left only) and 100 (right only); 0 is central.
+     */
+    public synchronized void setPan(int pan)
+    {
+        this.pan = Math.max(-100, Math.min(100, pan));
+        updateGain();
+    }
+    
+    /**
+     * Get the pan of the sound, between -100 (left only) and 100 (right only).
+     */
+    public synchronized int getPan()
+    {
+        return pan;
+    }
+    
+    private void updateGain()
+    {
+        if (voice != null) {
+            voice.setGain(SoundUtils.levelToGain(masterVolume), pan / 100f);
+        }
+    }
+
+    private void setState(SoundState newState)
+    {
+        if (state != newState) {
+            state = newState;
+            switch (state) {
+                case PLAYING:
+                case LOOPING:
+                    playbackListener.playbackStarted(this);
+                    break;
+                case STOPPED:
+                    playbackListener.playbackStopped(this);
+                    break;
+                case PAUSED_PLAYING:
+                case PAUSED_LOOPING:
+                    playbackListener.playbackPaused(this);
+                    break;
+                case CLOSED:
+                    playbackListener.soundClosed(this);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isPlaying()
+    {
+        if (stream != null) {
+            return stream.isPlaying();
+        }
+        return state == SoundState.PLAYING || state == SoundState.LOOPING;
+    }
+
+    @Override
+    public synchronized boolean isPaused()
+    {
+        if (stream != null) {
+            return stream.isPaused();
+        }
+        return state == SoundState.PAUSED_PLAYING || state == SoundState.PAUSED_LOOPING;
+    }
+
+    @Override
+    public synchronized boolean isStopped()
+    {
+        if (stream != null) {
+            return stream.isStopped();
+        }
+        return state == SoundState.STOPPED || state == SoundState.CLOSED;
+    }
+
+    @Override
+    public String toString()
+    {
+        return url + " " + super.toString();
+    }
+}
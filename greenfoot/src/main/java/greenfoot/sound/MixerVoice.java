@@ -0,0 +1,291 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A voice of a {@link SoundMixer}: one playing instance of a clip, with its own position,
+ * volume and pan. Voices are pre-allocated by the mixer, and claimed by sounds when they
+ * begin playing (see {@link SoundMixer#claimVoice}).
+ * 
+ * <p>No locks are used. The voice's owner (the sound which claimed it) requests changes
+ * by updating the voice state, and the mixer thread acts on the request the next time it
+ * mixes a buffer. The state changes are:
+ * 
+ * <pre>
+ *   FREE --claim--&gt; STARTING --(mixer)--&gt; PLAYING --(mixer, at end)--&gt; FINISHED
+ *   (any owned state) --restart--&gt; STARTING
+ *   (any owned state) --release--&gt; STOPPING --(mixer)--&gt; FREE
+ * </pre>
+ * 
+ * <p>A voice can also be paused, in which case it is not played, but otherwise keeps its state.
+ * 
+ * <p>The playback position and the decoded samples are only accessed by the mixer thread.
+ * The owner must not use the voice after releasing it.
+ */
+public final class MixerVoice
+{
+    /**
+     * A listener for the end of playback of a voice (when not looping).
+     */
+    public static interface Listener
+    {
+        /**
+         * Playback of the voice has reached the end of the clip. This is called on the
+         * mixer thread, so should return quickly. The voice may have been restarted
+         * or released by the time this is called (check {@link MixerVoice#isFinished()}).
+         */
+        public void voiceFinished(MixerVoice voice);
+    }
+    
+    static final int FREE = 0;
+    static final int RESERVED = 1;
+    static final int STARTING = 2;
+    static final int PLAYING = 3;
+    static final int FINISHED = 4;
+    static final int STOPPING = 5;
+    
+    // Results of mixing:
+    static final int MIX_SILENT = 0;
+    static final int MIX_PLAYED = 1;
+    static final int MIX_FINISHED = 2;
+    
+    /** The gain representing unity, in the fixed-point gains used for mixing */
+    private static final int UNITY_GAIN = 1 << 16;
+    
+    private final SoundMixer mixer;
+    private final AtomicInteger state = new AtomicInteger(FREE);
+    
+    // Set by the owner when claiming the voice; published to the mixer thread by
+    // the subsequent write to the state:
+    private short[] newSamples;
+    private int newChannels;
+    private float newSampleRate;
+    private Listener listener;
+    
+    // Set by the owner at any time:
+    private volatile boolean looping;
+    private volatile boolean paused;
+    private volatile int leftGain = UNITY_GAIN;
+    private volatile int rightGain = UNITY_GAIN;
+    
+    // Used only by the mixer thread:
+    private short[] samples;
+    private int channels;
+    private int frameCount;
+    /** The playback position, in frames, as a 32.32 fixed-point value */
+    private long position;
+    /** The amount the position advances for each output frame */
+    private long step;
+    
+    MixerVoice(SoundMixer mixer)
+    {
+        this.mixer = mixer;
+    }
+    
+    /**
+     * Attempt to claim this voice for playing the given clip. The voice will begin
+     * playing from the start of the clip.
+     * 
+     * @return  true if the voice was claimed, false if it was already in use.
+     */
+    boolean claim(ClipData clipData, boolean looping, float volume, float pan, Listener listener)
+    {
+        if (! state.compareAndSet(FREE, RESERVED)) {
+            return false;
+        }
+        newSamples = clipData.getSamples();
+        newChannels = clipData.getSampleChannels();
+        newSampleRate = clipData.getFormat().getSampleRate();
+        this.listener = listener;
+        this.looping = looping;
+        paused = false;
+        setGain(volume, pan);
+        state.set(STARTING);
+        return true;
+    }
+    
+    /**
+     * Set the volume and pan of the voice.
+     * 
+     * @param volume  The volume, as a linear gain between 0 and 1
+     * @param pan  The pan, between -1 (left only) and 1 (right only)
+     */
+    public void setGain(float volume, float pan)
+    {
+        volume = Math.max(0f, Math.min(1f, volume));
+        pan = Math.max(-1f, Math.min(1f, pan));
+        leftGain = (int) (UNITY_GAIN * volume * Math.min(1f, 1f - pan));
+        rightGain = (int) (UNITY_GAIN * volume * Math.min(1f, 1f + pan));
+    }
+    
+    /**
+     * Set whether playback should loop around to the start when reaching the end.
+     */
+    public void setLooping(boolean looping)
+    {
+        this.looping = looping;
+    }
+    
+    /**
+     * Pause playback. The voice keeps its position until resumed.
+     */
+    public void pause()
+    {
+        paused = true;
+    }
+    
+    /**
+     * Resume playback, if paused.
+     */
+    public void resume()
+    {
+        paused = false;
+        mixer.wake();
+    }
+    
+    /**
+     * Restart playback from the start of the clip (and resume, if paused).
+     */
+    public void restart()
+    {
+        paused = false;
+        state.set(STARTING);
+        mixer.wake();
+    }
+    
+    /**
+     * Stop playback and return the voice to the mixer. The voice must not be used
+     * by the owner after this is called.
+     */
+    public void release()
+    {
+        state.set(STOPPING);
+        mixer.wake();
+    }
+    
+    /**
+     * Check whether playback has reached the end of the clip.
+     */
+    public boolean isFinished()
+    {
+        return state.get() == FINISHED;
+    }
+    
+    /**
+     * Check whether the voice is free to be claimed.
+     */
+    boolean isFree()
+    {
+        return state.get() == FREE;
+    }
+    
+    Listener getListener()
+    {
+        return listener;
+    }
+    
+    /**
+     * Add the output of this voice to a mix buffer. Must only be called by the mixer thread.
+     * 
+     * @param mix  The mix buffer, holding interleaved left and right samples
+     * @param frames  The number of frames to mix
+     * @param outputRate  The output sample rate
+     * @return  MIX_PLAYED if the voice was played, MIX_FINISHED if it was played and reached
+     *          the end of the clip, or MIX_SILENT if it was not played.
+     */
+    int mixInto(int[] mix, int frames, float outputRate)
+    {
+        int s = state.get();
+        if (s == STARTING) {
+            samples = newSamples;
+            channels = newChannels;
+            frameCount = samples.length / channels;
+            step = (long) ((double) newSampleRate / outputRate * (1L << 32));
+            position = 0;
+            if (! state.compareAndSet(STARTING, PLAYING)) {
+                return MIX_SILENT;
+            }
+        }
+        else if (s == STOPPING) {
+            samples = null;
+            listener = null;
+            newSamples = null;
+            state.set(FREE);
+            return MIX_SILENT;
+        }
+        else if (s != PLAYING) {
+            return MIX_SILENT;
+        }
+        if (paused) {
+            return MIX_SILENT;
+        }
+        
+        boolean loop = looping;
+        int lg = leftGain;
+        int rg = rightGain;
+        long end = (long) frameCount << 32;
+        long pos = position;
+        boolean ended = frameCount == 0;
+        
+        for (int i = 0; i < frames && ! ended; i++) {
+            if (pos >= end) {
+                if (! loop) {
+                    ended = true;
+                    break;
+                }
+                pos -= end;
+            }
+            
+            // Interpolate linearly between this frame and the next:
+            int index = (int) (pos >>> 32);
+            int frac = (int) (pos >>> 17) & 0x7fff;
+            int next = index + 1;
+            if (next >= frameCount) {
+                next = loop ? 0 : index;
+            }
+            int base = index * channels;
+            int nextBase = next * channels;
+            int left = samples[base];
+            left += ((samples[nextBase] - left) * frac) >> 15;
+            int right = left;
+            if (channels == 2) {
+                right = samples[base + 1];
+                right += ((samples[nextBase + 1] - right) * frac) >> 15;
+            }
+            
+            mix[2 * i] += (left * lg) >> 16;
+            mix[2 * i + 1] += (right * rg) >> 16;
+            pos += step;
+        }
+        if (! loop && pos >= end) {
+            ended = true;
+        }
+        position = pos;
+        
+        if (ended && state.compareAndSet(PLAYING, FINISHED)) {
+            return MIX_FINISHED;
+        }
+        return MIX_PLAYED;
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2011,2012,2013  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2011,2012,2013,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -49,7 +49,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
  */
 public class SoundClip implements Sound, LineListener
 {
-    private static ClipCache clipCache = new ClipCache();
+    private static ClipCache clipCache = ClipCache.getInstance();
     private static ClipProcessThread processThread = new ClipProcessThread();
     private static ClipCloserThread closerThread = new ClipCloserThread();
 
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2011,2012  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2011,2012,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -25,12 +25,21 @@ import greenfoot.util.GreenfootUtil;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
  * Class responsible for creating Sounds and loading them.
  * 
+ * <p>Sound files are loaded into memory in the background (see {@link #preload}) so that
+ * they are ready to play when needed. Small files are loaded as clips. MP3 files and larger
+ * files are streamed, unless the sound mixer is available and they have been decoded into
+ * the clip cache, in which case they are played from memory like any other clip.
+ * 
  * @author Poul Henriksen
  */
 public class SoundFactory 
@@ -51,26 +60,47 @@ public class SoundFactory
      * clips don't work so well. What about applets?
      */
     private static final int maxClipSize = 500 * 1000;
-
-    private SoundFactory()
+    
+    /**
+     * The largest decoded size (in bytes) of an MP3 or large file to keep in memory. Larger
+     * files are always streamed.
+     */
+    private static final long maxDecodedSize = 16 * 1000 * 1000;
+    
+    /** The location and size of a sound file. */
+    private static class SoundFile
     {
-        soundCollection = new SoundCollection();
+        final URL url;
+        final int size;
+        /** Set if the file is too large to be decoded into memory */
+        volatile boolean streamOnly;
         
-        for (String soundFile : GreenfootUtil.getSoundFiles())
+        SoundFile(URL url, int size)
         {
-            // This loads the file, and if it's a SoundClip, puts it in
-            // the sound cache.  It also happens to make objects for
-            // non-SoundClip items, but since they are all streams,
-            // that shouldn't cause a big slowdown or waste of resources.
-            Sound s = createSound(soundFile, true);
-            
-            if (s instanceof SoundClip)
-                ((SoundClip)s).preLoad();
-            
-            // if (!soundCache.hasFreeSpace())
-            //    return; // No point continuing
+            this.url = url;
+            this.size = size;
         }
     }
+    
+    /**
+     * The sound files which have been looked up, by file name, so that the lookup (and
+     * the connection needed to find the size) isn't repeated for each sound created.
+     */
+    private final Map<String,SoundFile> soundFiles = new ConcurrentHashMap<String,SoundFile>();
+    
+    /** The thread on which sounds are preloaded */
+    private final ExecutorService preloader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Sound preload");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private SoundFactory()
+    {
+        soundCollection = new SoundCollection();
+        preloadSoundFiles();
+    }
 
     public synchronized static SoundFactory getInstance()
     {
@@ -96,8 +126,8 @@ public class SoundFactory
     public Sound createSound(final String file, boolean quiet)
     {      
         try {
-            URL url = GreenfootUtil.getURL(file, "sounds");
-            int size = url.openConnection().getContentLength();
+            SoundFile soundFile = getSoundFile(file);
+            URL url = soundFile.url;
             if (isMidi(url)) {
                 return new MidiFileSound(url, soundCollection);
             }
@@ -105,14 +135,28 @@ public class SoundFactory
                 // This is an mp3 file but we don't have the mp3 library available.
                 SoundExceptionHandler.handleMp3LibNotAvailable();
             }   
-            else if(isMp3(url)) {
-                return new SoundStream(new Mp3AudioInputStream(url), soundCollection);
-            }            
-            else if (isJavaAudioStream(size)) {
+            else if (isMp3(url) || isJavaAudioStream(soundFile.size)) {
+                SoundMixer mixer = SoundMixer.getInstance();
+                if (mixer != null && ClipCache.getInstance().isCached(url)) {
+                    // Already decoded, so we can play it from memory (or, if it has been
+                    // dropped from the cache by the time it is played, from a stream):
+                    return new MixerSound(url, mixer, soundCollection, maxDecodedSize);
+                }
+                // Stream it this time, but decode it ready for next time:
+                preload(file);
+                if (isMp3(url)) {
+                    return new SoundStream(new Mp3AudioInputStream(url), soundCollection);
+                }
                 return new SoundStream(new JavaAudioInputStream(url), soundCollection);
             } 
             else {
                 // The sound is small enough to be loaded into memory as a clip.
+                // If possible, it is played through the shared mixer rather than
+                // opening a line of its own:
+                SoundMixer mixer = SoundMixer.getInstance();
+                if (mixer != null) {
+                    return new MixerSound(url, mixer, soundCollection);
+                }
                 return new SoundClip(file, url, soundCollection);
             }
         } catch (IOException e) {
@@ -127,6 +171,66 @@ public class SoundFactory
         return null;
     }
     
+    /**
+     * Load a sound into memory in the background, so that it is ready to be played. Small
+     * files are loaded into the clip cache. MP3 files and larger files are decoded into the
+     * clip cache if the sound mixer is available, and their decoded size is not too large.
+     * Errors are ignored (they are reported if the sound is played).
+     * 
+     * @param file Name of a file or an url
+     */
+    public void preload(final String file)
+    {
+        preloader.execute(() -> {
+            try {
+                SoundFile soundFile = getSoundFile(file);
+                URL url = soundFile.url;
+                if (isMidi(url) || soundFile.streamOnly) {
+                    return;
+                }
+                boolean mixerAvailable = SoundMixer.getInstance() != null;
+                if (isMp3(url) || isJavaAudioStream(soundFile.size)) {
+                    if (mixerAvailable && (!isMp3(url) || GreenfootUtil.isMp3LibAvailable())
+                            && ! ClipCache.getInstance().preloadClip(url, maxDecodedSize, true)) {
+                        soundFile.streamOnly = true;
+                    }
+                }
+                else {
+                    ClipCache.getInstance().preloadClip(url, -1, mixerAvailable);
+                }
+            }
+            catch (IOException | UnsupportedAudioFileException | IllegalArgumentException | SecurityException e) {
+                // Ignore all exceptions when pre-loading
+            }
+        });
+    }
+    
+    /**
+     * Preload (see {@link #preload}) all of the sound files in the scenario. The files are
+     * looked up afresh, since they may have changed since they were last used.
+     */
+    public void preloadSoundFiles()
+    {
+        soundFiles.clear();
+        for (String soundFile : GreenfootUtil.getSoundFiles()) {
+            preload(soundFile);
+        }
+    }
+    
+    /**
+     * Look up a sound file, if it hasn't been looked up already.
+     */
+    private SoundFile getSoundFile(String file) throws IOException
+    {
+        SoundFile soundFile = soundFiles.get(file);
+        if (soundFile == null) {
+            URL url = GreenfootUtil.getURL(file, "sounds");
+            soundFile = new SoundFile(url, url.openConnection().getContentLength());
+            soundFiles.put(file, soundFile);
+        }
+        return soundFile;
+    }
+    
     private boolean isJavaAudioStream(int size)
     {
         // If we can not get the size, or if it is a big file we stream
@@ -140,7 +244,7 @@ public class SoundFactory
         return lowerCaseName.endsWith("mid") || lowerCaseName.endsWith("midi");
     }    
 
-    private boolean isMp3(URL url)
+    static boolean isMp3(URL url)
     {
         String lowerCaseName = url.toString().toLowerCase();
         return lowerCaseName.endsWith("mp3");
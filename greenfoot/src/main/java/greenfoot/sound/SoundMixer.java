@@ -0,0 +1,284 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import greenfoot.util.TimingStats;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * A software mixer, which plays any number of clips (up to a fixed number of voices)
+ * through a single output line, rather than opening a line for each clip.
+ * 
+ * <p>The mixing is done on a single thread, into pre-allocated buffers. Voices are
+ * claimed and controlled without locking (see {@link MixerVoice}), so that starting a
+ * sound never blocks on the mixer, nor the mixer on a sound. The clip samples are
+ * shared with the {@link ClipCache}, so playing a cached clip needs no decoding or copying.
+ * 
+ * <p>When no voices are playing the mixer stops writing to the output, and waits for a
+ * voice to be started.
+ */
+public class SoundMixer
+{
+    /** The format of the mixed output: 44.1kHz, 16-bit signed, stereo, little-endian */
+    public static final AudioFormat OUTPUT_FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+    
+    /** The number of voices in the shared mixer */
+    public static final int DEFAULT_VOICES = 32;
+    /** The number of frames mixed at once by the shared mixer (about 12ms) */
+    public static final int DEFAULT_BUFFER_FRAMES = 512;
+    /** The number of mix buffers which the output line can hold */
+    private static final int LINE_BUFFERS = 4;
+    
+    /** The number of silent buffers written before the mixer waits for a voice to start */
+    private static final int IDLE_BUFFERS = 8;
+    
+    private static SoundMixer instance;
+    private static boolean unavailable;
+    
+    private final MixerOutput output;
+    private final MixerVoice[] voices;
+    private final int bufferFrames;
+    private final int[] mixBuffer;
+    private final byte[] outputBuffer;
+    /** Voices which finished during the current mix, and their listeners */
+    private final MixerVoice[] finishedVoices;
+    private final MixerVoice.Listener[] finishedListeners;
+    
+    private final TimingStats mixTime = new TimingStats();
+    
+    private Thread thread;
+    private volatile boolean running;
+    
+    /**
+     * Get the shared mixer, which plays through the default audio line, starting it if
+     * necessary. Returns null if no suitable line is available.
+     */
+    public static synchronized SoundMixer getInstance()
+    {
+        if (instance == null && ! unavailable) {
+            try {
+                int lineBytes = DEFAULT_BUFFER_FRAMES * LINE_BUFFERS * OUTPUT_FORMAT.getFrameSize();
+                instance = new SoundMixer(new LineMixerOutput(OUTPUT_FORMAT, lineBytes),
+                        DEFAULT_VOICES, DEFAULT_BUFFER_FRAMES);
+                instance.start();
+            }
+            catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+                // We'll use individual lines for each sound instead.
+                unavailable = true;
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Get the shared mixer if it has already been started, without starting it.
+     * Returns null if the mixer has not been started (or is not available).
+     */
+    public static synchronized SoundMixer getStartedInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Construct a mixer. The mixer thread is not started until {@link #start()} is called.
+     * 
+     * @param output  The destination of the mixed audio
+     * @param voiceCount  The maximum number of clips which can play at once
+     * @param bufferFrames  The number of frames to mix at once
+     */
+    public SoundMixer(MixerOutput output, int voiceCount, int bufferFrames)
+    {
+        this.output = output;
+        this.bufferFrames = bufferFrames;
+        voices = new MixerVoice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new MixerVoice(this);
+        }
+        mixBuffer = new int[bufferFrames * 2];
+        outputBuffer = new byte[bufferFrames * OUTPUT_FORMAT.getFrameSize()];
+        finishedVoices = new MixerVoice[voiceCount];
+        finishedListeners = new MixerVoice.Listener[voiceCount];
+    }
+    
+    /**
+     * Start the mixer thread, if it is not already running.
+     */
+    public synchronized void start()
+    {
+        // When running online, threads can be terminated willy-nilly, but
+        // static state is kept. We need to check for this:
+        if (thread == null || ! thread.isAlive()) {
+            running = true;
+            thread = new Thread(this::run, "Sound mixer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+    }
+    
+    /**
+     * Stop the mixer thread, and close the output.
+     */
+    public synchronized void shutdown()
+    {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            }
+            catch (InterruptedException ie) {}
+            thread = null;
+        }
+        output.close();
+    }
+    
+    /**
+     * Claim a voice to play a clip. The voice begins playing from the start of the clip
+     * once it has been claimed.
+     * 
+     * @param clipData  The clip, which must be decodable (see {@link ClipData#isDecodable})
+     * @param looping   Whether to loop back to the start when the end of the clip is reached
+     * @param volume    The volume, as a linear gain between 0 and 1
+     * @param pan       The pan, between -1 (left only) and 1 (right only)
+     * @param listener  A listener to be notified when the clip finishes playing (may be null)
+     * @return  The voice, or null if all voices are in use.
+     */
+    public MixerVoice claimVoice(ClipData clipData, boolean looping, float volume, float pan,
+            MixerVoice.Listener listener)
+    {
+        for (MixerVoice voice : voices) {
+            if (voice.isFree() && voice.claim(clipData, looping, volume, pan, listener)) {
+                wake();
+                return voice;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Get the number of voices which are in use (not free to be claimed).
+     */
+    public int getVoicesInUse()
+    {
+        int count = 0;
+        for (MixerVoice voice : voices) {
+            if (! voice.isFree()) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Get the timing of the mixing of each buffer (not including the time spent writing
+     * the buffer to the output).
+     */
+    public TimingStats getMixTime()
+    {
+        return mixTime;
+    }
+    
+    /**
+     * Get the duration of the audio in one mix buffer, in nanoseconds.
+     */
+    public long getBufferNanos()
+    {
+        return (long) (bufferFrames * 1_000_000_000.0 / OUTPUT_FORMAT.getFrameRate());
+    }
+    
+    /**
+     * Wake the mixer thread, if it is waiting, so that it processes any change to the voices.
+     */
+    void wake()
+    {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+    
+    /**
+     * Mix one buffer of audio from all playing voices, and write it to the output. This is
+     * normally called only by the mixer thread (it is not thread-safe).
+     * 
+     * @return  The number of voices which were played.
+     */
+    int mix()
+    {
+        long start = System.nanoTime();
+        Arrays.fill(mixBuffer, 0);
+        int played = 0;
+        int finished = 0;
+        float outputRate = OUTPUT_FORMAT.getSampleRate();
+        for (MixerVoice voice : voices) {
+            int result = voice.mixInto(mixBuffer, bufferFrames, outputRate);
+            if (result != MixerVoice.MIX_SILENT) {
+                played++;
+                if (result == MixerVoice.MIX_FINISHED) {
+                    finishedListeners[finished] = voice.getListener();
+                    finishedVoices[finished++] = voice;
+                }
+            }
+        }
+        
+        for (int i = 0; i < mixBuffer.length; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mixBuffer[i]));
+            outputBuffer[2 * i] = (byte) sample;
+            outputBuffer[2 * i + 1] = (byte) (sample >> 8);
+        }
+        mixTime.record(System.nanoTime() - start);
+        output.write(outputBuffer, outputBuffer.length);
+        
+        // Now that the end of the clip has been written, let the listeners know:
+        for (int i = 0; i < finished; i++) {
+            if (finishedListeners[i] != null) {
+                finishedListeners[i].voiceFinished(finishedVoices[i]);
+            }
+            finishedListeners[i] = null;
+            finishedVoices[i] = null;
+        }
+        return played;
+    }
+    
+    /**
+     * The mixer thread: mix buffers until there is nothing playing, then wait to be woken.
+     */
+    private void run()
+    {
+        int idleBuffers = 0;
+        while (running) {
+            if (mix() != 0) {
+                idleBuffers = 0;
+            }
+            else if (++idleBuffers >= IDLE_BUFFERS) {
+                LockSupport.park(this);
+                idleBuffers = 0;
+            }
+        }
+    }
+}
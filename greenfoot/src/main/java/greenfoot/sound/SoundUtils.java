@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2011  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2011,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -52,6 +52,24 @@ public class SoundUtils
         return (int) ((Math.log(level) / Math.log(100)) * 100);
     }
 
+    /**
+     * Convert a volume level between 0-100 to a linear gain between 0 and 1, on a
+     * decibel scale similar to that given by line gain controls (100 is full volume,
+     * and each step down is 0.8dB quieter; 0 is silent).
+     * @param level the volume level.
+     * @return the gain.
+     */
+    public static float levelToGain(int level)
+    {
+        if (level <= 0) {
+            return 0f;
+        }
+        if (level >= 100) {
+            return 1f;
+        }
+        return (float) Math.pow(10, (level - 100) * 0.8 / 20);
+    }
+
     /**
      * Calculate how long it will take to play the given number of bytes.
      * 
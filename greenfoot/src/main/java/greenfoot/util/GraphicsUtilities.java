@@ -40,6 +40,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Transparency;
 import java.awt.Graphics;
@@ -441,5 +442,20 @@ public class GraphicsUtilities {
         {
             return overallBounds.height;
         }
+        
+        /**
+         * Get the bounds of all pixels which may be touched by drawOutlinedText
+         * (relative to the same origin), including the outline.
+         */
+        public Rectangle getPaintBounds()
+        {
+            Rectangle r = new Rectangle(0, 0, overallBounds.width, overallBounds.height);
+            for (Shape shape : lineShapes) {
+                r.add(shape.getBounds());
+            }
+            // Allow for the outline stroke and antialiasing:
+            r.grow(2, 2);
+            return r;
+        }
     }
 }
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2014,2015,2016,2018  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2012,2014,2015,2016,2018,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -328,6 +328,8 @@ public class GreenfootUtil
         }
         try {
             image = new GreenfootImage(imageName);
+            // Class images are needed each time an object of the class is created:
+            imageCache.pinImage(imageName);
         }
         catch (IllegalArgumentException iae) {
             // This occurs if the image file doesn't exist anymore
@@ -0,0 +1,195 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of timing measurements, with one bucket per power of two nanoseconds.
+ * As well as the count, total and maximum (as for {@link TimingStats}), this gives
+ * approximate percentiles, which are more useful than the mean when a few calls are
+ * much slower than the rest.
+ */
+@OnThread(Tag.Any)
+public class TimingHistogram
+{
+    /** Bucket i holds measurements in the range [2^i, 2^(i+1)) ns; bucket 0 also holds 0 */
+    private final long[] buckets = new long[64];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * Record a single measurement.
+     *
+     * @param nanos  The elapsed time, in nanoseconds
+     */
+    public synchronized void record(long nanos)
+    {
+        if (nanos < 0)
+        {
+            nanos = 0;
+        }
+        buckets[nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos)
+        {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Get the number of measurements recorded.
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Get the total of all measurements, in nanoseconds.
+     */
+    public synchronized long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    /**
+     * Get the largest measurement, in nanoseconds.
+     */
+    public synchronized long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    /**
+     * Get the mean of the measurements, in nanoseconds (0 if none).
+     */
+    public synchronized long getAverageNanos()
+    {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Get an approximate percentile of the measurements. The result is the upper bound of
+     * the bucket containing the percentile (but no more than the maximum), so it is never
+     * an underestimate and is at most twice the true value.
+     *
+     * @param percentile  The percentile, in the range (0..100]
+     * @return  The approximate percentile in nanoseconds, or 0 if there are no measurements
+     */
+    public synchronized long getPercentileNanos(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            seen += buckets[i];
+            if (seen >= rank)
+            {
+                long upper = i >= 62 ? Long.MAX_VALUE : (2L << i) - 1;
+                return Math.min(upper, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Get the number of measurements in each bucket. Element i is the number of
+     * measurements of at least 2^i nanoseconds (except for element 0, which includes 0),
+     * and less than 2^(i+1) nanoseconds.
+     */
+    public synchronized long[] getBuckets()
+    {
+        return buckets.clone();
+    }
+
+    /**
+     * Discard all measurements.
+     */
+    public synchronized void reset()
+    {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * Get a textual representation of the non-empty buckets, each shown as the
+     * bucket's upper bound and its count, e.g. "<16us:120 <32us:7".
+     */
+    public synchronized String bucketsToString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < buckets.length; i++)
+        {
+            if (buckets[i] != 0)
+            {
+                if (sb.length() != 0)
+                {
+                    sb.append(' ');
+                }
+                sb.append('<').append(formatNanos(i >= 62 ? Long.MAX_VALUE : 2L << i));
+                sb.append(':').append(buckets[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format a time in nanoseconds, using the largest unit in which it is at least 1.
+     */
+    private static String formatNanos(long nanos)
+    {
+        if (nanos >= 1_000_000_000L)
+        {
+            return (nanos / 1_000_000_000L) + "s";
+        }
+        else if (nanos >= 1_000_000L)
+        {
+            return (nanos / 1_000_000L) + "ms";
+        }
+        else if (nanos >= 1_000L)
+        {
+            return (nanos / 1_000L) + "us";
+        }
+        return nanos + "ns";
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("n=%d avg=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", count,
+                getAverageNanos() / 1_000_000.0, getPercentileNanos(50) / 1_000_000.0,
+                getPercentileNanos(90) / 1_000_000.0, getPercentileNanos(99) / 1_000_000.0,
+                maxNanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A simple accumulator for timing measurements (count, total, last and maximum),
+ * used for lightweight diagnostics such as the time taken to transfer a frame.
+ * Recording is cheap enough to be left permanently enabled.
+ */
+@OnThread(Tag.Any)
+public class TimingStats
+{
+    private long count;
+    private long totalNanos;
+    private long lastNanos;
+    private long maxNanos;
+
+    /**
+     * Record a single measurement.
+     *
+     * @param nanos  The elapsed time, in nanoseconds
+     */
+    public synchronized void record(long nanos)
+    {
+        count++;
+        totalNanos += nanos;
+        lastNanos = nanos;
+        if (nanos > maxNanos)
+        {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Get the number of measurements recorded since the last reset.
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Get the total of all measurements since the last reset, in nanoseconds.
+     */
+    public synchronized long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    /**
+     * Get the most recent measurement, in nanoseconds (0 if none).
+     */
+    public synchronized long getLastNanos()
+    {
+        return lastNanos;
+    }
+
+    /**
+     * Get the largest measurement since the last reset, in nanoseconds.
+     */
+    public synchronized long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    /**
+     * Get the mean of the measurements since the last reset, in nanoseconds (0 if none).
+     */
+    public synchronized long getAverageNanos()
+    {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Discard all measurements.
+     */
+    public synchronized void reset()
+    {
+        count = 0;
+        totalNanos = 0;
+        lastNanos = 0;
+        maxNanos = 0;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("n=%d avg=%.3fms max=%.3fms", count,
+                getAverageNanos() / 1_000_000.0, maxNanos / 1_000_000.0);
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -75,6 +75,10 @@ public class Command
 
     public static final int COMMAND_WORLD_FOCUS_GAINED = 40;
     public static final int COMMAND_WORLD_FOCUS_LOST = 41;
+    // The server VM could not apply a partial image update, and needs the next image in full:
+    public static final int COMMAND_REQUEST_FULL_FRAME = 42;
+    // Followed by 1 to enable profiling (see SimulationProfiler), or 0 to disable it:
+    public static final int COMMAND_SET_PROFILING = 43;
     
     
     // Commands are assigned a stricly increasing ID:
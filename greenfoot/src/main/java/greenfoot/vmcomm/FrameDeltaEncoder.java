@@ -0,0 +1,233 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes world images for transfer to the server VM, sending only the tiles which
+ * have changed since the previously sent frame where that is worthwhile.
+ *
+ * <p>The encoded format (written after the image width and height) is:
+ * <ul>
+ * <li>Tile count (T), or -1 if a full frame follows.</li>
+ * <li>The length (L) of the following image data, in integers.</li>
+ * <li>If a full frame: W * H pixels, one row at a time with no gaps.</li>
+ * <li>Otherwise, T tiles, each being the x, y, width (w) and height (h) of the
+ *     tile in pixels followed by w * h pixels, one row at a time.</li>
+ * </ul>
+ *
+ * <p>Changes are found by comparing against a copy of the last sent frame, tile by tile,
+ * so the encoding is exact regardless of what caused the change.
+ */
+@OnThread(Tag.Worker)
+class FrameDeltaEncoder
+{
+    /** The width and height of a tile, in pixels */
+    public static final int TILE_SIZE = 32;
+    /** Tile count value indicating that a full frame follows */
+    public static final int FULL_FRAME = -1;
+
+    /** Copy of the most recently sent frame (null if none has been sent) */
+    private int[] previousFrame;
+    private int previousWidth;
+    private int previousHeight;
+    /** Whether the next frame must be sent in full */
+    private boolean fullFrameRequested = true;
+    /** Indexes of the dirty tiles found while encoding the current frame */
+    private int[] dirtyTiles = new int[0];
+
+    /**
+     * Request that the next frame is sent in full, because the receiver is not able
+     * to apply a delta.
+     */
+    @OnThread(Tag.Any)
+    public synchronized void requestFullFrame()
+    {
+        fullFrameRequested = true;
+    }
+
+    /**
+     * Check whether a full frame has been requested, and a previous frame is
+     * available to be resent (see {@link #encodePrevious(IntBuffer)}).
+     */
+    public synchronized boolean canResendFullFrame()
+    {
+        return fullFrameRequested && previousFrame != null;
+    }
+
+    /**
+     * Encode a frame into the given buffer, which should be positioned immediately after
+     * the image width and height.  The frame is remembered as the basis of the next delta.
+     *
+     * @param pixels  The frame pixels (at least width * height, one row at a time)
+     * @return  The number of integers written, including the tile count and length
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public synchronized int encode(int[] pixels, int width, int height, IntBuffer out)
+    {
+        int pixelCount = width * height;
+        if (fullFrameRequested || previousFrame == null
+                || previousWidth != width || previousHeight != height)
+        {
+            return encodeFull(pixels, width, height, out);
+        }
+
+        int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        if (dirtyTiles.length < tilesAcross * tilesDown)
+        {
+            dirtyTiles = new int[tilesAcross * tilesDown];
+        }
+
+        int dirtyCount = 0;
+        int dirtyPixels = 0;
+        for (int ty = 0; ty < tilesDown; ty++)
+        {
+            int y0 = ty * TILE_SIZE;
+            int th = Math.min(TILE_SIZE, height - y0);
+            for (int tx = 0; tx < tilesAcross; tx++)
+            {
+                int x0 = tx * TILE_SIZE;
+                int tw = Math.min(TILE_SIZE, width - x0);
+                if (tileDiffers(pixels, width, x0, y0, tw, th))
+                {
+                    dirtyTiles[dirtyCount++] = ty * tilesAcross + tx;
+                    dirtyPixels += tw * th;
+                }
+            }
+        }
+
+        // If most of the image has changed, the tile headers aren't worth it:
+        if (dirtyPixels * 2 > pixelCount)
+        {
+            return encodeFull(pixels, width, height, out);
+        }
+
+        // If we fail part way through, the receiver must be sent a full frame next time:
+        fullFrameRequested = true;
+        out.put(dirtyCount);
+        out.put(dirtyPixels + dirtyCount * 4);
+        for (int i = 0; i < dirtyCount; i++)
+        {
+            int x0 = (dirtyTiles[i] % tilesAcross) * TILE_SIZE;
+            int y0 = (dirtyTiles[i] / tilesAcross) * TILE_SIZE;
+            int tw = Math.min(TILE_SIZE, width - x0);
+            int th = Math.min(TILE_SIZE, height - y0);
+            out.put(x0);
+            out.put(y0);
+            out.put(tw);
+            out.put(th);
+            for (int y = y0; y < y0 + th; y++)
+            {
+                int offset = y * width + x0;
+                out.put(pixels, offset, tw);
+                System.arraycopy(pixels, offset, previousFrame, offset, tw);
+            }
+        }
+        fullFrameRequested = false;
+        return 2 + dirtyPixels + dirtyCount * 4;
+    }
+
+    /**
+     * Get the largest number of integers which {@link #encode} may write for a frame of the
+     * given size, including the tile count and length.
+     */
+    @OnThread(Tag.Any)
+    public static long maxEncodedLength(int width, int height)
+    {
+        long tiles = (long) ((width + TILE_SIZE - 1) / TILE_SIZE) * ((height + TILE_SIZE - 1) / TILE_SIZE);
+        return 2 + (long) width * height + 4 * tiles;
+    }
+
+    /**
+     * Re-encode the most recently sent frame in full.  Used when the receiver has requested
+     * a full frame but no new frame is available (e.g. because the simulation is paused).
+     *
+     * @return  The number of integers written, including the tile count and length
+     */
+    public synchronized int encodePrevious(IntBuffer out)
+    {
+        fullFrameRequested = false;
+        out.put(FULL_FRAME);
+        out.put(previousWidth * previousHeight);
+        out.put(previousFrame, 0, previousWidth * previousHeight);
+        return 2 + previousWidth * previousHeight;
+    }
+
+    /**
+     * Get the width of the most recently sent frame.
+     */
+    public synchronized int getPreviousWidth()
+    {
+        return previousWidth;
+    }
+
+    /**
+     * Get the height of the most recently sent frame.
+     */
+    public synchronized int getPreviousHeight()
+    {
+        return previousHeight;
+    }
+
+    /**
+     * Write a full frame, and keep a copy of it.
+     */
+    private int encodeFull(int[] pixels, int width, int height, IntBuffer out)
+    {
+        int pixelCount = width * height;
+        out.put(FULL_FRAME);
+        out.put(pixelCount);
+        out.put(pixels, 0, pixelCount);
+
+        if (previousFrame == null || previousFrame.length != pixelCount)
+        {
+            previousFrame = new int[pixelCount];
+        }
+        System.arraycopy(pixels, 0, previousFrame, 0, pixelCount);
+        previousWidth = width;
+        previousHeight = height;
+        fullFrameRequested = false;
+        return 2 + pixelCount;
+    }
+
+    /**
+     * Check whether a tile differs from the same tile in the previous frame.
+     */
+    private boolean tileDiffers(int[] pixels, int width, int x0, int y0, int tw, int th)
+    {
+        for (int y = y0; y < y0 + th; y++)
+        {
+            int offset = y * width + x0;
+            if (Arrays.mismatch(pixels, offset, offset + tw, previousFrame, offset, offset + tw) != -1)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
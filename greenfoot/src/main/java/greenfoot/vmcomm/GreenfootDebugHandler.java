@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010,2011,2012,2013,2015,2018,2019,2020,2021 Poul Henriksen and Michael Kolling
+ Copyright (C) 2010,2011,2012,2013,2015,2018,2019,2020,2021,2026 Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -220,6 +220,15 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
         return vmComms.getSharedFileSize();
     }    
 
+    /**
+     * Get the transport used over the shared memory (see VMCommsMain.getTransport()).
+     */
+    @OnThread(Tag.FXPlatform)
+    public String getShmTransport()
+    {
+        return vmComms.getTransport();
+    }
+
     /**
      * Gets the last sequence identifier that we've received from the user VM
      */
@@ -723,6 +732,7 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
         /**
          * Get the DebuggerObject that this GreenfootObject wraps.
          */
+        @Override
         public DebuggerObject getDebuggerObject()
         {
             return debuggerObject;
@@ -0,0 +1,156 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A handshake between the server VM and the debug VM using a pair of sequence counters
+ * held in the shared memory, as an alternative to the file-lock protocol described in
+ * {@link VMCommsMain}.  It avoids a system call (and potential scheduling delay) for each
+ * lock acquisition and release.
+ *
+ * <p>Each side owns one counter, and only ever writes to its own counter.  An exchange
+ * ("round") proceeds as follows:
+ *
+ * <pre>
+ *    Server                          Debug
+ *   [writes commands]
+ *     -> publish round N
+ *                                    -> sees round N
+ *                                       [reads commands, writes data]
+ *                                    -> publish round N
+ *     -> sees round N
+ *        [reads data]
+ * </pre>
+ *
+ * <p>Since neither side touches the shared areas while it is the other side's turn, no
+ * locking is needed.  The counters are written with release semantics and read with acquire
+ * semantics, so that the data written before a counter is published is visible to the other
+ * side once it sees the new counter value.  Waiting is done by spinning briefly and then
+ * parking with an increasing back-off.
+ */
+@OnThread(Tag.Any)
+class SequenceHandshake
+{
+    private static final VarHandle INT_HANDLE =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    /** Number of busy-wait iterations before we start parking */
+    private static final int SPIN_COUNT = 200;
+    /** The longest time we park for at once, in nanoseconds */
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    private final ByteBuffer buffer;
+    private final int ownCounterOffset;
+    private final int otherCounterOffset;
+
+    /**
+     * Construct a handshake over the given buffer.
+     *
+     * @param buffer  The shared memory buffer (must be a direct buffer)
+     * @param ownCounterOffset  The byte offset of the counter written by this side
+     * @param otherCounterOffset  The byte offset of the counter written by the other side
+     */
+    public SequenceHandshake(ByteBuffer buffer, int ownCounterOffset, int otherCounterOffset)
+    {
+        this.buffer = buffer;
+        this.ownCounterOffset = ownCounterOffset;
+        this.otherCounterOffset = otherCounterOffset;
+    }
+
+    /**
+     * Publish a round number, indicating that all data written for that round is complete.
+     */
+    public void publish(int round)
+    {
+        INT_HANDLE.setRelease(buffer, ownCounterOffset, round);
+    }
+
+    /**
+     * Get the round number most recently published by this side.
+     */
+    public int getPublished()
+    {
+        return (int) INT_HANDLE.getAcquire(buffer, ownCounterOffset);
+    }
+
+    /**
+     * Get the round number most recently published by the other side.
+     */
+    public int getOther()
+    {
+        return (int) INT_HANDLE.getAcquire(buffer, otherCounterOffset);
+    }
+
+    /**
+     * Wait until the other side publishes a round number for which the given predicate holds.
+     *
+     * @param condition  The condition on the other side's round number
+     * @param timeoutNanos  The maximum time to wait, or a negative value to wait indefinitely
+     * @return  The other side's round number if the condition was met, or -1 if the wait timed out
+     */
+    public int await(RoundCondition condition, long timeoutNanos)
+    {
+        long start = timeoutNanos < 0 ? 0 : System.nanoTime();
+        long parkNanos = 1_000L;
+        int spins = 0;
+        while (true)
+        {
+            int other = getOther();
+            if (condition.isMet(other))
+            {
+                return other;
+            }
+
+            if (spins < SPIN_COUNT)
+            {
+                spins++;
+                Thread.onSpinWait();
+            }
+            else
+            {
+                if (timeoutNanos >= 0 && System.nanoTime() - start >= timeoutNanos)
+                {
+                    return -1;
+                }
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * A condition on a round number published by the other side.
+     */
+    public static interface RoundCondition
+    {
+        public boolean isMet(int otherRound);
+    }
+}
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2018,2021 Poul Henriksen and Michael Kolling 
+ Copyright (C) 2018,2021,2026 Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -33,6 +33,7 @@ import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import bluej.pkgmgr.Project;
@@ -79,8 +80,15 @@ public class VMCommsMain implements Closeable
     // The acquisition order is B-->A, A-->C, and C-->B. This ensures that there can never
     // be deadlock. No process holds all three locks at once and each process always holds at
     // least one lock.
+    //
+    // Alternatively (if the "shm.transport" project property is set to "sequence"), the same
+    // exchange is performed without any file locks, using a pair of sequence counters in the
+    // shared memory to take turns; see SequenceHandshake.  The server's counter is held in
+    // the sync area, and the debug VM's counter in the final integer of the server area.
 
-    public static final int DEFAULT_MAPPED_SIZE = 20_000_000;
+    // The initial size of the shared memory file.  The debug VM grows the file if a world image
+    // would not fit, so this only needs to be large enough for typical worlds:
+    public static final int DEFAULT_MAPPED_SIZE = 4_000_000;
     public static final int USER_AREA_OFFSET = 0x1000; // offset in 4-byte chunks; 16KB worth.
     public static final int USER_AREA_OFFSET_BYTES = USER_AREA_OFFSET * 4;
 
@@ -90,13 +98,36 @@ public class VMCommsMain implements Closeable
     public static final int SYNC_AREA_OFFSET_BYTES = 0;
     public static final int SYNC_AREA_SIZE_BYTES = 4;
     
-    private final int fileSize;
+    // Positions of the round counters used by the sequence-counter transport:
+    public static final int SERVER_ROUND_OFFSET_BYTES = SYNC_AREA_OFFSET_BYTES;
+    public static final int DEBUG_ROUND_OFFSET_BYTES = USER_AREA_OFFSET_BYTES - 4;
+    // The end of the space available for commands (in 4-byte chunks):
+    private static final int COMMAND_AREA_END = USER_AREA_OFFSET - 1;
+    
+    /** The transport which uses file locks (the default) */
+    public static final String TRANSPORT_FILE_LOCK = "filelock";
+    /** The transport which uses sequence counters */
+    public static final String TRANSPORT_SEQUENCE = "sequence";
+    // How long we wait for the debug VM to complete an exchange using the sequence-counter
+    // transport, before giving up until the next exchange:
+    private static final long SEQUENCE_TIMEOUT_NANOS = 50_000_000L;
+    
+    // The current size of the shared memory file, as mapped:
+    private int fileSize;
+    // The size of the file when created (determines the locked regions):
+    private final int initialFileSize;
     private File shmFile;
     private FileChannel fc;
     private MappedByteBuffer sharedMemoryByte;
     private IntBuffer sharedMemory;
     private FileLock putLock;
     private FileLock syncLock;
+    // The transport (TRANSPORT_FILE_LOCK or TRANSPORT_SEQUENCE):
+    private final String transport;
+    // Only used with the sequence-counter transport (null otherwise):
+    private SequenceHandshake handshake;
+    // The last round that we published with the sequence-counter transport:
+    private int serverRound = 0;
 
     // Needs to be AtomicInteger because it's modified from multiple threads:
     private final AtomicInteger lastSeq = new AtomicInteger(0);
@@ -136,6 +167,11 @@ public class VMCommsMain implements Closeable
     private boolean vmReadyForInvocations = false;
     private int askId = -1;
     private boolean workerWaiting = false;
+    // Whether profiling has been requested (see setProfiling):
+    private boolean profiling = false;
+    // The ID of the last profiling summary received, and the summary if not yet shown:
+    private int lastProfileId = -1;
+    private String profileSummary = null;
 
     /**
      * Constructor for VMCommsMain. Creates a temporary file and maps it into memory.
@@ -145,7 +181,11 @@ public class VMCommsMain implements Closeable
     @SuppressWarnings("resource")
     public VMCommsMain(Project project) throws IOException
     {
-        fileSize = Integer.parseInt(project.getUnnamedPackage().getLastSavedProperties().getProperty("shm.size", Integer.toString(DEFAULT_MAPPED_SIZE)));
+        Properties projectProperties = project.getUnnamedPackage().getLastSavedProperties();
+        fileSize = Integer.parseInt(projectProperties.getProperty("shm.size", Integer.toString(DEFAULT_MAPPED_SIZE)));
+        initialFileSize = fileSize;
+        transport = TRANSPORT_SEQUENCE.equals(projectProperties.getProperty("shm.transport"))
+                ? TRANSPORT_SEQUENCE : TRANSPORT_FILE_LOCK;
         
         shmFile = File.createTempFile("greenfoot", "shm");
         shmFile.deleteOnExit();
@@ -153,9 +193,17 @@ public class VMCommsMain implements Closeable
         sharedMemoryByte = fc.map(MapMode.READ_WRITE, 0, fileSize);
         sharedMemory = sharedMemoryByte.asIntBuffer();
         
-        // Obtain the put-area lock right from the start:
-        putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
-        syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+        if (transport == TRANSPORT_SEQUENCE)
+        {
+            handshake = new SequenceHandshake(sharedMemoryByte, SERVER_ROUND_OFFSET_BYTES, DEBUG_ROUND_OFFSET_BYTES);
+        }
+        else
+        {
+            handshake = null;
+            // Obtain the put-area lock right from the start:
+            putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
+            syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+        }
         
         ioThread = new Thread("VMCommsMain") {
             @OnThread(Tag.Worker)
@@ -218,13 +266,23 @@ public class VMCommsMain implements Closeable
     }
 
     /**
-     * Get the size of the file used for this communication channel.
+     * Get the size of the file used for this communication channel.  This may grow
+     * (from the size originally requested) to accommodate large world images.
      */
-    public int getSharedFileSize()
+    public synchronized int getSharedFileSize()
     {
         return fileSize;
     }
 
+    /**
+     * Get the transport used for this communication channel (TRANSPORT_FILE_LOCK or
+     * TRANSPORT_SEQUENCE).
+     */
+    public String getTransport()
+    {
+        return transport;
+    }
+
     /**
      * Write commands into the shared memory buffer.
      */
@@ -239,7 +297,7 @@ public class VMCommsMain implements Closeable
         {
             // sequence, type, extra info:
             int totalLength = pendingCommand.extraInfo.length + 2;
-            if (sharedMemory.position() + totalLength > USER_AREA_OFFSET)
+            if (sharedMemory.position() + totalLength > COMMAND_AREA_END)
             {
                 // We can't write all commands in the available buffer:
                 sharedMemory.put(pendingCountPos, numIssued);
@@ -297,12 +355,22 @@ public class VMCommsMain implements Closeable
         
         if (haveUpdatedImage && shouldDraw)
         {
-            // skip: sequence number, last paint sequence, then:
+            // skip: sequence number, mapped size, last paint sequence, then:
             IntBuffer copy = sharedMemory.asReadOnlyBuffer();
-            copy.position(USER_AREA_OFFSET + 2);
+            copy.position(USER_AREA_OFFSET + 3);
             int width = copy.get();
             int height = copy.get();
-            stage.receivedWorldImage(width, height, copy);
+            int tileCount = copy.get();
+            copy.get(); // skip length of image data
+            if (tileCount == FrameDeltaEncoder.FULL_FRAME)
+            {
+                stage.receivedWorldImage(width, height, copy);
+            }
+            else if (!stage.receivedWorldImageTiles(width, height, tileCount, copy))
+            {
+                // We couldn't apply the changes to our copy of the image, so we need a full frame:
+                pendingCommands.add(new Command(COMMAND_REQUEST_FULL_FRAME));
+            }
             haveUpdatedImage = false;
             lastConsumedImg = lastPaintSeq;
         }
@@ -330,6 +398,12 @@ public class VMCommsMain implements Closeable
         }
 
         stage.setLastUserExecutionStartTime(lastExecStartTime, delayLoop);
+        
+        if (profileSummary != null)
+        {
+            stage.receivedProfileSummary(profileSummary);
+            profileSummary = null;
+        }
             
         checkingIO = false;
         
@@ -344,22 +418,120 @@ public class VMCommsMain implements Closeable
     @OnThread(Tag.Worker)
     private boolean checkIO()
     {
-        FileChannel sharedMemoryLock = this.fc;
-
-        // We are holding the lock for the main put area:
+        if (handshake != null)
+        {
+            exchangeBySequence();
+        }
+        else
+        {
+            exchangeByLocks();
+        }
+        
+        // To avoid consuming close to 100% CPU, we wait on the animation timer:
+        synchronized (this)
+        {
+            try
+            {
+                workerWaiting = true;
+                wait();
+                workerWaiting = false;
+            }
+            catch (InterruptedException ie)
+            {
+                // Nothing needs to be done.
+            }
+            return shmFile != null;
+        }
+    }
+    
+    /**
+     * Write our data (sequence, last consumed image, and commands) to the server area.
+     */
+    @OnThread(Tag.Worker)
+    private void writeServerData()
+    {
         sharedMemory.position(1);
         sharedMemory.put(-lastSeq.get());
         sharedMemory.put(lastConsumedImg);
         writeCommands(pendingCommands);
+    }
+    
+    /**
+     * Perform an exchange with the debug VM using the file-lock protocol.
+     */
+    @OnThread(Tag.Worker)
+    private void exchangeByLocks()
+    {
+        FileChannel sharedMemoryLock = this.fc;
+
+        // We are holding the lock for the main put area:
+        writeServerData();
         
         FileLock fileLock = null;
         
         try
         {
             putLock.release();
-            fileLock = sharedMemoryLock.lock(USER_AREA_OFFSET_BYTES, fileSize - USER_AREA_OFFSET_BYTES, false);
+            fileLock = sharedMemoryLock.lock(USER_AREA_OFFSET_BYTES, initialFileSize - USER_AREA_OFFSET_BYTES, false);
             syncLock.release();
 
+            readDebugVMData();
+        }
+        catch (IOException ex)
+        {
+            Debug.reportError(ex);
+        }
+        finally
+        {
+            // Re-acquire the put-area lock (A), and then release the get-area lock (B)
+            // before re-acquiring the sync lock (C):
+            try
+            {
+                putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
+                if (fileLock != null)
+                {
+                    fileLock.release();
+                }
+                syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+            }
+            catch (IOException ex)
+            {
+                Debug.reportError(ex);
+            }
+        }
+    }
+    
+    /**
+     * Perform an exchange with the debug VM using the sequence-counter protocol.
+     */
+    @OnThread(Tag.Worker)
+    private void exchangeBySequence()
+    {
+        // If our previous wait timed out, the debug VM may still be reading our area, in which
+        // case we mustn't write to it; we just carry on waiting for it to finish:
+        if (handshake.getOther() == serverRound)
+        {
+            writeServerData();
+            serverRound += 1;
+            handshake.publish(serverRound);
+        }
+        
+        int round = serverRound;
+        if (handshake.await(r -> r == round, SEQUENCE_TIMEOUT_NANOS) != -1)
+        {
+            readDebugVMData();
+        }
+    }
+    
+    /**
+     * Read the data from the debug VM area, if it has been updated.  The caller must have
+     * ensured (by whichever protocol) that the debug VM is not currently writing it.
+     */
+    @OnThread(Tag.Worker)
+    private void readDebugVMData()
+    {
+        try
+        {
             int seq = sharedMemory.get(USER_AREA_OFFSET);
             if (seq > lastSeq.get())
             {
@@ -368,16 +540,26 @@ public class VMCommsMain implements Closeable
 
                 synchronized (this)
                 {
-                    sharedMemory.position(USER_AREA_OFFSET + 1);
+                    // If the debug VM has grown the file to fit a larger image, we must
+                    // remap before reading any further:
+                    int debugMappedSize = sharedMemory.get(USER_AREA_OFFSET + 1);
+                    if (debugMappedSize > fileSize)
+                    {
+                        remap(debugMappedSize);
+                    }
+                    
+                    sharedMemory.position(USER_AREA_OFFSET + 2);
                     int paintSeq = sharedMemory.get();
                     int width = sharedMemory.get();
                     int height = sharedMemory.get();
+                    sharedMemory.get(); // skip tile count
+                    int imageDataLength = sharedMemory.get();
                     if (width != 0 && height != 0 && paintSeq != lastPaintSeq)
                     {
                         lastPaintSeq = paintSeq;
                         haveUpdatedImage = true;
                     }
-                    sharedMemory.position(sharedMemory.position() + width * height);
+                    sharedMemory.position(sharedMemory.position() + imageDataLength);
     
                     // Get rid of all commands that the client has confirmed it has seen:
                     int lastAckCommand = sharedMemory.get();
@@ -444,6 +626,21 @@ public class VMCommsMain implements Closeable
                     delayLoop = delayLoopStatus == 1;
                     int vmReadyStatus = sharedMemory.get();
                     vmReadyForInvocations = vmReadyStatus == 1;
+
+                    int profileId = sharedMemory.get();
+                    if (profileId > 0)
+                    {
+                        // Length followed by codepoints for the summary.  We only decode
+                        // it if it is new (it comes last, so there's no need to skip it):
+                        int profileLength = sharedMemory.get();
+                        if (profileId != lastProfileId)
+                        {
+                            int[] profileCodepoints = new int[profileLength];
+                            sharedMemory.get(profileCodepoints);
+                            profileSummary = new String(profileCodepoints, 0, profileLength);
+                            lastProfileId = profileId;
+                        }
+                    }
                 }
             }
         }
@@ -456,40 +653,22 @@ public class VMCommsMain implements Closeable
             // Happens when world size is too large: swallow quietly, as will happen repeatedly.
             // The exception will be reported to the user from the debug VM side.
         }
-        finally
-        {
-            // Re-acquire the put-area lock (A), and then release the get-area lock (B)
-            // before re-acquiring the sync lock (C):
-            try
-            {
-                putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
-                if (fileLock != null)
-                {
-                    fileLock.release();
-                }
-                syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
-            }
-            catch (IOException ex)
-            {
-                Debug.reportError(ex);
-            }
-        }
-        
-        
-        // To avoid consuming close to 100% CPU, we wait on the animation timer:
-        synchronized (this)
+    }
+    
+    /**
+     * Remap the shared memory file at a larger size (after the debug VM has grown it).
+     * 
+     * @param newSize  The new size of the file, in bytes
+     */
+    @OnThread(Tag.Worker)
+    private synchronized void remap(int newSize) throws IOException
+    {
+        sharedMemoryByte = fc.map(MapMode.READ_WRITE, 0, newSize);
+        sharedMemory = sharedMemoryByte.asIntBuffer();
+        fileSize = newSize;
+        if (handshake != null)
         {
-            try
-            {
-                workerWaiting = true;
-                wait();
-                workerWaiting = false;
-            }
-            catch (InterruptedException ie)
-            {
-                // Nothing needs to be done.
-            }
-            return shmFile != null;
+            handshake = new SequenceHandshake(sharedMemoryByte, SERVER_ROUND_OFFSET_BYTES, DEBUG_ROUND_OFFSET_BYTES);
         }
     }
     
@@ -626,6 +805,19 @@ public class VMCommsMain implements Closeable
         setSpeedCommandCount = setSpeedCommandCount + 1;
     }
 
+    /**
+     * Enable or disable profiling of the simulation.  While enabled, the debug VM sends
+     * a summary once per second, which is passed to the stage.
+     */
+    public synchronized void setProfiling(boolean enabled)
+    {
+        if (profiling != enabled)
+        {
+            profiling = enabled;
+            pendingCommands.add(new Command(COMMAND_SET_PROFILING, enabled ? 1 : 0));
+        }
+    }
+
     /**
      * The debug VM has terminated.  We re-use the same shared memory file,
      * so we must reset our state ready for a new debug VM.
@@ -645,11 +837,18 @@ public class VMCommsMain implements Closeable
             }
         }
         lastSeq.addAndGet(1000);
+        serverRound = 0;
         pendingCommands.clear();        
         setSpeedCommandCount = 0;
         lastAnswer = -1;
         previousStoppedWithErrorCount = 0;
         prevWorldCounter = 0;
+        lastProfileId = -1;
+        // The new debug VM must be told to profile, if we still want it to:
+        if (profiling)
+        {
+            pendingCommands.add(new Command(COMMAND_SET_PROFILING, 1));
+        }
         
         // Zero the buffer:
         sharedMemoryByte.position(0);
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018,2019,2021  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2014,2015,2016,2018,2019,2021,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -26,10 +26,13 @@ import greenfoot.World;
 import greenfoot.WorldVisitor;
 import greenfoot.core.ShadowProjectProperties;
 import greenfoot.core.Simulation;
+import greenfoot.core.SimulationProfiler;
 import greenfoot.core.WorldHandler;
+import greenfoot.gui.DisplayList;
 import greenfoot.gui.WorldRenderer;
 import greenfoot.gui.input.KeyboardManager;
 import greenfoot.gui.input.mouse.MousePollingManager;
+import greenfoot.util.TimingStats;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import threadchecker.OnThread;
@@ -61,6 +64,11 @@ public class VMCommsSimulation
     private final BlockingQueue<BufferedImage> worldImagesForPainting = new ArrayBlockingQueue<BufferedImage>(3);
     /** The current image waiting to send (may be null if none): */
     private final AtomicReference<BufferedImage> worldImageForSending = new AtomicReference<>(null);
+    /** The latest display list waiting to be rendered, when rendering is pipelined: */
+    private final BlockingQueue<DisplayList> displayListsForRendering = new ArrayBlockingQueue<>(1);
+    /** The thread which renders display lists (null if pipelined rendering is not in use for the current world): */
+    @OnThread(value = Tag.Any, requireSynchronized = true)
+    private Thread renderThread;
     // These variables are shared with the remote communications thread and need synchronised access:
     /** The prompt for Greenfoot.ask() */
     @OnThread(value = Tag.Any, requireSynchronized = true)
@@ -91,7 +99,9 @@ public class VMCommsSimulation
      * 
      * Server area (16kb):
      * Pos 0: Reserved. Currently this region is locked independently; the "real" server area starts
-     *        following this position.
+     *        following this position.  (With the sequence-counter transport, it instead holds the
+     *        server's round counter, and the final position of the server area holds the debug
+     *        VM's round counter.)
      * Pos 1: When the number is negative, it indicates that the server VM has sent back
      *        information to the debug VM to read.  This includes keyboard and mouse events,
      *        as shown below.
@@ -107,36 +117,51 @@ public class VMCommsSimulation
      *        GreenfootStage.COMMAND_RUN just has the command type integer and no more, whereas
      *        mouse events have four integers.
      *
-     * Debug VM area (10M - 16kb): [Positions relative to beginning]
+     * Debug VM area (remainder of file): [Positions relative to beginning]
      * 
-     * Pos 0: Sequence index when the current (included) image was painted (the image is included
+     * Pos 0: Sequence number of this frame.
+     * Pos 1: The size of the shared memory file in bytes, as mapped by the debug VM.  The debug
+     *        VM grows the file when a world image would not fit; if this is larger than the
+     *        server VM's mapping, the server VM must remap before reading further.
+     * Pos 2: Sequence index when the current (included) image was painted (the image is included
      *        unchanged in subsequent frames).
-     * Pos 1: Width of world image in pixels (W)
-     * Pos 2: Height of world image in pixels (H)
-     * Pos 3 incl to 3+(W*H) excl, if W and H are both greater than zero:
-     *        W * H pixels one row at a time with no gaps, each pixel is one
-     *        integer, in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
-     * Pos 3+(W*H): Sequence ID of most recently processed command, or -1 if N/A.
-     * Pos 4+(W*H): Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
-     * Pos 5+(W*H) and 6+(W*H): Two ints (highest bits first) with value of System.currentTimeMillis()
-     *                          at the point when some execution that may contain user code last started on
-     *                          the simulation thread, or 0L if user code is not currently running.
-     * Pos 7+(W*H): The current simulation speed (1 to 100)
-     * Pos 8+(W*H): world counter if a world is currently installed, or 0 if there is no world.
-     * Pos 9+(W*H): The world cell size in pixels
-     * Pos 10+(W*H): -1 if not currently awaiting a Greenfoot.ask() answer.
-     *              If awaiting, it is count (P) of following codepoints which make up prompt.
-     * Pos 11+(W*H) to 11+(W*H)+P excl: codepoints making up ask prompt.
-     * Pos 11+(W*H)+P: 1 if the the delay loop is currently running, or 0 otherwise.
+     * Pos 3: Width of world image in pixels (W)
+     * Pos 4: Height of world image in pixels (H)
+     * Pos 5: Count of image tiles (T), or -1 if the image data is a full frame.
+     * Pos 6: Length of the image data in integers (L)
+     * Pos 7 incl to 7+L excl, if W and H are both greater than zero:
+     *        The image data, either a full frame or the tiles which have changed since the
+     *        previous image (see FrameDeltaEncoder for the format). Each pixel is one integer,
+     *        in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
+     * Pos 7+L: Sequence ID of most recently processed command, or -1 if N/A.
+     * Pos 8+L: Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
+     * Pos 9+L and 10+L: Two ints (highest bits first) with value of System.currentTimeMillis()
+     *                  at the point when some execution that may contain user code last started on
+     *                  the simulation thread, or 0L if user code is not currently running.
+     * Pos 11+L: The current simulation speed (1 to 100)
+     * Pos 12+L: world counter if a world is currently installed, or 0 if there is no world.
+     * Pos 13+L: The world cell size in pixels
+     * Pos 14+L: -1 if not currently awaiting a Greenfoot.ask() answer.
+     *           If awaiting, it is the ask ID, followed by the count (P) of following codepoints
+     *           which make up prompt.
+     * Pos 16+L to 16+L+P excl: codepoints making up ask prompt.
+     * Following that: 1 if the the delay loop is currently running, or 0 otherwise, and then
+     *                 1 if the debug VM is ready for invocations, or 0 otherwise.
      */
-    private final IntBuffer sharedMemory;
+    private IntBuffer sharedMemory;
     private int seq = 1;
     private final FileChannel shmFileChannel;
     private FileLock putLock;
+    // Only used with the sequence-counter transport (null if using file locks):
+    private SequenceHandshake handshake;
+    // The last round published by the server VM that we have processed (sequence-counter transport):
+    private int lastServerRound = 0;
     private long lastPaintNanos = System.nanoTime();
     private int lastAckCommand = -1;
     private int lastPaintSeq = -1; // last paint sequence
-    private int lastPaintSize; // number of ints last transmitted as image
+    private int lastPaintSize; // number of ints last transmitted as image (after width and height)
+    // Encodes the transmitted images, sending only changed tiles where possible:
+    private final FrameDeltaEncoder frameEncoder = new FrameDeltaEncoder();
     
     // How many times have we stopped with an error?  We continuously send the count to the
     // server VM, so that the server VM can observe changes in the count (only ever increases).
@@ -146,19 +171,30 @@ public class VMCommsSimulation
     // A strictly incrementing counter, incremented each time the world changes.
     private int worldCounter = 0;
     private World world;
-    // Size of the shared memory file
+    // Size of the shared memory file when we started (determines the locked regions)
     private final int fileSize;
+    // Current size of the shared memory file, as mapped (may grow to fit a large world image)
+    private int mappedSize;
+    // The largest size we will grow the shared memory file to:
+    private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE & ~0xFFF;
+    // Project property which, if "true", makes world rendering run on a separate thread
+    // to the simulation (see paintRemote):
+    private static final String PIPELINED_RENDERING_PROPERTY = "render.pipelined";
     private final AtomicBoolean userVMReadyForInvocations = new AtomicBoolean(false);
+    // Time taken to copy each world image into the shared memory buffer:
+    private final TimingStats frameCopyTime = new TimingStats();
 
     /**
      * Construct a VMCommsSimulation.
      * 
      * @param world The world which we are the canvas for.
      * @param shmFilePath The path to the shared-memory file to be mmap-ed for communication
+     * @param shmTransport The transport to use (VMCommsMain.TRANSPORT_FILE_LOCK or
+     *                     VMCommsMain.TRANSPORT_SEQUENCE)
      */
     @SuppressWarnings("resource")
     @OnThread(Tag.Any)
-    public VMCommsSimulation(ShadowProjectProperties projectProperties, String shmFilePath, int fileSize, int seqStart)
+    public VMCommsSimulation(ShadowProjectProperties projectProperties, String shmFilePath, int fileSize, int seqStart, String shmTransport)
     {
         this.projectProperties = projectProperties;
         this.seq = seqStart;
@@ -167,10 +203,20 @@ public class VMCommsSimulation
         {
             shmFileChannel = new RandomAccessFile(shmFilePath, "rw").getChannel();
             this.fileSize = fileSize;
+            this.mappedSize = fileSize;
             MappedByteBuffer mbb = shmFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
             sharedMemory = mbb.asIntBuffer();
-            putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
-                    fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+            if (VMCommsMain.TRANSPORT_SEQUENCE.equals(shmTransport))
+            {
+                handshake = new SequenceHandshake(mbb, VMCommsMain.DEBUG_ROUND_OFFSET_BYTES,
+                        VMCommsMain.SERVER_ROUND_OFFSET_BYTES);
+            }
+            else
+            {
+                handshake = null;
+                putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
+                        fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+            }
             
             new Thread("VMCommsSimulation") {
                 @OnThread(value = Tag.Worker,ignoreParent = true)
@@ -200,6 +246,8 @@ public class VMCommsSimulation
         {
             this.worldCounter += 1;
             this.world = world;
+            // Any display lists waiting are for the old world, which is now gone:
+            stopRenderThread();
         }
     }
 
@@ -217,6 +265,9 @@ public class VMCommsSimulation
      * @param paintWhen  If IF_DUE, painting may be skipped if it's close to a recent paint.
      *                   FORCE always paints, NO_PAINT indicates that an actual image update
      *                   is not required but other information in the frame should be sent.
+     *
+     * If the "render.pipelined" project property is true, the world is only snapshotted here,
+     * and is rendered on a separate thread while the next act round runs.
      */
     @OnThread(Tag.Simulation)
     public void paintRemote(PaintWhen paintWhen)
@@ -231,26 +282,122 @@ public class VMCommsSimulation
         if (world != null)
         {
             lastPaintNanos = now;
-            int imageWidth = WorldVisitor.getWidthInPixels(world);
-            int imageHeight = WorldVisitor.getHeightInPixels(world);
-            BufferedImage worldImage = worldImagesForPainting.poll();
-            
-            // If there are no available old images or it's the wrong size, make our own:
-            if (worldImage == null || worldImage.getHeight() != imageHeight
-                    || worldImage.getWidth() != imageWidth)
+            if (projectProperties.getBoolean(PIPELINED_RENDERING_PROPERTY, false))
             {
-                worldImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+                // Take a snapshot of the world now, and render it on the render thread
+                // while the simulation carries on.  If the render thread hasn't yet started
+                // on the previous snapshot, there's no point in rendering that one as well:
+                renderPipelined(worldRenderer.snapshot(world, true));
             }
-            
-            worldRenderer.renderWorld(world, worldImage);
-            
-            BufferedImage oldImage = worldImageForSending.getAndSet(worldImage);
-            // If there was an old image waiting which we've overwritten, put it back in our queue of old images:
-            if (oldImage != null)
+            else
             {
-                worldImagesForPainting.offer(oldImage);
-                // If it doesn't fit because the queue is full, just let it get GCed.
+                BufferedImage worldImage = getImageForPainting(WorldVisitor.getWidthInPixels(world),
+                        WorldVisitor.getHeightInPixels(world));
+                worldRenderer.renderWorld(world, worldImage);
+                setImageForSending(worldImage);
             }
+            SimulationProfiler.getInstance().recordPaint(System.nanoTime() - now);
+        }
+    }
+
+    /**
+     * Get an image to paint the world onto, re-using an old image if one of the right size is available.
+     */
+    @OnThread(Tag.Any)
+    private BufferedImage getImageForPainting(int imageWidth, int imageHeight)
+    {
+        BufferedImage worldImage = worldImagesForPainting.poll();
+        
+        // If there are no available old images or it's the wrong size, make our own:
+        if (worldImage == null || worldImage.getHeight() != imageHeight
+                || worldImage.getWidth() != imageWidth)
+        {
+            worldImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+        }
+        return worldImage;
+    }
+
+    /**
+     * Set a newly painted world image as the next image to send to the server VM.
+     */
+    @OnThread(Tag.Any)
+    private void setImageForSending(BufferedImage worldImage)
+    {
+        BufferedImage oldImage = worldImageForSending.getAndSet(worldImage);
+        // If there was an old image waiting which we've overwritten, put it back in our queue of old images:
+        if (oldImage != null)
+        {
+            worldImagesForPainting.offer(oldImage);
+            // If it doesn't fit because the queue is full, just let it get GCed.
+        }
+    }
+
+    /**
+     * Queue a display list to be rendered by the render thread, replacing any display list
+     * which is still waiting.  The render thread is started if it is not already running.
+     */
+    @OnThread(Tag.Any)
+    private synchronized void renderPipelined(DisplayList displayList)
+    {
+        discardWaitingDisplayList();
+        displayListsForRendering.offer(displayList);
+        if (renderThread != null)
+        {
+            return;
+        }
+        
+        renderThread = new Thread("VMCommsSimulation render") {
+            @OnThread(value = Tag.Worker, ignoreParent = true)
+            public void run()
+            {
+                try
+                {
+                    while (!isInterrupted())
+                    {
+                        DisplayList displayList = displayListsForRendering.take();
+                        BufferedImage worldImage = getImageForPainting(displayList.getWidth(), displayList.getHeight());
+                        worldRenderer.renderDisplayList(displayList, worldImage);
+                        if (!isInterrupted())
+                        {
+                            setImageForSending(worldImage);
+                        }
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // We have been stopped
+                }
+            }
+        };
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Stop the thread which renders display lists, if it is running, and discard any
+     * display list waiting to be rendered.  The thread is started again if needed.
+     */
+    @OnThread(Tag.Any)
+    private synchronized void stopRenderThread()
+    {
+        if (renderThread != null)
+        {
+            renderThread.interrupt();
+            renderThread = null;
+        }
+        discardWaitingDisplayList();
+    }
+
+    /**
+     * Discard the display list waiting to be rendered, if any.
+     */
+    @OnThread(Tag.Any)
+    private void discardWaitingDisplayList()
+    {
+        DisplayList displayList = displayListsForRendering.poll();
+        if (displayList != null)
+        {
+            worldRenderer.discardDisplayList(displayList);
         }
     }
 
@@ -291,9 +438,17 @@ public class VMCommsSimulation
         
         try
         {
-            // Get lock for our read area:
-            fileLock = shmFileChannel.lock(VMCommsMain.SERVER_AREA_OFFSET_BYTES,
-                    VMCommsMain.SERVER_AREA_SIZE_BYTES, false);
+            if (handshake != null)
+            {
+                // Wait for the server to publish a new round:
+                lastServerRound = handshake.await(r -> r > lastServerRound, -1);
+            }
+            else
+            {
+                // Get lock for our read area:
+                fileLock = shmFileChannel.lock(VMCommsMain.SERVER_AREA_OFFSET_BYTES,
+                        VMCommsMain.SERVER_AREA_SIZE_BYTES, false);
+            }
 
             boolean doUpdateImage;
             World curWorld;
@@ -321,7 +476,14 @@ public class VMCommsSimulation
             }
             
             BufferedImage img = doUpdateImage ? worldImageForSending.getAndSet(null) : null;
-            int [] raw = (img == null) ? null : ((DataBufferInt) img.getData().getDataBuffer()).getData();
+            // If the server has asked for a full frame but we have nothing new to send, resend
+            // the last frame in full:
+            boolean resendImage = img == null && doUpdateImage && frameEncoder.canResendFullFrame();
+            SimulationProfiler profiler = SimulationProfiler.getInstance();
+            String profileSummary = profiler.getSummary();
+            int profileId = profiler.getSummaryId();
+            int[] profileCodepoints = profileSummary == null ? null : profileSummary.codePoints().toArray();
+            int profileLength = profileCodepoints == null ? 0 : profileCodepoints.length;
 
             int imageWidth = 0;
             int imageHeight = 0;
@@ -331,26 +493,47 @@ public class VMCommsSimulation
                 imageHeight = img.getHeight();
             }
             
+            if (img != null)
+            {
+                ensureCapacity(imageWidth, imageHeight, profileLength);
+            }
+            else if (profileLength != 0)
+            {
+                ensureCapacity(frameEncoder.getPreviousWidth(), frameEncoder.getPreviousHeight(), profileLength);
+            }
+            
             sharedMemory.position(VMCommsMain.USER_AREA_OFFSET);
             sharedMemory.put(this.seq++);
-            if (img == null)
+            sharedMemory.put(mappedSize);
+            if (img == null && !resendImage)
             {
                 sharedMemory.put(lastPaintSeq);
                 sharedMemory.get(); // skip width
                 sharedMemory.get(); // skip height
                 sharedMemory.position(sharedMemory.position() + lastPaintSize);
             }
+            else if (img == null)
+            {
+                lastPaintSeq = (seq - 1);
+                sharedMemory.put(lastPaintSeq);
+                sharedMemory.put(frameEncoder.getPreviousWidth());
+                sharedMemory.put(frameEncoder.getPreviousHeight());
+                lastPaintSize = frameEncoder.encodePrevious(sharedMemory);
+            }
             else
             {
                 lastPaintSeq = (seq - 1);
                 sharedMemory.put(lastPaintSeq);
                 sharedMemory.put(imageWidth);
                 sharedMemory.put(imageHeight);
-                for (int i = 0; i < raw.length; i++)
-                {
-                    sharedMemory.put(raw[i]);
-                }
-                lastPaintSize = raw.length;
+                long copyStart = System.nanoTime();
+                // We access the raster's backing array directly (getData() would make a copy of
+                // the whole raster), and the encoder transfers it with bulk puts:
+                int [] raw = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                lastPaintSize = frameEncoder.encode(raw, imageWidth, imageHeight, sharedMemory);
+                long copyTime = System.nanoTime() - copyStart;
+                frameCopyTime.record(copyTime);
+                profiler.recordFrameTransfer(copyTime);
                 
                 // Now that we've rendered from it, put it back into the old images for re-use:
                 worldImagesForPainting.offer(img);
@@ -392,16 +575,36 @@ public class VMCommsSimulation
                 sharedMemory.put(userVMReadyForInvocations.get() ? 1 : 0);
             }
 
-            putLock.release();
+            // If profiling, put the summary ID and the summary string (otherwise -1):
+            if (profileCodepoints == null)
+            {
+                sharedMemory.put(-1);
+            }
+            else
+            {
+                sharedMemory.put(profileId);
+                sharedMemory.put(profileLength);
+                sharedMemory.put(profileCodepoints);
+            }
+
+            if (handshake != null)
+            {
+                // Hand back to the server:
+                handshake.publish(lastServerRound);
+            }
+            else
+            {
+                putLock.release();
+
+                // Lock the synchronisation area (C) to make sure that the server has acquired our put area:
+                syncLock = shmFileChannel.lock(VMCommsMain.SYNC_AREA_OFFSET_BYTES,
+                        VMCommsMain.SYNC_AREA_SIZE_BYTES, false);
 
-            // Lock the synchronisation area (C) to make sure that the server has acquired our put area:
-            syncLock = shmFileChannel.lock(VMCommsMain.SYNC_AREA_OFFSET_BYTES,
-                    VMCommsMain.SYNC_AREA_SIZE_BYTES, false);
-            
-            fileLock.release();
-            putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
-                    fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
-            syncLock.release();
+                fileLock.release();
+                putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
+                        fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+                syncLock.release();
+            }
         }
         catch (IOException ex)
         {
@@ -414,6 +617,10 @@ public class VMCommsSimulation
         }
         catch (BufferOverflowException ex)
         {
+            if (handshake != null)
+            {
+                handshake.publish(lastServerRound);
+            }
             try
             {
                 putLock.release();
@@ -428,10 +635,7 @@ public class VMCommsSimulation
             }
             catch (Exception e) {}
             // Note: the user will see this message in the terminal, so it should be helpful:
-            Debug.message("World size is too large.  If your world contains more than around 2.5 million pixels you will need to do the following.\n"
-                + "Close your project, then edit project.greenfoot in a text editor to add the following line:\n"
-                + "shm.size=40000000\n"
-                + "(The default is 20000000, keep increasing if needed.)  Save the file and re-open the project in Greenfoot.");
+            Debug.message("World size is too large to be displayed.  Try reducing the size of your world.");
         }
             
         if (answer[0] != null)
@@ -440,6 +644,56 @@ public class VMCommsSimulation
         }
     }
     
+    /**
+     * Make sure that the shared memory is large enough to hold a world image of the given size
+     * (along with the rest of the data we send), growing and remapping the file if necessary.
+     * The server VM sees the new size in the data we send, and remaps in turn.
+     * If the file can't be grown far enough, the write will fail with a BufferOverflowException.
+     * 
+     * @param extraLength  The length (in integers) of any additional variable-length data
+     *                     to be sent, such as the profiling summary
+     */
+    private void ensureCapacity(int imageWidth, int imageHeight, int extraLength)
+    {
+        int promptLength;
+        synchronized (this)
+        {
+            promptLength = pAskPrompt == null ? 0 : pAskPrompt.length();
+        }
+        // The image data, plus room for the other fields before and after it:
+        long requiredBytes = 4L * (VMCommsMain.USER_AREA_OFFSET + 32 + promptLength + extraLength
+                + FrameDeltaEncoder.maxEncodedLength(imageWidth, imageHeight));
+        if (requiredBytes <= mappedSize)
+        {
+            return;
+        }
+        
+        // Allow some headroom so that we don't need to grow repeatedly as the world grows:
+        long newSize = Math.min(requiredBytes + requiredBytes / 4, MAX_MAPPED_SIZE);
+        if (newSize <= mappedSize)
+        {
+            return;
+        }
+        
+        try
+        {
+            // Mapping beyond the end of the file extends the file:
+            MappedByteBuffer mbb = shmFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            sharedMemory = mbb.asIntBuffer();
+            mappedSize = (int) newSize;
+            if (handshake != null)
+            {
+                handshake = new SequenceHandshake(mbb, VMCommsMain.DEBUG_ROUND_OFFSET_BYTES,
+                        VMCommsMain.SERVER_ROUND_OFFSET_BYTES);
+            }
+        }
+        catch (IOException ex)
+        {
+            // We carry on with the existing mapping; the image write will fail and be reported.
+            Debug.reportError(ex);
+        }
+    }
+
     /**
      * An "ask" answer has been received from the other VM; record it and signal the simulation
      * thread.
@@ -563,6 +817,12 @@ public class VMCommsSimulation
                     case Command.COMMAND_WORLD_FOCUS_LOST:
                         WorldHandler.getInstance().worldFocusChanged(false);
                         break;
+                    case Command.COMMAND_REQUEST_FULL_FRAME:
+                        frameEncoder.requestFullFrame();
+                        break;
+                    case Command.COMMAND_SET_PROFILING:
+                        SimulationProfiler.getInstance().setEnabled(data[1] == 1);
+                        break;
                 }
             }
         }
@@ -578,6 +838,15 @@ public class VMCommsSimulation
         return lastAckCommand;
     }
 
+    /**
+     * Get the timing statistics for copying world images into the shared memory buffer.
+     */
+    @OnThread(Tag.Any)
+    public TimingStats getFrameCopyTime()
+    {
+        return frameCopyTime;
+    }
+
     /**
      * The simulation thread has stopped with an error; need to let the server VM know. 
      */
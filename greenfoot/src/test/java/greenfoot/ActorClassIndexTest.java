@@ -0,0 +1,101 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the order of the actors returned by World.getObjects, now that it uses the
+ * class index.
+ */
+public class ActorClassIndexTest extends TestCase
+{
+    private World world;
+    
+    public static class Red extends TestObject
+    {
+    }
+    
+    public static class Blue extends TestObject
+    {
+    }
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(100, 100, 1);
+    }
+    
+    /**
+     * Add actors of two classes, interleaved, and remove some.
+     */
+    private void addActors()
+    {
+        List<Actor> added = new ArrayList<Actor>();
+        for (int i = 0; i < 20; i++) {
+            Actor actor = (i % 3 == 0) ? new Red() : new Blue();
+            world.addObject(actor, i, i);
+            added.add(actor);
+        }
+        world.removeObject(added.get(4));
+        world.removeObject(added.get(9));
+    }
+    
+    public void testSuperclassInWorldOrder()
+    {
+        addActors();
+        List<Actor> all = world.getObjects(null);
+        assertEquals(18, all.size());
+        assertEquals(all, world.getObjects(Actor.class));
+        assertEquals(all, world.getObjects(TestObject.class));
+        assertSame(all.get(0), world.getObjects(Actor.class).get(0));
+    }
+    
+    public void testSuperclassInWorldOrderWithPaintOrder()
+    {
+        world.setPaintOrder(Blue.class, Red.class);
+        addActors();
+        assertEquals(world.getObjects(null), world.getObjects(Actor.class));
+    }
+    
+    public void testSingleClassInWorldOrder()
+    {
+        addActors();
+        List<Red> reds = new ArrayList<Red>();
+        for (Actor actor : world.getObjects(null)) {
+            if (actor instanceof Red) {
+                reds.add((Red) actor);
+            }
+        }
+        assertEquals(6, reds.size());
+        assertEquals(reds, world.getObjects(Red.class));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the cache of image transformation results.
+ */
+public class ImageTransformCacheTest extends TestCase
+{
+    /**
+     * Create a shared (copy-on-write) image, filled with the given colour.
+     */
+    private static GreenfootImage createShared(Color color)
+    {
+        GreenfootImage base = new GreenfootImage(20, 10);
+        base.setColor(color);
+        base.fill();
+        return base.getSnapshot();
+    }
+    
+    public void testRepeatedScale()
+    {
+        ImageTransformCache cache = ImageTransformCache.getInstance();
+        GreenfootImage shared = createShared(Color.RED);
+        
+        long hits = cache.getHits();
+        GreenfootImage a = new GreenfootImage(shared);
+        a.scale(40, 20);
+        GreenfootImage b = new GreenfootImage(shared);
+        b.scale(40, 20);
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals(40, b.getWidth());
+        assertEquals(Color.RED, b.getColorAt(39, 19));
+        
+        // Modifying one result must not affect the other:
+        b.setColorAt(0, 0, Color.BLUE);
+        assertEquals(Color.RED, a.getColorAt(0, 0));
+        
+        // A different transformation is not a hit:
+        GreenfootImage c = new GreenfootImage(shared);
+        c.rotate(90);
+        assertEquals(hits + 1, cache.getHits());
+        c = new GreenfootImage(shared);
+        c.rotate(90);
+        assertEquals(hits + 2, cache.getHits());
+    }
+    
+    public void testModifiedSource()
+    {
+        ImageTransformCache cache = ImageTransformCache.getInstance();
+        GreenfootImage image = createShared(Color.RED);
+        GreenfootImage copy = new GreenfootImage(image);
+        copy.scale(5, 5);
+        
+        // Once modified, the image has its own data and the earlier result doesn't apply:
+        long hits = cache.getHits();
+        image.setColor(Color.GREEN);
+        image.fill();
+        image.scale(5, 5);
+        assertEquals(hits, cache.getHits());
+        assertEquals(Color.GREEN, image.getColorAt(0, 0));
+        assertEquals(Color.RED, copy.getColorAt(0, 0));
+    }
+    
+    public void testBudget()
+    {
+        // Room for the source and three 10x10 results:
+        ImageTransformCache cache = new ImageTransformCache(1700);
+        BufferedImage source = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < 4; i++) {
+            cache.put(source, ImageTransformCache.ROTATE, i, 0, new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        }
+        assertEquals(1600, cache.getBytes());
+        assertNull(cache.get(source, ImageTransformCache.ROTATE, 0, 0));
+        assertNotNull(cache.get(source, ImageTransformCache.ROTATE, 1, 0));
+        assertNotNull(cache.get(source, ImageTransformCache.ROTATE, 2, 0));
+        assertNotNull(cache.get(source, ImageTransformCache.ROTATE, 3, 0));
+        
+        // Too large to be worth caching:
+        cache.put(source, ImageTransformCache.SCALE, 20, 20, new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.get(source, ImageTransformCache.SCALE, 20, 20));
+        
+        // Each source is counted once, until its last result is discarded:
+        BufferedImage other = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        cache.put(other, ImageTransformCache.ROTATE, 0, 0, new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(1600, cache.getBytes());
+        assertNull(cache.get(source, ImageTransformCache.ROTATE, 2, 0));
+        assertNotNull(cache.get(other, ImageTransformCache.ROTATE, 0, 0));
+        cache.put(other, ImageTransformCache.ROTATE, 1, 0, new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(1200, cache.getBytes());
+        assertNull(cache.get(source, ImageTransformCache.ROTATE, 3, 0));
+        
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for taking snapshots of a TreeActorSet, including a check that snapshots allocate
+ * less memory than copying the set into a new list, as the act loop used to do.
+ */
+public class TreeActorSetTest extends TestCase
+{
+    private static final int ACTORS = 10000;
+    private static final int ROUNDS = 1000;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+
+    private static class OtherObject extends TestObject
+    {
+    }
+
+    private TreeActorSet createSet(int count)
+    {
+        TreeActorSet set = new TreeActorSet();
+        set.setClassOrder(false, OtherObject.class);
+        for (int i = 0; i < count; i++) {
+            set.add(i % 3 == 0 ? new OtherObject() : new TestObject());
+        }
+        return set;
+    }
+
+    /**
+     * Check that a snapshot holds the actors in iteration order, and is null-terminated.
+     */
+    public void testSnapshotOrder()
+    {
+        TreeActorSet set = createSet(20);
+        Actor[] snapshot = set.snapshot(new Actor[0]);
+        assertTrue(snapshot.length > 20);
+        
+        Iterator<Actor> i = set.iterator();
+        for (int n = 0; n < 20; n++) {
+            assertSame(i.next(), snapshot[n]);
+        }
+        assertFalse(i.hasNext());
+        assertNull(snapshot[20]);
+    }
+
+    /**
+     * Check that the buffer is re-used if large enough, that stale entries are cleared,
+     * and that the snapshot is not affected by later changes to the set.
+     */
+    public void testSnapshotReuse()
+    {
+        TreeActorSet set = createSet(10);
+        Actor[] buffer = new Actor[16];
+        assertSame(buffer, set.snapshot(buffer));
+        
+        Actor first = buffer[0];
+        set.remove(first);
+        set.remove(buffer[1]);
+        assertSame(first, buffer[0]);
+        
+        assertSame(buffer, set.snapshot(buffer));
+        for (int n = 0; n < 8; n++) {
+            assertNotNull(buffer[n]);
+        }
+        assertNull(buffer[8]);
+        assertNull(buffer[9]);
+        
+        set.add(first);
+        set.add(new TestObject());
+        set.add(new TestObject());
+        assertSame(buffer, set.snapshot(buffer));
+        assertNull(buffer[11]);
+    }
+
+    /**
+     * Compare the memory allocated by snapshots with that allocated by copying the set
+     * into a new list each round.
+     */
+    public void testSnapshotAllocation()
+    {
+        TreeActorSet set = createSet(ACTORS);
+        
+        Actor[] buffer = set.snapshot(new Actor[0]);
+        long start = allocatedBytes();
+        for (int round = 0; round < ROUNDS; round++) {
+            buffer = set.snapshot(buffer);
+        }
+        long snapshotBytes = allocatedBytes() - start;
+        
+        start = allocatedBytes();
+        int total = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Actor> copy = new ArrayList<Actor>(set);
+            total += copy.size();
+        }
+        long copyBytes = allocatedBytes() - start;
+        assertEquals(ACTORS * ROUNDS, total);
+        
+        if (snapshotBytes >= 0 && copyBytes >= 0) {
+            assertTrue(snapshotBytes < copyBytes);
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far, or -1 if not available.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
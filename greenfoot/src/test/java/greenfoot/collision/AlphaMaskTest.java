@@ -0,0 +1,141 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for pixel-perfect collision checking.
+ */
+public class AlphaMaskTest extends TestCase
+{
+    private World world;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(200, 200, 1);
+        world.setPixelPerfectCollision(true);
+    }
+    
+    private static TestObject createCircle(int diameter)
+    {
+        TestObject actor = new TestObject(diameter, diameter);
+        GreenfootImage image = actor.getImage();
+        image.setColor(Color.BLACK);
+        image.fillOval(0, 0, diameter, diameter);
+        return actor;
+    }
+    
+    public void testCircles()
+    {
+        TestObject c1 = createCircle(40);
+        TestObject c2 = createCircle(40);
+        world.addObject(c1, 50, 50);
+        
+        // The bounding boxes overlap at the corners, but the circles don't:
+        world.addObject(c2, 85, 85);
+        assertTrue(c1.intersectsP(c2));
+        assertNull(c1.getOneIntersectingObjectP(TestObject.class));
+        assertTrue(c1.getIntersectingObjectsP(TestObject.class).isEmpty());
+        
+        world.setPixelPerfectCollision(false);
+        assertSame(c2, c1.getOneIntersectingObjectP(TestObject.class));
+        world.setPixelPerfectCollision(true);
+        
+        c2.setLocation(80, 50);
+        assertSame(c2, c1.getOneIntersectingObjectP(TestObject.class));
+        assertSame(c1, c2.getOneIntersectingObjectP(TestObject.class));
+        
+        // Once the image is cleared, there is nothing to collide with:
+        c2.getImage().clear();
+        assertNull(c1.getOneIntersectingObjectP(TestObject.class));
+    }
+    
+    public void testRedrawnImage()
+    {
+        // The mask must follow changes drawn directly onto an (already writable) image:
+        TestObject circle = createCircle(40);
+        TestObject redrawn = new TestObject(40, 40);
+        world.addObject(circle, 50, 50);
+        world.addObject(redrawn, 80, 50);
+        assertNull(circle.getOneIntersectingObjectP(TestObject.class));
+        
+        redrawn.getImage().setColor(Color.BLACK);
+        redrawn.getImage().fillOval(0, 0, 40, 40);
+        assertSame(redrawn, circle.getOneIntersectingObjectP(TestObject.class));
+        
+        redrawn.getImage().clear();
+        redrawn.getImage().fillOval(30, 0, 10, 10);
+        assertNull(circle.getOneIntersectingObjectP(TestObject.class));
+    }
+    
+    public void testRotation()
+    {
+        // An actor whose image is solid on the left half only:
+        TestObject half = new TestObject(40, 40);
+        half.getImage().setColor(Color.BLACK);
+        half.getImage().fillRect(0, 0, 20, 40);
+        world.addObject(half, 100, 100);
+        
+        TestObject block = new TestObject(4, 4);
+        block.getImage().setColor(Color.BLACK);
+        block.getImage().fill();
+        world.addObject(block, 112, 100);
+        assertNull(block.getOneIntersectingObjectP(TestObject.class));
+        
+        half.setRotation(180);
+        assertSame(half, block.getOneIntersectingObjectP(TestObject.class));
+        
+        // At 90 degrees the solid half is at the top:
+        half.setRotation(90);
+        block.setLocation(112, 112);
+        assertNull(block.getOneIntersectingObjectP(TestObject.class));
+        block.setLocation(100, 88);
+        assertSame(half, block.getOneIntersectingObjectP(TestObject.class));
+    }
+    
+    public void testPoints()
+    {
+        TestObject transparent = new TestObject(20, 20);
+        world.addObject(transparent, 30, 30);
+        TestObject solid = createCircle(20);
+        world.addObject(solid, 30, 30);
+        
+        assertEquals(1, solid.getObjectsAtP(0, 0, TestObject.class).size());
+        assertTrue(solid.getObjectsAtP(0, 0, TestObject.class).contains(solid));
+        // The corner of the circle's image is transparent:
+        assertTrue(solid.getObjectsAtP(-9, -9, TestObject.class).isEmpty());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.WorldVisitor;
+import greenfoot.collision.ibsp.IBSPColChecker;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for queries on the tree-based collision checker, including a check that queries
+ * into a re-used list allocate (almost) nothing, and less than queries returning new lists.
+ */
+public class IBSPColCheckerTest extends TestCase
+{
+    private static final int ACTORS = 150;
+    private static final int ROUNDS = 200;
+    
+    private List<TestObject> actors;
+    private IBSPColChecker checker;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        
+        // The world itself uses the grid checker, so that the tree checker created here
+        // is the only one to keep data in the actors:
+        World world = WorldCreator.createWorld(400, 400, 1);
+        WorldVisitor.setCollisionBackend(world, ColManager.Backend.GRID);
+        checker = new IBSPColChecker();
+        checker.initialize(400, 400, 1, false);
+        
+        // Mostly small actors, plus some large ones which will be split over several nodes:
+        Random random = new Random(3);
+        actors = new ArrayList<TestObject>();
+        for (int i = 0; i < ACTORS; i++) {
+            int size = (i % 10 == 0) ? 150 : 10 + random.nextInt(20);
+            TestObject actor = new TestObject(size, size);
+            world.addObject(actor, random.nextInt(400), random.nextInt(400));
+            checker.addObject(actor);
+            actors.add(actor);
+        }
+    }
+    
+    /**
+     * Each intersecting actor should be found exactly once.
+     */
+    public void testIntersectingObjects()
+    {
+        for (TestObject actor : actors) {
+            // (The checker includes the actor itself; the Actor methods remove it.)
+            HashSet<Actor> expected = new HashSet<Actor>();
+            for (TestObject other : actors) {
+                if (other == actor || actor.intersectsP(other)) {
+                    expected.add(other);
+                }
+            }
+            
+            List<TestObject> found = checker.getIntersectingObjects(actor, TestObject.class);
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected, new HashSet<Actor>(found));
+            
+            List<Actor> sink = new ArrayList<Actor>();
+            sink.add(actor);
+            checker.getIntersectingObjects(actor, TestObject.class, sink);
+            assertEquals(found.size() + 1, sink.size());
+            assertSame(actor, sink.get(0));
+        }
+        
+        assertEquals(ACTORS, new HashSet<Actor>(checker.getObjects(null)).size());
+        assertEquals(ACTORS, checker.getObjects(null).size());
+    }
+    
+    /**
+     * Queries into a re-used list should not need to allocate.
+     */
+    public void testQueryAllocation()
+    {
+        List<Actor> sink = new ArrayList<Actor>(ACTORS);
+        for (int round = 0; round < 10; round++) {
+            for (TestObject actor : actors) {
+                sink.clear();
+                checker.getIntersectingObjects(actor, null, sink);
+                checker.getOneIntersectingObject(actor, null);
+            }
+        }
+        
+        long start = allocatedBytes();
+        int total = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (TestObject actor : actors) {
+                sink.clear();
+                checker.getIntersectingObjects(actor, null, sink);
+                total += sink.size();
+                if (checker.getOneIntersectingObject(actor, null) != null) {
+                    total++;
+                }
+            }
+        }
+        long sinkBytes = allocatedBytes() - start;
+        
+        start = allocatedBytes();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (TestObject actor : actors) {
+                total -= checker.getIntersectingObjects(actor, null).size();
+                if (checker.getOneIntersectingObject(actor, null) != null) {
+                    total--;
+                }
+            }
+        }
+        long listBytes = allocatedBytes() - start;
+        assertEquals(0, total);
+        
+        if (sinkBytes >= 0 && listBytes >= 0) {
+            // Allow a little for the measurement itself:
+            assertTrue(sinkBytes < 1024);
+            assertTrue(sinkBytes < listBytes);
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far, or -1 if not available.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
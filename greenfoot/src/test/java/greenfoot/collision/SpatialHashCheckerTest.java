@@ -0,0 +1,166 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.WorldVisitor;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the grid-based collision checker, which should give the same results
+ * as the tree-based checker, and for switching between collision checking backends.
+ */
+public class SpatialHashCheckerTest extends TestCase
+{
+    private static final int ACTOR_COUNT = 80;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+    
+    /**
+     * Create a world using the given backend, with actors of varied sizes (some
+     * reaching outside the world) placed at pseudo-random locations.
+     */
+    private List<TestObject> populate(World world, ColManager.Backend backend)
+    {
+        WorldVisitor.setCollisionBackend(world, backend);
+        assertEquals(backend, WorldVisitor.getActiveCollisionBackend(world));
+        
+        Random random = new Random(42);
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < ACTOR_COUNT; i++) {
+            TestObject actor = new TestObject(1 + random.nextInt(60), 1 + random.nextInt(60));
+            world.addObject(actor, random.nextInt(30), random.nextInt(30));
+            actors.add(actor);
+        }
+        return actors;
+    }
+    
+    /**
+     * Get the results of a number of queries for each actor, as indexes into the actor list.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Set<Integer>> query(List<TestObject> actors)
+    {
+        List<Set<Integer>> results = new ArrayList<Set<Integer>>();
+        for (TestObject actor : actors) {
+            results.add(indexes(actors, actor.getIntersectingObjectsP(TestObject.class)));
+            results.add(indexes(actors, actor.getObjectsInRangeP(4, TestObject.class)));
+            results.add(indexes(actors, actor.getNeighboursP(2, true, TestObject.class)));
+            results.add(indexes(actors, actor.getObjectsAtP(1, 0, TestObject.class)));
+        }
+        return results;
+    }
+    
+    private static Set<Integer> indexes(List<TestObject> actors, List<?> found)
+    {
+        Set<Integer> result = new HashSet<Integer>();
+        for (Object o : found) {
+            result.add(actors.indexOf(o));
+        }
+        assertEquals("Duplicate results", found.size(), result.size());
+        return result;
+    }
+    
+    public void testSameResultsAsTree()
+    {
+        World treeWorld = WorldCreator.createWorld(30, 30, 10);
+        List<TestObject> treeActors = populate(treeWorld, ColManager.Backend.BSP);
+        World gridWorld = WorldCreator.createWorld(30, 30, 10);
+        List<TestObject> gridActors = populate(gridWorld, ColManager.Backend.GRID);
+        assertEquals(query(treeActors), query(gridActors));
+        
+        // Move the actors, and check again:
+        for (int i = 0; i < ACTOR_COUNT; i++) {
+            int x = (i * 7) % 30;
+            int y = (i * 11) % 30;
+            treeActors.get(i).setLocation(x, y);
+            gridActors.get(i).setLocation(x, y);
+        }
+        assertEquals(query(treeActors), query(gridActors));
+    }
+    
+    public void testSwitchBackend()
+    {
+        World world = WorldCreator.createWorld(30, 30, 10);
+        List<TestObject> actors = populate(world, ColManager.Backend.BSP);
+        List<Set<Integer>> expected = query(actors);
+        
+        WorldVisitor.setCollisionBackend(world, ColManager.Backend.GRID);
+        assertEquals(ColManager.Backend.GRID, WorldVisitor.getActiveCollisionBackend(world));
+        assertEquals(expected, query(actors));
+        
+        WorldVisitor.setCollisionBackend(world, ColManager.Backend.BSP);
+        assertEquals(expected, query(actors));
+        
+        // Actors must still be removable after moving between checkers (one is
+        // kept in the world to query from):
+        for (TestObject actor : actors.subList(1, actors.size())) {
+            world.removeObject(actor);
+        }
+        assertTrue(actors.get(0).getObjectsInRangeP(100, TestObject.class).isEmpty());
+        assertEquals(1, world.getObjects(TestObject.class).size());
+    }
+    
+    /**
+     * Many small actors which move around should lead to the grid being chosen automatically.
+     */
+    public void testAutomaticSelection()
+    {
+        World world = WorldCreator.createWorld(100, 100, 5);
+        Random random = new Random(7);
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < 200; i++) {
+            TestObject actor = new TestObject(5, 5);
+            world.addObject(actor, random.nextInt(100), random.nextInt(100));
+            actors.add(actor);
+        }
+        assertEquals(ColManager.Backend.BSP, WorldVisitor.getActiveCollisionBackend(world));
+        
+        for (int seq = 0; seq <= 50; seq++) {
+            WorldVisitor.startSequence(world);
+            for (TestObject actor : actors) {
+                actor.setLocation(random.nextInt(100), random.nextInt(100));
+                actor.getOneIntersectingObjectP(TestObject.class);
+            }
+        }
+        WorldVisitor.startSequence(world);
+        assertEquals(ColManager.Backend.GRID, WorldVisitor.getActiveCollisionBackend(world));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.GreenfootImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the size-limited image cache.
+ */
+public class ImageCacheTest extends TestCase
+{
+    /** The size of a 10x10 image, in bytes */
+    private static final long IMAGE_BYTES = 10 * 10 * 4;
+    
+    public void testHitsAndMisses()
+    {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 10);
+        GreenfootImage image = new GreenfootImage(10, 10);
+        assertNull(cache.getCachedImage("a.png"));
+        assertTrue(cache.addCachedImage("a.png", image));
+        assertSame(image, cache.getCachedImage("a.png"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(IMAGE_BYTES, cache.getBytes());
+        
+        // Null images are cached, but take no space:
+        assertTrue(cache.addCachedImage("missing.png", null));
+        assertTrue(cache.isNullCachedImage("missing.png"));
+        assertFalse(cache.isNullCachedImage("a.png"));
+        assertEquals(IMAGE_BYTES, cache.getBytes());
+        
+        cache.removeCachedImage("a.png");
+        assertNull(cache.getCachedImage("a.png"));
+        assertEquals(0, cache.getBytes());
+        cache.clearImageCache();
+        assertFalse(cache.isNullCachedImage("missing.png"));
+    }
+    
+    public void testEvictionWithinBudget()
+    {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 4);
+        for (int i = 0; i < 4; i++) {
+            cache.addCachedImage("image" + i, new GreenfootImage(10, 10));
+        }
+        assertEquals(0, cache.getEvictions());
+        
+        for (int i = 4; i < 40; i++) {
+            cache.addCachedImage("image" + i, new GreenfootImage(10, 10));
+            assertTrue(cache.getBytes() <= cache.getBudget());
+        }
+        assertEquals(36, cache.getEvictions());
+    }
+    
+    public void testPinnedNotEvicted()
+    {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 4);
+        GreenfootImage classImage = new GreenfootImage(10, 10);
+        cache.addCachedImage("class.png", classImage);
+        assertTrue(cache.pinImage("class.png"));
+        assertFalse(cache.pinImage("other.png"));
+        
+        for (int i = 0; i < 40; i++) {
+            cache.addCachedImage("image" + i, new GreenfootImage(10, 10));
+        }
+        assertSame(classImage, cache.getCachedImage("class.png"));
+        
+        // Replacing the image keeps it pinned:
+        GreenfootImage newImage = new GreenfootImage(10, 10);
+        cache.addCachedImage("class.png", newImage);
+        for (int i = 40; i < 80; i++) {
+            cache.addCachedImage("image" + i, new GreenfootImage(10, 10));
+        }
+        assertSame(newImage, cache.getCachedImage("class.png"));
+        // The pinned image is held in addition to the budget:
+        assertEquals(IMAGE_BYTES * 5, cache.getBytes());
+    }
+    
+    public void testPinnedNotCountedInBudget()
+    {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 4);
+        for (int i = 0; i < 4; i++) {
+            cache.addCachedImage("class" + i, new GreenfootImage(10, 10));
+            cache.pinImage("class" + i);
+        }
+        
+        // The pinned images fill the budget, but the cache still has room for unpinned ones:
+        for (int i = 0; i < 4; i++) {
+            assertTrue(cache.addCachedImage("image" + i, new GreenfootImage(10, 10)));
+        }
+        assertEquals(0, cache.getEvictions());
+        assertEquals(IMAGE_BYTES * 8, cache.getBytes());
+        
+        cache.addCachedImage("image4", new GreenfootImage(10, 10));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(IMAGE_BYTES * 8, cache.getBytes());
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(cache.getCachedImage("class" + i));
+        }
+    }
+    
+    public void testTooLargeNotCached()
+    {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 4);
+        cache.addCachedImage("big.png", new GreenfootImage(10, 10));
+        assertFalse(cache.addCachedImage("big.png", new GreenfootImage(30, 30)));
+        assertNull(cache.getCachedImage("big.png"));
+        assertEquals(0, cache.getBytes());
+    }
+}
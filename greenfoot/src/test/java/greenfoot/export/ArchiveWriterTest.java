@@ -0,0 +1,137 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the parallel archive writer.
+ */
+public class ArchiveWriterTest extends TestCase
+{
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("greenfoot-archive").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        for (File file : dir.listFiles())
+        {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private File writeArchive(String name, String unique) throws Exception
+    {
+        File archive = new File(dir, name);
+        ArchiveWriter writer = new ArchiveWriter(new FileOutputStream(archive));
+        for (int i = 0; i < 50; i++)
+        {
+            writer.addBytes("dir/text" + i + ".txt", text(unique, i), System.currentTimeMillis());
+        }
+        writer.addBytes("images/\u00e9.png", text(unique, -1), System.currentTimeMillis());
+        writer.addBytes("empty", new byte[0], 0);
+        try
+        {
+            writer.addBytes("empty", new byte[0], 0);
+            fail("Duplicate entry");
+        }
+        catch (ZipException e)
+        {
+            // Expected
+        }
+        writer.close();
+        if (name.equals("second.zip"))
+        {
+            assertEquals(50, writer.getReusedCount());
+        }
+        else
+        {
+            assertEquals(0, writer.getReusedCount());
+        }
+        return archive;
+    }
+
+    private static byte[] text(String unique, int i)
+    {
+        StringBuilder sb = new StringBuilder(unique);
+        for (int n = 0; n < 200; n++)
+        {
+            sb.append(" line ").append(n).append(" of ").append(i);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void testWriteAndReuse() throws Exception
+    {
+        String unique = Long.toString(System.nanoTime());
+        File first = writeArchive("first.zip", unique);
+        File second = writeArchive("second.zip", unique);
+        
+        for (File archive : new File[] {first, second})
+        {
+            try (ZipFile zip = new ZipFile(archive))
+            {
+                assertEquals(52, zip.size());
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                // Entries are in the order added:
+                for (int i = 0; i < 50; i++)
+                {
+                    ZipEntry entry = entries.nextElement();
+                    assertEquals("dir/text" + i + ".txt", entry.getName());
+                    assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+                    assertTrue(entry.getCompressedSize() < entry.getSize());
+                    assertEquals(new String(text(unique, i), StandardCharsets.UTF_8),
+                            new String(zip.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8));
+                }
+                ZipEntry image = entries.nextElement();
+                assertEquals("images/\u00e9.png", image.getName());
+                assertEquals(ZipEntry.STORED, image.getMethod());
+                assertEquals(text(unique, -1).length, zip.getInputStream(image).readAllBytes().length);
+                assertEquals(0, zip.getInputStream(entries.nextElement()).readAllBytes().length);
+            }
+        }
+    }
+
+    public void testStoredExtensions()
+    {
+        assertTrue(ArchiveWriter.isStored("sounds/Bang.MP3"));
+        assertTrue(ArchiveWriter.isStored("images/a.b.png"));
+        assertFalse(ArchiveWriter.isStored("sounds/click.wav"));
+        assertFalse(ArchiveWriter.isStored("png"));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the WorldRenderer, in particular its caching of the world background.
+ */
+public class WorldRendererTest extends TestCase
+{
+    private World world;
+    private WorldRenderer renderer;
+    private BufferedImage worldImage;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(100, 100, 1);
+        GreenfootImage background = new GreenfootImage(100, 100);
+        background.setColor(Color.WHITE);
+        background.fill();
+        world.setBackground(background);
+        renderer = new WorldRenderer();
+        worldImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public void testDrawOnBackground()
+    {
+        // Render twice so that the background pixels are cached:
+        renderer.renderWorld(world, worldImage);
+        renderer.renderWorld(world, worldImage);
+        assertEquals(0xFFFFFFFF, worldImage.getRGB(50, 50));
+
+        // Drawing on the background must show up in the next render:
+        GreenfootImage background = world.getBackground();
+        background.setColor(Color.RED);
+        background.fillRect(40, 40, 20, 20);
+        renderer.renderWorld(world, worldImage);
+        assertEquals(0xFFFF0000, worldImage.getRGB(50, 50));
+        assertEquals(0xFFFFFFFF, worldImage.getRGB(10, 10));
+
+        // And so must further drawing, once the changed background is cached again:
+        renderer.renderWorld(world, worldImage);
+        background.setColor(Color.BLUE);
+        background.fillRect(0, 0, 20, 20);
+        renderer.renderWorld(world, worldImage);
+        assertEquals(0xFF0000FF, worldImage.getRGB(10, 10));
+        assertEquals(0xFFFF0000, worldImage.getRGB(50, 50));
+    }
+}
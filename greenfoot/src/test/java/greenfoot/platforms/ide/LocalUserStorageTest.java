@@ -0,0 +1,164 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.ide;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the local user storage, with its log and sorted index.
+ */
+public class LocalUserStorageTest extends TestCase
+{
+    private File dir;
+    private File csvFile;
+    private File logFile;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("greenfoot-storage").toFile();
+        csvFile = new File(dir, "storage.csv");
+        logFile = new File(dir, "storage.log");
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        for (File file : dir.listFiles())
+        {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static String[] line(String userName, int score)
+    {
+        return new String[] {userName, Integer.toString(score), "0", "text"};
+    }
+
+    private static String names(List<String[]> lines)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String[] line : lines)
+        {
+            sb.append(line[0]).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    public void testRanking() throws Exception
+    {
+        LocalUserStorage storage = new LocalUserStorage(csvFile, logFile);
+        storage.store("a", line("a", 10));
+        storage.store("b", line("b", 30));
+        storage.store("c", line("c", 20));
+        storage.store("d", line("d", 20));
+        assertEquals("b c d a", names(storage.getRange(0, 10)));
+        assertEquals(0, storage.indexOf("b"));
+        assertEquals(2, storage.indexOf("d"));
+        assertEquals(-1, storage.indexOf("e"));
+        
+        // Storing again moves the user after others with the same score:
+        storage.store("c", line("c", 20));
+        assertEquals("b d c a", names(storage.getRange(0, 10)));
+        assertEquals("d c", names(storage.getRange(1, 3)));
+        
+        storage.store("b", null);
+        assertEquals("d c a", names(storage.getRange(0, 10)));
+        assertNull(storage.getLine("b"));
+        assertEquals(3, storage.size());
+        
+        // The CSV file is not written until compaction (it is just created):
+        assertEquals(0, csvFile.length());
+        assertTrue(logFile.exists());
+    }
+
+    public void testReloadAndCompaction() throws Exception
+    {
+        LocalUserStorage storage = new LocalUserStorage(csvFile, logFile);
+        storage.store("a", line("a", 10));
+        storage.store("b", line("b", 5));
+        storage.store("c", line("c", 5));
+        storage.store("a", line("a", 1));
+        
+        LocalUserStorage reloaded = new LocalUserStorage(csvFile, logFile);
+        assertEquals("b c a", names(reloaded.getRange(0, 10)));
+        assertEquals("text", reloaded.getLine("a")[3]);
+        
+        reloaded.compact();
+        assertTrue(csvFile.exists());
+        assertFalse(logFile.exists());
+        assertEquals("b c a", names(new LocalUserStorage(csvFile, logFile).getRange(0, 10)));
+        
+        // Repeated stores for one user eventually compact the log:
+        for (int i = 0; i < 100; i++)
+        {
+            reloaded.store("b", line("b", i));
+        }
+        assertEquals("b c a", names(new LocalUserStorage(csvFile, logFile).getRange(0, 10)));
+        assertTrue(logFile.length() < csvFile.length() * 50);
+    }
+
+    public void testExternalChange() throws Exception
+    {
+        LocalUserStorage storage = new LocalUserStorage(csvFile, logFile);
+        storage.store("a", line("a", 10));
+        storage.store("b", line("b", 20));
+        
+        // Replacing the CSV file (e.g. by hand) takes priority over the log:
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8"))
+        {
+            w.write("\"c\",\"5\"\n\"bad\",\"x\"\n");
+        }
+        csvFile.setLastModified(System.currentTimeMillis() + 10000);
+        assertEquals("c", names(storage.getRange(0, 10)));
+        assertEquals("c", names(new LocalUserStorage(csvFile, logFile).getRange(0, 10)));
+        
+        // As does deleting it:
+        csvFile.delete();
+        assertEquals(0, storage.size());
+    }
+
+    public void testFreshLoadAfterDelete() throws Exception
+    {
+        LocalUserStorage storage = new LocalUserStorage(csvFile, logFile);
+        storage.store("a", line("a", 10));
+        storage.store("b", line("b", 20));
+        assertEquals("b a", names(new LocalUserStorage(csvFile, logFile).getRange(0, 10)));
+        
+        // Deleting the CSV file clears the scores, even though the log is newer:
+        csvFile.delete();
+        LocalUserStorage reloaded = new LocalUserStorage(csvFile, logFile);
+        assertEquals(0, reloaded.size());
+        assertFalse(logFile.exists());
+        
+        reloaded.store("c", line("c", 5));
+        assertEquals("c", names(new LocalUserStorage(csvFile, logFile).getRange(0, 10)));
+    }
+}
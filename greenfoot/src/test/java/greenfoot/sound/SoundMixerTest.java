@@ -0,0 +1,231 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the software sound mixer, including checks on mixing time and start-up
+ * latency using an output which discards the audio.
+ */
+public class SoundMixerTest extends TestCase
+{
+    private static final int BUFFER_FRAMES = 256;
+    
+    /**
+     * An output which keeps the most recent buffer, and optionally paces the mixer
+     * as a real line would.
+     */
+    private static class NullOutput implements MixerOutput
+    {
+        private final long paceNanos;
+        final short[] lastBuffer;
+        volatile long firstSoundTime;
+        
+        NullOutput(int bufferFrames, long paceNanos)
+        {
+            this.paceNanos = paceNanos;
+            lastBuffer = new short[bufferFrames * 2];
+        }
+        
+        @Override
+        public void write(byte[] buffer, int length)
+        {
+            for (int i = 0; i < length / 2; i++) {
+                lastBuffer[i] = (short) ((buffer[2 * i] & 0xff) | (buffer[2 * i + 1] << 8));
+                if (lastBuffer[i] != 0 && firstSoundTime == 0) {
+                    firstSoundTime = System.nanoTime();
+                }
+            }
+            if (paceNanos != 0) {
+                LockSupport.parkNanos(paceNanos);
+            }
+        }
+        
+        @Override
+        public void close()
+        {
+        }
+    }
+    
+    /**
+     * Create a mono 16-bit clip where every sample has the given value.
+     */
+    private static ClipData createClip(int frames, float sampleRate, short value)
+    {
+        byte[] data = new byte[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            data[2 * i] = (byte) value;
+            data[2 * i + 1] = (byte) (value >> 8);
+        }
+        AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
+        return new ClipData("test", data, format, frames);
+    }
+    
+    public void testDecode()
+    {
+        // Unsigned 8-bit stereo:
+        AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 22050f, 8, 2, 2, 22050f, false);
+        ClipData clip = new ClipData("test", new byte[] {(byte) 128, (byte) 255, 0, 64}, format, 2);
+        assertTrue(ClipData.isDecodable(format));
+        assertEquals(2, clip.getSampleChannels());
+        assertTrue(Arrays.equals(new short[] {0, 127 << 8, -128 << 8, -64 << 8}, clip.getSamples()));
+        
+        // Signed 16-bit big-endian mono:
+        format = new AudioFormat(44100f, 16, 1, true, true);
+        clip = new ClipData("test", new byte[] {0x12, 0x34, (byte) 0xff, (byte) 0xfe}, format, 2);
+        assertTrue(Arrays.equals(new short[] {0x1234, -2}, clip.getSamples()));
+        
+        assertFalse(ClipData.isDecodable(new AudioFormat(AudioFormat.Encoding.ULAW, 8000f, 8, 1, 1, 8000f, false)));
+    }
+    
+    public void testVolumeAndPan()
+    {
+        NullOutput output = new NullOutput(BUFFER_FRAMES, 0);
+        SoundMixer mixer = new SoundMixer(output, 4, BUFFER_FRAMES);
+        ClipData clip = createClip(BUFFER_FRAMES * 4, 44100f, (short) 10000);
+        
+        MixerVoice voice = mixer.claimVoice(clip, false, 1f, 0f, null);
+        assertEquals(1, mixer.mix());
+        assertEquals(10000, output.lastBuffer[0]);
+        assertEquals(10000, output.lastBuffer[1]);
+        
+        voice.setGain(0.5f, -1f);
+        mixer.mix();
+        assertEquals(5000, output.lastBuffer[0]);
+        assertEquals(0, output.lastBuffer[1]);
+        
+        // Two voices add together, and are clipped:
+        voice.setGain(1f, 0f);
+        mixer.claimVoice(clip, false, 1f, 0f, null);
+        mixer.claimVoice(clip, false, 1f, 0f, null);
+        mixer.claimVoice(clip, false, 1f, 0f, null);
+        assertEquals(4, mixer.getVoicesInUse());
+        assertNull(mixer.claimVoice(clip, false, 1f, 0f, null));
+        assertEquals(4, mixer.mix());
+        assertEquals(Short.MAX_VALUE, output.lastBuffer[0]);
+    }
+    
+    public void testFinishAndRelease()
+    {
+        NullOutput output = new NullOutput(BUFFER_FRAMES, 0);
+        SoundMixer mixer = new SoundMixer(output, 2, BUFFER_FRAMES);
+        // Half the output rate, so the clip lasts for two buffers:
+        ClipData clip = createClip(BUFFER_FRAMES, 22050f, (short) 1000);
+        
+        MixerVoice[] finished = new MixerVoice[1];
+        MixerVoice voice = mixer.claimVoice(clip, false, 1f, 0f, v -> finished[0] = v);
+        mixer.mix();
+        assertNull(finished[0]);
+        assertEquals(1000, output.lastBuffer[2 * BUFFER_FRAMES - 1]);
+        mixer.mix();
+        assertSame(voice, finished[0]);
+        assertTrue(voice.isFinished());
+        assertEquals(0, mixer.mix());
+        assertEquals(0, output.lastBuffer[0]);
+        
+        // Restarting plays from the beginning:
+        voice.restart();
+        assertEquals(1, mixer.mix());
+        assertEquals(1000, output.lastBuffer[0]);
+        
+        // Paused voices aren't played, but keep their voice:
+        voice.pause();
+        assertEquals(0, mixer.mix());
+        voice.resume();
+        assertEquals(1, mixer.mix());
+        
+        voice.release();
+        assertEquals(1, mixer.getVoicesInUse());
+        mixer.mix();
+        assertEquals(0, mixer.getVoicesInUse());
+    }
+    
+    public void testLooping()
+    {
+        NullOutput output = new NullOutput(BUFFER_FRAMES, 0);
+        SoundMixer mixer = new SoundMixer(output, 1, BUFFER_FRAMES);
+        ClipData clip = createClip(100, 44100f, (short) 1000);
+        
+        MixerVoice voice = mixer.claimVoice(clip, true, 1f, 0f, null);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, mixer.mix());
+            assertEquals(1000, output.lastBuffer[2 * BUFFER_FRAMES - 1]);
+        }
+        assertFalse(voice.isFinished());
+        
+        voice.setLooping(false);
+        mixer.mix();
+        assertTrue(voice.isFinished());
+    }
+    
+    /**
+     * Check that mixing a buffer with all voices playing takes less time than the buffer takes
+     * to play, and that a claimed voice's sound is output by the mixer thread within a few
+     * buffers (with the output paced as a real line would be).
+     */
+    public void testPerformance() throws Exception
+    {
+        NullOutput output = new NullOutput(SoundMixer.DEFAULT_BUFFER_FRAMES, 0);
+        SoundMixer mixer = new SoundMixer(output, SoundMixer.DEFAULT_VOICES, SoundMixer.DEFAULT_BUFFER_FRAMES);
+        ClipData clip = createClip(44100, 22050f, (short) 100);
+        for (int i = 0; i < SoundMixer.DEFAULT_VOICES; i++) {
+            assertNotNull(mixer.claimVoice(clip, true, 0.5f, 0f, null));
+        }
+        for (int i = 0; i < 2000; i++) {
+            mixer.mix();
+        }
+        assertTrue(mixer.getMixTime().getAverageNanos() < mixer.getBufferNanos());
+        
+        // The output takes as long as the buffer would take to play:
+        long bufferNanos = (long) (BUFFER_FRAMES * 1_000_000_000.0 / SoundMixer.OUTPUT_FORMAT.getFrameRate());
+        NullOutput pacedOutput = new NullOutput(BUFFER_FRAMES, bufferNanos);
+        SoundMixer pacedMixer = new SoundMixer(pacedOutput, 4, BUFFER_FRAMES);
+        pacedMixer.start();
+        long[] latency = new long[50];
+        try {
+            for (int i = 0; i < latency.length; i++) {
+                // Let the mixer go idle sometimes, and not other times:
+                Thread.sleep(i % 2 == 0 ? 5 : 100);
+                pacedOutput.firstSoundTime = 0;
+                long start = System.nanoTime();
+                MixerVoice voice = pacedMixer.claimVoice(clip, false, 1f, 0f, null);
+                while (pacedOutput.firstSoundTime == 0) {
+                    Thread.sleep(1);
+                }
+                latency[i] = pacedOutput.firstSoundTime - start;
+                voice.release();
+            }
+        }
+        finally {
+            pacedMixer.shutdown();
+        }
+        Arrays.sort(latency);
+        // Generous, so as not to fail on a busy machine:
+        assertTrue(latency[latency.length / 2] < bufferNanos * 10);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the sequence-counter handshake, including a check that command round-trips
+ * with frame delivery are fast enough to keep up with the frame rate.
+ */
+public class SequenceHandshakeTest extends TestCase
+{
+    private static final int ROUNDS = 2000;
+    private static final int FRAME_WIDTH = 800;
+    private static final int FRAME_HEIGHT = 600;
+    /** The longest median round-trip allowed, in nanoseconds (a little over one frame at 60fps) */
+    private static final long MAX_MEDIAN_ROUND_TRIP = 20_000_000L;
+    private static final int FILE_SIZE = VMCommsMain.USER_AREA_OFFSET_BYTES + (FRAME_WIDTH * FRAME_HEIGHT + 16) * 4;
+
+    private File shmFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        shmFile = File.createTempFile("greenfoot", "shmtest");
+        shmFile.deleteOnExit();
+        channel = new RandomAccessFile(shmFile, "rw").getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        channel.close();
+        shmFile.delete();
+    }
+
+    /**
+     * Check that data written in each round is seen intact by the other side, with the
+     * command written by the server and a frame written by the debug side, and that the
+     * median time for a round-trip (including the frame) is within a frame period.
+     */
+    public void testRoundTrips() throws Exception
+    {
+        SequenceHandshake server = new SequenceHandshake(buffer,
+                VMCommsMain.SERVER_ROUND_OFFSET_BYTES, VMCommsMain.DEBUG_ROUND_OFFSET_BYTES);
+        SequenceHandshake debug = new SequenceHandshake(buffer.duplicate(),
+                VMCommsMain.DEBUG_ROUND_OFFSET_BYTES, VMCommsMain.SERVER_ROUND_OFFSET_BYTES);
+        IntBuffer serverInts = buffer.asIntBuffer();
+        IntBuffer debugInts = buffer.duplicate().asIntBuffer();
+
+        int[] frame = new int[FRAME_WIDTH * FRAME_HEIGHT];
+        Throwable[] debugFailure = new Throwable[1];
+        Thread debugThread = new Thread(() -> {
+            try
+            {
+                int lastRound = 0;
+                while (lastRound < ROUNDS)
+                {
+                    int prevRound = lastRound;
+                    lastRound = debug.await(r -> r > prevRound, -1);
+                    // Echo the command back, and send a frame which is filled with it:
+                    int command = debugInts.get(1);
+                    debugInts.put(VMCommsMain.USER_AREA_OFFSET, command);
+                    Arrays.fill(frame, command);
+                    debugInts.position(VMCommsMain.USER_AREA_OFFSET + 1);
+                    debugInts.put(frame);
+                    debug.publish(lastRound);
+                }
+            }
+            catch (Throwable t)
+            {
+                debugFailure[0] = t;
+            }
+        });
+        debugThread.start();
+
+        long[] roundTrip = new long[ROUNDS];
+        int[] received = new int[FRAME_WIDTH * FRAME_HEIGHT];
+        for (int round = 1; round <= ROUNDS; round++)
+        {
+            int command = round * 7;
+            long start = System.nanoTime();
+            serverInts.put(1, command);
+            server.publish(round);
+            int expected = round;
+            assertEquals(round, server.await(r -> r == expected, 5_000_000_000L));
+            roundTrip[round - 1] = System.nanoTime() - start;
+
+            assertEquals(command, serverInts.get(VMCommsMain.USER_AREA_OFFSET));
+            serverInts.position(VMCommsMain.USER_AREA_OFFSET + 1);
+            serverInts.get(received);
+            assertEquals(command, received[0]);
+            assertEquals(command, received[received.length - 1]);
+        }
+        debugThread.join(5000);
+        assertNull(debugFailure[0]);
+
+        Arrays.sort(roundTrip);
+        assertTrue(roundTrip[ROUNDS / 2] < MAX_MEDIAN_ROUND_TRIP);
+    }
+
+    /**
+     * Check that an await times out if the other side does not respond.
+     */
+    public void testTimeout()
+    {
+        SequenceHandshake server = new SequenceHandshake(buffer,
+                VMCommsMain.SERVER_ROUND_OFFSET_BYTES, VMCommsMain.DEBUG_ROUND_OFFSET_BYTES);
+        server.publish(1);
+        assertEquals(1, server.getPublished());
+        assertEquals(-1, server.await(r -> r == 1, 10_000_000L));
+    }
+}